@@ -0,0 +1,49 @@
+package org.nmssever.benchmarks;
+
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.impl.ArrayTuple;
+
+import java.util.List;
+
+/**
+ * In-memory {@link Row} for benchmarks that convert query results without a database.
+ */
+public class BenchRow extends ArrayTuple implements Row {
+
+    private final List<String> columns;
+
+    /**
+     * Instantiates a new Bench row.
+     *
+     * @param columns the column names, in value order
+     * @param values  the values
+     */
+    public BenchRow(List<String> columns, Object... values) {
+
+        super(values.length);
+
+        this.columns = columns;
+
+        for (var value : values) {
+
+            addValue(value);
+
+        }
+
+    }
+
+    @Override
+    public String getColumnName(int pos) {
+
+        return pos < 0 || pos >= columns.size() ? null : columns.get(pos);
+
+    }
+
+    @Override
+    public int getColumnIndex(String column) {
+
+        return columns.indexOf(column);
+
+    }
+
+}
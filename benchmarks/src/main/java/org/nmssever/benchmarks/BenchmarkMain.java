@@ -0,0 +1,51 @@
+package org.nmssever.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Runs the JMH suites with machine-readable output.
+ * <p>
+ * Accepts every JMH command line option. Unless {@code -rf} or {@code -rff} are given, results are written
+ * as JSON to {@code jmh-result.json}, so two commits can be compared by diffing or by loading both files
+ * into a JMH visualizer.
+ */
+public class BenchmarkMain {
+
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkMain() {
+
+    }
+
+    /**
+     * The entry point of application.
+     *
+     * @param args the JMH command line
+     * @throws Exception if JMH fails
+     */
+    public static void main(String[] args) throws Exception {
+
+        var options = new ArrayList<>(Arrays.asList(args));
+
+        if (!options.contains("-rf")) {
+
+            options.add("-rf");
+
+            options.add("json");
+
+        }
+
+        if (!options.contains("-rff")) {
+
+            options.add("-rff");
+
+            options.add(DEFAULT_RESULT_FILE);
+
+        }
+
+        org.openjdk.jmh.Main.main(options.toArray(String[]::new));
+
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.nmssever.benchmarks;
+
+import io.vertx.core.eventbus.impl.codecs.JsonObjectMessageCodec;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.messages.PolledData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the system data payload from a decoded polling reply, from the ZMQ reply handler to the row
+ * queued by {@code DatabaseVerticle.handleZmqPolledData}.
+ * <p>
+ * {@code jsonEnvelope} replays the former path: a JsonObject envelope sent with the default codec, so
+ * deep-copied, then unwrapped. {@code polledDataRecord} is the current path, where the reply body is
+ * handed over in a {@link PolledData} record and stamped in place. Each invocation decodes a fresh
+ * reply copy first, as the reactor does, so both include the same baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PolledDataBenchmark {
+
+    private final JsonObjectMessageCodec jsonCodec = new JsonObjectMessageCodec();
+
+    @Param({"20", "200"})
+    private int metrics;
+
+    private JsonObject reply;
+
+    @Setup
+    public void setUp() {
+
+        reply = PollingReplies.reply(7, metrics);
+
+    }
+
+    @Benchmark
+    public JsonObject jsonEnvelope() {
+
+        var response = reply.copy();
+
+        var request = new JsonObject()
+                .put("clientID", "bench")
+                .put("discovery_profile_id", response.getInteger("discovery_profile_id"))
+                .put("data", response.getJsonObject("result", new JsonObject()));
+
+        var received = jsonCodec.transform(request);
+
+        return received.getJsonObject("data").put("timestamp", LocalDateTime.now().toString());
+
+    }
+
+    @Benchmark
+    public JsonObject polledDataRecord() {
+
+        var response = reply.copy();
+
+        var polledData = new PolledData("bench", response.getInteger("discovery_profile_id"), response.getJsonObject("result"), false, System.currentTimeMillis());
+
+        return polledData.body().put("timestamp", LocalDateTime.now().toString());
+
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.nmssever.benchmarks;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Builds polling replies shaped like the ZMQ plugin's.
+ */
+public class PollingReplies {
+
+    private PollingReplies() {
+
+    }
+
+    /**
+     * Builds a successful provisioning reply.
+     *
+     * @param discoveryProfileId the discovery profile id
+     * @param metrics            the number of metrics in the result
+     * @return the reply
+     */
+    public static JsonObject reply(int discoveryProfileId, int metrics) {
+
+        return new JsonObject()
+                .put("RequestType", "provisioning")
+                .put("status", "success")
+                .put("discovery_profile_id", discoveryProfileId)
+                .put("result", result(metrics));
+
+    }
+
+    /**
+     * Builds a polling result.
+     *
+     * @param metrics the number of metrics
+     * @return the result
+     */
+    public static JsonObject result(int metrics) {
+
+        var result = new JsonObject()
+                .put("system.name", "bench-host")
+                .put("system.os.name", "Linux")
+                .put("system.os.version", "6.1.0");
+
+        for (var i = 0; i < metrics; i++) {
+
+            if (i % 10 == 9) {
+
+                result.put("system.disk." + i, new JsonArray().add(new JsonObject().put("mount", "/").put("used.percent", i * 0.5)));
+
+            } else {
+
+                result.put("system.metric." + i, i * 1.25);
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.nmssever.benchmarks;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.services.ZmqWireCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding ZMQ plugin replies, done on the reactor thread for every reply.
+ * <p>
+ * {@code legacy-json} is the double-encoded JSON string older plugins send, {@code json} a plain JSON
+ * object and {@code cbor} the negotiated binary format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ZmqReplyDecodeBenchmark {
+
+    @Param({"legacy-json", "json", "cbor"})
+    private String format;
+
+    @Param({"20", "200"})
+    private int metrics;
+
+    private byte[] frame;
+
+    @Setup
+    public void setUp() {
+
+        var reply = PollingReplies.reply(1, metrics);
+
+        frame = switch (format) {
+
+            case "legacy-json" -> Json.encode(reply.encode()).getBytes(StandardCharsets.UTF_8);
+
+            case "cbor" -> ZmqWireCodec.encode(reply, ZmqWireCodec.Format.CBOR);
+
+            default -> ZmqWireCodec.encode(reply, ZmqWireCodec.Format.JSON);
+
+        };
+
+    }
+
+    @Benchmark
+    public JsonObject decode() {
+
+        return ZmqWireCodec.decode(frame).body();
+
+    }
+
+}
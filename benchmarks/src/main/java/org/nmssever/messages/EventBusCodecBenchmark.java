@@ -0,0 +1,104 @@
+package org.nmssever.messages;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.impl.codecs.JsonObjectMessageCodec;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.benchmarks.PollingReplies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local event bus delivery of a JSON body with the default codec, which deep-copies it, versus the
+ * pass-by-reference codec registered by {@link MessageCodecs}.
+ * <p>
+ * The {@code transform} benchmarks isolate the codec; the {@code request} benchmarks measure a full
+ * request and reply through a running event bus. Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EventBusCodecBenchmark {
+
+    private static final String ADDRESS = "bench.codec";
+
+    private final JsonObjectMessageCodec jsonCodec = new JsonObjectMessageCodec();
+
+    private final LocalMessageCodec<JsonObject> localCodec = new LocalMessageCodec<>(MessageCodecs.LOCAL_JSON);
+
+    @Param({"20", "200"})
+    private int metrics;
+
+    private JsonObject body;
+
+    private Vertx vertx;
+
+    private DeliveryOptions localOptions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        body = PollingReplies.result(metrics);
+
+        vertx = Vertx.vertx();
+
+        MessageCodecs.register(vertx.eventBus());
+
+        localOptions = MessageCodecs.localJson();
+
+        vertx.eventBus().<JsonObject>consumer(ADDRESS, message -> message.reply(message.body().size()));
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+
+    }
+
+    @Benchmark
+    public JsonObject transformDefaultCodec() {
+
+        return jsonCodec.transform(body);
+
+    }
+
+    @Benchmark
+    public JsonObject transformLocalCodec() {
+
+        return localCodec.transform(body);
+
+    }
+
+    @Benchmark
+    public Object requestDefaultCodec() {
+
+        return vertx.eventBus().request(ADDRESS, body).toCompletionStage().toCompletableFuture().join().body();
+
+    }
+
+    @Benchmark
+    public Object requestLocalCodec() {
+
+        return vertx.eventBus().request(ADDRESS, body, localOptions).toCompletionStage().toCompletableFuture().join().body();
+
+    }
+
+}
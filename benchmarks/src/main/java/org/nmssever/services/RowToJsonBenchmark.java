@@ -0,0 +1,95 @@
+package org.nmssever.services;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.sqlclient.Row;
+import org.nmssever.benchmarks.BenchRow;
+import org.nmssever.util.DBConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting discovery profile rows to JSON, as the list endpoints do for every row of a result.
+ * <p>
+ * {@code buildArray} is the buffered reply path of {@link UnifiedProfileService#rowToJson}, and
+ * {@code buildAndEncode} adds the encoding done before the reply leaves the event bus.
+ * {@code streamRows} is the per-row work of the streamed responses, which share the same row mapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RowToJsonBenchmark {
+
+    private static final List<String> COLUMNS = List.of(DBConstants.COL_ID, DBConstants.COL_DISCOVERY_PROFILE_NAME, DBConstants.COL_IP,
+            DBConstants.COL_CREDENTIAL_PROFILE_ID, DBConstants.COL_CREDENTIAL_PROFILE_NAME, DBConstants.COL_DISCOVERY_STATUS,
+            DBConstants.COL_PROVISION_STATUS, DBConstants.COL_POLLING_INTERVAL);
+
+    @Param({"10", "1000", "10000"})
+    private int rows;
+
+    private List<Row> result;
+
+    @Setup
+    public void setUp() {
+
+        result = new ArrayList<>(rows);
+
+        for (var i = 0; i < rows; i++) {
+
+            result.add(new BenchRow(COLUMNS, i, "profile-" + i, "10.0." + (i >> 8 & 255) + "." + (i & 255), i % 16,
+                    "credential-" + (i % 16), i % 2, i % 3 == 0 ? 1 : 0, 120));
+
+        }
+
+    }
+
+    @Benchmark
+    public JsonArray buildArray() {
+
+        var profiles = new JsonArray();
+
+        result.forEach(row -> profiles.add(UnifiedProfileService.rowToJson(row)));
+
+        return profiles;
+
+    }
+
+    @Benchmark
+    public Buffer buildAndEncode() {
+
+        return buildArray().toBuffer();
+
+    }
+
+    @Benchmark
+    public long streamRows() {
+
+        var bytes = 0L;
+
+        for (var row : result) {
+
+            bytes += UnifiedProfileService.rowToJson(row).toBuffer().length();
+
+        }
+
+        return bytes;
+
+    }
+
+}
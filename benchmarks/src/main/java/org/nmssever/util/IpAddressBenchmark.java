@@ -0,0 +1,78 @@
+package org.nmssever.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * IP address validation of discovery profile targets: the regular expressions the handler used to compile
+ * on every call, the same expressions precompiled, and the single pass parser. Run with {@code -prof gc} to
+ * compare allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IpAddressBenchmark {
+
+    private static final String IPV4_REGEX = "^(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)\\.(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)\\.(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)\\.(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)$";
+
+    private static final String IPV6_REGEX = "^(([0-9a-fA-F]{1,4}:){7,7}[0-9a-fA-F]{1,4}|([0-9a-fA-F]{1,4}:){1,7}:|([0-9a-fA-F]{1,4}:){1,6}:[0-9a-fA-F]{1,4}|([0-9a-fA-F]{1,4}:){1,5}(:[0-9a-fA-F]{1,4}){1,2}|([0-9a-fA-F]{1,4}:){1,4}(:[0-9a-fA-F]{1,4}){1,3}|([0-9a-fA-F]{1,4}:){1,3}(:[0-9a-fA-F]{1,4}){1,4}|([0-9a-fA-F]{1,4}:){1,2}(:[0-9a-fA-F]{1,4}){1,5}|[0-9a-fA-F]{1,4}:((:[0-9a-fA-F]{1,4}){1,6})|:((:[0-9a-fA-F]{1,4}){1,7}|:)|fe80:(:[0-9a-fA-F]{0,4}){0,4}%[0-9a-zA-Z]{1,}|::(ffff(:0{1,4}){0,1}:){0,1}((25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9])\\.){3,3}(25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9])|([0-9a-fA-F]{1,4}:){1,4}:((25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9])\\.){3,3}(25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9]))$";
+
+    private static final Pattern IPV4 = Pattern.compile(IPV4_REGEX);
+
+    private static final Pattern IPV6 = Pattern.compile(IPV6_REGEX);
+
+    @Param({"192.168.10.254", "2001:db8:85a3::8a2e:370:7334", "::ffff:10.0.0.1", "not-an-address", "300.1.1.1",
+            "1:2:3:4:5:6:7:8:9:a:b:c:d:e:f:0"})
+    private String address;
+
+    @Benchmark
+    public boolean regex() {
+
+        return Pattern.matches(IPV4_REGEX, address) || Pattern.matches(IPV6_REGEX, address);
+
+    }
+
+    @Benchmark
+    public boolean precompiledRegex() {
+
+        return IPV4.matcher(address).matches() || IPV6.matcher(address).matches();
+
+    }
+
+    @Benchmark
+    public boolean parser() {
+
+        return IpAddress.isValid(address);
+
+    }
+
+    @Benchmark
+    public long parseToNumeric() {
+
+        var ipv4 = IpAddress.parseIpv4(address, 0, address.length());
+
+        if (ipv4 >= 0) {
+
+            return ipv4;
+
+        }
+
+        return IpAddress.isValid(address) ? IpAddress.parse(address).low() : -1;
+
+    }
+
+}
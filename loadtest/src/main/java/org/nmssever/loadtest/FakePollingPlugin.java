@@ -0,0 +1,369 @@
+package org.nmssever.loadtest;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.services.ZmqWireCodec;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for the external polling plugin.
+ * <p>
+ * Binds the ROUTER side of the server's DEALER connection and answers every request after a log-normal
+ * latency derived from the configured median and p99. A configurable fraction of polls is answered with
+ * a plugin error and another fraction is never answered, which exercises the server's timeout path.
+ * Successful replies carry a realistic metric set plus {@code loadtest.requested_at}, the time the
+ * request arrived, so the ingest observer can measure end-to-end sample latency from the stored rows.
+ * The socket is only touched by the plugin thread.
+ */
+public class FakePollingPlugin implements Runnable {
+
+    /**
+     * Field of every successful reply holding the epoch millis the request was received.
+     */
+    public static final String REQUESTED_AT_FIELD = "loadtest.requested_at";
+
+    private static final double Z_99 = 2.3263;
+
+    private static final long MAX_LATENCY_MS = 60000;
+
+    private final LoadTestConfig config;
+
+    private final double sigma;
+
+    private final SplittableRandom random = new SplittableRandom();
+
+    private final DelayQueue<PendingReply> pending = new DelayQueue<>();
+
+    private final Set<Integer> polledDevices = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong replies = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong malformed = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    /**
+     * Instantiates a new Fake polling plugin.
+     *
+     * @param config the load test config
+     */
+    public FakePollingPlugin(LoadTestConfig config) {
+
+        this.config = config;
+
+        this.sigma = Math.log(Math.max(config.latencyP99Ms(), config.latencyMedianMs()) / Math.max(1, config.latencyMedianMs())) / Z_99;
+
+    }
+
+    /**
+     * Starts the plugin thread.
+     */
+    public void start() {
+
+        var thread = new Thread(this, "fake-polling-plugin");
+
+        thread.setDaemon(true);
+
+        thread.start();
+
+    }
+
+    @Override
+    public void run() {
+
+        try (var context = new ZContext()) {
+
+            var router = context.createSocket(SocketType.ROUTER);
+
+            router.setLinger(0);
+
+            router.bind(config.zmqEndpoint());
+
+            var poller = context.createPoller(1);
+
+            poller.register(router, ZMQ.Poller.POLLIN);
+
+            while (running) {
+
+                var next = pending.peek();
+
+                var timeout = next == null ? 10 : Math.max(0, Math.min(10, next.getDelay(TimeUnit.MILLISECONDS)));
+
+                if (poller.poll(timeout) > 0 && poller.pollin(0)) {
+
+                    receive(router);
+
+                }
+
+                PendingReply reply;
+
+                while ((reply = pending.poll()) != null) {
+
+                    router.send(reply.identity, ZMQ.SNDMORE);
+
+                    router.send(reply.requestId, ZMQ.SNDMORE);
+
+                    router.send("", ZMQ.SNDMORE);
+
+                    router.send(reply.payload, 0);
+
+                    replies.incrementAndGet();
+
+                }
+
+            }
+
+        }
+
+    }
+
+    private void receive(ZMQ.Socket router) {
+
+        byte[] identity;
+
+        while ((identity = router.recv(ZMQ.DONTWAIT)) != null) {
+
+            var requestId = router.recvStr();
+
+            router.recv(); // Empty delimiter frame
+
+            var payload = router.recv();
+
+            requests.incrementAndGet();
+
+            JsonObject request;
+
+            try {
+
+                request = ZmqWireCodec.decode(payload).body();
+
+            } catch (Exception e) {
+
+                malformed.incrementAndGet();
+
+                continue;
+
+            }
+
+            if (random.nextDouble() < config.dropRate()) {
+
+                dropped.incrementAndGet();
+
+                continue;
+
+            }
+
+            var reply = reply(request);
+
+            pending.add(new PendingReply(identity, requestId, encode(reply, request), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(latencyMs())));
+
+        }
+
+    }
+
+    private JsonObject reply(JsonObject request) {
+
+        var requestType = request.getString("RequestType", "provisioning");
+
+        var discoveryProfileId = request.getInteger("discovery_profile_id", request.getInteger("id", 0));
+
+        var reply = new JsonObject()
+                .put("RequestType", requestType)
+                .put("discovery_profile_id", discoveryProfileId)
+                .put("ip", request.getString("ip"));
+
+        if (random.nextDouble() < config.errorRate()) {
+
+            errors.incrementAndGet();
+
+            return reply.put("status", "fail").put("errors", new JsonObject().put("message", "Simulated plugin error").put("code", "LOADTEST_ERROR"));
+
+        }
+
+        polledDevices.add(discoveryProfileId);
+
+        return reply.put("status", "success").put("result", metrics(request.getString("ip")));
+
+    }
+
+    private JsonObject metrics(String ip) {
+
+        var result = new JsonObject()
+                .put(REQUESTED_AT_FIELD, System.currentTimeMillis())
+                .put("system.name", "loadtest-" + ip)
+                .put("system.os.name", "Linux")
+                .put("system.os.version", "6.1.0-18-amd64")
+                .put("system.cpu.cores", 8)
+                .put("system.cpu.percent", round(random.nextDouble(100)))
+                .put("system.memory.installed.bytes", 17179869184L)
+                .put("system.memory.used.percent", round(random.nextDouble(20, 95)))
+                .put("system.running.processes", random.nextInt(80, 400))
+                .put("system.uptime.seconds", random.nextLong(3600, 40000000));
+
+        var disks = new JsonArray();
+
+        for (var i = 0; i < 3; i++) {
+
+            disks.add(new JsonObject()
+                    .put("system.disk.mount", i == 0 ? "/" : "/data" + i)
+                    .put("system.disk.capacity.bytes", 536870912000L)
+                    .put("system.disk.used.percent", round(random.nextDouble(100))));
+
+        }
+
+        var interfaces = new JsonArray();
+
+        for (var i = 0; i < 2; i++) {
+
+            interfaces.add(new JsonObject()
+                    .put("system.network.interface", "eth" + i)
+                    .put("system.network.in.bytes.rate", random.nextLong(1000000000))
+                    .put("system.network.out.bytes.rate", random.nextLong(1000000000)));
+
+        }
+
+        result.put("system.disk", disks).put("system.network.interface", interfaces);
+
+        for (var i = result.size(); i < config.metrics(); i++) {
+
+            result.put("system.counter." + i, random.nextLong(1000000));
+
+        }
+
+        return result;
+
+    }
+
+    private byte[] encode(JsonObject reply, JsonObject request) {
+
+        return switch (config.replyFormat()) {
+
+            case "cbor" -> ZmqWireCodec.encode(reply, ZmqWireCodec.Format.CBOR);
+
+            case "legacy" -> Json.encode(reply.encode()).getBytes(StandardCharsets.UTF_8);
+
+            case "json" -> ZmqWireCodec.encode(reply, ZmqWireCodec.Format.JSON);
+
+            default -> {
+
+                var offered = request.getJsonArray(ZmqWireCodec.WIRE_FORMATS_FIELD);
+
+                var cbor = offered != null && offered.contains(ZmqWireCodec.Format.CBOR.getToken());
+
+                yield ZmqWireCodec.encode(reply, cbor ? ZmqWireCodec.Format.CBOR : ZmqWireCodec.Format.JSON);
+
+            }
+
+        };
+
+    }
+
+    private long latencyMs() {
+
+        var latency = config.latencyMedianMs() * Math.exp(sigma * random.nextGaussian());
+
+        return Math.min(MAX_LATENCY_MS, Math.round(latency));
+
+    }
+
+    private static double round(double value) {
+
+        return Math.round(value * 100) / 100.0;
+
+    }
+
+    /**
+     * Returns the plugin counters.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        return new JsonObject()
+                .put("requests", requests.get())
+                .put("replies", replies.get())
+                .put("errors", errors.get())
+                .put("dropped", dropped.get())
+                .put("malformed", malformed.get())
+                .put("pendingReplies", pending.size())
+                .put("devicesPolled", polledDevices.size());
+
+    }
+
+    /**
+     * Returns the number of requests received.
+     *
+     * @return the number of requests
+     */
+    public long requests() {
+
+        return requests.get();
+
+    }
+
+    /**
+     * Stops the plugin thread.
+     */
+    public void stop() {
+
+        running = false;
+
+    }
+
+    private static final class PendingReply implements Delayed {
+
+        private final byte[] identity;
+
+        private final String requestId;
+
+        private final byte[] payload;
+
+        private final long dueNanos;
+
+        private PendingReply(byte[] identity, String requestId, byte[] payload, long dueNanos) {
+
+            this.identity = identity;
+
+            this.requestId = requestId;
+
+            this.payload = payload;
+
+            this.dueNanos = dueNanos;
+
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+
+            return Long.compare(dueNanos, ((PendingReply) other).dueNanos);
+
+        }
+
+    }
+
+}
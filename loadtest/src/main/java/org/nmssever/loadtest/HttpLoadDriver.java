@@ -0,0 +1,260 @@
+package org.nmssever.loadtest;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open-loop HTTP load against the read API.
+ * <p>
+ * Requests are issued at a fixed rate regardless of how fast responses come back, and each latency is
+ * measured from the moment the request was due rather than sent, so a stalled server shows up as
+ * latency instead of silently lowering the offered load (coordinated omission). When
+ * {@code MAX_IN_FLIGHT} requests are outstanding further requests are counted as skipped. The mix is
+ * mostly provisioned data pages of random seeded devices plus the profile list endpoints.
+ */
+public class HttpLoadDriver {
+
+    private static final long TICK_MS = 10;
+
+    private static final int MAX_IN_FLIGHT = 1000;
+
+    private static final String DATA_PAGE = "provision-data";
+
+    private final Vertx vertx;
+
+    private final WebClient client;
+
+    private final int rate;
+
+    private final List<Integer> deviceIds;
+
+    private final SplittableRandom random = new SplittableRandom();
+
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    private long startNanos;
+
+    private long issued;
+
+    private int inFlight;
+
+    private long skipped;
+
+    private long timerId = -1;
+
+    /**
+     * Instantiates a new Http load driver.
+     *
+     * @param vertx     the vertx
+     * @param baseUrl   the base URL of the server
+     * @param rate      the requests per second
+     * @param deviceIds the seeded device ids used for provisioned data pages
+     */
+    public HttpLoadDriver(Vertx vertx, String baseUrl, int rate, List<Integer> deviceIds) {
+
+        var uri = URI.create(baseUrl);
+
+        this.vertx = vertx;
+
+        this.client = WebClient.create(vertx, new WebClientOptions()
+                .setDefaultHost(uri.getHost())
+                .setDefaultPort(uri.getPort() < 0 ? 80 : uri.getPort())
+                .setMaxPoolSize(64)
+                .setKeepAlive(true));
+
+        this.rate = rate;
+
+        this.deviceIds = deviceIds;
+
+        endpoints.put(DATA_PAGE, new Endpoint(60));
+
+        endpoints.put("/api/discovery-profile", new Endpoint(20));
+
+        endpoints.put("/api/credential-profile", new Endpoint(10));
+
+        endpoints.put("/api/provisioned-profiles", new Endpoint(10));
+
+    }
+
+    /**
+     * Starts issuing requests.
+     */
+    public void start() {
+
+        if (rate <= 0) {
+
+            return;
+
+        }
+
+        startNanos = System.nanoTime();
+
+        timerId = vertx.setPeriodic(TICK_MS, id -> tick());
+
+    }
+
+    private void tick() {
+
+        var now = System.nanoTime();
+
+        var due = (now - startNanos) * rate / TimeUnit.SECONDS.toNanos(1);
+
+        while (issued < due) {
+
+            var intendedNanos = startNanos + issued * TimeUnit.SECONDS.toNanos(1) / rate;
+
+            issued++;
+
+            if (inFlight >= MAX_IN_FLIGHT) {
+
+                skipped++;
+
+                continue;
+
+            }
+
+            send(pick(), intendedNanos);
+
+        }
+
+    }
+
+    private String pick() {
+
+        var roll = random.nextInt(100);
+
+        for (var entry : endpoints.entrySet()) {
+
+            roll -= entry.getValue().weight;
+
+            if (roll < 0) {
+
+                return entry.getKey();
+
+            }
+
+        }
+
+        return DATA_PAGE;
+
+    }
+
+    private void send(String name, long intendedNanos) {
+
+        var endpoint = endpoints.get(name);
+
+        var path = name;
+
+        if (DATA_PAGE.equals(name)) {
+
+            if (deviceIds.isEmpty()) {
+
+                return;
+
+            }
+
+            path = "/api/provision/" + deviceIds.get(random.nextInt(deviceIds.size())) + "?limit=50";
+
+        }
+
+        inFlight++;
+
+        client.get(path).send().onComplete(ar -> {
+
+            inFlight--;
+
+            endpoint.latency.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos)));
+
+            if (ar.failed() || ar.result().statusCode() >= 500) {
+
+                endpoint.errors++;
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Returns the per-endpoint latencies since the previous call, in microseconds, and adds them to the totals.
+     *
+     * @return the interval histograms by endpoint
+     */
+    public Map<String, Histogram> intervalLatency() {
+
+        Map<String, Histogram> intervals = new LinkedHashMap<>();
+
+        endpoints.forEach((name, endpoint) -> {
+
+            var interval = endpoint.latency.getIntervalHistogram();
+
+            endpoint.total.add(interval);
+
+            intervals.put(name, interval);
+
+        });
+
+        return intervals;
+
+    }
+
+    /**
+     * Returns the driver totals.
+     *
+     * @return the json object
+     */
+    public JsonObject totals() {
+
+        var byEndpoint = new JsonObject();
+
+        endpoints.forEach((name, endpoint) -> byEndpoint.put(name, LoadReport.latencyJson(endpoint.total, 1000.0).put("errors", endpoint.errors)));
+
+        return new JsonObject()
+                .put("rate", rate)
+                .put("issued", issued)
+                .put("skipped", skipped)
+                .put("endpoints", byEndpoint);
+
+    }
+
+    /**
+     * Stops issuing requests.
+     */
+    public void stop() {
+
+        vertx.cancelTimer(timerId);
+
+        client.close();
+
+    }
+
+    private static final class Endpoint {
+
+        private final int weight;
+
+        private final Recorder latency = new Recorder(3);
+
+        private final Histogram total = new Histogram(3);
+
+        private long errors;
+
+        private Endpoint(int weight) {
+
+            this.weight = weight;
+
+        }
+
+    }
+
+}
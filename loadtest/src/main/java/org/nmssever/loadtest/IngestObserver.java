@@ -0,0 +1,156 @@
+package org.nmssever.loadtest;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Tuple;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.LocalDateTime;
+
+/**
+ * Watches system data arrive in PostgreSQL.
+ * <p>
+ * Every {@code SCAN_INTERVAL_MS} the rows inserted since the last scan are read back and the time since
+ * the fake plugin received their poll, {@link FakePollingPlugin#REQUESTED_AT_FIELD}, is recorded: that is
+ * the end-to-end sample latency through plugin, reactor, event bus, write-behind buffer and commit, with
+ * the scan interval as resolution. Rows are followed by id, so a batch committed after a later one was
+ * already scanned is missed by the latency sample; the insert rate comes from a separate count and is
+ * not affected. The server and the harness must share a clock.
+ */
+public class IngestObserver {
+
+    private static final long SCAN_INTERVAL_MS = 250;
+
+    private static final int SCAN_LIMIT = 50000;
+
+    private static final String SELECT_NEW_ROWS = "SELECT id, (system_info->>'" + FakePollingPlugin.REQUESTED_AT_FIELD + "')::bigint AS requested_at "
+            + "FROM systemdata WHERE timestamp >= $1 AND id > $2 ORDER BY id LIMIT " + SCAN_LIMIT;
+
+    private static final String COUNT_ROWS = "SELECT count(*) AS row_count FROM systemdata WHERE timestamp >= $1";
+
+    private final Vertx vertx;
+
+    private final Pool pool;
+
+    private final Recorder latency = new Recorder(3);
+
+    private final Histogram totalLatency = new Histogram(3);
+
+    private LocalDateTime since;
+
+    private long lastId;
+
+    private long timerId = -1;
+
+    private boolean scanning;
+
+    /**
+     * Instantiates a new Ingest observer.
+     *
+     * @param vertx the vertx
+     * @param pool  the pool
+     */
+    public IngestObserver(Vertx vertx, Pool pool) {
+
+        this.vertx = vertx;
+
+        this.pool = pool;
+
+    }
+
+    /**
+     * Starts observing rows inserted from now on.
+     */
+    public void start() {
+
+        since = LocalDateTime.now();
+
+        timerId = vertx.setPeriodic(SCAN_INTERVAL_MS, id -> scan());
+
+    }
+
+    private void scan() {
+
+        if (scanning) {
+
+            return;
+
+        }
+
+        scanning = true;
+
+        pool.preparedQuery(SELECT_NEW_ROWS).execute(Tuple.of(since, lastId))
+
+                .onSuccess(rows -> {
+
+                    var now = System.currentTimeMillis();
+
+                    rows.forEach(row -> {
+
+                        lastId = Math.max(lastId, row.getLong("id"));
+
+                        var requestedAt = row.getLong("requested_at");
+
+                        if (requestedAt != null) {
+
+                            latency.recordValue(Math.max(0, now - requestedAt));
+
+                        }
+
+                    });
+
+                })
+
+                .onComplete(ar -> scanning = false);
+
+    }
+
+    /**
+     * Counts the rows inserted since the observer started.
+     *
+     * @return the row count
+     */
+    public Future<Long> insertedRows() {
+
+        return pool.preparedQuery(COUNT_ROWS).execute(Tuple.of(since)).map(rows -> rows.iterator().next().getLong("row_count"));
+
+    }
+
+    /**
+     * Returns the latencies recorded since the previous call, in milliseconds, and adds them to the total.
+     *
+     * @return the interval histogram
+     */
+    public Histogram intervalLatency() {
+
+        var interval = latency.getIntervalHistogram();
+
+        totalLatency.add(interval);
+
+        return interval;
+
+    }
+
+    /**
+     * Returns every latency recorded so far, in milliseconds.
+     *
+     * @return the histogram
+     */
+    public Histogram totalLatency() {
+
+        return totalLatency;
+
+    }
+
+    /**
+     * Stops observing.
+     */
+    public void stop() {
+
+        vertx.cancelTimer(timerId);
+
+    }
+
+}
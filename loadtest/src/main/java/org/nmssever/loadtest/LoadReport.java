@@ -0,0 +1,68 @@
+package org.nmssever.loadtest;
+
+import io.vertx.core.json.JsonObject;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Formats load test measurements.
+ */
+public class LoadReport {
+
+    private LoadReport() {
+
+    }
+
+    /**
+     * Summarises a latency histogram in milliseconds.
+     *
+     * @param histogram the histogram
+     * @param unitsPerMs the histogram units per millisecond, 1 for a millisecond histogram
+     * @return the json object
+     */
+    public static JsonObject latencyJson(Histogram histogram, double unitsPerMs) {
+
+        return new JsonObject()
+                .put("count", histogram.getTotalCount())
+                .put("meanMs", round(histogram.getMean() / unitsPerMs))
+                .put("p50Ms", round(histogram.getValueAtPercentile(50) / unitsPerMs))
+                .put("p90Ms", round(histogram.getValueAtPercentile(90) / unitsPerMs))
+                .put("p99Ms", round(histogram.getValueAtPercentile(99) / unitsPerMs))
+                .put("p999Ms", round(histogram.getValueAtPercentile(99.9) / unitsPerMs))
+                .put("maxMs", round(histogram.getMaxValue() / unitsPerMs));
+
+    }
+
+    /**
+     * Formats the p50, p99 and p999 of a latency histogram for a progress line.
+     *
+     * @param histogram  the histogram
+     * @param unitsPerMs the histogram units per millisecond
+     * @return the text
+     */
+    public static String percentiles(Histogram histogram, double unitsPerMs) {
+
+        if (histogram.getTotalCount() == 0) {
+
+            return "-";
+
+        }
+
+        return round(histogram.getValueAtPercentile(50) / unitsPerMs) + "/"
+                + round(histogram.getValueAtPercentile(99) / unitsPerMs) + "/"
+                + round(histogram.getValueAtPercentile(99.9) / unitsPerMs) + " ms";
+
+    }
+
+    /**
+     * Rounds to two decimals.
+     *
+     * @param value the value
+     * @return the rounded value
+     */
+    public static double round(double value) {
+
+        return Math.round(value * 100) / 100.0;
+
+    }
+
+}
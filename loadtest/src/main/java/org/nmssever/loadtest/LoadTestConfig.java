@@ -0,0 +1,120 @@
+package org.nmssever.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load test settings, parsed from {@code --name=value} arguments.
+ *
+ * @param devices                number of simulated devices
+ * @param pollingIntervalSeconds polling interval of the seeded devices
+ * @param metrics                metrics per polling reply
+ * @param zmqEndpoint            endpoint the fake plugin binds its ROUTER socket to
+ * @param replyFormat            reply encoding: auto (cbor when the request offers it), json, legacy or cbor
+ * @param latencyMedianMs        median plugin latency
+ * @param latencyP99Ms           99th percentile plugin latency; latencies are log-normal
+ * @param errorRate              fraction of polls answered with a plugin error
+ * @param dropRate               fraction of polls never answered
+ * @param durationSeconds        length of the run
+ * @param reportIntervalSeconds  interval between progress lines
+ * @param httpBaseUrl            base URL of the server's HTTP API
+ * @param httpRate               HTTP requests per second, 0 to disable the driver
+ * @param pgHost                 PostgreSQL host
+ * @param pgPort                 PostgreSQL port
+ * @param pgDatabase             PostgreSQL database
+ * @param pgUser                 PostgreSQL user
+ * @param pgPassword             PostgreSQL password
+ * @param resultFile             file the JSON summary is written to
+ */
+public record LoadTestConfig(int devices, int pollingIntervalSeconds, int metrics, String zmqEndpoint, String replyFormat,
+                             double latencyMedianMs, double latencyP99Ms, double errorRate, double dropRate,
+                             int durationSeconds, int reportIntervalSeconds, String httpBaseUrl, int httpRate,
+                             String pgHost, int pgPort, String pgDatabase, String pgUser, String pgPassword,
+                             String resultFile) {
+
+    /**
+     * Name prefix of every seeded profile.
+     */
+    public static final String SEED_PREFIX = "loadtest-";
+
+    /**
+     * Parses the command line options.
+     *
+     * @param args the options, each {@code --name=value}
+     * @return the load test config
+     * @throws IllegalArgumentException on an unknown or malformed option
+     */
+    public static LoadTestConfig parse(String[] args) {
+
+        Map<String, String> options = new HashMap<>();
+
+        for (var arg : args) {
+
+            var separator = arg.indexOf('=');
+
+            if (!arg.startsWith("--") || separator < 0) {
+
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+
+            }
+
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+
+        }
+
+        var config = new LoadTestConfig(
+                integer(options, "devices", 1000),
+                integer(options, "polling-interval", 10),
+                integer(options, "metrics", 50),
+                string(options, "zmq-endpoint", "tcp://*:5555"),
+                string(options, "reply-format", "auto"),
+                decimal(options, "latency-median-ms", 40),
+                decimal(options, "latency-p99-ms", 400),
+                decimal(options, "error-rate", 0.01),
+                decimal(options, "drop-rate", 0.001),
+                integer(options, "duration", 300),
+                integer(options, "report-interval", 10),
+                string(options, "http-base-url", "http://localhost:8000"),
+                integer(options, "http-rate", 50),
+                string(options, "pg-host", "localhost"),
+                integer(options, "pg-port", 5432),
+                string(options, "pg-database", "network_monitoring"),
+                string(options, "pg-user", "username"),
+                string(options, "pg-password", "secure_password"),
+                string(options, "result-file", "loadtest-result.json"));
+
+        if (!options.isEmpty()) {
+
+            throw new IllegalArgumentException("Unknown options: " + options.keySet());
+
+        }
+
+        return config;
+
+    }
+
+    private static String string(Map<String, String> options, String name, String defaultValue) {
+
+        var value = options.remove(name);
+
+        return value == null ? defaultValue : value;
+
+    }
+
+    private static int integer(Map<String, String> options, String name, int defaultValue) {
+
+        var value = options.remove(name);
+
+        return value == null ? defaultValue : Integer.parseInt(value);
+
+    }
+
+    private static double decimal(Map<String, String> options, String name, double defaultValue) {
+
+        var value = options.remove(name);
+
+        return value == null ? defaultValue : Double.parseDouble(value);
+
+    }
+
+}
@@ -0,0 +1,247 @@
+package org.nmssever.loadtest;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.PoolOptions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command line entry point of the load harness.
+ * <p>
+ * {@code seed} writes the simulated devices to PostgreSQL and must run before the server starts, since the
+ * polling verticle loads its devices at startup. {@code run} binds the fake plugin, drives the HTTP API and
+ * reports sustained polls per second, end-to-end sample latency, insert throughput and HTTP latency every
+ * report interval, then writes a JSON summary. {@code plugin} only runs the fake plugin, and {@code clean}
+ * removes the seeded profiles.
+ */
+public class LoadTestMain {
+
+    private LoadTestMain() {
+
+    }
+
+    /**
+     * The entry point of application.
+     *
+     * @param args the command followed by {@code --name=value} options
+     */
+    public static void main(String[] args) {
+
+        if (args.length == 0) {
+
+            System.err.println("Usage: loadtest seed|run|plugin|clean [--name=value ...]");
+
+            System.exit(2);
+
+        }
+
+        var config = LoadTestConfig.parse(Arrays.copyOfRange(args, 1, args.length));
+
+        var vertx = Vertx.vertx();
+
+        var pool = PgPool.pool(vertx, new PgConnectOptions()
+                .setHost(config.pgHost())
+                .setPort(config.pgPort())
+                .setDatabase(config.pgDatabase())
+                .setUser(config.pgUser())
+                .setPassword(config.pgPassword()), new PoolOptions().setMaxSize(4));
+
+        var seeder = new Seeder(pool);
+
+        Future<?> done = switch (args[0]) {
+
+            case "seed" -> seeder.seed(config.devices(), config.pollingIntervalSeconds())
+                    .onSuccess(count -> System.out.println("Seeded " + count + " provisioned devices polled every " + config.pollingIntervalSeconds() + " s"));
+
+            case "clean" -> seeder.clean().onSuccess(v -> System.out.println("Removed the seeded profiles"));
+
+            case "plugin" -> plugin(vertx, config);
+
+            case "run" -> seeder.deviceIds().compose(ids -> run(vertx, pool, config, ids));
+
+            default -> Future.failedFuture("Unknown command: " + args[0]);
+
+        };
+
+        done.onComplete(ar -> {
+
+            if (ar.failed()) {
+
+                System.err.println("Load test failed: " + ar.cause().getMessage());
+
+            }
+
+            vertx.close().onComplete(v -> System.exit(ar.succeeded() ? 0 : 1));
+
+        });
+
+    }
+
+    private static Future<Void> plugin(Vertx vertx, LoadTestConfig config) {
+
+        var plugin = new FakePollingPlugin(config);
+
+        plugin.start();
+
+        System.out.println("Fake plugin bound to " + config.zmqEndpoint());
+
+        var promise = Promise.<Void>promise();
+
+        vertx.setPeriodic(config.reportIntervalSeconds() * 1000L, id -> System.out.println(plugin.stats().encode()));
+
+        vertx.setTimer(config.durationSeconds() * 1000L, id -> {
+
+            plugin.stop();
+
+            promise.complete();
+
+        });
+
+        return promise.future();
+
+    }
+
+    private static Future<Void> run(Vertx vertx, Pool pool, LoadTestConfig config, List<Integer> deviceIds) {
+
+        if (deviceIds.isEmpty()) {
+
+            System.out.println("No seeded devices found; run the seed command and restart the server first");
+
+        }
+
+        var plugin = new FakePollingPlugin(config);
+
+        var observer = new IngestObserver(vertx, pool);
+
+        var driver = new HttpLoadDriver(vertx, config.httpBaseUrl(), config.httpRate(), deviceIds);
+
+        var expectedPollsPerSecond = deviceIds.size() / (double) config.pollingIntervalSeconds();
+
+        System.out.println("Devices: " + deviceIds.size() + ", expected polls/s: " + LoadReport.round(expectedPollsPerSecond)
+                + ", HTTP rate: " + config.httpRate() + "/s, duration: " + config.durationSeconds() + " s");
+
+        plugin.start();
+
+        observer.start();
+
+        driver.start();
+
+        var progress = new Progress();
+
+        var promise = Promise.<Void>promise();
+
+        var reportTimer = vertx.setPeriodic(config.reportIntervalSeconds() * 1000L, id -> report(config, plugin, observer, driver, progress));
+
+        vertx.setTimer(config.durationSeconds() * 1000L, id -> {
+
+            vertx.cancelTimer(reportTimer);
+
+            driver.stop();
+
+            plugin.stop();
+
+            driver.intervalLatency();
+
+            observer.intervalLatency();
+
+            observer.insertedRows().onComplete(rows -> {
+
+                observer.stop();
+
+                var inserted = rows.succeeded() ? rows.result() : progress.insertedRows;
+
+                var summary = new JsonObject()
+                        .put("config", new JsonObject()
+                                .put("metrics", config.metrics())
+                                .put("pollingIntervalSeconds", config.pollingIntervalSeconds())
+                                .put("replyFormat", config.replyFormat())
+                                .put("latencyMedianMs", config.latencyMedianMs())
+                                .put("latencyP99Ms", config.latencyP99Ms())
+                                .put("errorRate", config.errorRate())
+                                .put("dropRate", config.dropRate())
+                                .put("httpRate", config.httpRate()))
+                        .put("devices", deviceIds.size())
+                        .put("durationSeconds", config.durationSeconds())
+                        .put("expectedPollsPerSecond", LoadReport.round(expectedPollsPerSecond))
+                        .put("sustainedPollsPerSecond", LoadReport.round(plugin.requests() / (double) config.durationSeconds()))
+                        .put("insertedRows", inserted)
+                        .put("insertedRowsPerSecond", LoadReport.round(inserted / (double) config.durationSeconds()))
+                        .put("sampleLatency", LoadReport.latencyJson(observer.totalLatency(), 1))
+                        .put("plugin", plugin.stats())
+                        .put("http", driver.totals());
+
+                try {
+
+                    Files.writeString(Path.of(config.resultFile()), summary.encodePrettily());
+
+                    System.out.println("Summary written to " + config.resultFile());
+
+                } catch (IOException e) {
+
+                    System.err.println("Could not write " + config.resultFile() + ": " + e.getMessage());
+
+                }
+
+                System.out.println(summary.encodePrettily());
+
+                promise.complete();
+
+            });
+
+        });
+
+        return promise.future();
+
+    }
+
+    private static void report(LoadTestConfig config, FakePollingPlugin plugin, IngestObserver observer, HttpLoadDriver driver, Progress progress) {
+
+        var interval = config.reportIntervalSeconds();
+
+        var requests = plugin.requests();
+
+        var pollsPerSecond = (requests - progress.requests) / (double) interval;
+
+        progress.requests = requests;
+
+        var latency = observer.intervalLatency();
+
+        var http = new StringBuilder();
+
+        driver.intervalLatency().forEach((name, histogram) -> http.append(' ').append(name).append('=').append(LoadReport.percentiles(histogram, 1000.0)));
+
+        observer.insertedRows().onSuccess(rows -> {
+
+            var insertsPerSecond = (rows - progress.insertedRows) / (double) interval;
+
+            progress.insertedRows = rows;
+
+            System.out.println("polls/s=" + LoadReport.round(pollsPerSecond)
+                    + " inserts/s=" + LoadReport.round(insertsPerSecond)
+                    + " sample p50/p99/p999=" + LoadReport.percentiles(latency, 1)
+                    + " pendingReplies=" + plugin.stats().getLong("pendingReplies")
+                    + " http p50/p99/p999:" + http);
+
+        });
+
+    }
+
+    private static final class Progress {
+
+        private long requests;
+
+        private long insertedRows;
+
+    }
+
+}
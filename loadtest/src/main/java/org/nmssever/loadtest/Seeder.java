@@ -0,0 +1,152 @@
+package org.nmssever.loadtest;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds provisioned devices straight into PostgreSQL.
+ * <p>
+ * Devices are written as discovered and provisioned discovery profiles named
+ * {@code loadtest-device-NNNNNNN}, so the polling verticle picks them up at startup without going through
+ * discovery. Seeding is idempotent: existing devices are updated, and seeded devices beyond the requested
+ * count are unprovisioned rather than deleted.
+ */
+public class Seeder {
+
+    private static final String CREDENTIAL_PROFILE_NAME = LoadTestConfig.SEED_PREFIX + "credential";
+
+    private static final String DEVICE_PREFIX = LoadTestConfig.SEED_PREFIX + "device-";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String UPSERT_CREDENTIAL_PROFILE = """
+                INSERT INTO credentialprofiles (credential_profile_name, system_type, credentialconfig) VALUES ($1, 'linux', $2)
+                ON CONFLICT (credential_profile_name) DO UPDATE SET credentialconfig = EXCLUDED.credentialconfig
+                RETURNING id
+            """;
+
+    private static final String UPSERT_DEVICE = """
+                INSERT INTO discoveryprofiles (discovery_profile_name, credential_profile_id, ip, provision_status, discovery_status, polling_interval)
+                VALUES ($1, $2, $3, 1, 1, $4)
+                ON CONFLICT (discovery_profile_name) DO UPDATE SET credential_profile_id = EXCLUDED.credential_profile_id,
+                    ip = EXCLUDED.ip, provision_status = 1, discovery_status = 1, polling_interval = EXCLUDED.polling_interval
+            """;
+
+    private static final String UNPROVISION_EXTRA_DEVICES =
+            "UPDATE discoveryprofiles SET provision_status = 0 WHERE discovery_profile_name LIKE '" + DEVICE_PREFIX + "%' AND discovery_profile_name > $1";
+
+    private static final String SELECT_DEVICE_IDS =
+            "SELECT id FROM discoveryprofiles WHERE discovery_profile_name LIKE '" + DEVICE_PREFIX + "%' AND provision_status = 1 ORDER BY id";
+
+    private static final String DELETE_DEVICES = "DELETE FROM discoveryprofiles WHERE discovery_profile_name LIKE '" + LoadTestConfig.SEED_PREFIX + "%'";
+
+    private static final String DELETE_CREDENTIAL_PROFILES = "DELETE FROM credentialprofiles WHERE credential_profile_name LIKE '" + LoadTestConfig.SEED_PREFIX + "%'";
+
+    private final Pool pool;
+
+    /**
+     * Instantiates a new Seeder.
+     *
+     * @param pool the pool
+     */
+    public Seeder(Pool pool) {
+
+        this.pool = pool;
+
+    }
+
+    /**
+     * Seeds the devices.
+     *
+     * @param devices                the number of devices
+     * @param pollingIntervalSeconds the polling interval of every device
+     * @return the number of devices seeded
+     */
+    public Future<Integer> seed(int devices, int pollingIntervalSeconds) {
+
+        var credentials = new JsonObject().put("username", "loadtest").put("password", "loadtest");
+
+        return pool.preparedQuery(UPSERT_CREDENTIAL_PROFILE).execute(Tuple.of(CREDENTIAL_PROFILE_NAME, credentials))
+
+                .compose(rows -> {
+
+                    var credentialProfileId = rows.iterator().next().getInteger("id");
+
+                    Future<Void> chain = Future.succeededFuture();
+
+                    for (var start = 1; start <= devices; start += BATCH_SIZE) {
+
+                        List<Tuple> batch = new ArrayList<>(BATCH_SIZE);
+
+                        for (var i = start; i < start + BATCH_SIZE && i <= devices; i++) {
+
+                            batch.add(Tuple.of(deviceName(i), credentialProfileId, ip(i), pollingIntervalSeconds));
+
+                        }
+
+                        chain = chain.compose(v -> pool.preparedQuery(UPSERT_DEVICE).executeBatch(batch).mapEmpty());
+
+                    }
+
+                    return chain;
+
+                })
+
+                .compose(v -> pool.preparedQuery(UNPROVISION_EXTRA_DEVICES).execute(Tuple.of(deviceName(devices))))
+
+                .map(devices);
+
+    }
+
+    /**
+     * Returns the ids of the provisioned seeded devices.
+     *
+     * @return the discovery profile ids
+     */
+    public Future<List<Integer>> deviceIds() {
+
+        return pool.query(SELECT_DEVICE_IDS).execute().map(rows -> {
+
+            List<Integer> ids = new ArrayList<>(rows.size());
+
+            rows.forEach(row -> ids.add(row.getInteger("id")));
+
+            return ids;
+
+        });
+
+    }
+
+    /**
+     * Deletes every seeded profile. Stored system data is kept.
+     *
+     * @return the future
+     */
+    public Future<Void> clean() {
+
+        return pool.query(DELETE_DEVICES).execute()
+
+                .compose(rows -> pool.query(DELETE_CREDENTIAL_PROFILES).execute())
+
+                .mapEmpty();
+
+    }
+
+    private static String deviceName(int index) {
+
+        return DEVICE_PREFIX + String.format("%07d", index);
+
+    }
+
+    private static String ip(int index) {
+
+        return "10." + (index >> 16 & 255) + "." + (index >> 8 & 255) + "." + (index & 255);
+
+    }
+
+}
@@ -4,26 +4,60 @@ import io.vertx.core.*;
 import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
 import org.nmssever.database.DatabaseClient;
+import org.nmssever.messages.MessageCodecs;
+import org.nmssever.metrics.AppMetrics;
+import org.nmssever.metrics.EventBusRequestMetrics;
+import org.nmssever.metrics.EventLoopLagProbe;
+import org.nmssever.util.ConfigUtil;
+import org.nmssever.util.Constants;
 import org.nmssever.verticles.DatabaseVerticle;
 import org.nmssever.verticles.HttpServerVerticle;
 import org.nmssever.verticles.PollingVerticle;
 import org.nmssever.verticles.ZmqVerticle;
 
+import java.util.TreeMap;
+
 public class Main {
 
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
 
     public static void main(String[] args) {
 
-        Vertx vertx = Vertx.vertx();
+        var metricsEnabled = Boolean.parseBoolean(ConfigUtil.getString("METRICS_ENABLED", Constants.METRICS_ENABLED));
+
+        Vertx vertx = Vertx.vertx(new VertxOptions().setMetricsOptions(AppMetrics.options(metricsEnabled)));
+
+        MessageCodecs.register(vertx.eventBus());
+
+        if (metricsEnabled) {
+
+            new EventLoopLagProbe(vertx, AppMetrics.registry(),
+                    ConfigUtil.getLong("EVENT_LOOP_LAG_PROBE_INTERVAL_MS", Constants.EVENT_LOOP_LAG_PROBE_INTERVAL_MS)).start();
+
+            new EventBusRequestMetrics(vertx, AppMetrics.registry(),
+                    ConfigUtil.getLong("EVENT_BUS_REQUEST_STALE_MS", Constants.EVENT_BUS_REQUEST_STALE_MS)).start();
+
+        }
 
         logger.info("Starting application...");
 
         DatabaseClient databaseClient = new DatabaseClient(vertx);
 
-        vertx.deployVerticle(new HttpServerVerticle()).compose(httpRes -> {
+        var httpInstances = ConfigUtil.getInt("HTTP_INSTANCES", Constants.HTTP_INSTANCES);
 
-            logger.info("HttpServerVerticle deployed successfully!");
+        if (httpInstances <= 0) {
+
+            httpInstances = Runtime.getRuntime().availableProcessors();
+
+        }
+
+        var httpOptions = new DeploymentOptions().setInstances(httpInstances);
+
+        vertx.deployVerticle(() -> new HttpServerVerticle(databaseClient), httpOptions).compose(httpRes -> {
+
+            logger.info("HttpServerVerticle deployed successfully with " + httpOptions.getInstances() + " instances!");
+
+            logHttpInstances(vertx, httpRes);
 
             return vertx.deployVerticle(new DatabaseVerticle(databaseClient));
 
@@ -53,4 +87,30 @@ public class Main {
         });
 
     }
+
+    private static void logHttpInstances(Vertx vertx, String deploymentID) {
+
+        var instances = vertx.sharedData().<String, String>getLocalMap(Constants.HTTP_INSTANCE_MAP);
+
+        var perEventLoop = new TreeMap<String, Integer>();
+
+        instances.forEach((instance, eventLoop) -> {
+
+            if (instance.startsWith(deploymentID + "#")) {
+
+                perEventLoop.merge(eventLoop, 1, Integer::sum);
+
+            }
+
+        });
+
+        logger.info("HTTP instances per event loop: " + perEventLoop);
+
+        if (perEventLoop.values().stream().anyMatch(count -> count > 1)) {
+
+            logger.warn("Some HTTP instances share an event loop; raise the event loop pool size or lower HTTP_INSTANCES");
+
+        }
+
+    }
 }
@@ -1,6 +1,8 @@
 package org.nmssever.database;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
@@ -8,14 +10,27 @@ import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Pool;
 import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Tuple;
+import org.nmssever.util.ConfigUtil;
+import org.nmssever.util.Constants;
+
+import java.time.LocalDateTime;
 
 /**
  * The type Database client.
  */
 public class DatabaseClient {
 
+    private static final String SELECT_LEGACY_SYSTEMDATA = "SELECT to_regclass('systemdata_legacy') IS NOT NULL AS present";
+
+    private static final String BACKFILL_LEGACY_SYSTEMDATA = "INSERT INTO systemdata (discovery_profile_id, system_info, timestamp) SELECT discovery_profile_id, system_info, $1 FROM systemdata_legacy ORDER BY id";
+
     private final Pool pool;
 
+    private final Pool streamPool;
+
+    private final Promise<Void> schemaReady = Promise.promise();
+
     private static final Logger Logger = LoggerFactory.getLogger(DatabaseClient.class);
 
     /**
@@ -41,6 +56,7 @@ public class DatabaseClient {
         Logger.info("PostgreSQL connection options configured");
 
         PoolOptions poolOptions = new PoolOptions()
+                .setName("nms-pg")
                 .setMaxSize(10)
                 .setMaxWaitQueueSize(50)
                 .setIdleTimeout(30000);
@@ -49,6 +65,13 @@ public class DatabaseClient {
 
         this.pool = PgPool.pool(vertx, connectOptions, poolOptions);
 
+        // Streamed lists hold their connection for the whole download, so they get a pool of their own
+        this.streamPool = PgPool.pool(vertx, connectOptions, new PoolOptions()
+                .setName("nms-pg-stream")
+                .setMaxSize(ConfigUtil.getInt("STREAM_POOL_SIZE", Constants.STREAM_POOL_SIZE))
+                .setMaxWaitQueueSize(ConfigUtil.getInt("STREAM_POOL_MAX_WAITING", Constants.STREAM_POOL_MAX_WAITING))
+                .setIdleTimeout(30000));
+
         Logger.info("Database pool initialized successfully");
 
         createTables();
@@ -66,6 +89,59 @@ public class DatabaseClient {
 
     }
 
+    /**
+     * Gets the pool reserved for streamed responses.
+     *
+     * @return the stream pool
+     */
+    public Pool getStreamPool() {
+
+        return streamPool;
+
+    }
+
+    /**
+     * Gets a future completed once the tables have been ensured.
+     *
+     * @return the future
+     */
+    public Future<Void> getSchemaReady() {
+
+        return schemaReady.future();
+
+    }
+
+    /**
+     * Copies the rows of the pre-partitioning SystemData table, set aside as systemdata_legacy, into the
+     * partitioned table and drops it. Legacy rows have no timestamp, so all of them are stamped with the
+     * given one, which must fall in an existing partition. The copy and the drop share a transaction, so
+     * a failed backfill keeps the legacy table for the next startup.
+     *
+     * @param timestamp the timestamp given to the legacy rows
+     * @return a future completed with the number of rows copied, 0 when there is no legacy table
+     */
+    public Future<Integer> backfillLegacySystemData(LocalDateTime timestamp) {
+
+        return pool.withTransaction(connection -> connection.query(SELECT_LEGACY_SYSTEMDATA).execute()
+
+                .compose(rows -> {
+
+                    if (!rows.iterator().next().getBoolean("present")) {
+
+                        return Future.succeededFuture(0);
+
+                    }
+
+                    return connection.preparedQuery(BACKFILL_LEGACY_SYSTEMDATA).execute(Tuple.of(timestamp))
+
+                            .compose(inserted -> connection.query("DROP TABLE systemdata_legacy").execute()
+
+                                    .map(dropped -> inserted.rowCount()));
+
+                }));
+
+    }
+
     /**
      * Close.
      */
@@ -75,6 +151,8 @@ public class DatabaseClient {
 
         pool.close();
 
+        streamPool.close();
+
     }
 
     private void createTables() {
@@ -91,16 +169,108 @@ public class DatabaseClient {
                     id SERIAL PRIMARY KEY,
                     discovery_profile_name VARCHAR(255) NOT NULL UNIQUE,
                     credential_profile_id INT NOT NULL,
-                     ip VARCHAR(45) NOT NULL,  -- Changed from INET to VARCHAR(45)
+                     ip TEXT NOT NULL,  -- Single address, CIDR block, range or comma separated list
                      provision_status INT NOT NULL DEFAULT 0,
                     discovery_status INT NOT NULL DEFAULT 0,
+                    polling_interval INT NOT NULL DEFAULT 120,  -- Seconds between polls of this device
                     FOREIGN KEY (credential_profile_id) REFERENCES CredentialProfiles(id) ON DELETE RESTRICT
                 );
                 
+                ALTER TABLE DiscoveryProfiles ADD COLUMN IF NOT EXISTS polling_interval INT NOT NULL DEFAULT 120;
+                
+                -- Older schemas held a single address in VARCHAR; the type change rewrites the table under an
+                -- ACCESS EXCLUSIVE lock, so it only runs while the column still has the old type
+                DO $$
+                BEGIN
+                    IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = 'discoveryprofiles'
+                               AND column_name = 'ip' AND data_type <> 'text') THEN
+                        ALTER TABLE DiscoveryProfiles ALTER COLUMN ip TYPE TEXT;
+                    END IF;
+                END $$;
+                
+                -- SystemData used to be a plain heap table without a timestamp; set it aside so the
+                -- partitioned table below can take its name. backfillLegacySystemData copies it over once
+                -- the current partition exists
+                DO $$
+                BEGIN
+                    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = 'systemdata' AND relkind = 'r')
+                       AND NOT EXISTS (SELECT 1 FROM pg_class WHERE relname = 'systemdata_legacy') THEN
+                        ALTER TABLE systemdata RENAME TO systemdata_legacy;
+                        ALTER INDEX IF EXISTS systemdata_pkey RENAME TO systemdata_legacy_pkey;
+                    END IF;
+                END $$;
+                
                 CREATE TABLE IF NOT EXISTS SystemData (
-                    id SERIAL PRIMARY KEY,
+                    id BIGSERIAL,
                     discovery_profile_id INT NOT NULL,
-                    system_info JSONB NOT NULL
+                    system_info JSONB NOT NULL,
+                    timestamp TIMESTAMP NOT NULL DEFAULT now(),
+                    PRIMARY KEY (id, timestamp)
+                ) PARTITION BY RANGE (timestamp);  -- Partitions are created ahead by SystemDataPartitionManager
+                
+                CREATE INDEX IF NOT EXISTS idx_systemdata_profile_timestamp ON SystemData (discovery_profile_id, timestamp);
+                
+                CREATE TABLE IF NOT EXISTS DeviceInventory (
+                    discovery_profile_id INT PRIMARY KEY,
+                    attributes JSONB NOT NULL,  -- Static attributes split out of polled samples
+                    content_hash CHAR(32) NOT NULL,  -- MD5 of the attributes, compared before every write
+                    updated_at TIMESTAMP NOT NULL DEFAULT now(),
+                    FOREIGN KEY (discovery_profile_id) REFERENCES DiscoveryProfiles(id) ON DELETE CASCADE
+                );
+                
+                CREATE TABLE IF NOT EXISTS MetricNames (
+                    id SMALLSERIAL PRIMARY KEY,
+                    name VARCHAR(255) NOT NULL UNIQUE
+                );
+                
+                CREATE TABLE IF NOT EXISTS MetricSamples (
+                    discovery_profile_id INT NOT NULL,
+                    timestamp TIMESTAMP NOT NULL,
+                    metric_id SMALLINT NOT NULL,  -- MetricNames.id
+                    value DOUBLE PRECISION NOT NULL
+                ) PARTITION BY RANGE (timestamp);  -- Partitions are created ahead by SystemDataPartitionManager
+                
+                CREATE INDEX IF NOT EXISTS idx_metricsamples_profile_metric_timestamp ON MetricSamples (discovery_profile_id, metric_id, timestamp);
+                
+                CREATE TABLE IF NOT EXISTS MetricRollups_1m (
+                    discovery_profile_id INT NOT NULL,
+                    timestamp TIMESTAMP NOT NULL,  -- Bucket start
+                    metric_id SMALLINT NOT NULL,  -- MetricNames.id
+                    min DOUBLE PRECISION NOT NULL,
+                    max DOUBLE PRECISION NOT NULL,
+                    sum DOUBLE PRECISION NOT NULL,
+                    count INT NOT NULL,
+                    last DOUBLE PRECISION NOT NULL,
+                    PRIMARY KEY (discovery_profile_id, metric_id, timestamp)
+                ) PARTITION BY RANGE (timestamp);  -- Partitions are created ahead by SystemDataPartitionManager
+                
+                CREATE TABLE IF NOT EXISTS MetricRollups_5m (
+                    discovery_profile_id INT NOT NULL,
+                    timestamp TIMESTAMP NOT NULL,  -- Bucket start
+                    metric_id SMALLINT NOT NULL,  -- MetricNames.id
+                    min DOUBLE PRECISION NOT NULL,
+                    max DOUBLE PRECISION NOT NULL,
+                    sum DOUBLE PRECISION NOT NULL,
+                    count INT NOT NULL,
+                    last DOUBLE PRECISION NOT NULL,
+                    PRIMARY KEY (discovery_profile_id, metric_id, timestamp)
+                ) PARTITION BY RANGE (timestamp);  -- Partitions are created ahead by SystemDataPartitionManager
+                
+                CREATE TABLE IF NOT EXISTS MetricRollups_1h (
+                    discovery_profile_id INT NOT NULL,
+                    timestamp TIMESTAMP NOT NULL,  -- Bucket start
+                    metric_id SMALLINT NOT NULL,  -- MetricNames.id
+                    min DOUBLE PRECISION NOT NULL,
+                    max DOUBLE PRECISION NOT NULL,
+                    sum DOUBLE PRECISION NOT NULL,
+                    count INT NOT NULL,
+                    last DOUBLE PRECISION NOT NULL,
+                    PRIMARY KEY (discovery_profile_id, metric_id, timestamp)
+                ) PARTITION BY RANGE (timestamp);  -- Partitions are created ahead by SystemDataPartitionManager
+                
+                CREATE TABLE IF NOT EXISTS MetricRollupWatermarks (
+                    resolution VARCHAR(8) PRIMARY KEY,  -- 1m, 5m or 1h
+                    populated_since TIMESTAMP NOT NULL  -- Start of the first bucket the rollup table holds in full
                 );
                 """;
 
@@ -116,10 +286,14 @@ public class DatabaseClient {
 
                         Logger.info("Tables ensured successfully");
 
+                        schemaReady.tryComplete();
+
                     } else {
 
                         Logger.error("Failed to ensure tables", res.cause());
 
+                        schemaReady.tryFail(res.cause());
+
                     }
 
                     connection.close();
@@ -130,6 +304,8 @@ public class DatabaseClient {
 
                 Logger.error("Failed to obtain database connection", ar.cause());
 
+                schemaReady.tryFail(ar.cause());
+
             }
 
         });
@@ -7,6 +7,8 @@ import io.vertx.core.impl.logging.LoggerFactory;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
+import org.nmssever.messages.MessageCodecs;
+import org.nmssever.services.ProfileListStreamer;
 import org.nmssever.util.Constants;
 import org.nmssever.util.ResponseUtil;
 
@@ -17,17 +19,22 @@ public class CredentialProfileHandler {
 
     private final EventBus eventBus;
 
+    private final ProfileListStreamer profileListStreamer;
+
     private final Logger Logger = LoggerFactory.getLogger(CredentialProfileHandler.class);
 
     /**
      * Instantiates a new Credential profile handler.
      *
-     * @param eventBus the event bus
+     * @param eventBus            the event bus
+     * @param profileListStreamer the streamer used for ?stream=true list requests
      */
-    public CredentialProfileHandler(EventBus eventBus) {
+    public CredentialProfileHandler(EventBus eventBus, ProfileListStreamer profileListStreamer) {
 
         this.eventBus = eventBus;
 
+        this.profileListStreamer = profileListStreamer;
+
     }
 
     /**
@@ -58,7 +65,7 @@ public class CredentialProfileHandler {
 
             Logger.info("Sending request to EventBus for credential profile: " + profileId);
 
-            eventBus.request(Constants.CREDENTIAL_PROFILE_READ, request, reply -> {
+            eventBus.request(Constants.CREDENTIAL_PROFILE_READ, request, MessageCodecs.localJson(), reply -> {
 
                 if (reply.succeeded()) {
 
@@ -128,7 +135,7 @@ public class CredentialProfileHandler {
 
         Logger.info("Sending request to EventBus for credential profile creation");
 
-        eventBus.request(Constants.CREDENTIAL_PROFILE_CREATE, requestBody, reply -> {
+        eventBus.request(Constants.CREDENTIAL_PROFILE_CREATE, requestBody, MessageCodecs.localJson(), reply -> {
 
             if (reply.succeeded()) {
 
@@ -178,7 +185,7 @@ public class CredentialProfileHandler {
 
         Logger.info("Sending update request to EventBus for credential profile: " + profileId);
 
-        eventBus.request(Constants.CREDENTIAL_PROFILE_UPDATE, requestBody, reply -> {
+        eventBus.request(Constants.CREDENTIAL_PROFILE_UPDATE, requestBody, MessageCodecs.localJson(), reply -> {
 
             if (reply.succeeded()) {
 
@@ -210,6 +217,16 @@ public class CredentialProfileHandler {
 
         Logger.info("Received request to get credential profiles");
 
+        if (ResponseUtil.isStreamRequested(ctx)) {
+
+            profileListStreamer.streamCredentialProfiles(ctx.response())
+
+                    .onSuccess(count -> Logger.info("Streamed " + count + " credential profiles"));
+
+            return;
+
+        }
+
         Logger.info("Sending request to EventBus at address:");
 
         eventBus.request(Constants.CREDENTIAL_PROFILES_READ, new JsonObject(), reply -> {
@@ -297,7 +314,7 @@ public class CredentialProfileHandler {
 
         Logger.info("Sending delete request to EventBus for credential profile");
 
-        eventBus.request(Constants.CREDENTIAL_PROFILE_DELETE, request, reply -> {
+        eventBus.request(Constants.CREDENTIAL_PROFILE_DELETE, request, MessageCodecs.localJson(), reply -> {
 
             if (reply.succeeded()) {
 
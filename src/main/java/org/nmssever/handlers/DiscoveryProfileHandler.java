@@ -2,16 +2,22 @@ package org.nmssever.handlers;
 
 import io.vertx.core.Future;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
+import org.nmssever.messages.MessageCodecs;
+import org.nmssever.services.ProfileListStreamer;
 import org.nmssever.util.Constants;
 import org.nmssever.util.DBConstants;
+import org.nmssever.util.IpAddress;
+import org.nmssever.util.IpTargets;
 import org.nmssever.util.ResponseUtil;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 
 /**
  * The type Discovery profile handler.
@@ -20,17 +26,22 @@ public class DiscoveryProfileHandler {
 
     private final EventBus eventBus;
 
+    private final ProfileListStreamer profileListStreamer;
+
     private final Logger Logger = LoggerFactory.getLogger(DiscoveryProfileHandler.class);
 
     /**
      * Instantiates a new Discovery profile handler.
      *
-     * @param eventBus the event bus
+     * @param eventBus            the event bus
+     * @param profileListStreamer the streamer used for ?stream=true list requests
      */
-    public DiscoveryProfileHandler(EventBus eventBus) {
+    public DiscoveryProfileHandler(EventBus eventBus, ProfileListStreamer profileListStreamer) {
 
         this.eventBus = eventBus;
 
+        this.profileListStreamer = profileListStreamer;
+
     }
 
 
@@ -43,6 +54,16 @@ public class DiscoveryProfileHandler {
 
         Logger.info("Received request to get discovery profiles");
 
+        if (ResponseUtil.isStreamRequested(ctx)) {
+
+            profileListStreamer.streamDiscoveryProfiles(ctx.response())
+
+                    .onSuccess(count -> Logger.info("Streamed " + count + " discovery profiles"));
+
+            return;
+
+        }
+
         Logger.info("Sending request to EventBus at address:");
 
         eventBus.request(Constants.DISCOVERY_PROFILES_READ, new JsonObject(), reply -> {
@@ -115,7 +136,7 @@ public class DiscoveryProfileHandler {
 
         Logger.info("Sending request to EventBus for discovery profile retrieval");
 
-        eventBus.request(Constants.DISCOVERY_PROFILE_READ, request, reply -> {
+        eventBus.request(Constants.DISCOVERY_PROFILE_READ, request, MessageCodecs.localJson(), reply -> {
 
             if (reply.succeeded()) {
 
@@ -146,33 +167,80 @@ public class DiscoveryProfileHandler {
 
         var request = ctx.body().asJsonObject();
 
-        if (!request.containsKey(DBConstants.COL_ID) || request.getValue(DBConstants.COL_ID) == null) {
+        var ids = request == null ? null : discoveryProfileIds(request);
+
+        if (ids != null && ids.size() > Constants.DISCOVERY_JOB_MAX_PROFILES) {
+
+            ResponseUtil.sendErrorResponse(ctx, 400, "A discovery job can hold at most " + Constants.DISCOVERY_JOB_MAX_PROFILES + " profiles");
+
+            return;
+
+        }
+
+        if (ids == null) {
 
-            Logger.warn("Missing or invalid required field: " + DBConstants.COL_ID);
+            Logger.warn("Missing or invalid required field: " + DBConstants.COL_ID + " or ids");
 
-            ResponseUtil.sendErrorResponse(ctx, 400, "Missing or invalid required field: " + DBConstants.COL_ID);
+            ResponseUtil.sendErrorResponse(ctx, 400, "Missing or invalid required field: " + DBConstants.COL_ID + " or ids");
 
             return;
 
         }
 
-        Logger.info("Sending discovery run request to EventBus");
+        Logger.info("Submitting discovery job for " + ids.size() + " profiles");
 
-        eventBus.request(Constants.DISCOVERY_RUN, request, reply -> {
+        eventBus.<JsonObject>request(Constants.DISCOVERY_JOB_SUBMIT, new JsonObject().put("ids", ids), reply -> {
 
             if (reply.succeeded()) {
 
-                Logger.info("Discovery run successful");
+                var job = reply.result().body();
 
-                ResponseUtil.sendSuccessResponse(ctx, 200, reply.result().body());
+                Logger.info("Discovery job accepted: " + job.getString("job_id"));
+
+                ctx.response().putHeader("Location", Constants.GET_DISCOVERY_JOB.replace(":id", job.getString("job_id")));
+
+                ResponseUtil.sendSuccessResponse(ctx, 202, job);
+
+            }
+
+            else if (reply.cause() instanceof ReplyException replyException && replyException.failureCode() == 409) {
+
+                ResponseUtil.sendErrorResponse(ctx, 409, replyException.getMessage());
 
             }
 
             else {
 
-                Logger.warn("Failed to run discovery");
+                Logger.warn("Failed to submit discovery job: " + reply.cause().getMessage());
+
+                ResponseUtil.sendErrorResponse(ctx, 503, "Failed to submit discovery job");
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Gets discovery job.
+     *
+     * @param ctx the ctx
+     */
+    public void getDiscoveryJob(RoutingContext ctx) {
+
+        var jobId = ctx.pathParam("id");
+
+        eventBus.request(Constants.DISCOVERY_JOB_STATUS, new JsonObject().put("job_id", jobId), reply -> {
+
+            if (reply.succeeded()) {
+
+                ResponseUtil.sendSuccessResponse(ctx, 200, reply.result().body());
+
+            } else {
 
-                ResponseUtil.sendErrorResponse(ctx, 404, "Failed to run discovery");
+                Logger.warn("Discovery job not found: " + jobId);
+
+                ResponseUtil.sendErrorResponse(ctx, 404, "Discovery job not found");
 
             }
 
@@ -180,6 +248,50 @@ public class DiscoveryProfileHandler {
 
     }
 
+    private JsonArray discoveryProfileIds(JsonObject request) {
+
+        // Insertion-ordered set, so duplicates are dropped in O(1) each
+        var ids = new LinkedHashSet<Integer>();
+
+        var single = request.getValue(DBConstants.COL_ID);
+
+        var many = request.getValue("ids");
+
+        if (single instanceof Integer id) {
+
+            ids.add(id);
+
+        } else if (single != null) {
+
+            return null;
+
+        }
+
+        if (many instanceof JsonArray array) {
+
+            // One past the cap is enough for the caller to reject the request
+            for (var i = 0; i < array.size() && ids.size() <= Constants.DISCOVERY_JOB_MAX_PROFILES; i++) {
+
+                if (!(array.getValue(i) instanceof Integer id)) {
+
+                    return null;
+
+                }
+
+                ids.add(id);
+
+            }
+
+        } else if (many != null) {
+
+            return null;
+
+        }
+
+        return ids.isEmpty() ? null : new JsonArray(new ArrayList<>(ids));
+
+    }
+
 
     /**
      * Create discovery profile.
@@ -202,6 +314,14 @@ public class DiscoveryProfileHandler {
 
         }
 
+        if (request.getValue("ip_list") instanceof JsonArray ipList && !request.containsKey("ip")) {
+
+            request.put("ip", String.join(",", ipList.stream().map(String::valueOf).toList()));
+
+            request.remove("ip_list");
+
+        }
+
         if (!request.containsKey("ip") || request.getString("ip") == null || request.getString("ip").trim().isEmpty()) {
 
             Logger.warn("Missing or invalid required field: ip");
@@ -214,16 +334,18 @@ public class DiscoveryProfileHandler {
 
         var ip = request.getString("ip");
 
-        if (!isValidIPAddress(ip)) {
+        if (!isValidTarget(ip)) {
 
             Logger.warn("Invalid IP address format: " + ip);
 
-            ResponseUtil.sendErrorResponse(ctx, 400, "Invalid IP address format");
+            ResponseUtil.sendErrorResponse(ctx, 400, "Invalid IP address format; expected an address, CIDR block, range or comma separated list");
 
             return;
 
         }
 
+        request.put("ip", canonicalTarget(ip));
+
         if (!request.containsKey("credential_profile_id") || request.getValue("credential_profile_id") == null) {
 
             Logger.warn("Missing or invalid required field: credential_profile_id");
@@ -234,9 +356,19 @@ public class DiscoveryProfileHandler {
 
         }
 
+        if (!isValidPollingInterval(request)) {
+
+            Logger.warn("Invalid field: " + DBConstants.COL_POLLING_INTERVAL);
+
+            ResponseUtil.sendErrorResponse(ctx, 400, "Invalid field: " + DBConstants.COL_POLLING_INTERVAL + " must be an integer of at least " + Constants.MIN_POLLING_INTERVAL_SECONDS + " seconds");
+
+            return;
+
+        }
+
         Logger.info("Sending discovery profile creation request to EventBus");
 
-        eventBus.request(Constants.DISCOVERY_PROFILE_CREATE, request, reply -> {
+        eventBus.request(Constants.DISCOVERY_PROFILE_CREATE, request, MessageCodecs.localJson(), reply -> {
 
             if (reply.succeeded()) {
 
@@ -257,13 +389,26 @@ public class DiscoveryProfileHandler {
     }
 
 
-    private boolean isValidIPAddress(String ip) {
+    private boolean isValidPollingInterval(JsonObject request) {
+
+        var value = request.getValue(DBConstants.COL_POLLING_INTERVAL);
+
+        return value == null || (value instanceof Integer interval && interval >= Constants.MIN_POLLING_INTERVAL_SECONDS);
+
+    }
+
+
+    private boolean isValidTarget(String target) {
+
+        return IpTargets.isMultiHost(target) ? IpTargets.isValidRangeTarget(target) : IpAddress.isValid(target);
+
+    }
 
-        var ipv4Regex = "^(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)\\.(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)\\.(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)\\.(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)$";
 
-        var ipv6Regex = "^(([0-9a-fA-F]{1,4}:){7,7}[0-9a-fA-F]{1,4}|([0-9a-fA-F]{1,4}:){1,7}:|([0-9a-fA-F]{1,4}:){1,6}:[0-9a-fA-F]{1,4}|([0-9a-fA-F]{1,4}:){1,5}(:[0-9a-fA-F]{1,4}){1,2}|([0-9a-fA-F]{1,4}:){1,4}(:[0-9a-fA-F]{1,4}){1,3}|([0-9a-fA-F]{1,4}:){1,3}(:[0-9a-fA-F]{1,4}){1,4}|([0-9a-fA-F]{1,4}:){1,2}(:[0-9a-fA-F]{1,4}){1,5}|[0-9a-fA-F]{1,4}:((:[0-9a-fA-F]{1,4}){1,6})|:((:[0-9a-fA-F]{1,4}){1,7}|:)|fe80:(:[0-9a-fA-F]{0,4}){0,4}%[0-9a-zA-Z]{1,}|::(ffff(:0{1,4}){0,1}:){0,1}((25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9])\\.){3,3}(25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9])|([0-9a-fA-F]{1,4}:){1,4}:((25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9])\\.){3,3}(25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9]))$";
+    private String canonicalTarget(String target) {
 
-        return Pattern.matches(ipv4Regex, ip) || Pattern.matches(ipv6Regex, ip);
+        // Single addresses are stored in canonical form so equal addresses compare equal as text.
+        return IpTargets.isMultiHost(target) || target.indexOf('%') >= 0 ? target : IpAddress.parse(target).toString();
 
     }
 
@@ -288,6 +433,14 @@ public class DiscoveryProfileHandler {
 
         }
 
+        if (request.getValue("ip_list") instanceof JsonArray ipList && !request.containsKey("ip")) {
+
+            request.put("ip", String.join(",", ipList.stream().map(String::valueOf).toList()));
+
+            request.remove("ip_list");
+
+        }
+
         if (!request.containsKey("ip") || request.getString("ip") == null || request.getString("ip").trim().isEmpty()) {
 
             Logger.warn("Missing or invalid required field: ip");
@@ -300,17 +453,17 @@ public class DiscoveryProfileHandler {
 
         var ip = request.getString("ip");
 
-        if (!isValidIPAddress(ip)) {
+        if (!isValidTarget(ip)) {
 
             Logger.warn("Invalid IP address format: " + ip);
 
-            ResponseUtil.sendErrorResponse(ctx, 400, "Invalid IP address format");
+            ResponseUtil.sendErrorResponse(ctx, 400, "Invalid IP address format; expected an address, CIDR block, range or comma separated list");
 
             return;
 
         }
 
-        request.put("ip", ip);
+        request.put("ip", canonicalTarget(ip));
 
         if (!request.containsKey("credential_profile_id") || request.getValue("credential_profile_id") == null) {
 
@@ -322,9 +475,19 @@ public class DiscoveryProfileHandler {
 
         }
 
+        if (!isValidPollingInterval(request)) {
+
+            Logger.warn("Invalid field: " + DBConstants.COL_POLLING_INTERVAL);
+
+            ResponseUtil.sendErrorResponse(ctx, 400, "Invalid field: " + DBConstants.COL_POLLING_INTERVAL + " must be an integer of at least " + Constants.MIN_POLLING_INTERVAL_SECONDS + " seconds");
+
+            return;
+
+        }
+
         Logger.info("Sending discovery profile update request to EventBus");
 
-        eventBus.request(Constants.DISCOVERY_PROFILE_UPDATE, request, reply -> {
+        eventBus.request(Constants.DISCOVERY_PROFILE_UPDATE, request, MessageCodecs.localJson(), reply -> {
 
             if (reply.succeeded()) {
 
@@ -336,7 +499,7 @@ public class DiscoveryProfileHandler {
 
             else {
 
-                Logger.warn("Discovery profile not found or update failed. Error: {}", reply.cause());
+                Logger.warn("Discovery profile not found or update failed", reply.cause());
 
                 ResponseUtil.sendErrorResponse(ctx, 404, "Discovery profile not found or update failed");
 
@@ -372,7 +535,7 @@ public class DiscoveryProfileHandler {
 
         var request = new JsonObject().put("discovery_profile_id", Integer.parseInt(discoveryProfileID));
 
-        eventBus.request(Constants.DISCOVERY_PROFILE_DELETE, request, reply -> {
+        eventBus.request(Constants.DISCOVERY_PROFILE_DELETE, request, MessageCodecs.localJson(), reply -> {
 
             if (reply.succeeded()) {
 
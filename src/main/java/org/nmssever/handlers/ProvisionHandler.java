@@ -2,13 +2,23 @@ package org.nmssever.handlers;
 
 import io.vertx.core.Future;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
+import org.nmssever.services.ProfileListStreamer;
 import org.nmssever.util.Constants;
+import org.nmssever.util.KeysetCursor;
 import org.nmssever.util.ResponseUtil;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
 /**
  * The type Provision handler.
  */
@@ -16,17 +26,22 @@ public class ProvisionHandler {
 
     private final EventBus eventBus;
 
+    private final ProfileListStreamer profileListStreamer;
+
     private final Logger Logger = LoggerFactory.getLogger(ProvisionHandler.class);
 
     /**
      * Instantiates a new Provision handler.
      *
-     * @param eventBus the event bus
+     * @param eventBus            the event bus
+     * @param profileListStreamer the streamer used for ?stream=true list requests
      */
-    public ProvisionHandler(EventBus eventBus) {
+    public ProvisionHandler(EventBus eventBus, ProfileListStreamer profileListStreamer) {
 
         this.eventBus = eventBus;
 
+        this.profileListStreamer = profileListStreamer;
+
     }
 
     /**
@@ -78,7 +93,7 @@ public class ProvisionHandler {
 
             else {
 
-                Logger.warn("Provisioning failed with provided credentials. Error: {}", reply.cause());
+                Logger.warn("Provisioning failed with provided credentials", reply.cause());
 
                 ResponseUtil.sendErrorResponse(ctx, 500, "Failed to provision with provided credentials");
 
@@ -89,6 +104,43 @@ public class ProvisionHandler {
     }
 
 
+    /**
+     * Gets provisioned profiles.
+     *
+     * @param ctx the ctx
+     */
+    public void getProvisionedProfiles(RoutingContext ctx) {
+
+        Logger.info("Received request to get provisioned profiles");
+
+        if (ResponseUtil.isStreamRequested(ctx)) {
+
+            profileListStreamer.streamProvisionedProfiles(ctx.response())
+
+                    .onSuccess(count -> Logger.info("Streamed " + count + " provisioned profiles"));
+
+            return;
+
+        }
+
+        eventBus.request(Constants.GET_PROVISIONED_PROFILES, new JsonObject(), reply -> {
+
+            if (reply.succeeded()) {
+
+                ResponseUtil.sendSuccessResponse(ctx, 200, reply.result().body());
+
+            } else {
+
+                Logger.warn("Failed to get provisioned profiles: " + reply.cause().getMessage());
+
+                ResponseUtil.sendErrorResponse(ctx, 500, "Failed to get provisioned profiles");
+
+            }
+
+        });
+
+    }
+
     /**
      * Get provisioned data.
      *
@@ -116,6 +168,18 @@ public class ProvisionHandler {
 
             var request = new JsonObject().put("discovery_profile_id", discoveryProfileID);
 
+            var error = addPageParams(ctx, request);
+
+            if (error != null) {
+
+                Logger.warn("Invalid provisioned data query: " + error);
+
+                ResponseUtil.sendErrorResponse(ctx, 400, error);
+
+                return;
+
+            }
+
             Logger.info("Sending provisioning Data Get request to EventBus");
 
             eventBus.request(Constants.PROVISIONEDDATA, request, reply -> {
@@ -150,4 +214,315 @@ public class ProvisionHandler {
 
     }
 
+    /**
+     * Get the most recent sample of a provisioned device from the last-value cache.
+     *
+     * @param ctx the ctx
+     */
+    public void getLatestSample(RoutingContext ctx) {
+
+        int discoveryProfileID;
+
+        try {
+
+            discoveryProfileID = Integer.parseInt(ctx.pathParam("id"));
+
+        } catch (NumberFormatException e) {
+
+            ResponseUtil.sendErrorResponse(ctx, 400, "Invalid discovery_profile_id format");
+
+            return;
+
+        }
+
+        eventBus.<JsonObject>request(Constants.LATEST_SAMPLE, discoveryProfileID, reply -> {
+
+            if (reply.succeeded()) {
+
+                ResponseUtil.sendSuccessResponse(ctx, 200, reply.result().body());
+
+            } else if (reply.cause() instanceof ReplyException replyException && replyException.failureCode() == 404) {
+
+                ResponseUtil.sendErrorResponse(ctx, 404, "No sample has been received for discovery_profile_id: " + discoveryProfileID);
+
+            } else {
+
+                Logger.warn("Failed to read the latest sample for discovery_profile_id: " + discoveryProfileID);
+
+                ResponseUtil.sendErrorResponse(ctx, 500, "Failed to read the latest sample");
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Get the most recent sample of every polled device from the last-value cache.
+     *
+     * @param ctx the ctx
+     */
+    public void getLatestSamples(RoutingContext ctx) {
+
+        eventBus.<JsonObject>request(Constants.LATEST_SAMPLES, null, reply -> {
+
+            if (reply.succeeded()) {
+
+                ResponseUtil.sendSuccessResponse(ctx, 200, reply.result().body());
+
+            } else {
+
+                Logger.warn("Failed to read the latest samples: " + reply.cause().getMessage());
+
+                ResponseUtil.sendErrorResponse(ctx, 500, "Failed to read the latest samples");
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Get one metric series of a provisioned device, as raw points or, with ?step=seconds or ?points=n,
+     * as buckets.
+     *
+     * @param ctx the ctx
+     */
+    public void getMetricSeries(RoutingContext ctx) {
+
+        int discoveryProfileID;
+
+        try {
+
+            discoveryProfileID = Integer.parseInt(ctx.pathParam("id"));
+
+        } catch (NumberFormatException e) {
+
+            ResponseUtil.sendErrorResponse(ctx, 400, "Invalid discovery_profile_id format");
+
+            return;
+
+        }
+
+        var request = new JsonObject()
+                .put("discovery_profile_id", discoveryProfileID)
+                .put("metric", ctx.pathParam("metric"));
+
+        var error = addWindowParams(ctx, request);
+
+        var step = ctx.queryParams().get("step");
+
+        if (error == null && step != null) {
+
+            try {
+
+                var value = Integer.parseInt(step);
+
+                if (value < 1 || value > Constants.METRIC_SERIES_MAX_STEP_SECONDS) {
+
+                    error = "step must be between 1 and " + Constants.METRIC_SERIES_MAX_STEP_SECONDS + " seconds";
+
+                }
+
+                request.put("step", value);
+
+            } catch (NumberFormatException e) {
+
+                error = "Invalid step";
+
+            }
+
+        }
+
+        var points = ctx.queryParams().get("points");
+
+        if (error == null && points != null && step == null) {
+
+            try {
+
+                var value = Integer.parseInt(points);
+
+                if (value < 1 || value > Constants.METRIC_SERIES_MAX_POINTS) {
+
+                    error = "points must be between 1 and " + Constants.METRIC_SERIES_MAX_POINTS;
+
+                }
+
+                request.put("points", value);
+
+            } catch (NumberFormatException e) {
+
+                error = "Invalid points";
+
+            }
+
+        }
+
+        if (error != null) {
+
+            ResponseUtil.sendErrorResponse(ctx, 400, error);
+
+            return;
+
+        }
+
+        eventBus.<JsonObject>request(Constants.METRIC_SERIES, request, reply -> {
+
+            if (reply.succeeded()) {
+
+                ResponseUtil.sendSuccessResponse(ctx, 200, reply.result().body());
+
+            } else if (reply.cause() instanceof ReplyException replyException && replyException.failureCode() == 404) {
+
+                ResponseUtil.sendErrorResponse(ctx, 404, "Unknown metric: " + request.getString("metric"));
+
+            } else {
+
+                Logger.warn("Failed to read metric series for discovery_profile_id: " + discoveryProfileID);
+
+                ResponseUtil.sendErrorResponse(ctx, 500, "Failed to read the metric series");
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Copies the from, to, limit and cursor query parameters into the request.
+     *
+     * @param ctx     the ctx
+     * @param request the request
+     * @return an error message, or null if all parameters are valid
+     */
+    private String addPageParams(RoutingContext ctx, JsonObject request) {
+
+        var error = addWindowParams(ctx, request);
+
+        if (error != null) {
+
+            return error;
+
+        }
+
+        var limit = ctx.queryParams().get("limit");
+
+        if (limit != null) {
+
+            try {
+
+                var value = Integer.parseInt(limit);
+
+                if (value < 1 || value > Constants.PROVISIONED_DATA_MAX_LIMIT) {
+
+                    return "limit must be between 1 and " + Constants.PROVISIONED_DATA_MAX_LIMIT;
+
+                }
+
+                request.put("limit", value);
+
+            } catch (NumberFormatException e) {
+
+                return "Invalid limit";
+
+            }
+
+        }
+
+        var cursor = ctx.queryParams().get("cursor");
+
+        if (cursor != null) {
+
+            try {
+
+                KeysetCursor.decode(cursor);
+
+            } catch (IllegalArgumentException e) {
+
+                return "Invalid cursor";
+
+            }
+
+            request.put("cursor", cursor);
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * Copies the from and to query parameters into the request.
+     *
+     * @param ctx     the ctx
+     * @param request the request
+     * @return an error message, or null if both parameters are valid
+     */
+    private String addWindowParams(RoutingContext ctx, JsonObject request) {
+
+        LocalDateTime from = null;
+
+        LocalDateTime to = null;
+
+        try {
+
+            from = parseTime(ctx.queryParams().get("from"));
+
+            to = parseTime(ctx.queryParams().get("to"));
+
+        } catch (DateTimeParseException | NumberFormatException e) {
+
+            return "Invalid from or to; expected an ISO-8601 date-time or epoch milliseconds";
+
+        }
+
+        if (from != null && to != null && !from.isBefore(to)) {
+
+            return "from must be before to";
+
+        }
+
+        if (from != null) {
+
+            request.put("from", from.toString());
+
+        }
+
+        if (to != null) {
+
+            request.put("to", to.toString());
+
+        }
+
+        return null;
+
+    }
+
+    private LocalDateTime parseTime(String value) {
+
+        if (value == null || value.isBlank()) {
+
+            return null;
+
+        }
+
+        if (value.chars().allMatch(Character::isDigit)) {
+
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(value)), ZoneId.systemDefault());
+
+        }
+
+        // Any offset, including negative ones, is converted to the server's local time
+        var parsed = DateTimeFormatter.ISO_DATE_TIME.parseBest(value, OffsetDateTime::from, LocalDateTime::from);
+
+        if (parsed instanceof OffsetDateTime offsetDateTime) {
+
+            return LocalDateTime.ofInstant(offsetDateTime.toInstant(), ZoneId.systemDefault());
+
+        }
+
+        return (LocalDateTime) parsed;
+
+    }
+
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import io.vertx.core.eventbus.Message;
 import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
 import io.vertx.core.json.JsonObject;
+import org.nmssever.messages.PollingRequest;
 import org.nmssever.services.ZmqService;
 import org.nmssever.util.Constants;
 
@@ -58,15 +59,18 @@ public class ZmqHandler {
 
     }
 
-    private void handlePollingRequest(Message<JsonObject> message) {
-
-        Logger.info("Handling polling request");
+    private void handlePollingRequest(Message<PollingRequest> message) {
 
         var requestId = UUID.randomUUID().toString();
 
-        Logger.info("Generated request ID for polling request: " + requestId);
+        if (Logger.isDebugEnabled()) {
 
-        zmqService.send(requestId, message);
+            Logger.debug("Handling polling request " + requestId + " for profile: " + message.body().discoveryProfileId());
+
+        }
+
+        // toJson builds a fresh object, so the reactor can own it without the copy made for JSON bodies
+        zmqService.sendPoll(requestId, message, message.body().toJson());
 
     }
 
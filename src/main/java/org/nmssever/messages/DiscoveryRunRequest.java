@@ -0,0 +1,23 @@
+package org.nmssever.messages;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A request to run discovery for one profile, sent on {@code DISCOVERY_RUN}.
+ *
+ * @param discoveryProfileId the discovery profile id
+ */
+public record DiscoveryRunRequest(int discoveryProfileId) {
+
+    /**
+     * Builds the legacy JSON form used by the discovery services.
+     *
+     * @return a new json object
+     */
+    public JsonObject toJson() {
+
+        return new JsonObject().put("id", discoveryProfileId);
+
+    }
+
+}
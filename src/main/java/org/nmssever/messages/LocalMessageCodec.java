@@ -0,0 +1,66 @@
+package org.nmssever.messages;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * Event bus codec that hands the sent object itself to the consumer.
+ * <p>
+ * The built-in {@code JsonObject} codec deep-copies the body on every local delivery, so the sender and
+ * receiver never share a mutable object. The messages using this codec are either immutable records or
+ * bodies the sender gives up after sending, so the copy buys nothing. The application runs on a single
+ * non-clustered Vert.x instance and never encodes these messages to the wire.
+ *
+ * @param <T> the message type
+ */
+public class LocalMessageCodec<T> implements MessageCodec<T, T> {
+
+    private final String name;
+
+    /**
+     * Instantiates a new Local message codec.
+     *
+     * @param name the codec name, unique on the event bus
+     */
+    public LocalMessageCodec(String name) {
+
+        this.name = name;
+
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, T message) {
+
+        throw new UnsupportedOperationException("Codec " + name + " only supports local delivery");
+
+    }
+
+    @Override
+    public T decodeFromWire(int pos, Buffer buffer) {
+
+        throw new UnsupportedOperationException("Codec " + name + " only supports local delivery");
+
+    }
+
+    @Override
+    public T transform(T message) {
+
+        return message;
+
+    }
+
+    @Override
+    public String name() {
+
+        return name;
+
+    }
+
+    @Override
+    public byte systemCodecID() {
+
+        return -1;
+
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.nmssever.messages;
+
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Registers the local codecs of the application messages.
+ */
+public class MessageCodecs {
+
+    /**
+     * The name of the codec that passes a {@link JsonObject} body by reference.
+     */
+    public static final String LOCAL_JSON = "local-json";
+
+    private MessageCodecs() {
+
+    }
+
+    /**
+     * Registers every message codec. Must be called once, before any verticle is deployed.
+     *
+     * @param eventBus the event bus
+     */
+    public static void register(EventBus eventBus) {
+
+        eventBus.registerDefaultCodec(PollingRequest.class, new LocalMessageCodec<>(PollingRequest.class.getSimpleName()));
+
+        eventBus.registerDefaultCodec(PolledData.class, new LocalMessageCodec<>(PolledData.class.getSimpleName()));
+
+        eventBus.registerDefaultCodec(DiscoveryRunRequest.class, new LocalMessageCodec<>(DiscoveryRunRequest.class.getSimpleName()));
+
+        eventBus.registerCodec(new LocalMessageCodec<JsonObject>(LOCAL_JSON));
+
+    }
+
+    /**
+     * Returns delivery options that hand a {@link JsonObject} body to the consumer without copying it.
+     * The sender must not touch the body after sending.
+     *
+     * @return the delivery options
+     */
+    public static DeliveryOptions localJson() {
+
+        return new DeliveryOptions().setCodecName(LOCAL_JSON);
+
+    }
+
+}
@@ -0,0 +1,19 @@
+package org.nmssever.messages;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The outcome of one poll, sent on {@code ZMQ_POLLED_DATA}.
+ * <p>
+ * The body is the object freshly decoded from the plugin's reply; ownership passes to the receiver,
+ * which may add fields to it before storing it.
+ *
+ * @param clientId           the ZMQ request id
+ * @param discoveryProfileId the discovery profile id
+ * @param body               the polled metrics, or the plugin's errors when {@code failed} is true
+ * @param failed             whether the poll failed
+ * @param receivedAtMillis   when the reply was received
+ */
+public record PolledData(String clientId, int discoveryProfileId, JsonObject body, boolean failed, long receivedAtMillis) {
+
+}
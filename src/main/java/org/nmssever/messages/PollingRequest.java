@@ -0,0 +1,40 @@
+package org.nmssever.messages;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A request to poll one provisioned device, sent on {@code ZMQ_POLLING_REQUEST}.
+ *
+ * @param discoveryProfileId the discovery profile id
+ * @param ip                 the ip
+ * @param systemType         the system type
+ * @param username           the username
+ * @param password           the password
+ */
+public record PollingRequest(int discoveryProfileId, String ip, String systemType, String username, String password) {
+
+    /**
+     * Builds the payload sent to the ZMQ plugin.
+     *
+     * @return a new json object
+     */
+    public JsonObject toJson() {
+
+        return new JsonObject()
+                .put("RequestType", "provisioning")
+                .put("ip", ip)
+                .put("username", username)
+                .put("password", password)
+                .put("SystemType", systemType)
+                .put("discovery_profile_id", discoveryProfileId);
+
+    }
+
+    @Override
+    public String toString() {
+
+        return "PollingRequest[discoveryProfileId=" + discoveryProfileId + ", ip=" + ip + ", systemType=" + systemType + "]";
+
+    }
+
+}
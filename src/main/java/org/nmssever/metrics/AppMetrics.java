@@ -0,0 +1,127 @@
+package org.nmssever.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.vertx.core.metrics.MetricsOptions;
+import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.VertxPrometheusOptions;
+
+import java.time.Duration;
+
+/**
+ * Holds the application meter registry.
+ * <p>
+ * When metrics are enabled a single Prometheus registry backs both the Vert.x built-in metrics (HTTP
+ * server, event bus, SQL pool) and the application meters, which are all named {@code nms.*}. Timers of
+ * both publish client-side percentiles computed by Micrometer's HdrHistogram recorder, plus
+ * Prometheus histogram buckets for aggregation across instances. When metrics are disabled
+ * {@link #registry()} returns an empty composite registry, so instrumented code records nothing and
+ * needs no null checks.
+ */
+public class AppMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final MeterRegistry NOOP = new CompositeMeterRegistry();
+
+    private static volatile PrometheusMeterRegistry prometheus;
+
+    private AppMetrics() {
+
+    }
+
+    /**
+     * Creates the Prometheus registry and the Vert.x metrics options bound to it. Must be called once,
+     * before the Vert.x instance is created.
+     *
+     * @param enabled whether metrics are collected
+     * @return the metrics options for the Vert.x instance
+     */
+    public static MetricsOptions options(boolean enabled) {
+
+        if (!enabled) {
+
+            return new MetricsOptions().setEnabled(false);
+
+        }
+
+        var registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+        registry.config().meterFilter(hdrTimers());
+
+        prometheus = registry;
+
+        return new MicrometerMetricsOptions()
+                .setEnabled(true)
+                .setJvmMetricsEnabled(true)
+                .setMicrometerRegistry(registry)
+                .setPrometheusOptions(new VertxPrometheusOptions().setEnabled(true));
+
+    }
+
+    /**
+     * Tells whether metrics are collected.
+     *
+     * @return true if metrics are enabled
+     */
+    public static boolean isEnabled() {
+
+        return prometheus != null;
+
+    }
+
+    /**
+     * Returns the registry to record application meters on.
+     *
+     * @return the meter registry, a no-op one when metrics are disabled
+     */
+    public static MeterRegistry registry() {
+
+        var registry = prometheus;
+
+        return registry == null ? NOOP : registry;
+
+    }
+
+    private static MeterFilter hdrTimers() {
+
+        return new MeterFilter() {
+
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+
+                if (id.getType() != Meter.Type.TIMER) {
+
+                    return config;
+
+                }
+
+                var name = id.getName().replace('_', '.');
+
+                if (!name.startsWith("nms.") && !name.startsWith("vertx.pool") && !name.startsWith("vertx.eventbus")) {
+
+                    return config;
+
+                }
+
+                return DistributionStatisticConfig.builder()
+                        .percentiles(PERCENTILES)
+                        .percentilePrecision(3)
+                        .percentilesHistogram(true)
+                        .expiry(Duration.ofMinutes(1))
+                        .bufferLength(3)
+                        .build()
+                        .merge(config);
+
+            }
+
+        };
+
+    }
+
+}
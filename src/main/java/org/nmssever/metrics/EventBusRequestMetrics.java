@@ -0,0 +1,149 @@
+package org.nmssever.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryContext;
+import io.vertx.core.eventbus.ReplyException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records event bus request latency per address.
+ * <p>
+ * An outbound interceptor sees both sides of a request: the request itself, which carries a reply
+ * address, and later the reply, which is sent to that reply address. The time between the two is
+ * recorded in {@code nms.eventbus.request} tagged with the request address and whether the reply was a
+ * failure. Only addresses are used as tags, never reply addresses, so the number of series stays
+ * bounded. Requests that are never answered, e.g. because the sender timed out, are dropped after
+ * {@code staleAfterMs} and counted in {@code nms.eventbus.request.unanswered}.
+ */
+public class EventBusRequestMetrics {
+
+    private static final long SWEEP_INTERVAL_MS = 60000;
+
+    private static final int MAX_PENDING = 100000;
+
+    private final Vertx vertx;
+
+    private final MeterRegistry registry;
+
+    private final long staleAfterNanos;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> successTimers = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> failureTimers = new ConcurrentHashMap<>();
+
+    private final Counter unanswered;
+
+    private long sweepTimerId = -1;
+
+    /**
+     * Instantiates a new Event bus request metrics.
+     *
+     * @param vertx        the vertx
+     * @param registry     the meter registry
+     * @param staleAfterMs how long a request may wait for its reply before it is forgotten
+     */
+    public EventBusRequestMetrics(Vertx vertx, MeterRegistry registry, long staleAfterMs) {
+
+        this.vertx = vertx;
+
+        this.registry = registry;
+
+        this.staleAfterNanos = TimeUnit.MILLISECONDS.toNanos(staleAfterMs);
+
+        this.unanswered = Counter.builder("nms.eventbus.request.unanswered")
+                .description("Event bus requests whose reply was never seen")
+                .register(registry);
+
+    }
+
+    /**
+     * Installs the interceptor and the sweep of unanswered requests.
+     */
+    public void start() {
+
+        vertx.eventBus().addOutboundInterceptor(this::intercept);
+
+        sweepTimerId = vertx.setPeriodic(SWEEP_INTERVAL_MS, id -> sweep());
+
+    }
+
+    private void intercept(DeliveryContext<Object> context) {
+
+        var message = context.message();
+
+        var request = pending.remove(message.address());
+
+        if (request != null) {
+
+            var failed = message.body() instanceof ReplyException;
+
+            timer(request.address, failed).record(System.nanoTime() - request.startNanos, TimeUnit.NANOSECONDS);
+
+        }
+
+        var replyAddress = message.replyAddress();
+
+        if (replyAddress != null && pending.size() < MAX_PENDING) {
+
+            pending.put(replyAddress, new Pending(message.address(), System.nanoTime()));
+
+        }
+
+        context.next();
+
+    }
+
+    private Timer timer(String address, boolean failed) {
+
+        var timers = failed ? failureTimers : successTimers;
+
+        return timers.computeIfAbsent(address, key -> Timer.builder("nms.eventbus.request")
+                .description("Time from an event bus request to its reply")
+                .tag("address", key)
+                .tag("outcome", failed ? "failure" : "success")
+                .register(registry));
+
+    }
+
+    private void sweep() {
+
+        var cutoff = System.nanoTime() - staleAfterNanos;
+
+        pending.entrySet().removeIf(entry -> {
+
+            if (entry.getValue().startNanos - cutoff < 0) {
+
+                unanswered.increment();
+
+                return true;
+
+            }
+
+            return false;
+
+        });
+
+    }
+
+    /**
+     * Stops the sweep.
+     */
+    public void stop() {
+
+        vertx.cancelTimer(sweepTimerId);
+
+    }
+
+    private record Pending(String address, long startNanos) {
+
+    }
+
+}
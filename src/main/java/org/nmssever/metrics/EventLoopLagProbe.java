@@ -0,0 +1,132 @@
+package org.nmssever.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.VertxInternal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how late each event loop runs a task scheduled on it.
+ * <p>
+ * A probe task is scheduled directly on every Netty event loop of the Vert.x instance every
+ * {@code intervalMs}. The delay between its deadline and the moment it runs is the time the loop spent
+ * on other work, typically a handler blocking it; it is recorded per loop in {@code nms.eventloop.lag}
+ * and the last value is exposed as the {@code nms.eventloop.lag.last} gauge.
+ */
+public class EventLoopLagProbe {
+
+    private final Vertx vertx;
+
+    private final MeterRegistry registry;
+
+    private final long intervalNanos;
+
+    private final List<ScheduledFuture<?>> scheduled = new ArrayList<>();
+
+    private volatile boolean stopped;
+
+    /**
+     * Instantiates a new Event loop lag probe.
+     *
+     * @param vertx      the vertx
+     * @param registry   the meter registry
+     * @param intervalMs the probe interval
+     */
+    public EventLoopLagProbe(Vertx vertx, MeterRegistry registry, long intervalMs) {
+
+        this.vertx = vertx;
+
+        this.registry = registry;
+
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(10, intervalMs));
+
+    }
+
+    /**
+     * Starts probing every event loop.
+     */
+    public void start() {
+
+        var index = 0;
+
+        // Vertx#nettyEventLoopGroup() is deprecated; VertxInternal exposes the same group
+        for (EventExecutor executor : ((VertxInternal) vertx).getEventLoopGroup()) {
+
+            var loop = String.valueOf(index++);
+
+            var lag = Timer.builder("nms.eventloop.lag")
+                    .description("Delay between a probe task's deadline and its execution on the event loop")
+                    .tag("loop", loop)
+                    .register(registry);
+
+            var last = new AtomicLong();
+
+            Gauge.builder("nms.eventloop.lag.last", last, value -> value.get() / 1_000_000.0)
+                    .description("Lag of the latest probe in milliseconds")
+                    .tag("loop", loop)
+                    .register(registry);
+
+            schedule(executor, lag, last);
+
+        }
+
+    }
+
+    private void schedule(EventExecutor executor, Timer lag, AtomicLong last) {
+
+        if (stopped) {
+
+            return;
+
+        }
+
+        var deadline = System.nanoTime() + intervalNanos;
+
+        var future = executor.schedule(() -> {
+
+            var delay = Math.max(0, System.nanoTime() - deadline);
+
+            lag.record(delay, TimeUnit.NANOSECONDS);
+
+            last.set(delay);
+
+            schedule(executor, lag, last);
+
+        }, intervalNanos, TimeUnit.NANOSECONDS);
+
+        synchronized (scheduled) {
+
+            scheduled.removeIf(ScheduledFuture::isDone);
+
+            scheduled.add(future);
+
+        }
+
+    }
+
+    /**
+     * Stops probing.
+     */
+    public void stop() {
+
+        stopped = true;
+
+        synchronized (scheduled) {
+
+            scheduled.forEach(future -> future.cancel(false));
+
+            scheduled.clear();
+
+        }
+
+    }
+
+}
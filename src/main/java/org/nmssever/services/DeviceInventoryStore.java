@@ -0,0 +1,271 @@
+package org.nmssever.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Tuple;
+import org.nmssever.metrics.AppMetrics;
+import org.nmssever.util.ConfigUtil;
+import org.nmssever.util.Constants;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Ingest stage that moves the static inventory attributes of a polled sample (host name, OS, CPU model,
+ * vendor, serial, installed memory) out of the sample and into the per-device {@code deviceinventory}
+ * table, so {@code systemdata} only receives the metrics that change between polls.
+ * <p>
+ * Each device's inventory and its MD5 content hash are kept in memory and in the table; a sample whose
+ * inventory hashes the same as the last one written costs no database round trip. Samples are counted in
+ * {@code nms.inventory.samples} by outcome. Must be used from the owning verticle's context.
+ */
+public class DeviceInventoryStore {
+
+    private static final String SELECT_INVENTORIES = "SELECT discovery_profile_id, attributes, content_hash FROM deviceinventory";
+
+    private static final String UPSERT_SQL = """
+                INSERT INTO deviceinventory (discovery_profile_id, attributes, content_hash, updated_at)
+                VALUES ($1, $2, $3, $4)
+                ON CONFLICT (discovery_profile_id) DO UPDATE
+                SET attributes = EXCLUDED.attributes, content_hash = EXCLUDED.content_hash, updated_at = EXCLUDED.updated_at
+                WHERE deviceinventory.content_hash <> EXCLUDED.content_hash
+            """;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(DeviceInventoryStore.class);
+
+    private final Pool pool;
+
+    private final Set<String> attributes;
+
+    private final Map<Integer, String> contentHashes = new HashMap<>();
+
+    private final Map<Integer, JsonObject> inventories = new HashMap<>();
+
+    private final MessageDigest digest;
+
+    private final Counter unchangedCounter;
+
+    private final Counter changedCounter;
+
+    private final Counter failedCounter;
+
+    /**
+     * Instantiates a new Device inventory store.
+     *
+     * @param pool       the pool
+     * @param attributes the names of the static sample attributes
+     */
+    public DeviceInventoryStore(Pool pool, Set<String> attributes) {
+
+        this.pool = pool;
+
+        this.attributes = attributes;
+
+        try {
+
+            this.digest = MessageDigest.getInstance("MD5");
+
+        } catch (NoSuchAlgorithmException e) {
+
+            throw new IllegalStateException("MD5 is not available", e);
+
+        }
+
+        var registry = AppMetrics.registry();
+
+        this.unchangedCounter = sampleCounter(registry, "unchanged");
+
+        this.changedCounter = sampleCounter(registry, "changed");
+
+        this.failedCounter = sampleCounter(registry, "failed");
+
+    }
+
+    /**
+     * Reads the inventory attribute names from INVENTORY_ATTRIBUTES, a comma separated list.
+     *
+     * @return the attribute names
+     */
+    public static Set<String> attributesFromConfig() {
+
+        var attributes = new LinkedHashSet<String>();
+
+        Arrays.stream(ConfigUtil.getString("INVENTORY_ATTRIBUTES", Constants.INVENTORY_ATTRIBUTES).split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .forEach(attributes::add);
+
+        return attributes;
+
+    }
+
+    private static Counter sampleCounter(MeterRegistry registry, String outcome) {
+
+        return Counter.builder("nms.inventory.samples")
+                .description("Polled samples by inventory outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+
+    }
+
+    /**
+     * Loads the stored inventories, so unchanged inventories are not rewritten after a restart.
+     *
+     * @return the future
+     */
+    public Future<Void> load() {
+
+        return pool.query(SELECT_INVENTORIES)
+
+                .execute()
+
+                .onSuccess(rows -> {
+
+                    rows.forEach(row -> {
+
+                        var discoveryProfileID = row.getInteger("discovery_profile_id");
+
+                        if (contentHashes.putIfAbsent(discoveryProfileID, row.getString("content_hash")) == null) {
+
+                            inventories.put(discoveryProfileID, (JsonObject) row.getValue("attributes"));
+
+                        }
+
+                    });
+
+                    LOGGER.info("Loaded inventory hashes of " + rows.rowCount() + " devices");
+
+                })
+
+                .mapEmpty();
+
+    }
+
+    /**
+     * Removes the inventory attributes from the sample and writes them to the inventory table if they
+     * differ from the last inventory written for the device.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @param sample             the sample; modified in place
+     * @param timestamp          the sample timestamp
+     * @return the sample
+     */
+    public JsonObject split(Integer discoveryProfileID, JsonObject sample, LocalDateTime timestamp) {
+
+        var inventory = new TreeMap<String, Object>();
+
+        for (var attribute : attributes) {
+
+            var value = sample.remove(attribute);
+
+            if (value != null) {
+
+                inventory.put(attribute, value);
+
+            }
+
+        }
+
+        if (inventory.isEmpty()) {
+
+            return sample;
+
+        }
+
+        var contentHash = contentHash(inventory);
+
+        if (contentHash.equals(contentHashes.get(discoveryProfileID))) {
+
+            unchangedCounter.increment();
+
+            return sample;
+
+        }
+
+        var attributes = new JsonObject(new HashMap<>(inventory));
+
+        contentHashes.put(discoveryProfileID, contentHash);
+
+        inventories.put(discoveryProfileID, attributes);
+
+        changedCounter.increment();
+
+        pool.preparedQuery(UPSERT_SQL)
+
+                .execute(Tuple.of(discoveryProfileID, attributes, contentHash, timestamp))
+
+                .onFailure(err -> {
+
+                    failedCounter.increment();
+
+                    // Forget the hash so the next sample of this device retries the write
+                    contentHashes.remove(discoveryProfileID, contentHash);
+
+                    LOGGER.error("Failed to update inventory of discovery profile: " + discoveryProfileID, err);
+
+                });
+
+        return sample;
+
+    }
+
+    /**
+     * Gets the latest inventory attributes of a device.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @return the attributes, or null if none were reported; must not be modified
+     */
+    public JsonObject inventory(Integer discoveryProfileID) {
+
+        return inventories.get(discoveryProfileID);
+
+    }
+
+    /**
+     * Forgets a device.
+     *
+     * @param discoveryProfileID the discovery profile id
+     */
+    public void remove(Integer discoveryProfileID) {
+
+        contentHashes.remove(discoveryProfileID);
+
+        inventories.remove(discoveryProfileID);
+
+    }
+
+    private String contentHash(TreeMap<String, Object> inventory) {
+
+        digest.reset();
+
+        inventory.forEach((name, value) -> {
+
+            digest.update(name.getBytes(StandardCharsets.UTF_8));
+
+            digest.update((byte) 0);
+
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+
+            digest.update((byte) '\n');
+
+        });
+
+        return HexFormat.of().formatHex(digest.digest());
+
+    }
+
+}
@@ -0,0 +1,358 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.messages.DiscoveryRunRequest;
+import org.nmssever.util.ConcurrencyLimiter;
+import org.nmssever.util.Constants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Runs discovery asynchronously as jobs.
+ * <p>
+ * A job covers one or more discovery profiles, each run through {@link Constants#DISCOVERY_RUN} with a
+ * bounded number of profiles in flight. Job state lives in a bounded, insertion-ordered store: finished
+ * jobs are evicted once their TTL passes, and when the store is full the oldest finished job makes room.
+ * A profile belongs to at most one unfinished job: profiles already queued or running in another job
+ * are skipped and listed in the job. Sweep progress published by {@link DiscoverySweepService} is
+ * attached to the profile's job. A sweep can outlast the profile timeout; its profile then stays in the
+ * job, holding its concurrency slot, until the sweep publishes its end, so a resubmit cannot start a
+ * second sweep of the same profile. Must be used from a single Vert.x context.
+ */
+public class DiscoveryJobService {
+
+    private static final long EVICTION_INTERVAL_MS = 60000;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(DiscoveryJobService.class);
+
+    private final Vertx vertx;
+
+    private final int maxJobs;
+
+    private final long jobTtlMs;
+
+    private final int maxConcurrentProfiles;
+
+    private final long profileTimeoutMs;
+
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+
+    private final Map<Integer, Job> activeProfiles = new HashMap<>();
+
+    private final Map<Integer, Promise<JsonObject>> sweepsPastTimeout = new HashMap<>();
+
+    private long evictionTimerId = -1;
+
+    /**
+     * Instantiates a new Discovery job service.
+     *
+     * @param vertx                 the vertx
+     * @param maxJobs               the maximum number of jobs kept in memory
+     * @param jobTtlMs              how long a finished job stays queryable
+     * @param maxConcurrentProfiles the maximum number of profiles of one job discovered at once
+     * @param profileTimeoutMs      the timeout of a single profile's discovery reply; a sweep still running
+     *                              when it passes is awaited until it ends
+     */
+    public DiscoveryJobService(Vertx vertx, int maxJobs, long jobTtlMs, int maxConcurrentProfiles, long profileTimeoutMs) {
+
+        this.vertx = vertx;
+
+        this.maxJobs = Math.max(1, maxJobs);
+
+        this.jobTtlMs = jobTtlMs;
+
+        this.maxConcurrentProfiles = maxConcurrentProfiles;
+
+        this.profileTimeoutMs = profileTimeoutMs;
+
+    }
+
+    /**
+     * Starts TTL eviction and listens for sweep progress.
+     */
+    public void start() {
+
+        evictionTimerId = vertx.setPeriodic(EVICTION_INTERVAL_MS, id -> evictExpired());
+
+        vertx.eventBus().<JsonObject>consumer(Constants.DISCOVERY_SWEEP_PROGRESS, message -> {
+
+            var progress = message.body();
+
+            var discoveryProfileId = progress.getInteger("discovery_profile_id");
+
+            var job = activeProfiles.get(discoveryProfileId);
+
+            if (job != null) {
+
+                job.progress.put(String.valueOf(discoveryProfileId), progress);
+
+            }
+
+            if (!"running".equals(progress.getString("phase"))) {
+
+                var sweep = sweepsPastTimeout.remove(discoveryProfileId);
+
+                if (sweep != null) {
+
+                    sweep.complete(progress);
+
+                }
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Submits a job.
+     *
+     * @param discoveryProfileIds the discovery profile ids
+     * @return the job status, or a {@link ReplyException} failure: 503 if the store is full of running
+     * jobs, 409 if every profile is already in another unfinished job
+     */
+    public Future<JsonObject> submit(List<Integer> discoveryProfileIds) {
+
+        evictExpired();
+
+        if (jobs.size() >= maxJobs && !evictOldestFinished()) {
+
+            return Future.failedFuture(new ReplyException(ReplyFailure.RECIPIENT_FAILURE, 503, "Too many discovery jobs in progress"));
+
+        }
+
+        List<Integer> accepted = new ArrayList<>();
+
+        List<Integer> skipped = new ArrayList<>();
+
+        for (var discoveryProfileId : new LinkedHashSet<>(discoveryProfileIds)) {
+
+            (activeProfiles.containsKey(discoveryProfileId) ? skipped : accepted).add(discoveryProfileId);
+
+        }
+
+        if (accepted.isEmpty()) {
+
+            return Future.failedFuture(new ReplyException(ReplyFailure.RECIPIENT_FAILURE, 409, "Discovery already in progress for discovery profiles: " + skipped));
+
+        }
+
+        var job = new Job(UUID.randomUUID().toString(), accepted, skipped);
+
+        jobs.put(job.id, job);
+
+        accepted.forEach(discoveryProfileId -> activeProfiles.put(discoveryProfileId, job));
+
+        LOGGER.info("Discovery job " + job.id + " submitted for " + accepted.size() + " profiles, " + skipped.size() + " already in progress");
+
+        run(job);
+
+        return Future.succeededFuture(job.toJson());
+
+    }
+
+    /**
+     * Returns a job status.
+     *
+     * @param jobId the job id
+     * @return the job status, or null if unknown or evicted
+     */
+    public JsonObject status(String jobId) {
+
+        var job = jobs.get(jobId);
+
+        return job == null ? null : job.toJson();
+
+    }
+
+    private void run(Job job) {
+
+        job.status = "running";
+
+        var limiter = new ConcurrencyLimiter(maxConcurrentProfiles);
+
+        var options = new DeliveryOptions().setSendTimeout(profileTimeoutMs);
+
+        List<Future<Void>> runs = new ArrayList<>();
+
+        for (var discoveryProfileId : job.discoveryProfileIds) {
+
+            runs.add(limiter.<Void>submit(() -> vertx.eventBus().<Object>request(Constants.DISCOVERY_RUN, new DiscoveryRunRequest(discoveryProfileId), options)
+
+                    .map(reply -> {
+
+                        // The body is the plugin's discovery result, which reports its own failures
+                        var body = reply.body();
+
+                        var failed = body instanceof JsonObject result && "fail".equalsIgnoreCase(result.getString("status"));
+
+                        return new JsonObject()
+                                .put("discovery_profile_id", discoveryProfileId)
+                                .put("status", failed ? "failed" : "succeeded")
+                                .put("result", body);
+
+                    })
+
+                    .recover(err -> awaitSweep(job, discoveryProfileId, err))
+
+                    .otherwise(err -> new JsonObject()
+                            .put("discovery_profile_id", discoveryProfileId)
+                            .put("status", "failed")
+                            .put("error", err.getMessage()))
+
+                    .onSuccess(job.results::add)
+
+                    .onComplete(ar -> activeProfiles.remove(discoveryProfileId, job))
+
+                    .mapEmpty()));
+
+        }
+
+        Future.join(runs).onComplete(ar -> {
+
+            job.finishedAtNanos = System.nanoTime();
+
+            var failed = job.results.stream().filter(result -> "failed".equals(((JsonObject) result).getString("status"))).count();
+
+            job.status = failed == 0 ? "completed" : failed == job.discoveryProfileIds.size() ? "failed" : "completed_with_errors";
+
+            LOGGER.info("Discovery job " + job.id + " finished with status " + job.status);
+
+        });
+
+    }
+
+    private Future<JsonObject> awaitSweep(Job job, int discoveryProfileId, Throwable err) {
+
+        var progress = job.progress.getJsonObject(String.valueOf(discoveryProfileId));
+
+        // Only a sweep publishes progress; any other failure, or a timeout before a sweep started, is final
+        if (!(err instanceof ReplyException replyException && replyException.failureType() == ReplyFailure.TIMEOUT) || progress == null) {
+
+            return Future.failedFuture(err);
+
+        }
+
+        if (!"running".equals(progress.getString("phase"))) {
+
+            return Future.succeededFuture(sweepResult(discoveryProfileId, progress));
+
+        }
+
+        LOGGER.warn("Discovery sweep of profile " + discoveryProfileId + " outlasted its " + profileTimeoutMs + " ms timeout; keeping it in job " + job.id + " until it ends");
+
+        Promise<JsonObject> sweep = Promise.promise();
+
+        sweepsPastTimeout.put(discoveryProfileId, sweep);
+
+        return sweep.future().map(end -> sweepResult(discoveryProfileId, end));
+
+    }
+
+    private static JsonObject sweepResult(int discoveryProfileId, JsonObject end) {
+
+        return new JsonObject()
+                .put("discovery_profile_id", discoveryProfileId)
+                .put("status", "completed".equals(end.getString("phase")) ? "succeeded" : "failed")
+                .put("result", end);
+
+    }
+
+    private void evictExpired() {
+
+        var now = System.nanoTime();
+
+        jobs.values().removeIf(job -> job.finishedAtNanos != 0 && (now - job.finishedAtNanos) / 1_000_000 >= jobTtlMs);
+
+    }
+
+    private boolean evictOldestFinished() {
+
+        var iterator = jobs.values().iterator();
+
+        while (iterator.hasNext()) {
+
+            if (iterator.next().finishedAtNanos != 0) {
+
+                iterator.remove();
+
+                return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Stops TTL eviction.
+     */
+    public void stop() {
+
+        vertx.cancelTimer(evictionTimerId);
+
+    }
+
+    private static final class Job {
+
+        private final String id;
+
+        private final List<Integer> discoveryProfileIds;
+
+        private final List<Integer> skippedProfileIds;
+
+        private final long submittedAtMillis = System.currentTimeMillis();
+
+        private final JsonArray results = new JsonArray();
+
+        private final JsonObject progress = new JsonObject();
+
+        private String status = "queued";
+
+        private long finishedAtNanos;
+
+        private Job(String id, List<Integer> discoveryProfileIds, List<Integer> skippedProfileIds) {
+
+            this.id = id;
+
+            this.discoveryProfileIds = List.copyOf(discoveryProfileIds);
+
+            this.skippedProfileIds = List.copyOf(skippedProfileIds);
+
+        }
+
+        private JsonObject toJson() {
+
+            return new JsonObject()
+                    .put("job_id", id)
+                    .put("status", status)
+                    .put("submitted_at", submittedAtMillis)
+                    .put("total", discoveryProfileIds.size())
+                    .put("finished", results.size())
+                    .put("discovery_profile_ids", new JsonArray(new ArrayList<>(discoveryProfileIds)))
+                    .put("skipped_discovery_profile_ids", new JsonArray(new ArrayList<>(skippedProfileIds)))
+                    .put("results", results.copy())
+                    .put("progress", progress.copy());
+
+        }
+
+    }
+
+}
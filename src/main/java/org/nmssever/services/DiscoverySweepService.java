@@ -0,0 +1,294 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Tuple;
+import org.nmssever.util.ConcurrencyLimiter;
+import org.nmssever.util.ConfigUtil;
+import org.nmssever.util.Constants;
+import org.nmssever.util.IpTargets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Discovers every host of a multi-host discovery profile (CIDR block, range or list).
+ * <p>
+ * Hosts are probed through the {@link ReachabilityEngine}; each host that answers is handed to the ZMQ
+ * plugin for discovery immediately, with a separate bound on concurrent discoveries, so probing and
+ * discovery overlap instead of running as two phases. Every successfully discovered host is stored as
+ * its own single-address discovery profile with discovery_status = 1, ready to be provisioned. Progress
+ * is published on {@link Constants#DISCOVERY_SWEEP_PROGRESS} in the running phase from the start, and
+ * every sweep ends with one completed or failed message. Must be used from a single Vert.x context.
+ */
+public class DiscoverySweepService {
+
+    private static final String SELECT_PROFILE = """
+                SELECT dp.id, dp.discovery_profile_name, dp.ip, dp.credential_profile_id, dp.polling_interval,
+                       cp.credentialconfig, cp.system_type
+                FROM discoveryprofiles dp
+                JOIN credentialprofiles cp ON dp.credential_profile_id = cp.id
+                WHERE dp.id = $1
+            """;
+
+    private static final String UPSERT_HOST_PROFILE = """
+                INSERT INTO discoveryprofiles (discovery_profile_name, ip, credential_profile_id, polling_interval, discovery_status)
+                VALUES ($1, $2, $3, $4, 1)
+                ON CONFLICT (discovery_profile_name) DO UPDATE SET discovery_status = 1
+                RETURNING id
+            """;
+
+    private static final String UPDATE_SWEEP_STATUS = "UPDATE discoveryprofiles SET discovery_status = $1 WHERE id = $2";
+
+    private static final long PROGRESS_INTERVAL_MS = 500;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(DiscoverySweepService.class);
+
+    private final Vertx vertx;
+
+    private final Pool pool;
+
+    private final ReachabilityEngine reachabilityEngine;
+
+    private final ConcurrencyLimiter discoveryLimiter;
+
+    private final int maxHosts;
+
+    /**
+     * Instantiates a new Discovery sweep service.
+     *
+     * @param vertx                   the vertx
+     * @param pool                    the pool
+     * @param reachabilityEngine      the reachability engine used to pre-filter hosts
+     * @param maxConcurrentDiscovery  the maximum number of ZMQ discoveries in flight
+     * @param maxHosts                the maximum number of hosts a single profile may expand to
+     */
+    public DiscoverySweepService(Vertx vertx, Pool pool, ReachabilityEngine reachabilityEngine, int maxConcurrentDiscovery, int maxHosts) {
+
+        this.vertx = vertx;
+
+        this.pool = pool;
+
+        this.reachabilityEngine = reachabilityEngine;
+
+        this.discoveryLimiter = new ConcurrencyLimiter(maxConcurrentDiscovery);
+
+        this.maxHosts = maxHosts;
+
+    }
+
+    /**
+     * Loads a discovery profile together with its credentials.
+     *
+     * @param discoveryProfileId the discovery profile id
+     * @return the profile, or a failed future if it does not exist
+     */
+    public Future<JsonObject> loadProfile(int discoveryProfileId) {
+
+        return pool.preparedQuery(SELECT_PROFILE).execute(Tuple.of(discoveryProfileId)).compose(rows -> {
+
+            if (rows.size() == 0) {
+
+                return Future.failedFuture("Discovery profile not found: " + discoveryProfileId);
+
+            }
+
+            var row = rows.iterator().next();
+
+            return Future.succeededFuture(new JsonObject()
+                    .put("id", row.getInteger("id"))
+                    .put("discovery_profile_name", row.getString("discovery_profile_name"))
+                    .put("ip", row.getString("ip"))
+                    .put("credential_profile_id", row.getInteger("credential_profile_id"))
+                    .put("polling_interval", row.getInteger("polling_interval"))
+                    .put("system_type", row.getString("system_type"))
+                    .put("credentialconfig", new JsonObject(row.getString("credentialconfig"))));
+
+        });
+
+    }
+
+    /**
+     * Sweeps a multi-host profile.
+     *
+     * @param profile the profile as returned by {@link #loadProfile(int)}
+     * @return the sweep summary
+     */
+    public Future<JsonObject> sweep(JsonObject profile) {
+
+        var discoveryProfileId = profile.getInteger("id");
+
+        List<String> hosts;
+
+        try {
+
+            hosts = IpTargets.expand(profile.getString("ip"), maxHosts);
+
+        } catch (IllegalArgumentException e) {
+
+            return Future.failedFuture(e.getMessage());
+
+        }
+
+        LOGGER.info("Starting discovery sweep of " + hosts.size() + " hosts for profile: " + discoveryProfileId);
+
+        var progress = new SweepProgress(discoveryProfileId, hosts.size());
+
+        publishProgress(progress, "running");
+
+        var progressTimerId = vertx.setPeriodic(PROGRESS_INTERVAL_MS, id -> publishProgress(progress, "running"));
+
+        List<Future<Void>> discoveries = new ArrayList<>();
+
+        return reachabilityEngine.checkAll(hosts, result -> {
+
+            progress.probed++;
+
+            if (result.getBoolean("isReachable")) {
+
+                progress.live++;
+
+                discoveries.add(discoverHost(profile, result.getString("ip"), progress));
+
+            }
+
+        }).compose(probeResults -> Future.join(discoveries).transform(ar -> {
+
+            vertx.cancelTimer(progressTimerId);
+
+            return pool.preparedQuery(UPDATE_SWEEP_STATUS)
+                    .execute(Tuple.of(progress.discovered.isEmpty() ? 0 : 1, discoveryProfileId))
+                    .transform(updateAr -> {
+
+                        if (updateAr.failed()) {
+
+                            LOGGER.error("Failed to update discovery status of sweep profile: " + discoveryProfileId, updateAr.cause());
+
+                        }
+
+                        publishProgress(progress, "completed");
+
+                        var summary = progress.toJson()
+                                .put("durationMs", (System.nanoTime() - progress.startNanos) / 1_000_000)
+                                .put("hosts", progress.discovered);
+
+                        LOGGER.info("Discovery sweep completed for profile " + discoveryProfileId + ": " + progress.toJson().encode());
+
+                        return Future.succeededFuture(summary);
+
+                    });
+
+        })).onFailure(err -> {
+
+            vertx.cancelTimer(progressTimerId);
+
+            publishProgress(progress, "failed");
+
+        });
+
+    }
+
+    private Future<Void> discoverHost(JsonObject profile, String ip, SweepProgress progress) {
+
+        var credentialConfig = profile.getJsonObject("credentialconfig");
+
+        var request = new JsonObject()
+                .put("RequestType", "discovery")
+                .put("ip", ip)
+                .put("username", credentialConfig.getString("username"))
+                .put("password", credentialConfig.getString("password"))
+                .put("SystemType", profile.getString("system_type"))
+                .put("discovery_profile_id", profile.getInteger("id"));
+
+        var options = new DeliveryOptions().setSendTimeout(ConfigUtil.getLong("ZMQ_REQUEST_TIMEOUT_MS", Constants.ZMQ_REQUEST_TIMEOUT_MS) + Constants.ZMQ_REPLY_MARGIN_MS);
+
+        return discoveryLimiter.<Void>submit(() -> vertx.eventBus().<JsonObject>request(Constants.ZMQ_DISCOVERY_RUN_REQUEST, request, options)
+
+                .compose(reply -> {
+
+                    // The reply is the plugin's correlated discovery result, never a transport acknowledgement
+                    var body = reply.body();
+
+                    if (body == null || !"discovery".equalsIgnoreCase(body.getString("RequestType")) || !"success".equalsIgnoreCase(body.getString("status"))) {
+
+                        return Future.failedFuture("Discovery failed for " + ip);
+
+                    }
+
+                    return saveHostProfile(profile, ip);
+
+                })
+
+                .onSuccess(hostProfileId -> progress.discovered.add(new JsonObject().put("ip", ip).put("discovery_profile_id", hostProfileId)))
+
+                .onFailure(err -> progress.failed++)
+
+                .<Void>mapEmpty()
+
+                .otherwiseEmpty());
+
+    }
+
+    private Future<Integer> saveHostProfile(JsonObject profile, String ip) {
+
+        var name = profile.getString("discovery_profile_name") + "-" + ip;
+
+        return pool.preparedQuery(UPSERT_HOST_PROFILE)
+                .execute(Tuple.of(name, ip, profile.getInteger("credential_profile_id"),
+                        profile.getInteger("polling_interval", Constants.DEFAULT_POLLING_INTERVAL_SECONDS)))
+                .map(rows -> rows.iterator().next().getInteger("id"));
+
+    }
+
+    private void publishProgress(SweepProgress progress, String phase) {
+
+        vertx.eventBus().publish(Constants.DISCOVERY_SWEEP_PROGRESS, progress.toJson().put("phase", phase));
+
+    }
+
+    private static final class SweepProgress {
+
+        private final int discoveryProfileId;
+
+        private final int total;
+
+        private final long startNanos = System.nanoTime();
+
+        private final JsonArray discovered = new JsonArray();
+
+        private int probed;
+
+        private int live;
+
+        private int failed;
+
+        private SweepProgress(int discoveryProfileId, int total) {
+
+            this.discoveryProfileId = discoveryProfileId;
+
+            this.total = total;
+
+        }
+
+        private JsonObject toJson() {
+
+            return new JsonObject()
+                    .put("discovery_profile_id", discoveryProfileId)
+                    .put("total", total)
+                    .put("probed", probed)
+                    .put("live", live)
+                    .put("discovered", discovered.size())
+                    .put("failed", failed);
+
+        }
+
+    }
+
+}
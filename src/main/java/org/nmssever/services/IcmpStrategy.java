@@ -0,0 +1,65 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.WorkerExecutor;
+
+import java.net.InetAddress;
+
+/**
+ * ICMP echo through {@link InetAddress#isReachable(int)} on a worker pool. The JDK only sends real ICMP
+ * when the process may open raw sockets and silently falls back to a TCP echo otherwise, so a negative
+ * answer is delegated to the configured fallback strategy, typically {@link PingProcessStrategy}.
+ */
+public class IcmpStrategy implements ReachabilityStrategy {
+
+    private final WorkerExecutor workerExecutor;
+
+    private final ReachabilityStrategy fallback;
+
+    /**
+     * Instantiates a new Icmp strategy.
+     *
+     * @param workerExecutor the worker pool the blocking call is run on
+     * @param fallback       the strategy used when the JDK probe fails, or null
+     */
+    public IcmpStrategy(WorkerExecutor workerExecutor, ReachabilityStrategy fallback) {
+
+        this.workerExecutor = workerExecutor;
+
+        this.fallback = fallback;
+
+    }
+
+    @Override
+    public Future<Boolean> probe(String ip, long deadlineNanos) {
+
+        Future<Boolean> probe = workerExecutor.executeBlocking(() -> {
+
+            var timeoutMs = ReachabilityStrategy.remainingMs(deadlineNanos);
+
+            return timeoutMs > 0 && InetAddress.getByName(ip).isReachable((int) timeoutMs);
+
+        }, false);
+
+        return probe.otherwise(false).compose(reachable -> {
+
+            if (reachable || fallback == null || ReachabilityStrategy.remainingMs(deadlineNanos) <= 0) {
+
+                return Future.succeededFuture(reachable);
+
+            }
+
+            return fallback.probe(ip, deadlineNanos);
+
+        });
+
+    }
+
+    @Override
+    public String name() {
+
+        return fallback == null ? "icmp" : "icmp+" + fallback.name();
+
+    }
+
+}
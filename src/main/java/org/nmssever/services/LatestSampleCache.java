@@ -0,0 +1,194 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Tuple;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory last-value cache: the most recent successful sample of every device plus the outcome of its
+ * latest poll, so dashboards read current state without touching PostgreSQL.
+ * <p>
+ * Entries are updated on the polled data path and hold the sample object itself, which is not modified
+ * after ingest, so an update costs a map put; returned objects share it and must be treated as read-only.
+ * The device's inventory attributes are merged in only when an entry is read. At startup the cache is
+ * warmed with one {@code DISTINCT ON} query over the warm-up window. Must be used from the owning
+ * verticle's context.
+ */
+public class LatestSampleCache {
+
+    private static final String SELECT_LATEST = """
+                SELECT DISTINCT ON (s.discovery_profile_id) s.discovery_profile_id,
+                       COALESCE(i.attributes, '{}'::jsonb) || s.system_info AS system_info, s.timestamp
+                FROM systemdata s
+                LEFT JOIN deviceinventory i ON i.discovery_profile_id = s.discovery_profile_id
+                WHERE s.timestamp >= $1
+                ORDER BY s.discovery_profile_id, s.timestamp DESC, s.id DESC
+            """;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(LatestSampleCache.class);
+
+    private final Pool pool;
+
+    private final DeviceInventoryStore inventoryStore;
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    private record Entry(JsonObject sample, LocalDateTime sampledAt, LocalDateTime polledAt, boolean pollFailed) {
+
+    }
+
+    /**
+     * Instantiates a new Latest sample cache.
+     *
+     * @param pool           the pool
+     * @param inventoryStore the store holding each device's inventory attributes
+     */
+    public LatestSampleCache(Pool pool, DeviceInventoryStore inventoryStore) {
+
+        this.pool = pool;
+
+        this.inventoryStore = inventoryStore;
+
+    }
+
+    /**
+     * Loads the newest stored sample of every device polled within the window. Devices already updated
+     * by a live sample keep it.
+     *
+     * @param windowHours the warm-up window in hours
+     * @return the future
+     */
+    public Future<Void> warm(long windowHours) {
+
+        return pool.preparedQuery(SELECT_LATEST)
+
+                .execute(Tuple.of(LocalDateTime.now().minusHours(windowHours)))
+
+                .onSuccess(rows -> {
+
+                    rows.forEach(row -> {
+
+                        var sampledAt = row.getLocalDateTime("timestamp");
+
+                        entries.putIfAbsent(row.getInteger("discovery_profile_id"),
+                                new Entry((JsonObject) row.getValue("system_info"), sampledAt, sampledAt, false));
+
+                    });
+
+                    LOGGER.info("Warmed latest samples of " + rows.rowCount() + " devices");
+
+                })
+
+                .mapEmpty();
+
+    }
+
+    /**
+     * Records a poll. A failed poll keeps the previous sample and only updates the poll outcome.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @param sample             the sample; must not be modified afterwards
+     * @param failed             whether the poll failed
+     * @param timestamp          the poll timestamp
+     */
+    public void update(Integer discoveryProfileID, JsonObject sample, boolean failed, LocalDateTime timestamp) {
+
+        if (!failed) {
+
+            entries.put(discoveryProfileID, new Entry(sample, timestamp, timestamp, false));
+
+            return;
+
+        }
+
+        var previous = entries.get(discoveryProfileID);
+
+        entries.put(discoveryProfileID, previous == null
+                ? new Entry(null, null, timestamp, true)
+                : new Entry(previous.sample, previous.sampledAt, timestamp, true));
+
+    }
+
+    /**
+     * Removes a device.
+     *
+     * @param discoveryProfileID the discovery profile id
+     */
+    public void remove(Integer discoveryProfileID) {
+
+        entries.remove(discoveryProfileID);
+
+    }
+
+    /**
+     * Returns the latest state of a device.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @return the json object, or null if the device has not been polled
+     */
+    public JsonObject get(Integer discoveryProfileID) {
+
+        var entry = entries.get(discoveryProfileID);
+
+        return entry == null ? null : toJson(discoveryProfileID, entry);
+
+    }
+
+    /**
+     * Returns the latest state of every device.
+     *
+     * @return the json object
+     */
+    public JsonObject all() {
+
+        var devices = new JsonArray();
+
+        entries.forEach((discoveryProfileID, entry) -> devices.add(toJson(discoveryProfileID, entry)));
+
+        return new JsonObject()
+                .put("count", devices.size())
+                .put("devices", devices);
+
+    }
+
+    private JsonObject toJson(Integer discoveryProfileID, Entry entry) {
+
+        JsonObject systemInfo = null;
+
+        if (entry.sample != null) {
+
+            var inventory = inventoryStore.inventory(discoveryProfileID);
+
+            systemInfo = inventory == null ? entry.sample : inventory.copy().mergeIn(entry.sample);
+
+        }
+
+        return new JsonObject()
+                .put("discovery_profile_id", discoveryProfileID)
+                .put("timestamp", entry.sampledAt == null ? null : entry.sampledAt.toString())
+                .put("last_polled_at", entry.polledAt.toString())
+                .put("last_poll_status", entry.pollFailed ? "fail" : "success")
+                .put("system_info", systemInfo);
+
+    }
+
+    /**
+     * Gets the number of cached devices.
+     *
+     * @return the int
+     */
+    public int size() {
+
+        return entries.size();
+
+    }
+
+}
@@ -0,0 +1,216 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Tuple;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps metric names to the small integer ids stored in {@code metricsamples}, backed by the
+ * {@code metricnames} table.
+ * <p>
+ * All known names are held in memory, so resolving a name is a map lookup. New names are inserted in one
+ * statement per batch, and a name already being inserted is not inserted twice. Names already stored,
+ * for instance while {@link #load()} is still running, are read back rather than inserted, since every
+ * attempted insert draws a SMALLSERIAL id. The dictionary stops growing at {@code maxNames}, so a plugin
+ * that emits per-instance keys cannot fill the id space. Must be used from the owning verticle's context.
+ */
+public class MetricDictionary {
+
+    private static final String SELECT_NAMES = "SELECT id, name FROM metricnames";
+
+    private static final String INSERT_NAMES = """
+                WITH wanted AS (SELECT DISTINCT unnest($1::text[]) AS name),
+                existing AS (SELECT m.id, m.name FROM metricnames m JOIN wanted USING (name)),
+                inserted AS (
+                    INSERT INTO metricnames (name) SELECT name FROM wanted WHERE name NOT IN (SELECT name FROM existing)
+                    ON CONFLICT (name) DO NOTHING
+                    RETURNING id, name
+                )
+                SELECT id, name FROM existing
+                UNION ALL
+                SELECT id, name FROM inserted
+            """;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(MetricDictionary.class);
+
+    private final Pool pool;
+
+    private final int maxNames;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private final Map<Integer, String> names = new HashMap<>();
+
+    private final Map<String, Future<Void>> pending = new HashMap<>();
+
+    private long rejectedNames;
+
+    /**
+     * Instantiates a new Metric dictionary.
+     *
+     * @param pool     the pool
+     * @param maxNames the maximum number of names
+     */
+    public MetricDictionary(Pool pool, int maxNames) {
+
+        this.pool = pool;
+
+        this.maxNames = Math.max(1, Math.min(maxNames, Short.MAX_VALUE));
+
+    }
+
+    /**
+     * Loads the stored names.
+     *
+     * @return the future
+     */
+    public Future<Void> load() {
+
+        return pool.query(SELECT_NAMES)
+
+                .execute()
+
+                .onSuccess(rows -> {
+
+                    rows.forEach(row -> put(row.getInteger("id"), row.getString("name")));
+
+                    LOGGER.info("Loaded " + rows.rowCount() + " metric names");
+
+                })
+
+                .mapEmpty();
+
+    }
+
+    /**
+     * Gets the id of a name.
+     *
+     * @param name the name
+     * @return the id, or null if the name is not registered yet
+     */
+    public Integer id(String name) {
+
+        return ids.get(name);
+
+    }
+
+    /**
+     * Gets the name of an id.
+     *
+     * @param id the id
+     * @return the name, or null if unknown
+     */
+    public String name(int id) {
+
+        return names.get(id);
+
+    }
+
+    /**
+     * Registers the names that are not known yet.
+     *
+     * @param candidates the names
+     * @return a future completed once every registrable name has an id; it never fails
+     */
+    public Future<Void> register(Collection<String> candidates) {
+
+        List<String> missing = new ArrayList<>();
+
+        List<Future<Void>> waits = new ArrayList<>();
+
+        for (var name : candidates) {
+
+            if (ids.containsKey(name)) {
+
+                continue;
+
+            }
+
+            var inFlight = pending.get(name);
+
+            if (inFlight != null) {
+
+                waits.add(inFlight);
+
+            } else if (ids.size() + pending.size() + missing.size() < maxNames) {
+
+                missing.add(name);
+
+            } else {
+
+                rejectedNames++;
+
+            }
+
+        }
+
+        if (!missing.isEmpty()) {
+
+            Promise<Void> promise = Promise.promise();
+
+            missing.forEach(name -> pending.put(name, promise.future()));
+
+            pool.preparedQuery(INSERT_NAMES)
+
+                    .execute(Tuple.tuple().addArrayOfString(missing.toArray(new String[0])))
+
+                    .onComplete(ar -> {
+
+                        missing.forEach(pending::remove);
+
+                        if (ar.succeeded()) {
+
+                            ar.result().forEach(row -> put(row.getInteger("id"), row.getString("name")));
+
+                        } else {
+
+                            LOGGER.error("Failed to register " + missing.size() + " metric names", ar.cause());
+
+                        }
+
+                        promise.complete();
+
+                    });
+
+            waits.add(promise.future());
+
+        }
+
+        return waits.isEmpty() ? Future.succeededFuture() : Future.join(waits).transform(ar -> Future.succeededFuture());
+
+    }
+
+    private void put(int id, String name) {
+
+        ids.put(name, id);
+
+        names.put(id, name);
+
+    }
+
+    /**
+     * Returns a snapshot of the dictionary statistics.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        return new JsonObject()
+                .put("names", ids.size())
+                .put("maxNames", maxNames)
+                .put("pendingNames", pending.size())
+                .put("rejectedNames", rejectedNames);
+
+    }
+
+}
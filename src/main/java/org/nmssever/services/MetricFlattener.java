@@ -0,0 +1,211 @@
+package org.nmssever.services;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Tuple;
+import org.nmssever.tsdb.RecentSeriesStore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ingest stage that flattens the numeric top-level values of a polled sample into the narrow
+ * {@code metricsamples} table, one {@code (discovery_profile_id, timestamp, metric_id, value)} row per
+ * metric, so range and aggregate queries scan doubles through an index instead of parsing JSONB.
+ * <p>
+ * The plugin reports numbers as strings, so string values that parse as finite doubles are included;
+ * nested objects, arrays and text are left to {@code systemdata} only. A whole sample is queued as one
+ * writer row whose metric ids and values are bound as two arrays and expanded with {@code unnest}. Must
+ * be used from the owning verticle's context.
+ * <p>
+ * The same values are appended to the in-memory {@link RecentSeriesStore}, which answers queries over the
+ * recent window, and added to the open buckets of the {@link MetricRollupAggregator}.
+ */
+public class MetricFlattener {
+
+    /**
+     * The insert statement of the metric sample writer.
+     */
+    public static final String INSERT_SQL = "INSERT INTO metricsamples (discovery_profile_id, timestamp, metric_id, value) "
+            + "SELECT $1, $2, m.metric_id, m.value FROM unnest($3::int4[], $4::float8[]) AS m(metric_id, value)";
+
+    private final MetricDictionary dictionary;
+
+    private final SystemDataWriter writer;
+
+    private final RecentSeriesStore recentStore;
+
+    private final MetricRollupAggregator rollups;
+
+    /**
+     * Instantiates a new Metric flattener.
+     *
+     * @param dictionary  the metric name dictionary
+     * @param writer      the writer of the metricsamples table
+     * @param recentStore the in-memory store of the recent window
+     * @param rollups     the rollup aggregator
+     */
+    public MetricFlattener(MetricDictionary dictionary, SystemDataWriter writer, RecentSeriesStore recentStore, MetricRollupAggregator rollups) {
+
+        this.dictionary = dictionary;
+
+        this.writer = writer;
+
+        this.recentStore = recentStore;
+
+        this.rollups = rollups;
+
+    }
+
+    /**
+     * Queues the numeric values of a sample. Samples that introduce new metric names wait for their
+     * registration; the rest are queued at once.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @param sample             the sample
+     * @param timestamp          the sample timestamp
+     */
+    public void ingest(Integer discoveryProfileID, JsonObject sample, LocalDateTime timestamp) {
+
+        List<String> names = new ArrayList<>();
+
+        List<Double> values = new ArrayList<>();
+
+        var allKnown = true;
+
+        for (var entry : sample) {
+
+            var value = numericValue(entry.getValue());
+
+            if (value != null) {
+
+                names.add(entry.getKey());
+
+                values.add(value);
+
+                allKnown &= dictionary.id(entry.getKey()) != null;
+
+            }
+
+        }
+
+        if (names.isEmpty()) {
+
+            return;
+
+        }
+
+        if (allKnown) {
+
+            write(discoveryProfileID, timestamp, names, values);
+
+        } else {
+
+            dictionary.register(names).onComplete(ar -> write(discoveryProfileID, timestamp, names, values));
+
+        }
+
+    }
+
+    private void write(Integer discoveryProfileID, LocalDateTime timestamp, List<String> names, List<Double> values) {
+
+        var ids = new Integer[names.size()];
+
+        var numbers = new Double[names.size()];
+
+        var count = 0;
+
+        var millis = RecentSeriesStore.toMillis(timestamp);
+
+        for (var i = 0; i < names.size(); i++) {
+
+            var id = dictionary.id(names.get(i));
+
+            // Names the dictionary refused or failed to register are skipped
+            if (id != null) {
+
+                ids[count] = id;
+
+                numbers[count] = values.get(i);
+
+                recentStore.append(discoveryProfileID, id, millis, numbers[count]);
+
+                rollups.add(discoveryProfileID, id, millis, numbers[count]);
+
+                count++;
+
+            }
+
+        }
+
+        if (count == 0) {
+
+            return;
+
+        }
+
+        if (count < ids.length) {
+
+            ids = Arrays.copyOf(ids, count);
+
+            numbers = Arrays.copyOf(numbers, count);
+
+        }
+
+        writer.enqueue(Tuple.tuple()
+                .addInteger(discoveryProfileID)
+                .addLocalDateTime(timestamp)
+                .addArrayOfInteger(ids)
+                .addArrayOfDouble(numbers));
+
+    }
+
+    /**
+     * Returns the value as a double if it is a number or a string holding a finite decimal number.
+     *
+     * @param value the value
+     * @return the double, or null
+     */
+    static Double numericValue(Object value) {
+
+        if (value instanceof Number number) {
+
+            var result = number.doubleValue();
+
+            return Double.isFinite(result) ? result : null;
+
+        }
+
+        if (!(value instanceof String text) || text.isEmpty() || text.length() > 32) {
+
+            return null;
+
+        }
+
+        var first = text.charAt(0);
+
+        var last = text.charAt(text.length() - 1);
+
+        // Cheap shape check first, so text values do not throw; also rejects "NaN", "Infinity" and "1f"
+        if (!(first >= '0' && first <= '9' || first == '-' || first == '+' || first == '.') || !(last >= '0' && last <= '9' || last == '.')) {
+
+            return null;
+
+        }
+
+        try {
+
+            var result = Double.parseDouble(text);
+
+            return Double.isFinite(result) ? result : null;
+
+        } catch (NumberFormatException e) {
+
+            return null;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,524 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Tuple;
+import org.nmssever.tsdb.RecentSeriesStore;
+import org.nmssever.util.Constants;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads one metric of one device over a time window, either as raw points or aggregated into fixed
+ * buckets.
+ * <p>
+ * Windows that start inside the range covered by the {@link RecentSeriesStore} are answered from memory.
+ * Older windows are read from {@code metricsamples} with range scans of the
+ * {@code (discovery_profile_id, metric_id, timestamp)} index that never touch the JSONB samples, or, when
+ * the bucket width is a multiple of a rollup resolution that covers the window, from the coarsest such
+ * {@code metricrollups_*} table plus the device's open bucket held by the {@link MetricRollupAggregator}.
+ * A rollup table covers a window that starts within its retention and not before the first bucket it
+ * holds in full, a watermark kept per resolution in {@code metricrollupwatermarks}; until the watermarks
+ * are loaded no rollup is used. The response names the source and resolution that answered it.
+ */
+public class MetricQueryService {
+
+    private static final String SELECT_POINTS = """
+                SELECT timestamp, value FROM metricsamples
+                WHERE discovery_profile_id = $1 AND metric_id = $2 AND timestamp >= $3 AND timestamp < $4
+                ORDER BY timestamp LIMIT $5
+            """;
+
+    private static final String SELECT_BUCKETS = """
+                SELECT to_timestamp(floor(extract(epoch FROM timestamp) / $5::int) * $5::int) AT TIME ZONE 'UTC' AS bucket,
+                       avg(value) AS avg, min(value) AS min, max(value) AS max, count(*) AS samples,
+                       (array_agg(value ORDER BY timestamp DESC))[1] AS last
+                FROM metricsamples
+                WHERE discovery_profile_id = $1 AND metric_id = $2 AND timestamp >= $3 AND timestamp < $4
+                GROUP BY bucket ORDER BY bucket LIMIT $6
+            """;
+
+    private static final String SELECT_ROLLUP_BUCKETS = """
+                SELECT to_timestamp(floor(extract(epoch FROM timestamp) / $5::int) * $5::int) AT TIME ZONE 'UTC' AS bucket,
+                       sum(sum) / sum(count) AS avg, min(min) AS min, max(max) AS max, sum(count) AS samples,
+                       (array_agg(last ORDER BY timestamp DESC))[1] AS last
+                FROM %s
+                WHERE discovery_profile_id = $1 AND metric_id = $2 AND timestamp >= $3 AND timestamp < $4
+                GROUP BY bucket ORDER BY bucket LIMIT $6
+            """;
+
+    private static final String INSERT_WATERMARK = """
+                INSERT INTO metricrollupwatermarks (resolution, populated_since) VALUES ($1, $2)
+                ON CONFLICT (resolution) DO NOTHING
+            """;
+
+    private static final String SELECT_WATERMARKS = "SELECT resolution, populated_since FROM metricrollupwatermarks";
+
+    private static final MetricRollupAggregator.Resolution[] COARSEST_FIRST = {
+            MetricRollupAggregator.Resolution.ONE_HOUR,
+            MetricRollupAggregator.Resolution.FIVE_MINUTES,
+            MetricRollupAggregator.Resolution.ONE_MINUTE
+    };
+
+    private final Pool pool;
+
+    private final MetricDictionary dictionary;
+
+    private final RecentSeriesStore recentStore;
+
+    private final MetricRollupAggregator rollups;
+
+    private final Map<MetricRollupAggregator.Resolution, Long> rollupRetentionHours;
+
+    private final Map<MetricRollupAggregator.Resolution, LocalDateTime> rollupPopulatedSince = new EnumMap<>(MetricRollupAggregator.Resolution.class);
+
+    /**
+     * Instantiates a new Metric query service.
+     *
+     * @param pool                 the pool
+     * @param dictionary           the metric name dictionary
+     * @param recentStore          the in-memory store of the recent window
+     * @param rollups              the rollup aggregator holding the open buckets
+     * @param rollupRetentionHours the retention of every rollup resolution, 0 for forever
+     */
+    public MetricQueryService(Pool pool, MetricDictionary dictionary, RecentSeriesStore recentStore,
+                              MetricRollupAggregator rollups, Map<MetricRollupAggregator.Resolution, Long> rollupRetentionHours) {
+
+        this.pool = pool;
+
+        this.dictionary = dictionary;
+
+        this.recentStore = recentStore;
+
+        this.rollups = rollups;
+
+        this.rollupRetentionHours = rollupRetentionHours;
+
+    }
+
+    /**
+     * Records, for every resolution seen for the first time, the start of its next bucket as the time its
+     * rollup table is filled from, and loads the watermarks of all resolutions. The bucket open at startup
+     * may lack the points received before, so it is never counted as filled.
+     *
+     * @return the future
+     */
+    public Future<Void> loadRollupWatermarks() {
+
+        var nowMillis = RecentSeriesStore.toMillis(LocalDateTime.now());
+
+        List<Tuple> batch = new ArrayList<>();
+
+        for (var resolution : MetricRollupAggregator.Resolution.values()) {
+
+            var widthMs = resolution.seconds() * 1000L;
+
+            batch.add(Tuple.of(resolution.label(), RecentSeriesStore.toLocalDateTime((Math.floorDiv(nowMillis, widthMs) + 1) * widthMs)));
+
+        }
+
+        return pool.preparedQuery(INSERT_WATERMARK).executeBatch(batch)
+
+                .compose(v -> pool.query(SELECT_WATERMARKS).execute())
+
+                .onSuccess(rows -> rows.forEach(row -> {
+
+                    for (var resolution : MetricRollupAggregator.Resolution.values()) {
+
+                        if (resolution.label().equals(row.getString("resolution"))) {
+
+                            rollupPopulatedSince.put(resolution, row.getLocalDateTime("populated_since"));
+
+                        }
+
+                    }
+
+                }))
+
+                .mapEmpty();
+
+    }
+
+    /**
+     * Returns a metric series.
+     * <p>
+     * The request carries discovery_profile_id and metric, and optionally from and to (ISO local
+     * date-times, to is exclusive) and either step, a bucket width in seconds, or points, the most buckets
+     * wanted. With points the step is the window divided by points, rounded up to a multiple of the
+     * coarsest rollup resolution that fits. Without either the raw points are returned, otherwise avg,
+     * min, max, last and the sample count of every bucket. At most METRIC_SERIES_MAX_POINTS points or
+     * buckets are returned, oldest first.
+     *
+     * @param request the request
+     * @return the series, or a failed future for an invalid window, or with a 404 {@link ReplyException} for an
+     * unknown metric
+     */
+    public Future<JsonObject> series(JsonObject request) {
+
+        var discoveryProfileID = request.getInteger("discovery_profile_id");
+
+        var metric = request.getString("metric");
+
+        var metricId = metric == null ? null : dictionary.id(metric);
+
+        if (metricId == null) {
+
+            return Future.failedFuture(new ReplyException(ReplyFailure.RECIPIENT_FAILURE, 404, "Unknown metric: " + metric));
+
+        }
+
+        LocalDateTime to;
+
+        LocalDateTime from;
+
+        try {
+
+            to = request.getString("to") != null ? LocalDateTime.parse(request.getString("to")) : LocalDateTime.now().plusSeconds(1);
+
+            from = request.getString("from") != null ? LocalDateTime.parse(request.getString("from")) : to.minusHours(Constants.PROVISIONED_DATA_DEFAULT_WINDOW_HOURS);
+
+        } catch (RuntimeException e) {
+
+            return Future.failedFuture("Invalid time window: " + e.getMessage());
+
+        }
+
+        var requestedStep = request.getInteger("step");
+
+        var maxPoints = request.getInteger("points");
+
+        Integer step = requestedStep == null && maxPoints != null ? Integer.valueOf(stepForPoints(from, to, maxPoints)) : requestedStep;
+
+        var response = new JsonObject()
+                .put("discovery_profile_id", discoveryProfileID)
+                .put("metric", metric)
+                .put("from", from.toString())
+                .put("to", to.toString());
+
+        var fromMillis = RecentSeriesStore.toMillis(from);
+
+        if (fromMillis >= recentStore.coveredFrom()) {
+
+            var toMillis = RecentSeriesStore.toMillis(to);
+
+            response.put("source", "memory").put("resolution", "raw");
+
+            return Future.succeededFuture(step == null
+                    ? memoryPoints(discoveryProfileID, metricId, fromMillis, toMillis, response)
+                    : memoryBuckets(discoveryProfileID, metricId, fromMillis, toMillis, step, response));
+
+        }
+
+        var resolution = step == null ? null : rollupResolution(step, from);
+
+        if (resolution != null) {
+
+            return rollupBuckets(discoveryProfileID, metricId, from, to, step, resolution, response);
+
+        }
+
+        response.put("source", "database").put("resolution", "raw");
+
+        if (step == null) {
+
+            return pool.preparedQuery(SELECT_POINTS)
+
+                    .execute(Tuple.of(discoveryProfileID, metricId, from, to, Constants.METRIC_SERIES_MAX_POINTS))
+
+                    .map(rows -> {
+
+                        var points = new JsonArray();
+
+                        rows.forEach(row -> points.add(new JsonArray()
+                                .add(row.getLocalDateTime("timestamp").toString())
+                                .add(row.getDouble("value"))));
+
+                        return response.put("count", points.size()).put("points", points);
+
+                    });
+
+        }
+
+        return pool.preparedQuery(SELECT_BUCKETS)
+
+                .execute(Tuple.of(discoveryProfileID, metricId, from, to, step, Constants.METRIC_SERIES_MAX_POINTS))
+
+                .map(rows -> {
+
+                    var buckets = new JsonArray();
+
+                    rows.forEach(row -> buckets.add(new JsonObject()
+                            .put("timestamp", row.getLocalDateTime("bucket").toString())
+                            .put("avg", row.getDouble("avg"))
+                            .put("min", row.getDouble("min"))
+                            .put("max", row.getDouble("max"))
+                            .put("samples", row.getLong("samples"))
+                            .put("last", row.getDouble("last"))));
+
+                    return response.put("step", step).put("count", buckets.size()).put("buckets", buckets);
+
+                });
+
+    }
+
+    /**
+     * Returns the bucket width that yields at most maxPoints buckets over the window, rounded up to a
+     * multiple of the coarsest rollup resolution not wider than it that covers the window.
+     */
+    private int stepForPoints(LocalDateTime from, LocalDateTime to, int maxPoints) {
+
+        var seconds = Math.max(1, Duration.between(from, to).toSeconds());
+
+        var step = (int) Math.min(Constants.METRIC_SERIES_MAX_STEP_SECONDS, Math.max(1, (seconds + maxPoints - 1) / maxPoints));
+
+        for (var resolution : COARSEST_FIRST) {
+
+            if (resolution.seconds() <= step && covers(resolution, from)) {
+
+                return (step + resolution.seconds() - 1) / resolution.seconds() * resolution.seconds();
+
+            }
+
+        }
+
+        return step;
+
+    }
+
+    /**
+     * Returns the coarsest rollup resolution that divides the step and covers the window from from.
+     */
+    private MetricRollupAggregator.Resolution rollupResolution(int step, LocalDateTime from) {
+
+        for (var resolution : COARSEST_FIRST) {
+
+            if (step % resolution.seconds() == 0 && covers(resolution, from)) {
+
+                return resolution;
+
+            }
+
+        }
+
+        return null;
+
+    }
+
+    private boolean covers(MetricRollupAggregator.Resolution resolution, LocalDateTime from) {
+
+        var populatedSince = rollupPopulatedSince.get(resolution);
+
+        // Buckets a late point was left out of are answered from the raw samples
+        if (populatedSince == null || from.isBefore(populatedSince) || RecentSeriesStore.toMillis(from) < rollups.completeFrom(resolution)) {
+
+            return false;
+
+        }
+
+        var retentionHours = rollupRetentionHours.getOrDefault(resolution, 0L);
+
+        return retentionHours <= 0 || !from.isBefore(LocalDateTime.now().minusHours(retentionHours));
+
+    }
+
+    private Future<JsonObject> rollupBuckets(int discoveryProfileID, int metricId, LocalDateTime from, LocalDateTime to, int step,
+                                             MetricRollupAggregator.Resolution resolution, JsonObject response) {
+
+        // Whole rollup buckets only, so the first bucket is not cut at from
+        var widthMs = resolution.seconds() * 1000L;
+
+        var alignedFrom = Math.floorDiv(RecentSeriesStore.toMillis(from), widthMs) * widthMs;
+
+        var toMillis = RecentSeriesStore.toMillis(to);
+
+        return pool.preparedQuery(SELECT_ROLLUP_BUCKETS.formatted(resolution.table()))
+
+                .execute(Tuple.of(discoveryProfileID, metricId, RecentSeriesStore.toLocalDateTime(alignedFrom), to, step, Constants.METRIC_SERIES_MAX_POINTS))
+
+                .map(rows -> {
+
+                    var buckets = new JsonArray();
+
+                    rows.forEach(row -> buckets.add(new JsonObject()
+                            .put("timestamp", row.getLocalDateTime("bucket").toString())
+                            .put("avg", row.getDouble("avg"))
+                            .put("min", row.getDouble("min"))
+                            .put("max", row.getDouble("max"))
+                            .put("samples", row.getLong("samples"))
+                            .put("last", row.getDouble("last"))));
+
+                    var open = rollups.openBucket(discoveryProfileID, metricId, resolution);
+
+                    if (open != null && open.start() >= alignedFrom && open.start() < toMillis) {
+
+                        mergeOpenBucket(buckets, open, step * 1000L);
+
+                    }
+
+                    return response
+                            .put("source", "database")
+                            .put("resolution", resolution.label())
+                            .put("step", step)
+                            .put("count", buckets.size())
+                            .put("buckets", buckets);
+
+                });
+
+    }
+
+    /**
+     * Adds the not yet written open bucket to the newest bucket, or appends it as a new one.
+     */
+    private static void mergeOpenBucket(JsonArray buckets, MetricRollupAggregator.OpenBucket open, long stepMillis) {
+
+        var timestamp = RecentSeriesStore.toLocalDateTime(Math.floorDiv(open.start(), stepMillis) * stepMillis).toString();
+
+        var newest = buckets.isEmpty() ? null : buckets.getJsonObject(buckets.size() - 1);
+
+        if (newest != null && timestamp.equals(newest.getString("timestamp"))) {
+
+            var samples = newest.getLong("samples");
+
+            newest.put("avg", (newest.getDouble("avg") * samples + open.sum()) / (samples + open.count()))
+                    .put("min", Math.min(newest.getDouble("min"), open.min()))
+                    .put("max", Math.max(newest.getDouble("max"), open.max()))
+                    .put("samples", samples + open.count())
+                    .put("last", open.last());
+
+        } else if (buckets.size() < Constants.METRIC_SERIES_MAX_POINTS) {
+
+            buckets.add(new JsonObject()
+                    .put("timestamp", timestamp)
+                    .put("avg", open.sum() / open.count())
+                    .put("min", open.min())
+                    .put("max", open.max())
+                    .put("samples", (long) open.count())
+                    .put("last", open.last()));
+
+        }
+
+    }
+
+    private JsonObject memoryPoints(int discoveryProfileID, int metricId, long from, long to, JsonObject response) {
+
+        var points = new JsonArray();
+
+        recentStore.query(discoveryProfileID, metricId, from, to, (timestamp, value) -> {
+
+            if (points.size() < Constants.METRIC_SERIES_MAX_POINTS) {
+
+                points.add(new JsonArray()
+                        .add(RecentSeriesStore.toLocalDateTime(timestamp).toString())
+                        .add(value));
+
+            }
+
+        });
+
+        return response.put("count", points.size()).put("points", points);
+
+    }
+
+    private JsonObject memoryBuckets(int discoveryProfileID, int metricId, long from, long to, int step, JsonObject response) {
+
+        var buckets = new JsonArray();
+
+        var bucket = new BucketAggregator(step * 1000L, buckets);
+
+        recentStore.query(discoveryProfileID, metricId, from, to, bucket::add);
+
+        bucket.flush();
+
+        return response.put("step", step).put("count", buckets.size()).put("buckets", buckets);
+
+    }
+
+    /**
+     * Aggregates ordered points into the same epoch-aligned buckets as SELECT_BUCKETS.
+     */
+    private static final class BucketAggregator {
+
+        private final long stepMillis;
+
+        private final JsonArray buckets;
+
+        private long start = Long.MIN_VALUE;
+
+        private double sum;
+
+        private double min;
+
+        private double max;
+
+        private long samples;
+
+        private double last;
+
+        BucketAggregator(long stepMillis, JsonArray buckets) {
+
+            this.stepMillis = stepMillis;
+
+            this.buckets = buckets;
+
+        }
+
+        void add(long timestamp, double value) {
+
+            var bucketStart = Math.floorDiv(timestamp, stepMillis) * stepMillis;
+
+            if (bucketStart != start) {
+
+                flush();
+
+                start = bucketStart;
+
+                sum = 0;
+
+                min = Double.POSITIVE_INFINITY;
+
+                max = Double.NEGATIVE_INFINITY;
+
+            }
+
+            sum += value;
+
+            min = Math.min(min, value);
+
+            max = Math.max(max, value);
+
+            last = value;
+
+            samples++;
+
+        }
+
+        void flush() {
+
+            if (samples > 0 && buckets.size() < Constants.METRIC_SERIES_MAX_POINTS) {
+
+                buckets.add(new JsonObject()
+                        .put("timestamp", RecentSeriesStore.toLocalDateTime(start).toString())
+                        .put("avg", sum / samples)
+                        .put("min", min)
+                        .put("max", max)
+                        .put("samples", samples)
+                        .put("last", last));
+
+            }
+
+            samples = 0;
+
+        }
+
+    }
+
+}
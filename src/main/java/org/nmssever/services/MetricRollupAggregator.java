@@ -0,0 +1,498 @@
+package org.nmssever.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Tuple;
+import org.nmssever.metrics.AppMetrics;
+import org.nmssever.tsdb.RecentSeriesStore;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ingest stage that rolls the flattened metric values up into 1 minute, 5 minute and 1 hour buckets, so
+ * long-range charts read a few aggregated rows instead of every raw sample.
+ * <p>
+ * Each device keeps one open bucket per resolution holding, per metric id, the min, max, sum, count and
+ * last value in primitive arrays. A bucket is closed when a sample of the device falls into a later
+ * bucket, or by the periodic sweep once its end has passed, and is queued to the resolution's writer as
+ * one row whose per-metric aggregates are bound as arrays and expanded with {@code unnest}. The insert
+ * merges into an existing row, so a bucket reopened after a restart is combined rather than duplicated.
+ * Points older than a device's open bucket are left out of it and counted, once per resolution, in
+ * {@code nms.rollup.late}; {@link #completeFrom(Resolution)} then moves past them, so queries over the
+ * buckets they missed read the raw samples instead. Must be used from the owning verticle's context.
+ */
+public class MetricRollupAggregator {
+
+    /**
+     * Time after the end of a bucket before the sweep closes it, for samples that waited on metric
+     * name registration.
+     */
+    private static final long CLOSE_GRACE_MS = 5000;
+
+    private static final String UPSERT_SQL = """
+                INSERT INTO %s AS r (discovery_profile_id, timestamp, metric_id, min, max, sum, count, last)
+                SELECT $1, $2, m.metric_id, m.min, m.max, m.sum, m.count, m.last
+                FROM unnest($3::int4[], $4::float8[], $5::float8[], $6::float8[], $7::int4[], $8::float8[])
+                    AS m(metric_id, min, max, sum, count, last)
+                ON CONFLICT (discovery_profile_id, metric_id, timestamp) DO UPDATE
+                SET min = LEAST(r.min, EXCLUDED.min), max = GREATEST(r.max, EXCLUDED.max),
+                    sum = r.sum + EXCLUDED.sum, count = r.count + EXCLUDED.count, last = EXCLUDED.last
+            """;
+
+    /**
+     * A rollup resolution.
+     */
+    public enum Resolution {
+
+        /**
+         * One minute buckets.
+         */
+        ONE_MINUTE("1m", 60),
+
+        /**
+         * Five minute buckets.
+         */
+        FIVE_MINUTES("5m", 300),
+
+        /**
+         * One hour buckets.
+         */
+        ONE_HOUR("1h", 3600);
+
+        private final String label;
+
+        private final int seconds;
+
+        Resolution(String label, int seconds) {
+
+            this.label = label;
+
+            this.seconds = seconds;
+
+        }
+
+        /**
+         * Gets the label.
+         *
+         * @return the label
+         */
+        public String label() {
+
+            return label;
+
+        }
+
+        /**
+         * Gets the bucket width.
+         *
+         * @return the seconds
+         */
+        public int seconds() {
+
+            return seconds;
+
+        }
+
+        /**
+         * Gets the rollup table.
+         *
+         * @return the table name
+         */
+        public String table() {
+
+            return "metricrollups_" + label;
+
+        }
+
+        /**
+         * Gets the insert statement of the rollup writer.
+         *
+         * @return the sql
+         */
+        public String upsertSql() {
+
+            return UPSERT_SQL.formatted(table());
+
+        }
+
+    }
+
+    /**
+     * The aggregates of one metric in an open bucket.
+     *
+     * @param start the bucket start in store milliseconds
+     * @param min   the minimum
+     * @param max   the maximum
+     * @param sum   the sum
+     * @param count the number of points
+     * @param last  the latest value
+     */
+    public record OpenBucket(long start, double min, double max, double sum, int count, double last) {
+
+    }
+
+    private static final class Bucket {
+
+        private long start = Long.MIN_VALUE;
+
+        private int[] touched = new int[16];
+
+        private int touchedCount;
+
+        private int[] counts = new int[16];
+
+        private double[] min = new double[16];
+
+        private double[] max = new double[16];
+
+        private double[] sum = new double[16];
+
+        private double[] last = new double[16];
+
+        void add(int metricId, double value) {
+
+            if (metricId >= counts.length) {
+
+                var length = Math.max(counts.length * 2, metricId + 1);
+
+                counts = Arrays.copyOf(counts, length);
+
+                min = Arrays.copyOf(min, length);
+
+                max = Arrays.copyOf(max, length);
+
+                sum = Arrays.copyOf(sum, length);
+
+                last = Arrays.copyOf(last, length);
+
+            }
+
+            if (counts[metricId] == 0) {
+
+                if (touchedCount == touched.length) {
+
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+
+                }
+
+                touched[touchedCount++] = metricId;
+
+                min[metricId] = value;
+
+                max[metricId] = value;
+
+                sum[metricId] = 0;
+
+            } else {
+
+                min[metricId] = Math.min(min[metricId], value);
+
+                max[metricId] = Math.max(max[metricId], value);
+
+            }
+
+            sum[metricId] += value;
+
+            last[metricId] = value;
+
+            counts[metricId]++;
+
+        }
+
+    }
+
+    private static final Resolution[] RESOLUTIONS = Resolution.values();
+
+    private final Vertx vertx;
+
+    private final Map<Resolution, SystemDataWriter> writers;
+
+    private final long sweepIntervalMs;
+
+    private final Map<Integer, Bucket[]> devices = new HashMap<>();
+
+    private final Counter lateCounter;
+
+    private final long[] completeFrom = new long[RESOLUTIONS.length];
+
+    private long sweepTimerId = -1;
+
+    private long closedBuckets;
+
+    private long closedAggregates;
+
+    /**
+     * Instantiates a new Metric rollup aggregator.
+     *
+     * @param vertx           the vertx
+     * @param writers         the writer of every resolution's rollup table
+     * @param sweepIntervalMs the interval of the sweep that closes ended buckets
+     */
+    public MetricRollupAggregator(Vertx vertx, Map<Resolution, SystemDataWriter> writers, long sweepIntervalMs) {
+
+        this.vertx = vertx;
+
+        this.writers = writers;
+
+        this.sweepIntervalMs = Math.max(1000, sweepIntervalMs);
+
+        Arrays.fill(completeFrom, Long.MIN_VALUE);
+
+        this.lateCounter = Counter.builder("nms.rollup.late")
+                .description("Metric points left out of a rollup resolution because they predate its open bucket")
+                .register(AppMetrics.registry());
+
+    }
+
+    /**
+     * Starts the sweep timer.
+     */
+    public void start() {
+
+        sweepTimerId = vertx.setPeriodic(sweepIntervalMs, id -> sweep(RecentSeriesStore.toMillis(LocalDateTime.now()) - CLOSE_GRACE_MS));
+
+    }
+
+    /**
+     * Adds a point to the open buckets of its device.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @param metricId           the metric id
+     * @param timestamp          the timestamp in store milliseconds
+     * @param value              the value
+     */
+    public void add(int discoveryProfileID, int metricId, long timestamp, double value) {
+
+        var buckets = devices.get(discoveryProfileID);
+
+        if (buckets == null) {
+
+            buckets = new Bucket[RESOLUTIONS.length];
+
+            for (var i = 0; i < buckets.length; i++) {
+
+                buckets[i] = new Bucket();
+
+            }
+
+            devices.put(discoveryProfileID, buckets);
+
+        }
+
+        for (var i = 0; i < RESOLUTIONS.length; i++) {
+
+            var bucket = buckets[i];
+
+            var widthMs = RESOLUTIONS[i].seconds * 1000L;
+
+            var start = Math.floorDiv(timestamp, widthMs) * widthMs;
+
+            if (start != bucket.start) {
+
+                if (start < bucket.start) {
+
+                    lateCounter.increment();
+
+                    // The point's bucket is already written, so nothing before the open one is complete
+                    completeFrom[i] = Math.max(completeFrom[i], bucket.start);
+
+                    continue;
+
+                }
+
+                close(discoveryProfileID, RESOLUTIONS[i], bucket);
+
+                bucket.start = start;
+
+            }
+
+            bucket.add(metricId, value);
+
+        }
+
+    }
+
+    /**
+     * Gets the oldest bucket start from which the rollup rows of a resolution hold every point, which is
+     * later than any bucket a late point was left out of.
+     *
+     * @param resolution the resolution
+     * @return the bucket start in store milliseconds, or {@link Long#MIN_VALUE} if no point was late
+     */
+    public long completeFrom(Resolution resolution) {
+
+        return completeFrom[resolution.ordinal()];
+
+    }
+
+    /**
+     * Gets the aggregates of a metric in the open bucket of a device, which are not in the rollup table yet.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @param metricId           the metric id
+     * @param resolution         the resolution
+     * @return the open bucket, or null if it holds no point of the metric
+     */
+    public OpenBucket openBucket(int discoveryProfileID, int metricId, Resolution resolution) {
+
+        var buckets = devices.get(discoveryProfileID);
+
+        if (buckets == null) {
+
+            return null;
+
+        }
+
+        var bucket = buckets[resolution.ordinal()];
+
+        if (metricId >= bucket.counts.length || bucket.counts[metricId] == 0) {
+
+            return null;
+
+        }
+
+        return new OpenBucket(bucket.start, bucket.min[metricId], bucket.max[metricId], bucket.sum[metricId],
+                bucket.counts[metricId], bucket.last[metricId]);
+
+    }
+
+    /**
+     * Closes every open bucket that ended before the given time.
+     *
+     * @param before the time in store milliseconds; Long.MAX_VALUE closes every bucket
+     */
+    public void sweep(long before) {
+
+        devices.forEach((discoveryProfileID, buckets) -> {
+
+            for (var i = 0; i < RESOLUTIONS.length; i++) {
+
+                var bucket = buckets[i];
+
+                if (bucket.touchedCount > 0 && (before == Long.MAX_VALUE || bucket.start + RESOLUTIONS[i].seconds * 1000L <= before)) {
+
+                    close(discoveryProfileID, RESOLUTIONS[i], bucket);
+
+                }
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Stops the sweep and queues every open bucket, so the writers can flush them before shutdown.
+     */
+    public void close() {
+
+        vertx.cancelTimer(sweepTimerId);
+
+        sweep(Long.MAX_VALUE);
+
+    }
+
+    /**
+     * Forgets a device without writing its open buckets.
+     *
+     * @param discoveryProfileID the discovery profile id
+     */
+    public void remove(Integer discoveryProfileID) {
+
+        devices.remove(discoveryProfileID);
+
+    }
+
+    private void close(int discoveryProfileID, Resolution resolution, Bucket bucket) {
+
+        var size = bucket.touchedCount;
+
+        if (size == 0) {
+
+            return;
+
+        }
+
+        var ids = new Integer[size];
+
+        var min = new Double[size];
+
+        var max = new Double[size];
+
+        var sum = new Double[size];
+
+        var counts = new Integer[size];
+
+        var last = new Double[size];
+
+        for (var i = 0; i < size; i++) {
+
+            var metricId = bucket.touched[i];
+
+            ids[i] = metricId;
+
+            min[i] = bucket.min[metricId];
+
+            max[i] = bucket.max[metricId];
+
+            sum[i] = bucket.sum[metricId];
+
+            counts[i] = bucket.counts[metricId];
+
+            last[i] = bucket.last[metricId];
+
+            bucket.counts[metricId] = 0;
+
+        }
+
+        bucket.touchedCount = 0;
+
+        closedBuckets++;
+
+        closedAggregates += size;
+
+        writers.get(resolution).enqueue(Tuple.tuple()
+                .addInteger(discoveryProfileID)
+                .addLocalDateTime(RecentSeriesStore.toLocalDateTime(bucket.start))
+                .addArrayOfInteger(ids)
+                .addArrayOfDouble(min)
+                .addArrayOfDouble(max)
+                .addArrayOfDouble(sum)
+                .addArrayOfInteger(counts)
+                .addArrayOfDouble(last));
+
+    }
+
+    /**
+     * Returns a snapshot of the aggregator statistics.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        var open = 0;
+
+        for (var buckets : devices.values()) {
+
+            for (var bucket : buckets) {
+
+                open += bucket.touchedCount;
+
+            }
+
+        }
+
+        return new JsonObject()
+                .put("devices", devices.size())
+                .put("openAggregates", open)
+                .put("closedBuckets", closedBuckets)
+                .put("closedAggregates", closedAggregates)
+                .put("lateUpdates", (long) lateCounter.count());
+
+    }
+
+}
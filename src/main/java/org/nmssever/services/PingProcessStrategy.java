@@ -0,0 +1,76 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.WorkerExecutor;
+import org.nmssever.util.IpAddress;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the external {@code ping} binary with a single echo request on a dedicated worker pool, so the
+ * fork and the wait never happen on an event loop. The exit code decides reachability. Only valid IP
+ * literals are passed to the process, so a target can never be read as a {@code ping} option.
+ */
+public class PingProcessStrategy implements ReachabilityStrategy {
+
+    private final WorkerExecutor workerExecutor;
+
+    /**
+     * Instantiates a new Ping process strategy.
+     *
+     * @param workerExecutor the worker pool the process is run on
+     */
+    public PingProcessStrategy(WorkerExecutor workerExecutor) {
+
+        this.workerExecutor = workerExecutor;
+
+    }
+
+    @Override
+    public Future<Boolean> probe(String ip, long deadlineNanos) {
+
+        if (!IpAddress.isValid(ip)) {
+
+            return Future.failedFuture(new IllegalArgumentException("Invalid IP address: " + ip));
+
+        }
+
+        return workerExecutor.executeBlocking(() -> {
+
+            var timeoutMs = ReachabilityStrategy.remainingMs(deadlineNanos);
+
+            if (timeoutMs <= 0) {
+
+                return false;
+
+            }
+
+            var waitSeconds = String.valueOf(Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutMs)));
+
+            var process = new ProcessBuilder("ping", "-c", "1", "-W", waitSeconds, ip)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+
+            if (!process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+
+                process.destroyForcibly();
+
+                return false;
+
+            }
+
+            return process.exitValue() == 0;
+
+        }, false);
+
+    }
+
+    @Override
+    public String name() {
+
+        return "ping";
+
+    }
+
+}
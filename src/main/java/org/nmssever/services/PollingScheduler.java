@@ -0,0 +1,349 @@
+package org.nmssever.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.messages.PollingRequest;
+import org.nmssever.metrics.AppMetrics;
+import org.nmssever.util.HashedTimingWheel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Per-device polling scheduler driven by a {@link HashedTimingWheel}.
+ * <p>
+ * Each device is polled on its own interval. Its slot within the interval is a deterministic function of
+ * the device id (Fibonacci hashing) aligned to wall-clock epoch time, so slots are spread evenly across
+ * the interval and stay stable across restarts and resyncs. The wheel itself runs on the monotonic clock,
+ * so a wall-clock step only moves a device's slot when it is next rescheduled. The next poll is always
+ * computed from the previous slot rather than from the actual fire time, so a late poll does not shift the
+ * device permanently. Each wheel tick is timed in {@code nms.polling.tick} and the delay of every poll
+ * behind its slot in {@code nms.polling.lag}. Must be used from a single Vert.x context.
+ */
+public class PollingScheduler {
+
+    private static final long TICK_MS = 100;
+
+    private static final int WHEEL_SIZE = 2048;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private static final long STATS_LOG_INTERVAL_MS = 60000;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(PollingScheduler.class);
+
+    private final Vertx vertx;
+
+    private final Consumer<PollingRequest> pollAction;
+
+    private final HashedTimingWheel<ScheduledDevice> wheel = new HashedTimingWheel<>(TICK_MS, WHEEL_SIZE, nowMs());
+
+    private final Map<Integer, ScheduledDevice> devices = new HashMap<>();
+
+    private final Timer tickDuration;
+
+    private final Timer lagTimer;
+
+    private final Counter skippedSlotCounter;
+
+    private long tickTimerId = -1;
+
+    private long statsTimerId = -1;
+
+    private long polls;
+
+    private long totalLagMs;
+
+    private long maxLagMs;
+
+    private long skippedSlots;
+
+    /**
+     * Instantiates a new Polling scheduler.
+     *
+     * @param vertx      the vertx
+     * @param pollAction receives the polling request of each device when its slot comes up
+     */
+    public PollingScheduler(Vertx vertx, Consumer<PollingRequest> pollAction) {
+
+        this.vertx = vertx;
+
+        this.pollAction = pollAction;
+
+        var registry = AppMetrics.registry();
+
+        this.tickDuration = Timer.builder("nms.polling.tick")
+                .description("Time to fire every poll due in one wheel tick")
+                .register(registry);
+
+        this.lagTimer = Timer.builder("nms.polling.lag")
+                .description("Delay between a device's polling slot and the poll")
+                .register(registry);
+
+        this.skippedSlotCounter = Counter.builder("nms.polling.skipped.slots")
+                .description("Polling slots skipped because the scheduler fell behind")
+                .register(registry);
+
+        Gauge.builder("nms.polling.devices", devices, Map::size)
+                .description("Devices on the polling schedule")
+                .register(registry);
+
+    }
+
+    /**
+     * Starts the wheel and stats timers.
+     */
+    public void start() {
+
+        tickTimerId = vertx.setPeriodic(TICK_MS, id -> tickDuration.record(() -> wheel.advance(nowMs(), this::fire)));
+
+        statsTimerId = vertx.setPeriodic(STATS_LOG_INTERVAL_MS, id -> {
+
+            LOGGER.info("Polling scheduler stats: " + stats().encode());
+
+            resetWindow();
+
+        });
+
+    }
+
+    /**
+     * Adds a device or updates its interval and polling request.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @param intervalMs         the polling interval
+     * @param request            the polling request sent to the ZMQ plugin
+     */
+    public void schedule(int discoveryProfileID, long intervalMs, PollingRequest request) {
+
+        var existing = devices.get(discoveryProfileID);
+
+        if (existing != null && existing.intervalMs == intervalMs) {
+
+            existing.request = request;
+
+            return;
+
+        }
+
+        if (existing != null) {
+
+            existing.timeout.cancel();
+
+        }
+
+        var device = new ScheduledDevice(discoveryProfileID, intervalMs, request);
+
+        var now = nowMs();
+
+        var epochMs = System.currentTimeMillis();
+
+        device.slotMs = now + firstSlot(discoveryProfileID, intervalMs, epochMs) - epochMs;
+
+        device.timeout = wheel.schedule(device, device.slotMs);
+
+        devices.put(discoveryProfileID, device);
+
+    }
+
+    /**
+     * Removes a device from the schedule.
+     *
+     * @param discoveryProfileID the discovery profile id
+     */
+    public void unschedule(int discoveryProfileID) {
+
+        var device = devices.remove(discoveryProfileID);
+
+        if (device != null) {
+
+            device.timeout.cancel();
+
+        }
+
+    }
+
+    /**
+     * Removes every device whose id is not in the given set.
+     *
+     * @param activeIds the ids to keep
+     */
+    public void retainAll(Set<Integer> activeIds) {
+
+        devices.keySet().stream()
+                .filter(id -> !activeIds.contains(id))
+                .toList()
+                .forEach(this::unschedule);
+
+    }
+
+    private void fire(ScheduledDevice device) {
+
+        if (devices.get(device.discoveryProfileID) != device) {
+
+            return;
+
+        }
+
+        var now = nowMs();
+
+        var lag = Math.max(0, now - device.slotMs);
+
+        device.lastLagMs = lag;
+
+        polls++;
+
+        totalLagMs += lag;
+
+        maxLagMs = Math.max(maxLagMs, lag);
+
+        lagTimer.record(lag, TimeUnit.MILLISECONDS);
+
+        try {
+
+            pollAction.accept(device.request);
+
+        } catch (Exception e) {
+
+            LOGGER.error("Polling action failed for profile: " + device.discoveryProfileID, e);
+
+        }
+
+        var next = device.slotMs + device.intervalMs;
+
+        if (next <= now) {
+
+            var missed = (now - next) / device.intervalMs + 1;
+
+            skippedSlots += missed;
+
+            skippedSlotCounter.increment(missed);
+
+            next += missed * device.intervalMs;
+
+        }
+
+        device.slotMs = next;
+
+        device.timeout = wheel.schedule(device, next);
+
+    }
+
+    /**
+     * Returns the first slot at or after {@code nowMs} for a device.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @param intervalMs         the polling interval
+     * @param nowMs              the current epoch milliseconds
+     * @return the slot
+     */
+    static long firstSlot(int discoveryProfileID, long intervalMs, long nowMs) {
+
+        var fraction = ((discoveryProfileID * GOLDEN_GAMMA) >>> 11) * 0x1.0p-53;
+
+        var offset = (long) (fraction * intervalMs);
+
+        var slot = Math.floorDiv(nowMs, intervalMs) * intervalMs + offset;
+
+        return slot < nowMs ? slot + intervalMs : slot;
+
+    }
+
+    /**
+     * Returns the scheduler statistics for the current reporting window.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        return new JsonObject()
+                .put("scheduledDevices", devices.size())
+                .put("polls", polls)
+                .put("avgLagMs", polls == 0 ? 0 : (double) totalLagMs / polls)
+                .put("maxLagMs", maxLagMs)
+                .put("skippedSlots", skippedSlots);
+
+    }
+
+    /**
+     * Returns the lag of the last poll of a device.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @return the lag in ms, or -1 if the device is not scheduled
+     */
+    public long getLastLagMs(int discoveryProfileID) {
+
+        var device = devices.get(discoveryProfileID);
+
+        return device == null ? -1 : device.lastLagMs;
+
+    }
+
+    private void resetWindow() {
+
+        polls = 0;
+
+        totalLagMs = 0;
+
+        maxLagMs = 0;
+
+        skippedSlots = 0;
+
+    }
+
+    /**
+     * Stops the timers and clears the schedule.
+     */
+    public void stop() {
+
+        vertx.cancelTimer(tickTimerId);
+
+        vertx.cancelTimer(statsTimerId);
+
+        devices.values().forEach(device -> device.timeout.cancel());
+
+        devices.clear();
+
+    }
+
+    private static long nowMs() {
+
+        return System.nanoTime() / 1_000_000;
+
+    }
+
+    private static final class ScheduledDevice {
+
+        private final int discoveryProfileID;
+
+        private final long intervalMs;
+
+        private PollingRequest request;
+
+        private long slotMs;
+
+        private long lastLagMs;
+
+        private HashedTimingWheel.Timeout<ScheduledDevice> timeout;
+
+        private ScheduledDevice(int discoveryProfileID, long intervalMs, PollingRequest request) {
+
+            this.discoveryProfileID = discoveryProfileID;
+
+            this.intervalMs = intervalMs;
+
+            this.request = request;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Tuple;
+import org.nmssever.util.JsonArrayStreamer;
+
+/**
+ * Streams the profile list endpoints straight from a database cursor to the HTTP response.
+ * <p>
+ * Used instead of the event bus round trip when a client asks for {@code ?stream=true}: the event bus
+ * path builds the whole list as one {@code JsonArray} and one string, while this path keeps memory flat
+ * however many rows the inventory has. Rows go through the same queries and mappers as the
+ * {@link UnifiedProfileService} lists, so both paths return the same JSON. The pool should be dedicated
+ * to streaming: each stream holds a connection in an open transaction for as long as the client takes
+ * to read the response.
+ */
+public class ProfileListStreamer {
+
+    private final Pool pool;
+
+    private final int fetchSize;
+
+    /**
+     * Instantiates a new Profile list streamer.
+     *
+     * @param pool      the pool reserved for streaming
+     * @param fetchSize the number of rows fetched per cursor round trip
+     */
+    public ProfileListStreamer(Pool pool, int fetchSize) {
+
+        this.pool = pool;
+
+        this.fetchSize = fetchSize;
+
+    }
+
+    /**
+     * Streams all credential profiles.
+     *
+     * @param response the response
+     * @return the number of rows written
+     */
+    public Future<Long> streamCredentialProfiles(HttpServerResponse response) {
+
+        return JsonArrayStreamer.stream(pool, UnifiedProfileService.SELECT_CREDENTIAL_PROFILES, Tuple.tuple(), fetchSize, response,
+                UnifiedProfileService::credentialRowToJson);
+
+    }
+
+    /**
+     * Streams all discovery profiles.
+     *
+     * @param response the response
+     * @return the number of rows written
+     */
+    public Future<Long> streamDiscoveryProfiles(HttpServerResponse response) {
+
+        return JsonArrayStreamer.stream(pool, UnifiedProfileService.SELECT_DISCOVERY_PROFILES + UnifiedProfileService.ORDER_BY_ID, Tuple.tuple(),
+                fetchSize, response, UnifiedProfileService::rowToJson);
+
+    }
+
+    /**
+     * Streams the provisioned discovery profiles.
+     *
+     * @param response the response
+     * @return the number of rows written
+     */
+    public Future<Long> streamProvisionedProfiles(HttpServerResponse response) {
+
+        return JsonArrayStreamer.stream(pool, UnifiedProfileService.SELECT_DISCOVERY_PROFILES + UnifiedProfileService.WHERE_PROVISIONED
+                + UnifiedProfileService.ORDER_BY_ID, Tuple.tuple(), fetchSize, response, UnifiedProfileService::rowToJson);
+
+    }
+
+}
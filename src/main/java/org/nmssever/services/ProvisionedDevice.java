@@ -0,0 +1,31 @@
+package org.nmssever.services;
+
+import org.nmssever.messages.PollingRequest;
+
+/**
+ * A provisioned device with its credentials already decoded.
+ *
+ * @param discoveryProfileId     the discovery profile id
+ * @param ip                     the ip
+ * @param systemType             the system type
+ * @param username               the username
+ * @param password               the password
+ * @param credentialProfileId    the credential profile id
+ * @param pollingIntervalSeconds the polling interval in seconds
+ * @param rowHash                the md5 of the source row as computed by PostgreSQL
+ */
+public record ProvisionedDevice(int discoveryProfileId, String ip, String systemType, String username, String password,
+                                int credentialProfileId, int pollingIntervalSeconds, String rowHash) {
+
+    /**
+     * Builds the polling request sent to the ZMQ plugin.
+     *
+     * @return the polling request
+     */
+    public PollingRequest toPollingRequest() {
+
+        return new PollingRequest(discoveryProfileId, ip, systemType, username, password);
+
+    }
+
+}
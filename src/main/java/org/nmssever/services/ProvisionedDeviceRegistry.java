@@ -0,0 +1,383 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import org.nmssever.util.Constants;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * In-memory registry of provisioned devices.
+ * <p>
+ * The registry is loaded once, then kept current by refreshing single devices when the database verticle
+ * announces a change. Every row carries an md5 computed by PostgreSQL; a periodic reconciliation compares
+ * the aggregate of those hashes with the same aggregate computed in the database and reloads on drift.
+ * Rows that cannot be turned into a device, such as one with an invalid credential config, are kept
+ * aside with their hash so they still count in the local aggregate and do not read as drift.
+ * Must be used from a single Vert.x context.
+ */
+public class ProvisionedDeviceRegistry {
+
+    private static final String SELECT_DEVICES = """
+                SELECT dp.id, dp.ip, dp.credential_profile_id, dp.polling_interval, cp.credentialconfig, cp.system_type,
+                       md5(concat_ws('|', dp.id, dp.ip, dp.credential_profile_id, dp.polling_interval, cp.system_type, cp.credentialconfig::text)) AS row_hash
+                FROM discoveryprofiles dp
+                JOIN credentialprofiles cp ON dp.credential_profile_id = cp.id
+                WHERE dp.provision_status = 1
+            """;
+
+    private static final String SELECT_DEVICE = SELECT_DEVICES + " AND dp.id = $1";
+
+    private static final String SELECT_DEVICES_BY_CREDENTIAL_PROFILE = SELECT_DEVICES + " AND dp.credential_profile_id = $1";
+
+    private static final String SELECT_CHECKSUM =
+            "SELECT COALESCE(md5(string_agg(row_hash, ',' ORDER BY id)), '') AS checksum FROM (" + SELECT_DEVICES + ") devices";
+
+    private final Logger LOGGER = LoggerFactory.getLogger(ProvisionedDeviceRegistry.class);
+
+    private final Pool pool;
+
+    private final Consumer<ProvisionedDevice> onUpsert;
+
+    private final IntConsumer onRemove;
+
+    private final Map<Integer, ProvisionedDevice> devices = new HashMap<>();
+
+    private final Map<Integer, SkippedRow> skippedRows = new HashMap<>();
+
+    /**
+     * A provisioned row left out of the registry.
+     *
+     * @param credentialProfileId the credential profile id
+     * @param rowHash             the row hash
+     */
+    private record SkippedRow(int credentialProfileId, String rowHash) {
+
+    }
+
+    /**
+     * Instantiates a new Provisioned device registry.
+     *
+     * @param pool     the pool
+     * @param onUpsert called when a device is added or changed
+     * @param onRemove called with the discovery profile id when a device is removed
+     */
+    public ProvisionedDeviceRegistry(Pool pool, Consumer<ProvisionedDevice> onUpsert, IntConsumer onRemove) {
+
+        this.pool = pool;
+
+        this.onUpsert = onUpsert;
+
+        this.onRemove = onRemove;
+
+    }
+
+    /**
+     * Loads every provisioned device, replacing the current content.
+     *
+     * @return the future
+     */
+    public Future<Void> load() {
+
+        return pool.preparedQuery(SELECT_DEVICES).execute().map(rows -> {
+
+            var loadedIds = new HashSet<Integer>();
+
+            rows.forEach(row -> loadedIds.add(apply(row)));
+
+            devices.keySet().stream()
+                    .filter(id -> !loadedIds.contains(id))
+                    .toList()
+                    .forEach(this::remove);
+
+            skippedRows.keySet().retainAll(loadedIds);
+
+            LOGGER.info("Provisioned device registry loaded with " + devices.size() + " devices, " + skippedRows.size() + " rows skipped");
+
+            return null;
+
+        });
+
+    }
+
+    /**
+     * Handles a change notification from the database verticle.
+     *
+     * @param notification the notification, carrying a discovery_profile_id or credential_profile_id
+     * @return the future
+     */
+    public Future<Void> onChange(JsonObject notification) {
+
+        var discoveryProfileId = notification.getInteger("discovery_profile_id");
+
+        if (discoveryProfileId != null) {
+
+            return refresh(discoveryProfileId);
+
+        }
+
+        var credentialProfileId = notification.getInteger("credential_profile_id");
+
+        if (credentialProfileId != null) {
+
+            return refreshByCredentialProfile(credentialProfileId);
+
+        }
+
+        return load();
+
+    }
+
+    /**
+     * Re-reads a single device.
+     *
+     * @param discoveryProfileId the discovery profile id
+     * @return the future
+     */
+    public Future<Void> refresh(int discoveryProfileId) {
+
+        return pool.preparedQuery(SELECT_DEVICE).execute(Tuple.of(discoveryProfileId)).map(rows -> {
+
+            if (rows.size() == 0) {
+
+                remove(discoveryProfileId);
+
+                skippedRows.remove(discoveryProfileId);
+
+            } else {
+
+                apply(rows.iterator().next());
+
+            }
+
+            return null;
+
+        });
+
+    }
+
+    private Future<Void> refreshByCredentialProfile(int credentialProfileId) {
+
+        return pool.preparedQuery(SELECT_DEVICES_BY_CREDENTIAL_PROFILE).execute(Tuple.of(credentialProfileId)).map(rows -> {
+
+            var matchedIds = new HashSet<Integer>();
+
+            rows.forEach(row -> matchedIds.add(apply(row)));
+
+            // Devices of the profile that are no longer provisioned or no longer use it
+            devices.values().stream()
+                    .filter(device -> device.credentialProfileId() == credentialProfileId && !matchedIds.contains(device.discoveryProfileId()))
+                    .map(ProvisionedDevice::discoveryProfileId)
+                    .toList()
+                    .forEach(this::remove);
+
+            skippedRows.entrySet().removeIf(entry -> entry.getValue().credentialProfileId() == credentialProfileId && !matchedIds.contains(entry.getKey()));
+
+            return null;
+
+        });
+
+    }
+
+    /**
+     * Compares the registry checksum with the database and reloads on mismatch.
+     *
+     * @return the future
+     */
+    public Future<Void> reconcile() {
+
+        return pool.preparedQuery(SELECT_CHECKSUM).execute().compose(rows -> {
+
+            var databaseChecksum = rows.iterator().next().getString("checksum");
+
+            var localChecksum = checksum();
+
+            if (databaseChecksum.equals(localChecksum)) {
+
+                return Future.succeededFuture();
+
+            }
+
+            LOGGER.warn("Provisioned device registry drifted from the database (local=" + localChecksum + ", database=" + databaseChecksum + "); reloading");
+
+            return load();
+
+        });
+
+    }
+
+    /**
+     * Gets a device.
+     *
+     * @param discoveryProfileId the discovery profile id
+     * @return the device, or null
+     */
+    public ProvisionedDevice get(int discoveryProfileId) {
+
+        return devices.get(discoveryProfileId);
+
+    }
+
+    /**
+     * Gets all devices.
+     *
+     * @return the collection
+     */
+    public Collection<ProvisionedDevice> getAll() {
+
+        return devices.values();
+
+    }
+
+    /**
+     * Returns the number of devices.
+     *
+     * @return the int
+     */
+    public int size() {
+
+        return devices.size();
+
+    }
+
+    /**
+     * Upserts the device of a row, or sets the row aside when it cannot be turned into a device.
+     *
+     * @return the discovery profile id of the row
+     */
+    private int apply(Row row) {
+
+        var device = toDevice(row);
+
+        if (device != null) {
+
+            skippedRows.remove(device.discoveryProfileId());
+
+            upsert(device);
+
+            return device.discoveryProfileId();
+
+        }
+
+        var discoveryProfileId = row.getInteger("id");
+
+        remove(discoveryProfileId);
+
+        skippedRows.put(discoveryProfileId, new SkippedRow(row.getInteger("credential_profile_id"), row.getString("row_hash")));
+
+        return discoveryProfileId;
+
+    }
+
+    private void upsert(ProvisionedDevice device) {
+
+        var previous = devices.put(device.discoveryProfileId(), device);
+
+        if (previous == null || !previous.rowHash().equals(device.rowHash())) {
+
+            onUpsert.accept(device);
+
+        }
+
+    }
+
+    private void remove(int discoveryProfileId) {
+
+        if (devices.remove(discoveryProfileId) != null) {
+
+            onRemove.accept(discoveryProfileId);
+
+        }
+
+    }
+
+    private ProvisionedDevice toDevice(Row row) {
+
+        var discoveryProfileId = row.getInteger("id");
+
+        JsonObject credentialConfig;
+
+        try {
+
+            credentialConfig = new JsonObject(row.getString("credentialconfig"));
+
+        } catch (Exception e) {
+
+            LOGGER.error("Invalid JSON in credential_config for profile: " + discoveryProfileId, e);
+
+            return null;
+
+        }
+
+        var pollingInterval = row.getInteger("polling_interval");
+
+        return new ProvisionedDevice(
+                discoveryProfileId,
+                row.getString("ip"),
+                row.getString("system_type"),
+                credentialConfig.getString("username"),
+                credentialConfig.getString("password"),
+                row.getInteger("credential_profile_id"),
+                pollingInterval != null ? pollingInterval : Constants.DEFAULT_POLLING_INTERVAL_SECONDS,
+                row.getString("row_hash"));
+
+    }
+
+    private String checksum() {
+
+        if (devices.isEmpty() && skippedRows.isEmpty()) {
+
+            return "";
+
+        }
+
+        var rowHashes = new TreeMap<Integer, String>();
+
+        devices.forEach((id, device) -> rowHashes.put(id, device.rowHash()));
+
+        skippedRows.forEach((id, skipped) -> rowHashes.put(id, skipped.rowHash()));
+
+        var joined = new StringBuilder(rowHashes.size() * 33);
+
+        rowHashes.values().forEach(rowHash -> {
+
+            if (!joined.isEmpty()) {
+
+                joined.append(',');
+
+            }
+
+            joined.append(rowHash);
+
+        });
+
+        try {
+
+            var digest = MessageDigest.getInstance("MD5").digest(joined.toString().getBytes(StandardCharsets.UTF_8));
+
+            return HexFormat.of().formatHex(digest);
+
+        } catch (NoSuchAlgorithmException e) {
+
+            throw new IllegalStateException(e);
+
+        }
+
+    }
+
+}
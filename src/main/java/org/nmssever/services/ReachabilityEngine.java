@@ -0,0 +1,186 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.util.ConcurrencyLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous reachability checks with bounded concurrency and a hard timeout per check.
+ * <p>
+ * Strategies are tried in order until one reports the host reachable. The caller gets a timeout result
+ * once a check's budget has passed, but the check keeps its permit of the limiter until its probes have
+ * actually completed, so a batch of thousands of addresses never has more than {@code maxConcurrent}
+ * probes queued or running at once. Probes receive an absolute deadline, and work still queued on a
+ * worker pool when it passes is skipped. Must be used from a single Vert.x context.
+ */
+public class ReachabilityEngine {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(ReachabilityEngine.class);
+
+    private final Vertx vertx;
+
+    private final List<ReachabilityStrategy> strategies;
+
+    private final ConcurrencyLimiter limiter;
+
+    private final long timeoutMs;
+
+    /**
+     * Instantiates a new Reachability engine.
+     *
+     * @param vertx         the vertx
+     * @param strategies    the strategies, in the order they are tried
+     * @param maxConcurrent the maximum number of checks running at once
+     * @param timeoutMs     the time budget of a single check across all strategies
+     */
+    public ReachabilityEngine(Vertx vertx, List<ReachabilityStrategy> strategies, int maxConcurrent, long timeoutMs) {
+
+        this.vertx = vertx;
+
+        this.strategies = List.copyOf(strategies);
+
+        this.limiter = new ConcurrencyLimiter(maxConcurrent);
+
+        this.timeoutMs = timeoutMs;
+
+    }
+
+    /**
+     * Checks a single host.
+     *
+     * @param ip the ip
+     * @return the result, with ip, isReachable, strategy and latencyMs
+     */
+    public Future<JsonObject> check(String ip) {
+
+        Promise<JsonObject> promise = Promise.promise();
+
+        limiter.submit(() -> runCheck(ip, promise));
+
+        return promise.future();
+
+    }
+
+    /**
+     * Checks a batch of hosts, reporting every result as soon as it is known.
+     *
+     * @param ips      the ips
+     * @param onResult receives each result as it completes, or null
+     * @return all results, in completion order
+     */
+    public Future<JsonArray> checkAll(List<String> ips, Consumer<JsonObject> onResult) {
+
+        var results = new JsonArray();
+
+        List<Future<JsonObject>> checks = new ArrayList<>(ips.size());
+
+        for (var ip : ips) {
+
+            checks.add(check(ip).onSuccess(result -> {
+
+                results.add(result);
+
+                if (onResult != null) {
+
+                    onResult.accept(result);
+
+                }
+
+            }));
+
+        }
+
+        return Future.join(checks).transform(ar -> Future.succeededFuture(results));
+
+    }
+
+    /**
+     * Runs a check, completing the promise with its result or a timeout result, whichever comes first.
+     *
+     * @return a future completed once the probes have finished, which releases the limiter permit
+     */
+    private Future<JsonObject> runCheck(String ip, Promise<JsonObject> promise) {
+
+        var startNanos = System.nanoTime();
+
+        var deadlineNanos = startNanos + timeoutMs * 1_000_000;
+
+        var timerId = vertx.setTimer(timeoutMs, id -> promise.tryComplete(result(ip, false, "timeout", startNanos)));
+
+        return probe(ip, 0, startNanos, deadlineNanos).onComplete(ar -> {
+
+            vertx.cancelTimer(timerId);
+
+            if (ar.succeeded()) {
+
+                promise.tryComplete(ar.result());
+
+            } else {
+
+                LOGGER.warn("Reachability check failed for " + ip + ": " + ar.cause().getMessage());
+
+                promise.tryComplete(result(ip, false, "error", startNanos).put("error", ar.cause().getMessage()));
+
+            }
+
+        });
+
+    }
+
+    private Future<JsonObject> probe(String ip, int strategyIndex, long startNanos, long deadlineNanos) {
+
+        if (strategyIndex >= strategies.size()) {
+
+            return Future.succeededFuture(result(ip, false, strategies.isEmpty() ? "none" : strategies.get(strategies.size() - 1).name(), startNanos));
+
+        }
+
+        var strategy = strategies.get(strategyIndex);
+
+        if (ReachabilityStrategy.remainingMs(deadlineNanos) <= 0) {
+
+            return Future.succeededFuture(result(ip, false, "timeout", startNanos));
+
+        }
+
+        return strategy.probe(ip, deadlineNanos).otherwise(false).compose(reachable -> reachable
+
+                ? Future.succeededFuture(result(ip, true, strategy.name(), startNanos))
+
+                : probe(ip, strategyIndex + 1, startNanos, deadlineNanos));
+
+    }
+
+    private JsonObject result(String ip, boolean reachable, String strategy, long startNanos) {
+
+        return new JsonObject()
+                .put("ip", ip)
+                .put("isReachable", reachable)
+                .put("strategy", strategy)
+                .put("latencyMs", (System.nanoTime() - startNanos) / 1_000_000);
+
+    }
+
+    /**
+     * Returns the limiter state.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        return new JsonObject()
+                .put("running", limiter.getRunning())
+                .put("waiting", limiter.getWaiting());
+
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+
+/**
+ * A way of deciding whether a host is reachable.
+ */
+public interface ReachabilityStrategy {
+
+    /**
+     * Probes a host. Work that only starts once the deadline has passed, such as a task still queued on a
+     * worker pool, must report the host unreachable without probing.
+     *
+     * @param ip            the ip
+     * @param deadlineNanos the {@link System#nanoTime()} by which the probe must have completed
+     * @return true if the host answered
+     */
+    Future<Boolean> probe(String ip, long deadlineNanos);
+
+    /**
+     * Gets the time left before a deadline.
+     *
+     * @param deadlineNanos the {@link System#nanoTime()} deadline
+     * @return the milliseconds left, or 0 once it has passed
+     */
+    static long remainingMs(long deadlineNanos) {
+
+        return Math.max(0, (deadlineNanos - System.nanoTime()) / 1_000_000);
+
+    }
+
+    /**
+     * Returns the strategy name reported with each result.
+     *
+     * @return the string
+     */
+    String name();
+
+}
@@ -0,0 +1,424 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Tuple;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Maintains the time partitions of a range-partitioned time series table, systemdata by default.
+ * <p>
+ * Partitions are daily or hourly and named {@code <table>_pYYYYMMDD} or {@code <table>_pYYYYMMDDHH}.
+ * Each maintenance run creates the current partition plus {@code partitionsAhead} future ones, so
+ * inserts never find a missing range, and drops every partition whose whole range is older than the
+ * retention period. Dropping a partition is a metadata operation that frees its space at once, unlike
+ * a DELETE that leaves dead tuples for vacuum. The table's indexes are declared on the parent, so
+ * PostgreSQL builds them on every partition it creates. Must be used from a single Vert.x context.
+ */
+public class SystemDataPartitionManager {
+
+    private static final String SELECT_PARENT_KIND = "SELECT relkind::text AS relkind FROM pg_class WHERE relname = $1";
+
+    private static final String SELECT_PARTITIONS = """
+                SELECT c.relname
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE p.relname = $1
+            """;
+
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * The partition granularity.
+     */
+    public enum Granularity {
+
+        /**
+         * One partition per day.
+         */
+        DAILY(ChronoUnit.DAYS, DateTimeFormatter.ofPattern("yyyyMMdd")),
+
+        /**
+         * One partition per hour.
+         */
+        HOURLY(ChronoUnit.HOURS, DateTimeFormatter.ofPattern("yyyyMMddHH"));
+
+        private final ChronoUnit unit;
+
+        private final DateTimeFormatter suffixFormat;
+
+        Granularity(ChronoUnit unit, DateTimeFormatter suffixFormat) {
+
+            this.unit = unit;
+
+            this.suffixFormat = suffixFormat;
+
+        }
+
+        /**
+         * Parses a configured granularity.
+         *
+         * @param value daily or hourly
+         * @return the granularity, daily for anything unrecognised
+         */
+        public static Granularity parse(String value) {
+
+            return "hourly".equalsIgnoreCase(value == null ? null : value.trim()) ? HOURLY : DAILY;
+
+        }
+
+    }
+
+    private final Logger LOGGER = LoggerFactory.getLogger(SystemDataPartitionManager.class);
+
+    private final Vertx vertx;
+
+    private final Pool pool;
+
+    private final String parentTable;
+
+    private final String partitionPrefix;
+
+    private final Granularity granularity;
+
+    private final int partitionsAhead;
+
+    private final long retentionHours;
+
+    private final long maintenanceIntervalMs;
+
+    private long timerId = -1;
+
+    private boolean running;
+
+    private boolean partitioned;
+
+    private int partitionCount;
+
+    private long createdPartitions;
+
+    private long droppedPartitions;
+
+    private long lastMaintenanceMillis;
+
+    /**
+     * Instantiates a new System data partition manager.
+     *
+     * @param vertx                 the vertx
+     * @param pool                  the pool
+     * @param granularity           the partition granularity
+     * @param partitionsAhead       the number of future partitions kept ready
+     * @param retentionHours        how long data is kept, 0 to keep it forever
+     * @param maintenanceIntervalMs the interval between maintenance runs
+     */
+    public SystemDataPartitionManager(Vertx vertx, Pool pool, Granularity granularity, int partitionsAhead, long retentionHours, long maintenanceIntervalMs) {
+
+        this(vertx, pool, "systemdata", granularity, partitionsAhead, retentionHours, maintenanceIntervalMs);
+
+    }
+
+    /**
+     * Instantiates a new partition manager for another range-partitioned table.
+     *
+     * @param vertx                 the vertx
+     * @param pool                  the pool
+     * @param parentTable           the lower-case name of the partitioned table
+     * @param granularity           the partition granularity
+     * @param partitionsAhead       the number of future partitions kept ready
+     * @param retentionHours        how long data is kept, 0 to keep it forever
+     * @param maintenanceIntervalMs the interval between maintenance runs
+     */
+    public SystemDataPartitionManager(Vertx vertx, Pool pool, String parentTable, Granularity granularity, int partitionsAhead, long retentionHours, long maintenanceIntervalMs) {
+
+        this.vertx = vertx;
+
+        this.pool = pool;
+
+        this.parentTable = parentTable;
+
+        this.partitionPrefix = parentTable + "_p";
+
+        this.granularity = granularity;
+
+        this.partitionsAhead = Math.max(1, partitionsAhead);
+
+        this.retentionHours = retentionHours;
+
+        this.maintenanceIntervalMs = maintenanceIntervalMs;
+
+    }
+
+    /**
+     * Runs maintenance once and then periodically.
+     *
+     * @return a future completed after the first run
+     */
+    public Future<Void> start() {
+
+        timerId = vertx.setPeriodic(maintenanceIntervalMs, id -> runMaintenance());
+
+        return runMaintenance();
+
+    }
+
+    /**
+     * Creates missing partitions and drops expired ones.
+     *
+     * @return a future completed when the run is over; it never fails
+     */
+    public Future<Void> runMaintenance() {
+
+        if (running) {
+
+            return Future.succeededFuture();
+
+        }
+
+        running = true;
+
+        return pool.preparedQuery(SELECT_PARENT_KIND).execute(Tuple.of(parentTable))
+
+                .compose(rows -> {
+
+                    partitioned = rows.size() > 0 && "p".equals(rows.iterator().next().getString("relkind"));
+
+                    if (!partitioned) {
+
+                        LOGGER.warn("Table " + parentTable + " is not partitioned; skipping partition maintenance");
+
+                        return Future.<Void>succeededFuture();
+
+                    }
+
+                    var now = LocalDateTime.now();
+
+                    return pool.preparedQuery(SELECT_PARTITIONS).execute(Tuple.of(parentTable)).compose(partitions -> {
+
+                        Set<String> existing = new HashSet<>();
+
+                        partitions.forEach(row -> existing.add(row.getString("relname")));
+
+                        return createAhead(now, existing).compose(v -> dropExpired(now, existing));
+
+                    });
+
+                })
+
+                .onFailure(err -> LOGGER.error("Partition maintenance of " + parentTable + " failed", err))
+
+                .transform(ar -> {
+
+                    running = false;
+
+                    lastMaintenanceMillis = System.currentTimeMillis();
+
+                    return Future.<Void>succeededFuture();
+
+                });
+
+    }
+
+    private Future<Void> createAhead(LocalDateTime now, Set<String> existing) {
+
+        var start = now.truncatedTo(granularity.unit);
+
+        Future<Void> chain = Future.succeededFuture();
+
+        for (var i = 0; i <= partitionsAhead; i++) {
+
+            var from = start.plus(i, granularity.unit);
+
+            var name = partitionName(from);
+
+            if (existing.contains(name)) {
+
+                continue;
+
+            }
+
+            chain = chain.compose(v -> createPartition(name, from)
+
+                    .onSuccess(created -> existing.add(name))
+
+                    .recover(err -> {
+
+                        // Typically an overlap with a partition of the other granularity after a config change
+                        LOGGER.warn("Could not create partition " + name + ": " + err.getMessage());
+
+                        return Future.succeededFuture();
+
+                    }));
+
+        }
+
+        return chain;
+
+    }
+
+    private Future<Void> createPartition(String name, LocalDateTime from) {
+
+        var sql = "CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + parentTable
+                + " FOR VALUES FROM ('" + BOUND_FORMAT.format(from) + "') TO ('" + BOUND_FORMAT.format(from.plus(1, granularity.unit)) + "')";
+
+        return pool.query(sql).execute()
+
+                .onSuccess(rows -> {
+
+                    createdPartitions++;
+
+                    LOGGER.info("Created partition " + name);
+
+                })
+
+                .<Void>mapEmpty();
+
+    }
+
+    private Future<Void> dropExpired(LocalDateTime now, Set<String> existing) {
+
+        partitionCount = existing.size();
+
+        if (retentionHours <= 0) {
+
+            return Future.succeededFuture();
+
+        }
+
+        var cutoff = now.minusHours(retentionHours);
+
+        List<String> expired = new ArrayList<>();
+
+        for (var name : existing) {
+
+            var end = partitionEnd(partitionPrefix, name);
+
+            if (end != null && !end.isAfter(cutoff)) {
+
+                expired.add(name);
+
+            }
+
+        }
+
+        Future<Void> chain = Future.succeededFuture();
+
+        for (var name : expired) {
+
+            chain = chain.compose(v -> pool.query("DROP TABLE IF EXISTS " + name).execute()
+
+                    .onSuccess(dropped -> {
+
+                        droppedPartitions++;
+
+                        partitionCount--;
+
+                        LOGGER.info("Dropped expired partition " + name);
+
+                    })
+
+                    .<Void>mapEmpty()
+
+                    .recover(err -> {
+
+                        LOGGER.warn("Could not drop partition " + name + ": " + err.getMessage());
+
+                        return Future.succeededFuture();
+
+                    }));
+
+        }
+
+        return chain;
+
+    }
+
+    private String partitionName(LocalDateTime from) {
+
+        return partitionPrefix + granularity.suffixFormat.format(from);
+
+    }
+
+    /**
+     * Returns the exclusive upper bound of a partition from its name, whatever granularity it was created with.
+     *
+     * @param prefix the partition name prefix
+     * @param name   the partition name
+     * @return the end of its range, or null for a table this manager did not create
+     */
+    static LocalDateTime partitionEnd(String prefix, String name) {
+
+        if (name == null || !name.startsWith(prefix)) {
+
+            return null;
+
+        }
+
+        var suffix = name.substring(prefix.length());
+
+        try {
+
+            if (suffix.length() == 8) {
+
+                return LocalDateTime.parse(suffix + "00", Granularity.HOURLY.suffixFormat).plusDays(1);
+
+            }
+
+            if (suffix.length() == 10) {
+
+                return LocalDateTime.parse(suffix, Granularity.HOURLY.suffixFormat).plusHours(1);
+
+            }
+
+        } catch (DateTimeParseException e) {
+
+            return null;
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * Returns a snapshot of the partition statistics.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        return new JsonObject()
+                .put("table", parentTable)
+                .put("partitioned", partitioned)
+                .put("granularity", granularity.name().toLowerCase())
+                .put("partitions", partitionCount)
+                .put("partitionsAhead", partitionsAhead)
+                .put("retentionHours", retentionHours)
+                .put("createdPartitions", createdPartitions)
+                .put("droppedPartitions", droppedPartitions)
+                .put("lastMaintenance", lastMaintenanceMillis);
+
+    }
+
+    /**
+     * Stops periodic maintenance.
+     */
+    public void stop() {
+
+        vertx.cancelTimer(timerId);
+
+    }
+
+}
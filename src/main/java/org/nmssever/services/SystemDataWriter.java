@@ -0,0 +1,438 @@
+package org.nmssever.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.http.ConnectionPoolTooBusyException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgException;
+import io.vertx.sqlclient.ClosedConnectionException;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Tuple;
+import org.nmssever.metrics.AppMetrics;
+
+import java.net.ConnectException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for polled system data and its flattened metric samples.
+ * <p>
+ * Samples are queued in memory and written with a single {@code executeBatch} per batch, either when
+ * the queue reaches the batch size or when the flush interval elapses. At most
+ * {@code maxInFlightFlushes} batches hold a pool connection at any time, so ingest never competes with
+ * the API for more than a fixed slice of the pool, including while {@link #close()} drains the queue.
+ * A batch that fails on a transient pool or connection error goes back to the head of the queue and is
+ * retried by the next timed flush; other failures drop it. Rows are counted in
+ * {@code nms.systemdata.rows} by outcome, whose rate is the insert rate, and batch latency is recorded in
+ * {@code nms.systemdata.flush}; both are tagged with the target table. Rows queued before {@link #start()}
+ * are held, within the queue bound, so the owner can start the writer once its table can take them.
+ * All methods must be called from the owning verticle's context.
+ */
+public class SystemDataWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO systemdata (discovery_profile_id, system_info, timestamp) VALUES ($1, $2, $3)";
+
+    private static final long STATS_LOG_INTERVAL_MS = 60000;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(SystemDataWriter.class);
+
+    private final Vertx vertx;
+
+    private final Pool pool;
+
+    private final String table;
+
+    private final String insertSql;
+
+    private final int batchSize;
+
+    private final long flushIntervalMs;
+
+    private final int maxQueueSize;
+
+    private final int maxInFlightFlushes;
+
+    private final ArrayDeque<Tuple> queue = new ArrayDeque<>();
+
+    private int inFlightFlushes;
+
+    private boolean started;
+
+    private Promise<Void> closePromise;
+
+    private final Counter insertedRowCounter;
+
+    private final Counter failedRowCounter;
+
+    private final Counter droppedRowCounter;
+
+    private final Timer flushTimer;
+
+    private long flushTimerId = -1;
+
+    private long statsTimerId = -1;
+
+    private long flushCount;
+
+    private long flushedRows;
+
+    private long failedRows;
+
+    private long retriedRows;
+
+    private long droppedRows;
+
+    private long totalFlushNanos;
+
+    private long maxFlushNanos;
+
+    private int lastBatchSize;
+
+    private int maxQueueDepth;
+
+    /**
+     * Instantiates a new System data writer.
+     *
+     * @param vertx              the vertx
+     * @param pool               the pool
+     * @param batchSize          the maximum number of rows per batch
+     * @param flushIntervalMs    the maximum time a sample waits before being flushed
+     * @param maxQueueSize       the maximum number of buffered samples; the oldest are dropped beyond it
+     * @param maxInFlightFlushes the maximum number of concurrent batch inserts
+     */
+    public SystemDataWriter(Vertx vertx, Pool pool, int batchSize, long flushIntervalMs, int maxQueueSize, int maxInFlightFlushes) {
+
+        this(vertx, pool, "systemdata", INSERT_SQL, batchSize, flushIntervalMs, maxQueueSize, maxInFlightFlushes);
+
+    }
+
+    /**
+     * Instantiates a new writer for another table, with one tuple of insertSql per queued row.
+     *
+     * @param vertx              the vertx
+     * @param pool               the pool
+     * @param table              the table name, used in metric tags and logs
+     * @param insertSql          the insert statement
+     * @param batchSize          the maximum number of rows per batch
+     * @param flushIntervalMs    the maximum time a row waits before being flushed
+     * @param maxQueueSize       the maximum number of buffered rows; the oldest are dropped beyond it
+     * @param maxInFlightFlushes the maximum number of concurrent batch inserts
+     */
+    public SystemDataWriter(Vertx vertx, Pool pool, String table, String insertSql, int batchSize, long flushIntervalMs, int maxQueueSize, int maxInFlightFlushes) {
+
+        this.vertx = vertx;
+
+        this.pool = pool;
+
+        this.table = table;
+
+        this.insertSql = insertSql;
+
+        this.batchSize = Math.max(1, batchSize);
+
+        this.flushIntervalMs = Math.max(10, flushIntervalMs);
+
+        this.maxQueueSize = Math.max(this.batchSize, maxQueueSize);
+
+        this.maxInFlightFlushes = Math.max(1, maxInFlightFlushes);
+
+        var registry = AppMetrics.registry();
+
+        this.insertedRowCounter = rowCounter(registry, "inserted");
+
+        this.failedRowCounter = rowCounter(registry, "failed");
+
+        this.droppedRowCounter = rowCounter(registry, "dropped");
+
+        this.flushTimer = Timer.builder("nms.systemdata.flush")
+                .description("Latency of one system data batch insert")
+                .tag("table", table)
+                .register(registry);
+
+        Gauge.builder("nms.systemdata.queue.depth", queue, ArrayDeque::size)
+                .description("System data samples waiting to be inserted")
+                .tag("table", table)
+                .register(registry);
+
+    }
+
+    private Counter rowCounter(MeterRegistry registry, String outcome) {
+
+        return Counter.builder("nms.systemdata.rows")
+                .description("System data rows by write outcome")
+                .tag("table", table)
+                .tag("outcome", outcome)
+                .register(registry);
+
+    }
+
+    /**
+     * Starts the flush and stats timers and writes the rows held until now.
+     */
+    public void start() {
+
+        if (started) {
+
+            return;
+
+        }
+
+        started = true;
+
+        flushTimerId = vertx.setPeriodic(flushIntervalMs, id -> flush());
+
+        statsTimerId = vertx.setPeriodic(STATS_LOG_INTERVAL_MS, id -> LOGGER.info(table + " writer stats: " + stats().encode()));
+
+        LOGGER.info(table + " writer started (batchSize=" + batchSize + ", flushIntervalMs=" + flushIntervalMs
+                + ", maxQueueSize=" + maxQueueSize + ", maxInFlightFlushes=" + maxInFlightFlushes + ")");
+
+        flush();
+
+    }
+
+    /**
+     * Queues a sample for insertion.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @param systemInfo         the system info
+     * @param timestamp          the sample timestamp
+     */
+    public void enqueue(Integer discoveryProfileID, JsonObject systemInfo, LocalDateTime timestamp) {
+
+        enqueue(Tuple.of(discoveryProfileID, systemInfo, timestamp));
+
+    }
+
+    /**
+     * Queues the parameters of one insert.
+     *
+     * @param row the row
+     */
+    public void enqueue(Tuple row) {
+
+        if (queue.size() >= maxQueueSize) {
+
+            queue.pollFirst();
+
+            droppedRows++;
+
+            droppedRowCounter.increment();
+
+        }
+
+        queue.addLast(row);
+
+        maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+
+        if (queue.size() >= batchSize) {
+
+            flush();
+
+        }
+
+    }
+
+    /**
+     * Writes as many batches as the in-flight limit allows.
+     */
+    public void flush() {
+
+        if (!started && closePromise == null) {
+
+            return;
+
+        }
+
+        while (!queue.isEmpty() && inFlightFlushes < maxInFlightFlushes) {
+
+            writeBatch(drainBatch());
+
+        }
+
+        if (closePromise != null && queue.isEmpty() && inFlightFlushes == 0) {
+
+            closePromise.tryComplete();
+
+        }
+
+    }
+
+    private List<Tuple> drainBatch() {
+
+        var size = Math.min(batchSize, queue.size());
+
+        List<Tuple> batch = new ArrayList<>(size);
+
+        for (var i = 0; i < size; i++) {
+
+            batch.add(queue.pollFirst());
+
+        }
+
+        return batch;
+
+    }
+
+    private void writeBatch(List<Tuple> batch) {
+
+        inFlightFlushes++;
+
+        var startNanos = System.nanoTime();
+
+        pool.preparedQuery(insertSql)
+
+                .executeBatch(batch)
+
+                .onComplete(ar -> {
+
+                    inFlightFlushes--;
+
+                    var elapsedNanos = System.nanoTime() - startNanos;
+
+                    flushCount++;
+
+                    totalFlushNanos += elapsedNanos;
+
+                    maxFlushNanos = Math.max(maxFlushNanos, elapsedNanos);
+
+                    flushTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+                    lastBatchSize = batch.size();
+
+                    if (ar.succeeded()) {
+
+                        flushedRows += batch.size();
+
+                        insertedRowCounter.increment(batch.size());
+
+                        if (closePromise != null || queue.size() >= batchSize) {
+
+                            flush();
+
+                        }
+
+                    } else if (closePromise == null && isTransient(ar.cause())) {
+
+                        // Left for the next timed flush, so a pool that is down is not hammered
+                        requeue(batch);
+
+                        LOGGER.warn("Requeued batch of " + batch.size() + " " + table + " rows after a transient failure: " + ar.cause().getMessage());
+
+                    } else {
+
+                        failedRows += batch.size();
+
+                        failedRowCounter.increment(batch.size());
+
+                        LOGGER.error("Failed to insert batch of " + batch.size() + " " + table + " rows", ar.cause());
+
+                        if (closePromise != null) {
+
+                            flush();
+
+                        }
+
+                    }
+
+                });
+
+    }
+
+    private void requeue(List<Tuple> batch) {
+
+        for (var i = batch.size() - 1; i >= 0; i--) {
+
+            if (queue.size() >= maxQueueSize) {
+
+                // The batch is older than everything queued, so it is what gets dropped
+                droppedRows += i + 1;
+
+                droppedRowCounter.increment(i + 1);
+
+                break;
+
+            }
+
+            queue.addFirst(batch.get(i));
+
+            retriedRows++;
+
+        }
+
+    }
+
+    private static boolean isTransient(Throwable cause) {
+
+        if (cause instanceof PgException pgException) {
+
+            var sqlState = pgException.getSqlState();
+
+            // Connection exceptions, insufficient resources, admin shutdown and serialization conflicts
+            return sqlState != null && (sqlState.startsWith("08") || sqlState.startsWith("53") || sqlState.startsWith("40") || sqlState.equals("57P01"));
+
+        }
+
+        return cause instanceof ConnectionPoolTooBusyException
+                || cause instanceof ClosedConnectionException
+                || cause instanceof ConnectException;
+
+    }
+
+    /**
+     * Returns a snapshot of the writer statistics.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        return new JsonObject()
+                .put("queueDepth", queue.size())
+                .put("maxQueueDepth", maxQueueDepth)
+                .put("inFlightFlushes", inFlightFlushes)
+                .put("flushCount", flushCount)
+                .put("lastBatchSize", lastBatchSize)
+                .put("avgBatchSize", flushCount == 0 ? 0 : (double) (flushedRows + failedRows) / flushCount)
+                .put("avgFlushLatencyMs", flushCount == 0 ? 0 : totalFlushNanos / flushCount / 1_000_000.0)
+                .put("maxFlushLatencyMs", maxFlushNanos / 1_000_000.0)
+                .put("flushedRows", flushedRows)
+                .put("failedRows", failedRows)
+                .put("retriedRows", retriedRows)
+                .put("droppedRows", droppedRows);
+
+    }
+
+    /**
+     * Stops the timers and writes everything still buffered, one batch after another within the in-flight
+     * limit. Batches failing during the drain are not retried.
+     *
+     * @return a future completed once the queue is empty and no batch is in flight
+     */
+    public Future<Void> close() {
+
+        if (closePromise == null) {
+
+            vertx.cancelTimer(flushTimerId);
+
+            vertx.cancelTimer(statsTimerId);
+
+            closePromise = Promise.promise();
+
+            flush();
+
+        }
+
+        return closePromise.future();
+
+    }
+
+}
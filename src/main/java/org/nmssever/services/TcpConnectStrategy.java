@@ -0,0 +1,83 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Treats a host as reachable when any of the configured TCP ports accepts or actively refuses a
+ * connection; a refusal still means the host's stack answered. All ports are probed in parallel.
+ */
+public class TcpConnectStrategy implements ReachabilityStrategy {
+
+    private final NetClient netClient;
+
+    private final List<Integer> ports;
+
+    /**
+     * Instantiates a new Tcp connect strategy.
+     *
+     * @param vertx            the vertx
+     * @param ports            the ports to probe
+     * @param connectTimeoutMs the connect timeout
+     */
+    public TcpConnectStrategy(Vertx vertx, List<Integer> ports, int connectTimeoutMs) {
+
+        this.ports = List.copyOf(ports);
+
+        this.netClient = vertx.createNetClient(new NetClientOptions().setConnectTimeout(connectTimeoutMs));
+
+    }
+
+    @Override
+    public Future<Boolean> probe(String ip, long deadlineNanos) {
+
+        if (ReachabilityStrategy.remainingMs(deadlineNanos) <= 0) {
+
+            return Future.succeededFuture(false);
+
+        }
+
+        List<Future<Boolean>> attempts = new ArrayList<>(ports.size());
+
+        for (var port : ports) {
+
+            attempts.add(netClient.connect(port, ip).transform(ar -> {
+
+                if (ar.succeeded()) {
+
+                    ar.result().close();
+
+                    return Future.succeededFuture(true);
+
+                }
+
+                return isRefused(ar.cause()) ? Future.succeededFuture(true) : Future.failedFuture(ar.cause());
+
+            }));
+
+        }
+
+        return Future.any(attempts).map(true).otherwise(false);
+
+    }
+
+    private boolean isRefused(Throwable cause) {
+
+        return cause instanceof ConnectException && cause.getMessage() != null && cause.getMessage().contains("refused");
+
+    }
+
+    @Override
+    public String name() {
+
+        return "tcp";
+
+    }
+
+}
@@ -0,0 +1,360 @@
+package org.nmssever.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import org.nmssever.util.ConfigUtil;
+import org.nmssever.util.Constants;
+import org.nmssever.util.DBConstants;
+import org.nmssever.util.KeysetCursor;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * Database operations behind the credential profile, discovery profile and provisioning endpoints.
+ * Requests to the ZMQ plugin go through {@link ZmqService}.
+ */
+public class UnifiedProfileService {
+
+    private final Pool pool;
+
+    private final EventBus eventBus;
+
+    private final Logger logger = LoggerFactory.getLogger(UnifiedProfileService.class);
+
+    // Samples are returned as stored; the static inventory attributes split out of them are returned once
+    // per page as the device's current inventory, since merging them would date them back to every sample.
+    private static final String SELECT_SYSTEM_DATA_COLUMNS = "SELECT s.id, s.system_info, s.timestamp FROM systemdata s ";
+
+    // The list queries and row mappers are shared with ProfileListStreamer, so buffered and streamed lists
+    // have the same shape. Credential configurations are never listed.
+    static final String SELECT_CREDENTIAL_PROFILES = "SELECT id, credential_profile_name, system_type FROM credentialprofiles ORDER BY id";
+
+    static final String SELECT_DISCOVERY_PROFILES = """
+                SELECT dp.id, dp.discovery_profile_name, dp.ip, dp.credential_profile_id, cp.credential_profile_name,
+                       dp.discovery_status, dp.provision_status, dp.polling_interval
+                FROM discoveryprofiles dp
+                LEFT JOIN credentialprofiles cp ON cp.id = dp.credential_profile_id
+            """;
+
+    static final String WHERE_ID = " WHERE dp.id = $1";
+
+    static final String WHERE_PROVISIONED = " WHERE dp.provision_status = 1";
+
+    static final String ORDER_BY_ID = " ORDER BY dp.id";
+
+    private static final String SELECT_CURRENT_INVENTORY = "SELECT attributes, updated_at FROM deviceinventory WHERE discovery_profile_id = $1";
+
+    private static final String SELECT_SYSTEM_DATA_PAGE = SELECT_SYSTEM_DATA_COLUMNS
+            + "WHERE s.discovery_profile_id = $1 AND s.timestamp >= $2 AND s.timestamp < $3 "
+            + "ORDER BY s.timestamp DESC, s.id DESC LIMIT $4";
+
+    private static final String SELECT_SYSTEM_DATA_PAGE_AFTER_CURSOR = SELECT_SYSTEM_DATA_COLUMNS
+            + "WHERE s.discovery_profile_id = $1 AND s.timestamp >= $2 AND s.timestamp < $3 AND (s.timestamp, s.id) < ($5, $6) "
+            + "ORDER BY s.timestamp DESC, s.id DESC LIMIT $4";
+
+    public UnifiedProfileService(Vertx vertx, Pool pool) {
+
+        this.pool = pool;
+
+        this.eventBus = vertx.eventBus();
+
+    }
+
+    public Future<Void> testConnection() {
+        return pool.query("SELECT 1").execute().mapEmpty();
+    }
+
+    private Future<JsonObject> executeUpdate(String sql, Tuple params) {
+        return pool.preparedQuery(sql)
+                .execute(params)
+                .map(res -> {
+                    if (res.rowCount() > 0) {
+                        logger.info("Operation successful: " + sql);
+                        return new JsonObject().put("status", "success");
+                    } else {
+                        logger.warn("Operation failed: No rows affected for SQL: " + sql);
+                        return new JsonObject().put("status", "fail").put("error", "No rows affected");
+                    }
+                })
+                .onFailure(err -> logger.error("Error executing SQL: " + sql, err));
+    }
+
+
+
+    private Future<JsonArray> executeQuery(String sql, Tuple params, Function<Row, JsonObject> mapper) {
+        return pool.preparedQuery(sql)
+                .execute(params)
+                .map(rows -> {
+                    JsonArray responseArray = new JsonArray();
+                    rows.forEach(row -> responseArray.add(mapper.apply(row)));
+                    logger.info("Retrieved " + responseArray.size() + " records for SQL: " + sql);
+                    return responseArray;
+                })
+                .onFailure(err -> logger.error("Error executing query: " + sql, err));
+    }
+
+
+    public Future<JsonObject> createCredentialProfile(JsonObject request) {
+        String sql = "INSERT INTO CredentialProfiles (credential_profile_name, system_type, credentialconfig) VALUES ($1, $2, $3) RETURNING id";
+        return pool.preparedQuery(sql)
+                .execute(Tuple.of(
+                        request.getString("credential_profile_name"),
+                        request.getString("system_type"),
+                        request.getJsonObject("credentialconfig").encode()
+                ))
+                .map(res -> {
+                    if (res.rowCount() > 0) {
+                        var generatedId = res.iterator().next().getInteger("id");
+                        logger.info("Credential profile created with ID: " + generatedId);
+                        return new JsonObject().put("status", "success").put("id", generatedId);
+                    } else {
+                        logger.error("Failed to create credential profile: No ID returned");
+                        return new JsonObject().put("status", "fail").put("error", "No ID returned");
+                    }
+                })
+                .onFailure(err -> logger.error("Error creating credential profile", err));
+    }
+
+
+    public Future<JsonArray> getCredentialProfiles() {
+        return executeQuery(SELECT_CREDENTIAL_PROFILES, Tuple.tuple(), UnifiedProfileService::credentialRowToJson);
+    }
+
+    /**
+     * Returns a credential profile with its credentials, or an object carrying an error when it does not exist.
+     */
+    public Future<JsonObject> getCredentialProfile(Integer id) {
+        return pool.preparedQuery(DBConstants.SELECT_CREDENTIAL_PROFILE)
+                .execute(Tuple.of(id))
+                .map(rows -> {
+                    if (rows.size() == 0) {
+                        return new JsonObject().put("error", "Credential profile not found");
+                    }
+                    var row = rows.iterator().next();
+                    return new JsonObject()
+                            .put(DBConstants.COL_ID, row.getInteger(DBConstants.COL_ID))
+                            .put(DBConstants.COL_CREDENTIAL_PROFILE_NAME, row.getString(DBConstants.COL_CREDENTIAL_PROFILE_NAME))
+                            .put(DBConstants.COL_SYSTEM_TYPE, row.getString(DBConstants.COL_SYSTEM_TYPE))
+                            .put(DBConstants.COL_CREDENTIALCONFIG, new JsonObject(row.getString(DBConstants.COL_CREDENTIALCONFIG)));
+                });
+    }
+
+
+    public Future<JsonObject> updateCredentialProfile(JsonObject request) {
+        String sql = "UPDATE CredentialProfiles SET credential_profile_name = $1, system_type = $2, credentialconfig = $3 WHERE id = $4";
+        return executeUpdate(sql, Tuple.of(
+                request.getString("credential_profile_name"),
+                request.getString("system_type"),
+                request.getJsonObject("credentialconfig").encode(),
+                request.getInteger("id")
+        ));
+    }
+
+
+    public Future<JsonObject> deleteCredentialProfile(Integer id) {
+        String sql = "DELETE FROM CredentialProfiles WHERE id = $1";
+        return executeUpdate(sql, Tuple.of(id));
+    }
+
+    public Future<JsonObject> createDiscoveryProfile(JsonObject request) {
+        String sql = "INSERT INTO DiscoveryProfiles (discovery_profile_name, ip, credential_profile_id, polling_interval) VALUES ($1, $2, $3, $4) RETURNING id";
+        return pool.preparedQuery(sql)
+                .execute(Tuple.of(
+                        request.getString("discovery_profile_name"),
+                        request.getString("ip"),
+                        request.getInteger("credential_profile_id"),
+                        request.getInteger(DBConstants.COL_POLLING_INTERVAL, Constants.DEFAULT_POLLING_INTERVAL_SECONDS)
+                ))
+                .map(res -> {
+                    if (res.rowCount() > 0) {
+                        var generatedId = res.iterator().next().getInteger("id");
+                        logger.info("Discovery profile created with ID: " + generatedId);
+                        return new JsonObject().put("status", "success").put("id", generatedId);
+                    } else {
+                        logger.error("Failed to create discovery profile: No ID returned");
+                        return new JsonObject().put("status", "fail").put("error", "No ID returned");
+                    }
+                })
+                .onFailure(err -> logger.error("Error creating discovery profile", err));
+    }
+
+    public Future<JsonArray> getDiscoveryProfiles() {
+        return executeQuery(SELECT_DISCOVERY_PROFILES + ORDER_BY_ID, Tuple.tuple(), UnifiedProfileService::rowToJson);
+    }
+
+    public Future<JsonObject> updateDiscoveryProfile(JsonObject request) {
+        String sql = "UPDATE DiscoveryProfiles SET ip = $1, credential_profile_id = $2, polling_interval = COALESCE($3, polling_interval) WHERE id = $4";
+        return executeUpdate(sql, Tuple.of(
+                request.getString("ip"),
+                request.getInteger("credential_profile_id"),
+                request.getInteger(DBConstants.COL_POLLING_INTERVAL),
+                request.getInteger("id")
+        ));
+    }
+
+    public Future<JsonObject> deleteDiscoveryProfile(Integer id) {
+        String sql = "DELETE FROM DiscoveryProfiles WHERE id = $1";
+        return executeUpdate(sql, Tuple.of(id));
+    }
+
+    public Future<JsonObject> getDiscoveryProfile(Integer profileID) {
+        return executeQuery(SELECT_DISCOVERY_PROFILES + WHERE_ID, Tuple.of(profileID), UnifiedProfileService::rowToJson)
+                .map(profiles -> profiles.isEmpty() ? new JsonObject().put("error", "Discovery profile not found") : profiles.getJsonObject(0));
+    }
+
+    public Future<JsonObject> getDiscoveryStatus(String discoveryProfileName) {
+        String sql = "SELECT " + DBConstants.COL_DISCOVERY_STATUS + " FROM " + DBConstants.TABLE_DISCOVERY_PROFILES + " WHERE " + DBConstants.COL_DISCOVERY_PROFILE_NAME + " = $1";
+        return pool.preparedQuery(sql)
+                .execute(Tuple.of(discoveryProfileName))
+                .compose(rows -> rows.size() == 0
+                        ? Future.failedFuture("Discovery profile not found: " + discoveryProfileName)
+                        : Future.succeededFuture(new JsonObject()
+                                .put(DBConstants.COL_DISCOVERY_PROFILE_NAME, discoveryProfileName)
+                                .put(DBConstants.COL_DISCOVERY_STATUS, rows.iterator().next().getInteger(DBConstants.COL_DISCOVERY_STATUS) == 1)));
+    }
+
+    /**
+     * Discovers the single host of a profile through the ZMQ plugin and records the outcome in discovery_status.
+     * The profile is the one loaded by {@link DiscoverySweepService#loadProfile(int)}; the reply is the plugin's result.
+     */
+    public Future<JsonObject> runDiscovery(JsonObject profile) {
+        var credentialConfig = profile.getJsonObject("credentialconfig");
+        var request = new JsonObject()
+                .put("RequestType", "discovery")
+                .put("ip", profile.getString("ip"))
+                .put("username", credentialConfig.getString("username"))
+                .put("password", credentialConfig.getString("password"))
+                .put("SystemType", profile.getString("system_type"))
+                .put("discovery_profile_id", profile.getInteger("id"));
+        // The correlation registry fails an unanswered request first, so the event bus timeout never races it
+        var options = new DeliveryOptions().setSendTimeout(ConfigUtil.getLong("ZMQ_REQUEST_TIMEOUT_MS", Constants.ZMQ_REQUEST_TIMEOUT_MS) + Constants.ZMQ_REPLY_MARGIN_MS);
+        return eventBus.<JsonObject>request(Constants.ZMQ_DISCOVERY_RUN_REQUEST, request, options)
+                .compose(reply -> {
+                    var result = reply.body();
+                    var discovered = result != null && "success".equalsIgnoreCase(result.getString("status"));
+                    return updateDiscoveryStatus(profile.getInteger("id"), discovered ? 1 : 0)
+                            .map(update -> result);
+                });
+    }
+
+    public Future<JsonObject> updateDiscoveryStatus(Integer discoveryProfileID, Integer discoveryStatus) {
+        String sql = "UPDATE " + DBConstants.TABLE_DISCOVERY_PROFILES + " SET " + DBConstants.COL_DISCOVERY_STATUS + " = $1 WHERE " + DBConstants.COL_ID + " = $2";
+        return executeUpdate(sql, Tuple.of(discoveryStatus, discoveryProfileID));
+    }
+
+    /**
+     * Returns one page of a device's polled data, newest first.
+     * <p>
+     * The request carries discovery_profile_id and optionally from and to (ISO local date-times, to is
+     * exclusive), limit and the cursor returned with the previous page. Without from the window starts
+     * PROVISIONED_DATA_DEFAULT_WINDOW_HOURS before to. Rows are read through the
+     * (discovery_profile_id, timestamp) index and only limit + 1 of them are fetched, so the cost of a
+     * page does not depend on how much history the device has. The device's inventory attributes are not
+     * part of the samples; they are returned once as current_inventory, with the time they last changed.
+     */
+    public Future<JsonObject> getProvisionDeviceData(JsonObject request) {
+        var discoveryProfileID = request.getInteger("discovery_profile_id");
+        LocalDateTime to;
+        LocalDateTime from;
+        KeysetCursor cursor;
+        try {
+            to = request.getString("to") != null ? LocalDateTime.parse(request.getString("to")) : LocalDateTime.now().plusSeconds(1);
+            from = request.getString("from") != null ? LocalDateTime.parse(request.getString("from")) : to.minusHours(Constants.PROVISIONED_DATA_DEFAULT_WINDOW_HOURS);
+            cursor = request.getString("cursor") != null ? KeysetCursor.decode(request.getString("cursor")) : null;
+        } catch (RuntimeException e) {
+            return Future.failedFuture("Invalid time window or cursor: " + e.getMessage());
+        }
+        var limit = Math.max(1, Math.min(request.getInteger("limit", Constants.PROVISIONED_DATA_DEFAULT_LIMIT), Constants.PROVISIONED_DATA_MAX_LIMIT));
+
+        var params = Tuple.of(discoveryProfileID, from, to, limit + 1);
+        var sql = SELECT_SYSTEM_DATA_PAGE;
+        if (cursor != null) {
+            params = Tuple.of(discoveryProfileID, from, to, limit + 1, cursor.timestamp(), cursor.id());
+            sql = SELECT_SYSTEM_DATA_PAGE_AFTER_CURSOR;
+        }
+
+        var page = pool.preparedQuery(sql).execute(params);
+        var inventory = pool.preparedQuery(SELECT_CURRENT_INVENTORY).execute(Tuple.of(discoveryProfileID));
+
+        return Future.all(page, inventory)
+                .map(v -> {
+                    var rows = page.result();
+                    var inventoryRow = inventory.result().size() == 0 ? null : inventory.result().iterator().next();
+                    var systemInfo = new JsonArray();
+                    KeysetCursor last = null;
+                    var hasMore = false;
+                    for (var row : rows) {
+                        if (systemInfo.size() == limit) {
+                            hasMore = true;
+                            break;
+                        }
+                        systemInfo.add(row.getValue("system_info"));
+                        last = new KeysetCursor(row.getLocalDateTime("timestamp"), row.getLong("id"));
+                    }
+                    var nextCursor = hasMore ? last.encode() : null;
+                    return new JsonObject()
+                            .put("success", "System info retrieved successfully")
+                            .put("discovery_profile_id", discoveryProfileID)
+                            .put("from", from.toString())
+                            .put("to", to.toString())
+                            .put("limit", limit)
+                            .put("count", systemInfo.size())
+                            .put("next_cursor", nextCursor)
+                            .put("current_inventory", inventoryRow == null ? new JsonObject() : inventoryRow.getJsonObject("attributes"))
+                            .put("current_inventory_updated_at", inventoryRow == null ? null : inventoryRow.getLocalDateTime("updated_at").toString())
+                            .put("system_info", systemInfo);
+                });
+    }
+
+    public Future<JsonObject> provisionDevice(JsonObject request) {
+        var discoveryProfileID = request.getInteger("discovery_profile_id");
+        var provisionStatus = request.getInteger("provision_status");
+        var updateSql = "UPDATE " + DBConstants.TABLE_DISCOVERY_PROFILES + " SET " + DBConstants.COL_PROVISION_STATUS + " = $1 WHERE id = $2 AND discovery_status = 1 RETURNING id;";
+
+        return pool.preparedQuery(updateSql)
+                .execute(Tuple.of(provisionStatus, discoveryProfileID))
+                .map(rows -> rows.rowCount() > 0 ? new JsonObject().put("success", "Provision status updated successfully") : new JsonObject().put("error", "Update failed: No matching profile found with discovery_status = 1"))
+                .onFailure(err -> new JsonObject().put("error", "Database update failed: " + err.getMessage()));
+    }
+
+    public Future<JsonArray> getProvisionedProfiles() {
+        return executeQuery(SELECT_DISCOVERY_PROFILES + WHERE_PROVISIONED + ORDER_BY_ID, Tuple.tuple(), UnifiedProfileService::rowToJson);
+    }
+
+    /**
+     * Converts a row of {@link #SELECT_DISCOVERY_PROFILES} to a discovery profile; the INT status columns become booleans.
+     */
+    static JsonObject rowToJson(Row row) {
+        return new JsonObject()
+                .put(DBConstants.COL_ID, row.getInteger(DBConstants.COL_ID))
+                .put(DBConstants.COL_DISCOVERY_PROFILE_NAME, row.getString(DBConstants.COL_DISCOVERY_PROFILE_NAME))
+                .put(DBConstants.COL_IP, row.getString(DBConstants.COL_IP))
+                .put(DBConstants.COL_CREDENTIAL_PROFILE_ID, row.getInteger(DBConstants.COL_CREDENTIAL_PROFILE_ID))
+                .put(DBConstants.COL_CREDENTIAL_PROFILE_NAME, row.getString(DBConstants.COL_CREDENTIAL_PROFILE_NAME))
+                .put(DBConstants.COL_DISCOVERY_STATUS, row.getInteger(DBConstants.COL_DISCOVERY_STATUS) == 1)
+                .put(DBConstants.COL_PROVISION_STATUS, row.getInteger(DBConstants.COL_PROVISION_STATUS) == 1)
+                .put(DBConstants.COL_POLLING_INTERVAL, row.getInteger(DBConstants.COL_POLLING_INTERVAL));
+    }
+
+    /**
+     * Converts a row of {@link #SELECT_CREDENTIAL_PROFILES} to a credential profile without its credentials.
+     */
+    static JsonObject credentialRowToJson(Row row) {
+        return new JsonObject()
+                .put(DBConstants.COL_ID, row.getInteger(DBConstants.COL_ID))
+                .put(DBConstants.COL_CREDENTIAL_PROFILE_NAME, row.getString(DBConstants.COL_CREDENTIAL_PROFILE_NAME))
+                .put(DBConstants.COL_SYSTEM_TYPE, row.getString(DBConstants.COL_SYSTEM_TYPE));
+    }
+
+
+}
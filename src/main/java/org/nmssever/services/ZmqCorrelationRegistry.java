@@ -0,0 +1,323 @@
+package org.nmssever.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.metrics.AppMetrics;
+import org.nmssever.util.HashedTimingWheel;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Correlation table for in-flight ZMQ requests.
+ * <p>
+ * Every request is registered with a deadline on a {@link HashedTimingWheel}. A reply removes the entry
+ * and cancels its timeout; when the deadline passes first, the entry is removed and the waiting event
+ * bus message, if any, is failed with a timeout. Polls are registered without one, since their replies
+ * are ingested rather than routed back. Replies that no longer match an entry are counted as orphaned.
+ * All operations are O(1) regardless of the number of outstanding requests. The time from registration
+ * to reply is recorded in {@code nms.zmq.round.trip} and the table size in {@code nms.zmq.in.flight}.
+ */
+public class ZmqCorrelationRegistry {
+
+    private static final long TICK_MS = 100;
+
+    private static final int WHEEL_SIZE = 1024;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(ZmqCorrelationRegistry.class);
+
+    private final Vertx vertx;
+
+    private final long defaultTimeoutMs;
+
+    private final ConcurrentHashMap<String, Entry> inFlight = new ConcurrentHashMap<>();
+
+    private final HashedTimingWheel<Entry> wheel = new HashedTimingWheel<>(TICK_MS, WHEEL_SIZE, nowMs());
+
+    private final LongAdder registered = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder expired = new LongAdder();
+
+    private final LongAdder orphaned = new LongAdder();
+
+    private final Timer roundTrip;
+
+    private long timerId = -1;
+
+    /**
+     * Instantiates a new Zmq correlation registry.
+     *
+     * @param vertx            the vertx
+     * @param defaultTimeoutMs the deadline applied to every request
+     */
+    public ZmqCorrelationRegistry(Vertx vertx, long defaultTimeoutMs) {
+
+        this.vertx = vertx;
+
+        this.defaultTimeoutMs = defaultTimeoutMs;
+
+        var registry = AppMetrics.registry();
+
+        this.roundTrip = Timer.builder("nms.zmq.round.trip")
+                .description("Time from registering a ZMQ request to receiving its reply")
+                .register(registry);
+
+        Gauge.builder("nms.zmq.in.flight", inFlight, ConcurrentHashMap::size)
+                .description("ZMQ requests waiting for a reply")
+                .register(registry);
+
+        counter(registry, "registered", registered);
+
+        counter(registry, "completed", completed);
+
+        counter(registry, "expired", expired);
+
+        counter(registry, "orphaned", orphaned);
+
+    }
+
+    private static void counter(MeterRegistry registry, String event, LongAdder adder) {
+
+        FunctionCounter.builder("nms.zmq.requests", adder, LongAdder::sum)
+                .description("ZMQ requests by correlation outcome")
+                .tag("event", event)
+                .register(registry);
+
+    }
+
+    /**
+     * Starts the timer that advances the wheel.
+     */
+    public void start() {
+
+        timerId = vertx.setPeriodic(TICK_MS, id -> wheel.advance(nowMs(), this::expire));
+
+    }
+
+    /**
+     * Registers an in-flight request with the default deadline.
+     *
+     * @param requestId the request id
+     * @param message   the message waiting for the reply
+     */
+    public void register(String requestId, Message<?> message) {
+
+        register(requestId, message, defaultTimeoutMs);
+
+    }
+
+    /**
+     * Registers an in-flight request with its own deadline.
+     *
+     * @param requestId the request id
+     * @param message   the message waiting for the reply, or null if the reply is not routed back
+     * @param timeoutMs the time allowed for the reply
+     */
+    public void register(String requestId, Message<?> message, long timeoutMs) {
+
+        var entry = new Entry(requestId, message, timeoutMs);
+
+        entry.timeout = wheel.schedule(entry, nowMs() + timeoutMs);
+
+        var previous = inFlight.put(requestId, entry);
+
+        if (previous != null) {
+
+            previous.timeout.cancel();
+
+        }
+
+        registered.increment();
+
+    }
+
+    /**
+     * Removes the entry for a reply.
+     *
+     * @param requestId the request id
+     * @return the waiting message, or null if the reply is orphaned
+     */
+    public Message<?> complete(String requestId) {
+
+        var entry = take(requestId);
+
+        return entry == null ? null : entry.message;
+
+    }
+
+    /**
+     * Removes the entry for the reply to a request registered without a waiting message.
+     *
+     * @param requestId the request id
+     * @return false if the reply is orphaned
+     */
+    public boolean acknowledge(String requestId) {
+
+        return take(requestId) != null;
+
+    }
+
+    private Entry take(String requestId) {
+
+        var entry = inFlight.remove(requestId);
+
+        if (entry == null) {
+
+            orphaned.increment();
+
+            return null;
+
+        }
+
+        entry.timeout.cancel();
+
+        completed.increment();
+
+        roundTrip.record(System.nanoTime() - entry.registeredAtNanos, TimeUnit.NANOSECONDS);
+
+        return entry;
+
+    }
+
+    /**
+     * Returns the waiting message without removing the entry.
+     *
+     * @param requestId the request id
+     * @return the message, or null
+     */
+    public Message<?> get(String requestId) {
+
+        var entry = inFlight.get(requestId);
+
+        return entry == null ? null : entry.message;
+
+    }
+
+    /**
+     * Removes an entry without counting it as completed, e.g. when the send itself failed.
+     *
+     * @param requestId the request id
+     */
+    public void remove(String requestId) {
+
+        var entry = inFlight.remove(requestId);
+
+        if (entry != null) {
+
+            entry.timeout.cancel();
+
+        }
+
+    }
+
+    private void expire(Entry entry) {
+
+        if (!inFlight.remove(entry.requestId, entry)) {
+
+            return;
+
+        }
+
+        expired.increment();
+
+        LOGGER.warn("ZMQ request timed out after " + entry.timeoutMs + " ms for requestId: " + entry.requestId);
+
+        if (entry.message != null) {
+
+            entry.message.fail(504, "ZMQ request timed out for requestId: " + entry.requestId);
+
+        }
+
+    }
+
+    /**
+     * Returns the number of in-flight requests.
+     *
+     * @return the int
+     */
+    public int size() {
+
+        return inFlight.size();
+
+    }
+
+    /**
+     * Returns the registry counters.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        return new JsonObject()
+                .put("inFlight", inFlight.size())
+                .put("registered", registered.sum())
+                .put("completed", completed.sum())
+                .put("expired", expired.sum())
+                .put("orphaned", orphaned.sum());
+
+    }
+
+    /**
+     * Stops the wheel timer and fails every request still waiting.
+     */
+    public void close() {
+
+        vertx.cancelTimer(timerId);
+
+        inFlight.values().forEach(entry -> {
+
+            entry.timeout.cancel();
+
+            if (entry.message != null) {
+
+                entry.message.fail(503, "ZMQ service is shutting down");
+
+            }
+
+        });
+
+        inFlight.clear();
+
+    }
+
+    private static long nowMs() {
+
+        return System.nanoTime() / 1_000_000;
+
+    }
+
+    private static final class Entry {
+
+        private final String requestId;
+
+        private final Message<?> message;
+
+        private final long timeoutMs;
+
+        private final long registeredAtNanos = System.nanoTime();
+
+        private volatile HashedTimingWheel.Timeout<Entry> timeout;
+
+        private Entry(String requestId, Message<?> message, long timeoutMs) {
+
+            this.requestId = requestId;
+
+            this.message = message;
+
+            this.timeoutMs = timeoutMs;
+
+        }
+
+    }
+
+}
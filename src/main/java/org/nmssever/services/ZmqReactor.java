@@ -0,0 +1,439 @@
+package org.nmssever.services;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.services.ZmqWireCodec.Format;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Dedicated I/O thread for the ZMQ DEALER socket.
+ * <p>
+ * The thread blocks in {@link ZMQ.Poller#poll(long)} on the DEALER socket and an inproc PAIR wakeup
+ * socket, so it costs nothing while idle and reacts as soon as a reply arrives. Sends are queued by any
+ * thread and written by the reactor thread after a wakeup signal, which keeps every socket confined to
+ * a single thread. Requests are encoded and replies decoded on the reactor thread, so the event loop only
+ * sees ready {@link JsonObject}s.
+ * <p>
+ * With no fixed wire format every request advertises the formats this side accepts and is sent as JSON;
+ * the first reply that arrives as CBOR switches later requests to CBOR. Replies are accepted in either
+ * format at any time.
+ */
+public class ZmqReactor {
+
+    private static final String WAKEUP_ADDRESS_PREFIX = "inproc://zmq-reactor-wakeup-";
+
+    private static final long POLL_TIMEOUT_MS = 1000;
+
+    private static final long STATS_LOG_INTERVAL_NANOS = 60_000_000_000L;
+
+    private static final AtomicLong INSTANCE_COUNTER = new AtomicLong();
+
+    private final Logger LOGGER = LoggerFactory.getLogger(ZmqReactor.class);
+
+    private final Context vertxContext;
+
+    private final String endpoint;
+
+    private final BiConsumer<String, JsonObject> replyHandler;
+
+    private final ZContext zmqContext = new ZContext(1);
+
+    private final ConcurrentLinkedQueue<OutboundFrame> outbound = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    private final AtomicLong dispatchCount = new AtomicLong();
+
+    private final AtomicLong totalDispatchLatencyNanos = new AtomicLong();
+
+    private final AtomicLong maxDispatchLatencyNanos = new AtomicLong();
+
+    private final AtomicLong wakeups = new AtomicLong();
+
+    private final AtomicLong framesSent = new AtomicLong();
+
+    private final AtomicLong framesReceived = new AtomicLong();
+
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    private final AtomicLong cborReplies = new AtomicLong();
+
+    private final AtomicLong decodeErrors = new AtomicLong();
+
+    private final boolean negotiate;
+
+    private volatile Format outboundFormat;
+
+    private ZMQ.Socket dealer;
+
+    private ZMQ.Socket wakeupReceiver;
+
+    private ZMQ.Socket wakeupSender;
+
+    private Thread thread;
+
+    private volatile boolean running;
+
+    /**
+     * Instantiates a new Zmq reactor.
+     *
+     * @param vertxContext the context replies are dispatched on
+     * @param endpoint     the endpoint the DEALER socket connects to
+     * @param replyHandler receives the request id and decoded reply on the Vert.x context
+     * @param wireFormat   the fixed request format, or null to negotiate
+     */
+    public ZmqReactor(Context vertxContext, String endpoint, BiConsumer<String, JsonObject> replyHandler, Format wireFormat) {
+
+        this.vertxContext = vertxContext;
+
+        this.endpoint = endpoint;
+
+        this.replyHandler = replyHandler;
+
+        this.negotiate = wireFormat == null;
+
+        this.outboundFormat = wireFormat == null ? Format.JSON : wireFormat;
+
+    }
+
+    /**
+     * Creates the sockets and starts the reactor thread.
+     */
+    public void start() {
+
+        var wakeupAddress = WAKEUP_ADDRESS_PREFIX + INSTANCE_COUNTER.incrementAndGet();
+
+        dealer = zmqContext.createSocket(SocketType.DEALER);
+
+        dealer.setLinger(0);
+
+        dealer.connect(endpoint);
+
+        wakeupReceiver = zmqContext.createSocket(SocketType.PAIR);
+
+        wakeupReceiver.bind(wakeupAddress);
+
+        wakeupSender = zmqContext.createSocket(SocketType.PAIR);
+
+        wakeupSender.connect(wakeupAddress);
+
+        running = true;
+
+        thread = new Thread(this::run, "zmq-reactor");
+
+        thread.setDaemon(true);
+
+        thread.start();
+
+        LOGGER.info("ZMQ reactor started, DEALER connected to: " + endpoint + ", wire format: " + (negotiate ? "negotiated" : outboundFormat.getToken()));
+
+    }
+
+    /**
+     * Queues a request for the reactor thread.
+     *
+     * @param requestId the request id used as the routing frame
+     * @param payload   the payload, owned by the reactor from now on
+     * @param onSent    called on the Vert.x context with whether the frames were accepted by the socket
+     */
+    public void send(String requestId, JsonObject payload, Handler<Boolean> onSent) {
+
+        if (!running) {
+
+            vertxContext.runOnContext(v -> onSent.handle(false));
+
+            return;
+
+        }
+
+        if (negotiate && outboundFormat == Format.JSON) {
+
+            payload.put(ZmqWireCodec.WIRE_FORMATS_FIELD, new JsonArray().add(Format.CBOR.getToken()).add(Format.JSON.getToken()));
+
+        }
+
+        outbound.add(new OutboundFrame(requestId, payload, onSent));
+
+        if (wakeupPending.compareAndSet(false, true)) {
+
+            synchronized (this) {
+
+                if (running) {
+
+                    wakeupSender.send(new byte[1], ZMQ.DONTWAIT);
+
+                }
+
+            }
+
+        }
+
+    }
+
+    private void run() {
+
+        var poller = zmqContext.createPoller(2);
+
+        var dealerIndex = poller.register(dealer, ZMQ.Poller.POLLIN);
+
+        var wakeupIndex = poller.register(wakeupReceiver, ZMQ.Poller.POLLIN);
+
+        var lastStatsLogNanos = System.nanoTime();
+
+        try {
+
+            while (running && !Thread.currentThread().isInterrupted()) {
+
+                if (poller.poll(POLL_TIMEOUT_MS) > 0) {
+
+                    wakeups.incrementAndGet();
+
+                }
+
+                var wakeNanos = System.nanoTime();
+
+                if (poller.pollin(wakeupIndex)) {
+
+                    while (wakeupReceiver.recv(ZMQ.DONTWAIT) != null) {
+
+                        // Drain coalesced wakeup signals
+
+                    }
+
+                    wakeupPending.set(false);
+
+                }
+
+                drainOutbound();
+
+                if (poller.pollin(dealerIndex)) {
+
+                    drainInbound(wakeNanos);
+
+                }
+
+                if (wakeNanos - lastStatsLogNanos >= STATS_LOG_INTERVAL_NANOS) {
+
+                    lastStatsLogNanos = wakeNanos;
+
+                    LOGGER.info("ZMQ reactor stats: " + stats().encode());
+
+                }
+
+            }
+
+        } catch (Exception e) {
+
+            if (running) {
+
+                LOGGER.error("ZMQ reactor loop terminated unexpectedly", e);
+
+            }
+
+        } finally {
+
+            poller.close();
+
+            dealer.close();
+
+            wakeupReceiver.close();
+
+        }
+
+    }
+
+    private void drainOutbound() {
+
+        OutboundFrame frame;
+
+        while ((frame = outbound.poll()) != null) {
+
+            var onSent = frame.onSent();
+
+            byte[] payload;
+
+            try {
+
+                payload = ZmqWireCodec.encode(frame.payload(), outboundFormat);
+
+            } catch (Exception e) {
+
+                LOGGER.error("Error encoding request for clientID: " + frame.requestId(), e);
+
+                vertxContext.runOnContext(v -> onSent.handle(false));
+
+                continue;
+
+            }
+
+            var sent = dealer.send(frame.requestId(), ZMQ.SNDMORE | ZMQ.DONTWAIT)
+                    && dealer.send("", ZMQ.SNDMORE | ZMQ.DONTWAIT)
+                    && dealer.send(payload, ZMQ.DONTWAIT);
+
+            if (sent) {
+
+                framesSent.incrementAndGet();
+
+                bytesSent.addAndGet(payload.length);
+
+            }
+
+
+            vertxContext.runOnContext(v -> onSent.handle(sent));
+
+        }
+
+    }
+
+    private void drainInbound(long wakeNanos) {
+
+        String requestId;
+
+        while ((requestId = dealer.recvStr(ZMQ.DONTWAIT)) != null) {
+
+            dealer.recvStr(); // Discard empty delimiter frame
+
+            var payload = dealer.recv();
+
+            framesReceived.incrementAndGet();
+
+            bytesReceived.addAndGet(payload == null ? 0 : payload.length);
+
+            ZmqWireCodec.Decoded decoded;
+
+            try {
+
+                decoded = ZmqWireCodec.decode(payload);
+
+            } catch (Exception e) {
+
+                decodeErrors.incrementAndGet();
+
+                LOGGER.error("Error decoding response for clientID: " + requestId, e);
+
+                continue;
+
+            }
+
+            if (decoded.format() == Format.CBOR) {
+
+                cborReplies.incrementAndGet();
+
+                if (negotiate && outboundFormat != Format.CBOR) {
+
+                    outboundFormat = Format.CBOR;
+
+                    LOGGER.info("ZMQ plugin replied in " + Format.CBOR.getToken() + ", switching requests to it");
+
+                }
+
+            }
+
+            var reply = decoded.body();
+
+            var clientID = requestId;
+
+            vertxContext.runOnContext(v -> {
+
+                recordDispatchLatency(System.nanoTime() - wakeNanos);
+
+                replyHandler.accept(clientID, reply);
+
+            });
+
+        }
+
+    }
+
+    private void recordDispatchLatency(long latencyNanos) {
+
+        dispatchCount.incrementAndGet();
+
+        totalDispatchLatencyNanos.addAndGet(latencyNanos);
+
+        maxDispatchLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+
+    }
+
+    /**
+     * Returns a snapshot of the reactor statistics, including wakeup-to-dispatch latency.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        var dispatched = dispatchCount.get();
+
+        return new JsonObject()
+                .put("wakeups", wakeups.get())
+                .put("framesSent", framesSent.get())
+                .put("framesReceived", framesReceived.get())
+                .put("bytesSent", bytesSent.get())
+                .put("bytesReceived", bytesReceived.get())
+                .put("cborReplies", cborReplies.get())
+                .put("decodeErrors", decodeErrors.get())
+                .put("wireFormat", outboundFormat.getToken())
+                .put("pendingSends", outbound.size())
+                .put("dispatched", dispatched)
+                .put("avgDispatchLatencyMicros", dispatched == 0 ? 0 : totalDispatchLatencyNanos.get() / dispatched / 1000.0)
+                .put("maxDispatchLatencyMicros", maxDispatchLatencyNanos.get() / 1000.0);
+
+    }
+
+    /**
+     * Stops the reactor thread and terminates the ZMQ context.
+     */
+    public void close() {
+
+        synchronized (this) {
+
+            running = false;
+
+            if (wakeupSender != null) {
+
+                wakeupSender.send(new byte[1], ZMQ.DONTWAIT);
+
+                wakeupSender.close();
+
+            }
+
+        }
+
+        if (thread != null) {
+
+            try {
+
+                thread.join(POLL_TIMEOUT_MS * 2);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+
+            }
+
+        }
+
+        zmqContext.close();
+
+        LOGGER.info("ZMQ reactor stopped");
+
+    }
+
+    private record OutboundFrame(String requestId, JsonObject payload, Handler<Boolean> onSent) {
+
+    }
+
+}
@@ -0,0 +1,248 @@
+package org.nmssever.services;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.messages.PolledData;
+import org.nmssever.util.ConfigUtil;
+import org.nmssever.util.Constants;
+import org.nmssever.util.LogSampler;
+
+/**
+ * Sends requests to the ZMQ plugin and routes its replies.
+ * <p>
+ * Socket I/O runs on the {@link ZmqReactor} thread. Every request is registered in the
+ * {@link ZmqCorrelationRegistry}. Discovery requests are answered with the plugin's reply, or failed with
+ * 504 at their deadline; polls are registered with their own deadline and no waiting message, and their
+ * replies are handed to {@link Constants#ZMQ_POLLED_DATA} as {@link PolledData}.
+ */
+public class ZmqService {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(ZmqService.class);
+
+    private final EventBus eventBus;
+
+    private final ZmqReactor reactor;
+
+    private final ZmqCorrelationRegistry routingTable;
+
+    private final long pollTimeoutMs;
+
+    private final LogSampler sendLogSampler = LogSampler.fromConfig();
+
+    private final LogSampler replyLogSampler = LogSampler.fromConfig();
+
+    /**
+     * Instantiates a new Zmq service and binds its socket.
+     *
+     * @param vertx the vertx
+     */
+    public ZmqService(Vertx vertx) {
+
+        this.eventBus = vertx.eventBus();
+
+        this.routingTable = new ZmqCorrelationRegistry(vertx, ConfigUtil.getLong("ZMQ_REQUEST_TIMEOUT_MS", Constants.ZMQ_REQUEST_TIMEOUT_MS));
+
+        this.routingTable.start();
+
+        this.pollTimeoutMs = ConfigUtil.getLong("ZMQ_POLL_TIMEOUT_MS", Constants.ZMQ_POLL_TIMEOUT_MS);
+
+        this.reactor = new ZmqReactor(vertx.getOrCreateContext(), Constants.ZMQ_BIND_ADDRESS, this::handleReply,
+                ZmqWireCodec.parsePreference(ConfigUtil.getString("ZMQ_WIRE_FORMAT", Constants.ZMQ_WIRE_FORMAT)));
+
+        this.reactor.start();
+
+    }
+
+    /**
+     * Sends a request whose answer comes from the plugin. The message is replied to with the plugin's
+     * reply, or failed with 504 when none arrives before the deadline.
+     *
+     * @param requestId the request id
+     * @param message   the message waiting for the reply
+     */
+    public void send(String requestId, Message<JsonObject> message) {
+
+        logSend(requestId);
+
+        routingTable.register(requestId, message);
+
+        reactor.send(requestId, message.body().copy(), sent -> {
+
+            if (!sent) {
+
+                LOGGER.error("Failed to send message for requestId: " + requestId);
+
+                routingTable.remove(requestId);
+
+                message.fail(502, "Failed to send ZMQ request");
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Sends a poll. Its reply is ingested as polled data rather than routed back, so the message is
+     * answered as soon as the request has been handed to the socket and the poll is registered without it.
+     *
+     * @param requestId the request id
+     * @param message   the polling request message
+     * @param payload   the request, owned by the reactor from now on
+     */
+    public void sendPoll(String requestId, Message<?> message, JsonObject payload) {
+
+        logSend(requestId);
+
+        routingTable.register(requestId, null, pollTimeoutMs);
+
+        reactor.send(requestId, payload, sent -> {
+
+            if (sent) {
+
+                message.reply(new JsonObject().put("status", "sent").put("requestId", requestId));
+
+            } else {
+
+                LOGGER.error("Failed to send message for requestId: " + requestId);
+
+                routingTable.remove(requestId);
+
+                message.fail(502, "Failed to send ZMQ request");
+
+            }
+
+        });
+
+    }
+
+    private void logSend(String requestId) {
+
+        if (LOGGER.isDebugEnabled()) {
+
+            LOGGER.debug("Sending message with requestId: " + requestId);
+
+        } else if (sendLogSampler.sample()) {
+
+            LOGGER.info("Sending ZMQ message with requestId: " + requestId + " (" + sendLogSampler.drainSuppressed() + " similar suppressed)");
+
+        }
+
+    }
+
+    private void handleReply(String clientID, JsonObject response) {
+
+        try {
+
+            // Poll replies have no waiting message; a late one is still ingested, only counted as orphaned
+            if ("provisioning".equalsIgnoreCase(response.getString("RequestType"))) {
+
+                if (!routingTable.acknowledge(clientID) && LOGGER.isDebugEnabled()) {
+
+                    LOGGER.debug("Provisioning response arrived after its deadline for clientID: " + clientID);
+
+                }
+
+                handleProvisioningResponse(clientID, response);
+
+                if (LOGGER.isDebugEnabled()) {
+
+                    LOGGER.debug("Provisioning response processed for clientID: " + clientID);
+
+                } else if (replyLogSampler.sample()) {
+
+                    LOGGER.info("Provisioning response processed for clientID: " + clientID + " (" + replyLogSampler.drainSuppressed() + " similar suppressed)");
+
+                }
+
+                return;
+
+            }
+
+            var message = routingTable.complete(clientID);
+
+            if (message == null) {
+
+                LOGGER.warn("Dropping orphaned response for clientID: " + clientID);
+
+                return;
+
+            }
+
+            message.reply(response);
+
+            LOGGER.info("Discovery response replied for clientID: " + clientID);
+
+        } catch (Exception e) {
+
+            LOGGER.error("Error processing response for clientID: " + clientID, e);
+
+        }
+
+    }
+
+    private void handleProvisioningResponse(String clientID, JsonObject responseJson) {
+
+        var status = responseJson.getString("status");
+
+        var discoveryProfileId = responseJson.getInteger("discovery_profile_id");
+
+        if (discoveryProfileId == null) {
+
+            LOGGER.warn("Dropping provisioning response without discovery_profile_id for clientID: " + clientID);
+
+            return;
+
+        }
+
+        var success = "success".equalsIgnoreCase(status);
+
+        var body = success ? responseJson.getJsonObject("result") : responseJson.getJsonObject("errors");
+
+        // The reply was decoded for this message only, so its body is handed over without a copy
+        eventBus.send(Constants.ZMQ_POLLED_DATA, new PolledData(clientID, discoveryProfileId, body == null ? new JsonObject() : body, !success, System.currentTimeMillis()));
+
+    }
+
+    /**
+     * Gets the reactor statistics.
+     *
+     * @return the json object
+     */
+    public JsonObject getReactorStats() {
+
+        return reactor.stats();
+
+    }
+
+    /**
+     * Gets the correlation registry statistics.
+     *
+     * @return the json object
+     */
+    public JsonObject getRoutingTableStats() {
+
+        return routingTable.stats();
+
+    }
+
+    /**
+     * Closes the reactor and fails every request still waiting for a reply.
+     */
+    public void close() {
+
+        LOGGER.info("Closing ZMQ reactor");
+
+        reactor.close();
+
+        routingTable.close();
+
+        LOGGER.info("ZMQ reactor closed successfully");
+
+    }
+
+}
@@ -0,0 +1,189 @@
+package org.nmssever.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.VertxModule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Encodes and decodes the payload frame exchanged with the ZMQ plugin.
+ * <p>
+ * A binary frame starts with a version byte followed by a CBOR map; {@link #CBOR_V1} is the only version
+ * defined so far. A JSON frame is plain UTF-8 text, so it always starts with {@code '{'} or, for plugins
+ * that still wrap the reply in a JSON string, {@code '"'}. The first byte is therefore enough to tell the
+ * formats apart and both can be received on the same socket.
+ */
+public final class ZmqWireCodec {
+
+    /**
+     * The version byte of a CBOR frame.
+     */
+    public static final byte CBOR_V1 = 0x01;
+
+    /**
+     * The request field advertising the formats this server accepts, most preferred first.
+     */
+    public static final String WIRE_FORMATS_FIELD = "WireFormats";
+
+    private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory()).registerModule(new VertxModule());
+
+    /**
+     * The wire format of a frame.
+     */
+    public enum Format {
+
+        /**
+         * UTF-8 JSON text.
+         */
+        JSON("json"),
+
+        /**
+         * Version-prefixed CBOR.
+         */
+        CBOR("cbor/1");
+
+        private final String token;
+
+        Format(String token) {
+
+            this.token = token;
+
+        }
+
+        /**
+         * Gets the token advertised in {@link #WIRE_FORMATS_FIELD}.
+         *
+         * @return the token
+         */
+        public String getToken() {
+
+            return token;
+
+        }
+
+    }
+
+    /**
+     * A decoded frame together with the format it arrived in.
+     *
+     * @param body   the body
+     * @param format the format
+     */
+    public record Decoded(JsonObject body, Format format) {
+
+    }
+
+    private ZmqWireCodec() {
+
+    }
+
+    /**
+     * Encodes a payload.
+     *
+     * @param payload the payload
+     * @param format  the format
+     * @return the frame
+     */
+    public static byte[] encode(JsonObject payload, Format format) {
+
+        if (format == Format.JSON) {
+
+            return payload.toBuffer().getBytes();
+
+        }
+
+        try {
+
+            var out = new ByteArrayOutputStream(256);
+
+            out.write(CBOR_V1);
+
+            CBOR_MAPPER.writeValue(out, payload.getMap());
+
+            return out.toByteArray();
+
+        } catch (IOException e) {
+
+            throw new IllegalStateException("Failed to encode CBOR frame", e);
+
+        }
+
+    }
+
+    /**
+     * Decodes a frame in any supported format.
+     *
+     * @param frame the frame
+     * @return the decoded frame
+     * @throws DecodeException if the frame is empty, of an unknown version or malformed
+     */
+    @SuppressWarnings("unchecked")
+    public static Decoded decode(byte[] frame) {
+
+        if (frame == null || frame.length == 0) {
+
+            throw new DecodeException("Empty ZMQ frame");
+
+        }
+
+        var first = frame[0];
+
+        if (first == CBOR_V1) {
+
+            try {
+
+                return new Decoded(new JsonObject(CBOR_MAPPER.readValue(frame, 1, frame.length - 1, Map.class)), Format.CBOR);
+
+            } catch (IOException e) {
+
+                throw new DecodeException("Malformed CBOR frame: " + e.getMessage(), e);
+
+            }
+
+        }
+
+        if (first == '"') {
+
+            // Legacy plugins wrap the JSON reply in a JSON string, which costs a second parse
+            return new Decoded(new JsonObject(Json.decodeValue(Buffer.buffer(frame), String.class)), Format.JSON);
+
+        }
+
+        if (first == '{' || Character.isWhitespace(first)) {
+
+            return new Decoded(new JsonObject(Buffer.buffer(frame)), Format.JSON);
+
+        }
+
+        throw new DecodeException("Unsupported ZMQ frame version: " + first);
+
+    }
+
+    /**
+     * Parses a configured format preference.
+     *
+     * @param value json, cbor or auto
+     * @return the fixed format, or null for auto negotiation
+     */
+    public static Format parsePreference(String value) {
+
+        return switch (value == null ? "auto" : value.trim().toLowerCase()) {
+
+            case "json" -> Format.JSON;
+
+            case "cbor" -> Format.CBOR;
+
+            default -> null;
+
+        };
+
+    }
+
+}
@@ -0,0 +1,432 @@
+package org.nmssever.tsdb;
+
+import java.util.Arrays;
+
+/**
+ * One block of a time series, compressed as in Facebook's Gorilla: timestamps as delta-of-deltas and
+ * values as the XOR with the previous value, written into a growable {@code long[]} bit stream.
+ * <p>
+ * The first point is stored raw (64 bit millisecond timestamp, 64 bit IEEE 754 value). Each following
+ * timestamp is the difference between its delta and the previous delta, with the prefixes
+ * {@code 0} (unchanged), {@code 10}, {@code 110}, {@code 1110} and {@code 11110} for 7, 9, 12 and 32 bit
+ * two's complement values and {@code 11111} for a raw 64 bit value. Each following value is {@code 0} when
+ * it repeats, {@code 10} plus the meaningful bits when the XOR fits the previous leading and trailing zero
+ * window, or {@code 11}, 5 bits of leading zeros, 6 bits of length and the meaningful bits otherwise. A
+ * regularly polled gauge costs a few bits per timestamp and typically 10 to 30 bits per value.
+ * <p>
+ * Points must be appended in timestamp order. Not thread safe.
+ */
+final class GorillaChunk {
+
+    private static final int INITIAL_WORDS = 8;
+
+    /**
+     * Estimated fixed heap cost of a chunk: object header and fields plus the array header.
+     */
+    static final int OVERHEAD_BYTES = 96;
+
+    private long[] words = new long[INITIAL_WORDS];
+
+    private int bitLength;
+
+    private int count;
+
+    private boolean sealed;
+
+    private long firstTimestamp;
+
+    private long lastTimestamp;
+
+    private long lastDelta;
+
+    private long lastValueBits;
+
+    private int lastLeading = -1;
+
+    private int lastTrailing;
+
+    /**
+     * Appends a point.
+     *
+     * @param timestamp the epoch millisecond timestamp, not before the last one
+     * @param value     the value
+     */
+    void append(long timestamp, double value) {
+
+        if (sealed) {
+
+            throw new IllegalStateException("Chunk is sealed");
+
+        }
+
+        var valueBits = Double.doubleToRawLongBits(value);
+
+        if (count == 0) {
+
+            write(timestamp, 64);
+
+            write(valueBits, 64);
+
+            firstTimestamp = timestamp;
+
+        } else {
+
+            var delta = timestamp - lastTimestamp;
+
+            writeDeltaOfDelta(delta - lastDelta);
+
+            writeValue(valueBits ^ lastValueBits);
+
+            lastDelta = delta;
+
+        }
+
+        lastTimestamp = timestamp;
+
+        lastValueBits = valueBits;
+
+        count++;
+
+    }
+
+    private void writeDeltaOfDelta(long deltaOfDelta) {
+
+        if (deltaOfDelta == 0) {
+
+            write(0, 1);
+
+        } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+
+            write(0b10, 2);
+
+            write(deltaOfDelta, 7);
+
+        } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+
+            write(0b110, 3);
+
+            write(deltaOfDelta, 9);
+
+        } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+
+            write(0b1110, 4);
+
+            write(deltaOfDelta, 12);
+
+        } else if (deltaOfDelta >= Integer.MIN_VALUE && deltaOfDelta <= Integer.MAX_VALUE) {
+
+            write(0b11110, 5);
+
+            write(deltaOfDelta, 32);
+
+        } else {
+
+            write(0b11111, 5);
+
+            write(deltaOfDelta, 64);
+
+        }
+
+    }
+
+    private void writeValue(long xor) {
+
+        if (xor == 0) {
+
+            write(0, 1);
+
+            return;
+
+        }
+
+        var leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+
+        var trailing = Long.numberOfTrailingZeros(xor);
+
+        if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+
+            write(0b10, 2);
+
+            write(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+
+            return;
+
+        }
+
+        var meaningful = 64 - leading - trailing;
+
+        write(0b11, 2);
+
+        write(leading, 5);
+
+        write(meaningful - 1, 6);
+
+        write(xor >>> trailing, meaningful);
+
+        lastLeading = leading;
+
+        lastTrailing = trailing;
+
+    }
+
+    private void write(long value, int bits) {
+
+        var needed = (bitLength + bits + 63) >>> 6;
+
+        if (needed > words.length) {
+
+            words = Arrays.copyOf(words, Math.max(needed, words.length * 2));
+
+        }
+
+        var word = bitLength >>> 6;
+
+        var free = 64 - (bitLength & 63);
+
+        var masked = value & mask(bits);
+
+        if (bits <= free) {
+
+            words[word] |= masked << (free - bits);
+
+        } else {
+
+            words[word] |= masked >>> (bits - free);
+
+            words[word + 1] |= masked << (64 - (bits - free));
+
+        }
+
+        bitLength += bits;
+
+    }
+
+    private static long mask(int bits) {
+
+        return bits == 64 ? -1L : (1L << bits) - 1;
+
+    }
+
+    /**
+     * Trims the bit stream to its length; no point can be appended afterwards.
+     */
+    void seal() {
+
+        words = Arrays.copyOf(words, (bitLength + 63) >>> 6);
+
+        sealed = true;
+
+    }
+
+    /**
+     * Passes every point in [from, to) to the consumer, in timestamp order.
+     *
+     * @param from     the inclusive epoch millisecond start
+     * @param to       the exclusive epoch millisecond end
+     * @param consumer the consumer
+     * @return the number of points passed
+     */
+    int scan(long from, long to, RecentSeriesStore.PointConsumer consumer) {
+
+        if (count == 0 || lastTimestamp < from || firstTimestamp >= to) {
+
+            return 0;
+
+        }
+
+        var reader = new Reader();
+
+        var passed = 0;
+
+        for (var i = 0; i < count; i++) {
+
+            reader.next(i == 0);
+
+            if (reader.timestamp >= to) {
+
+                break;
+
+            }
+
+            if (reader.timestamp >= from) {
+
+                consumer.accept(reader.timestamp, Double.longBitsToDouble(reader.valueBits));
+
+                passed++;
+
+            }
+
+        }
+
+        return passed;
+
+    }
+
+    /**
+     * Gets the number of points.
+     *
+     * @return the int
+     */
+    int count() {
+
+        return count;
+
+    }
+
+    /**
+     * Gets the first timestamp.
+     *
+     * @return the epoch millisecond timestamp
+     */
+    long firstTimestamp() {
+
+        return firstTimestamp;
+
+    }
+
+    /**
+     * Gets the last timestamp.
+     *
+     * @return the epoch millisecond timestamp
+     */
+    long lastTimestamp() {
+
+        return lastTimestamp;
+
+    }
+
+    /**
+     * Gets the estimated heap size.
+     *
+     * @return the bytes
+     */
+    long sizeBytes() {
+
+        return OVERHEAD_BYTES + 8L * words.length;
+
+    }
+
+    /**
+     * Gets the number of bits written.
+     *
+     * @return the bits
+     */
+    long bitLength() {
+
+        return bitLength;
+
+    }
+
+    private final class Reader {
+
+        private int position;
+
+        private long timestamp;
+
+        private long delta;
+
+        private long valueBits;
+
+        private int leading;
+
+        private int trailing;
+
+        void next(boolean first) {
+
+            if (first) {
+
+                timestamp = read(64);
+
+                valueBits = read(64);
+
+                return;
+
+            }
+
+            delta += readDeltaOfDelta();
+
+            timestamp += delta;
+
+            if (read(1) == 0) {
+
+                return;
+
+            }
+
+            if (read(1) == 1) {
+
+                leading = (int) read(5);
+
+                trailing = 64 - leading - ((int) read(6) + 1);
+
+            }
+
+            valueBits ^= read(64 - leading - trailing) << trailing;
+
+        }
+
+        private long readDeltaOfDelta() {
+
+            if (read(1) == 0) {
+
+                return 0;
+
+            }
+
+            if (read(1) == 0) {
+
+                return signed(read(7), 7);
+
+            }
+
+            if (read(1) == 0) {
+
+                return signed(read(9), 9);
+
+            }
+
+            if (read(1) == 0) {
+
+                return signed(read(12), 12);
+
+            }
+
+            return read(1) == 0 ? signed(read(32), 32) : read(64);
+
+        }
+
+        private long read(int bits) {
+
+            var word = position >>> 6;
+
+            var free = 64 - (position & 63);
+
+            long result;
+
+            if (bits <= free) {
+
+                result = (words[word] >>> (free - bits)) & mask(bits);
+
+            } else {
+
+                var rest = bits - free;
+
+                result = ((words[word] & mask(free)) << rest) | (words[word + 1] >>> (64 - rest));
+
+            }
+
+            position += bits;
+
+            return result;
+
+        }
+
+        private static long signed(long value, int bits) {
+
+            return (value << (64 - bits)) >> (64 - bits);
+
+        }
+
+    }
+
+}
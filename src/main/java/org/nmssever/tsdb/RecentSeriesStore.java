@@ -0,0 +1,517 @@
+package org.nmssever.tsdb;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.metrics.AppMetrics;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory store of the recent window of every device's flattened metrics, so range queries over that
+ * window are answered without PostgreSQL.
+ * <p>
+ * Each (device, metric) series is a queue of {@link GorillaChunk}s spanning {@code chunkDurationMs} each;
+ * the head chunk takes appends and is trimmed when the next one starts. Series are found through a map
+ * keyed by device whose values are arrays indexed by metric id, so an append costs one map lookup.
+ * A periodic sweep drops chunks that ended before the window. Timestamps are the local wall-clock
+ * date-times used by {@code metricsamples}, expressed as milliseconds with a zero offset, so buckets line
+ * up with the ones computed by PostgreSQL. When that clock steps back, at a DST fall-back or an NTP
+ * correction, points not newer than their series' last one are dropped and counted; the store then no
+ * longer claims the span they fell behind, so queries over it are read from PostgreSQL.
+ * <p>
+ * The store starts empty and covers only what was received since startup; {@link #coveredFrom()} tells
+ * callers from when it can answer. Size is published as {@code nms.tsdb.*} gauges and per device and day
+ * in {@link #stats()}. Must be used from the owning verticle's context.
+ */
+public class RecentSeriesStore {
+
+    private static final long STATS_LOG_INTERVAL_MS = 60000;
+
+    private static final long DAY_MS = 86400000;
+
+    /**
+     * Estimated fixed heap cost of a series: the object, its chunk queue and the array slot.
+     */
+    private static final int SERIES_OVERHEAD_BYTES = 72;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(RecentSeriesStore.class);
+
+    private final Vertx vertx;
+
+    private final long windowMs;
+
+    private final long chunkDurationMs;
+
+    private final long evictionIntervalMs;
+
+    private final Map<Integer, Series[]> devices = new HashMap<>();
+
+    private final Timer queryTimer;
+
+    private final long startedAt;
+
+    private long evictionTimerId = -1;
+
+    private long statsTimerId = -1;
+
+    private long points;
+
+    private long seriesCount;
+
+    private long sizeBytes;
+
+    private long droppedPoints;
+
+    private long incompleteUntil = Long.MIN_VALUE;
+
+    private long evictedChunks;
+
+    /**
+     * Receives the points of a range query.
+     */
+    @FunctionalInterface
+    public interface PointConsumer {
+
+        /**
+         * Accepts a point.
+         *
+         * @param timestamp the timestamp in store milliseconds
+         * @param value     the value
+         */
+        void accept(long timestamp, double value);
+
+    }
+
+    private static final class Series {
+
+        private final ArrayDeque<GorillaChunk> chunks = new ArrayDeque<>();
+
+        private long lastTimestamp = Long.MIN_VALUE;
+
+    }
+
+    /**
+     * Instantiates a new Recent series store.
+     *
+     * @param vertx              the vertx
+     * @param windowMs           how long points are kept
+     * @param chunkDurationMs    the time span of one chunk
+     * @param evictionIntervalMs the interval of the eviction sweep
+     */
+    public RecentSeriesStore(Vertx vertx, long windowMs, long chunkDurationMs, long evictionIntervalMs) {
+
+        this.vertx = vertx;
+
+        this.windowMs = Math.max(60000, windowMs);
+
+        this.chunkDurationMs = Math.max(60000, Math.min(chunkDurationMs, this.windowMs));
+
+        this.evictionIntervalMs = Math.max(1000, evictionIntervalMs);
+
+        this.startedAt = toMillis(LocalDateTime.now());
+
+        var registry = AppMetrics.registry();
+
+        this.queryTimer = Timer.builder("nms.tsdb.query")
+                .description("Latency of one in-memory range query")
+                .register(registry);
+
+        Gauge.builder("nms.tsdb.points", this, store -> store.points)
+                .description("Points held in memory")
+                .register(registry);
+
+        Gauge.builder("nms.tsdb.series", this, store -> store.seriesCount)
+                .description("Series held in memory")
+                .register(registry);
+
+        Gauge.builder("nms.tsdb.size", this, store -> store.sizeBytes)
+                .description("Estimated heap size of the in-memory series")
+                .baseUnit("bytes")
+                .register(registry);
+
+    }
+
+    /**
+     * Converts a timestamp to store milliseconds.
+     *
+     * @param timestamp the timestamp
+     * @return the milliseconds
+     */
+    public static long toMillis(LocalDateTime timestamp) {
+
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    }
+
+    /**
+     * Converts store milliseconds to a timestamp.
+     *
+     * @param millis the milliseconds
+     * @return the timestamp
+     */
+    public static LocalDateTime toLocalDateTime(long millis) {
+
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+
+    }
+
+    /**
+     * Starts the eviction and stats timers.
+     */
+    public void start() {
+
+        evictionTimerId = vertx.setPeriodic(evictionIntervalMs, id -> evict());
+
+        statsTimerId = vertx.setPeriodic(STATS_LOG_INTERVAL_MS, id -> LOGGER.info("Recent series store stats: " + stats().encode()));
+
+        LOGGER.info("Recent series store started (windowMs=" + windowMs + ", chunkDurationMs=" + chunkDurationMs + ")");
+
+    }
+
+    /**
+     * Stops the timers.
+     */
+    public void stop() {
+
+        vertx.cancelTimer(evictionTimerId);
+
+        vertx.cancelTimer(statsTimerId);
+
+    }
+
+    /**
+     * Appends a point. Points not newer than the last point of their series are dropped.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @param metricId           the metric id
+     * @param timestamp          the timestamp in store milliseconds
+     * @param value              the value
+     */
+    public void append(int discoveryProfileID, int metricId, long timestamp, double value) {
+
+        var series = series(discoveryProfileID, metricId);
+
+        if (timestamp <= series.lastTimestamp) {
+
+            droppedPoints++;
+
+            incompleteUntil = Math.max(incompleteUntil, series.lastTimestamp);
+
+            return;
+
+        }
+
+        var head = series.chunks.peekLast();
+
+        if (head == null || timestamp - head.firstTimestamp() >= chunkDurationMs) {
+
+            if (head != null) {
+
+                sizeBytes -= head.sizeBytes();
+
+                head.seal();
+
+                sizeBytes += head.sizeBytes();
+
+            }
+
+            head = new GorillaChunk();
+
+            series.chunks.addLast(head);
+
+            sizeBytes += head.sizeBytes();
+
+        }
+
+        var before = head.sizeBytes();
+
+        head.append(timestamp, value);
+
+        sizeBytes += head.sizeBytes() - before;
+
+        series.lastTimestamp = timestamp;
+
+        points++;
+
+    }
+
+    private Series series(int discoveryProfileID, int metricId) {
+
+        var metrics = devices.get(discoveryProfileID);
+
+        if (metrics == null || metricId >= metrics.length) {
+
+            var grown = metrics == null ? new Series[Math.max(16, metricId + 1)] : Arrays.copyOf(metrics, Math.max(metrics.length * 2, metricId + 1));
+
+            devices.put(discoveryProfileID, grown);
+
+            metrics = grown;
+
+        }
+
+        var series = metrics[metricId];
+
+        if (series == null) {
+
+            series = new Series();
+
+            metrics[metricId] = series;
+
+            seriesCount++;
+
+            sizeBytes += SERIES_OVERHEAD_BYTES;
+
+        }
+
+        return series;
+
+    }
+
+    /**
+     * Gets the oldest timestamp the store holds every point from: the start of the window, the startup
+     * time while the store is filling, or just after the newest point a dropped one fell behind.
+     *
+     * @return the timestamp in store milliseconds
+     */
+    public long coveredFrom() {
+
+        var from = Math.max(startedAt, toMillis(LocalDateTime.now()) - windowMs);
+
+        return incompleteUntil == Long.MIN_VALUE ? from : Math.max(from, incompleteUntil + 1);
+
+    }
+
+    /**
+     * Passes the points of a series in [from, to) to the consumer, oldest first.
+     *
+     * @param discoveryProfileID the discovery profile id
+     * @param metricId           the metric id
+     * @param from               the inclusive start in store milliseconds
+     * @param to                 the exclusive end in store milliseconds
+     * @param consumer           the consumer
+     * @return the number of points passed
+     */
+    public int query(int discoveryProfileID, int metricId, long from, long to, PointConsumer consumer) {
+
+        var start = System.nanoTime();
+
+        var metrics = devices.get(discoveryProfileID);
+
+        var series = metrics == null || metricId >= metrics.length ? null : metrics[metricId];
+
+        var passed = 0;
+
+        if (series != null) {
+
+            for (var chunk : series.chunks) {
+
+                if (chunk.firstTimestamp() >= to) {
+
+                    break;
+
+                }
+
+                passed += chunk.scan(from, to, consumer);
+
+            }
+
+        }
+
+        queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        return passed;
+
+    }
+
+    /**
+     * Forgets a device.
+     *
+     * @param discoveryProfileID the discovery profile id
+     */
+    public void remove(Integer discoveryProfileID) {
+
+        var metrics = devices.remove(discoveryProfileID);
+
+        if (metrics != null) {
+
+            for (var series : metrics) {
+
+                if (series != null) {
+
+                    release(series, series.chunks.size());
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Drops every chunk that ended before the window and every series left empty.
+     */
+    public void evict() {
+
+        var cutoff = toMillis(LocalDateTime.now()) - windowMs;
+
+        var devicesIterator = devices.values().iterator();
+
+        while (devicesIterator.hasNext()) {
+
+            var metrics = devicesIterator.next();
+
+            var empty = true;
+
+            for (var i = 0; i < metrics.length; i++) {
+
+                var series = metrics[i];
+
+                if (series == null) {
+
+                    continue;
+
+                }
+
+                var expired = 0;
+
+                for (var chunk : series.chunks) {
+
+                    if (chunk.lastTimestamp() >= cutoff) {
+
+                        break;
+
+                    }
+
+                    expired++;
+
+                }
+
+                if (expired == series.chunks.size()) {
+
+                    release(series, expired);
+
+                    metrics[i] = null;
+
+                } else {
+
+                    release(series, expired);
+
+                    empty = false;
+
+                }
+
+            }
+
+            if (empty) {
+
+                devicesIterator.remove();
+
+            }
+
+        }
+
+    }
+
+    private void release(Series series, int chunkCount) {
+
+        for (var i = 0; i < chunkCount; i++) {
+
+            var chunk = series.chunks.pollFirst();
+
+            points -= chunk.count();
+
+            sizeBytes -= chunk.sizeBytes();
+
+            evictedChunks++;
+
+        }
+
+        if (series.chunks.isEmpty()) {
+
+            seriesCount--;
+
+            sizeBytes -= SERIES_OVERHEAD_BYTES;
+
+        }
+
+    }
+
+    /**
+     * Returns a snapshot of the store statistics, including the average and largest memory cost per
+     * device and day, extrapolated from the span the store has covered so far.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        long chunks = 0;
+
+        long bits = 0;
+
+        long maxDeviceBytes = 0;
+
+        for (var metrics : devices.values()) {
+
+            long deviceBytes = 0;
+
+            for (var series : metrics) {
+
+                if (series == null) {
+
+                    continue;
+
+                }
+
+                deviceBytes += SERIES_OVERHEAD_BYTES;
+
+                for (var chunk : series.chunks) {
+
+                    chunks++;
+
+                    bits += chunk.bitLength();
+
+                    deviceBytes += chunk.sizeBytes();
+
+                }
+
+            }
+
+            maxDeviceBytes = Math.max(maxDeviceBytes, deviceBytes);
+
+        }
+
+        var now = toMillis(LocalDateTime.now());
+
+        var coveredDays = (double) (now - coveredFrom()) / DAY_MS;
+
+        var deviceDays = devices.size() * coveredDays;
+
+        return new JsonObject()
+                .put("windowMs", windowMs)
+                .put("coveredFrom", toLocalDateTime(coveredFrom()).toString())
+                .put("devices", devices.size())
+                .put("series", seriesCount)
+                .put("chunks", chunks)
+                .put("points", points)
+                .put("sizeBytes", sizeBytes)
+                .put("avgBitsPerPoint", points == 0 ? 0 : (double) bits / points)
+                .put("avgBytesPerPoint", points == 0 ? 0 : (double) sizeBytes / points)
+                .put("avgBytesPerDevicePerDay", deviceDays <= 0 ? 0 : (long) (sizeBytes / deviceDays))
+                .put("maxBytesPerDevicePerDay", coveredDays <= 0 ? 0 : (long) (maxDeviceBytes / coveredDays))
+                .put("droppedPoints", droppedPoints)
+                .put("evictedChunks", evictedChunks);
+
+    }
+
+}
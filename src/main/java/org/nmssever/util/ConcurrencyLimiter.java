@@ -0,0 +1,113 @@
+package org.nmssever.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of asynchronous tasks running at once; excess tasks wait in FIFO order.
+ * Must be used from a single Vert.x context.
+ */
+public class ConcurrencyLimiter {
+
+    private final int maxConcurrent;
+
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+
+    private int running;
+
+    /**
+     * Instantiates a new Concurrency limiter.
+     *
+     * @param maxConcurrent the maximum number of tasks running at once
+     */
+    public ConcurrencyLimiter(int maxConcurrent) {
+
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+
+    }
+
+    /**
+     * Runs the task as soon as a permit is available.
+     *
+     * @param task the task
+     * @param <T>  the result type
+     * @return the task result
+     */
+    public <T> Future<T> submit(Supplier<Future<T>> task) {
+
+        Promise<T> promise = Promise.promise();
+
+        Runnable start = () -> {
+
+            running++;
+
+            Future<T> future;
+
+            try {
+
+                future = task.get();
+
+            } catch (Exception e) {
+
+                future = Future.failedFuture(e);
+
+            }
+
+            future.onComplete(ar -> {
+
+                running--;
+
+                var next = waiting.pollFirst();
+
+                if (next != null) {
+
+                    next.run();
+
+                }
+
+                promise.handle(ar);
+
+            });
+
+        };
+
+        if (running < maxConcurrent) {
+
+            start.run();
+
+        } else {
+
+            waiting.addLast(start);
+
+        }
+
+        return promise.future();
+
+    }
+
+    /**
+     * Returns the number of running tasks.
+     *
+     * @return the int
+     */
+    public int getRunning() {
+
+        return running;
+
+    }
+
+    /**
+     * Returns the number of waiting tasks.
+     *
+     * @return the int
+     */
+    public int getWaiting() {
+
+        return waiting.size();
+
+    }
+
+}
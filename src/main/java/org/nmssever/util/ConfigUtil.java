@@ -0,0 +1,93 @@
+package org.nmssever.util;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+
+/**
+ * The type Config util.
+ */
+public class ConfigUtil {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigUtil.class);
+
+    private static final Dotenv DOTENV = Dotenv.configure().ignoreIfMissing().load();
+
+    /**
+     * Gets a string value from the environment, falling back to the given default.
+     *
+     * @param key          the key
+     * @param defaultValue the default value
+     * @return the string
+     */
+    public static String getString(String key, String defaultValue) {
+
+        var value = DOTENV.get(key);
+
+        return (value == null || value.isBlank()) ? defaultValue : value.trim();
+
+    }
+
+    /**
+     * Gets an int value from the environment, falling back to the given default.
+     *
+     * @param key          the key
+     * @param defaultValue the default value
+     * @return the int
+     */
+    public static int getInt(String key, int defaultValue) {
+
+        var value = DOTENV.get(key);
+
+        if (value == null || value.isBlank()) {
+
+            return defaultValue;
+
+        }
+
+        try {
+
+            return Integer.parseInt(value.trim());
+
+        } catch (NumberFormatException e) {
+
+            LOGGER.warn("Invalid " + key + " value; using default " + defaultValue);
+
+            return defaultValue;
+
+        }
+
+    }
+
+    /**
+     * Gets a long value from the environment, falling back to the given default.
+     *
+     * @param key          the key
+     * @param defaultValue the default value
+     * @return the long
+     */
+    public static long getLong(String key, long defaultValue) {
+
+        var value = DOTENV.get(key);
+
+        if (value == null || value.isBlank()) {
+
+            return defaultValue;
+
+        }
+
+        try {
+
+            return Long.parseLong(value.trim());
+
+        } catch (NumberFormatException e) {
+
+            LOGGER.warn("Invalid " + key + " value; using default " + defaultValue);
+
+            return defaultValue;
+
+        }
+
+    }
+
+}
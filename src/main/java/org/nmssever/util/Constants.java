@@ -179,6 +179,21 @@ public class Constants {
      */
     public static final String GET_PROVISIONED_DATA = "/api/provision/:id";
 
+    /**
+     * The constant GET_PROVISIONED_METRIC_API, one metric series of a device.
+     */
+    public static final String GET_PROVISIONED_METRIC_API = "/api/provision/:id/metrics/:metric";
+
+    /**
+     * The constant GET_LATEST_SAMPLE_API.
+     */
+    public static final String GET_LATEST_SAMPLE_API = "/api/provision/:id/latest";
+
+    /**
+     * The constant GET_LATEST_SAMPLES_API. Must be routed before GET_PROVISIONED_DATA.
+     */
+    public static final String GET_LATEST_SAMPLES_API = "/api/provision/latest";
+
 
     /**
      * The constant ZMQ_DISCOVERY_RUN_REQUEST.
@@ -195,6 +210,27 @@ public class Constants {
      */
     public static final String ZMQ_BIND_ADDRESS = "tcp://localhost:5555";
 
+    /**
+     * The constant ZMQ_REQUEST_TIMEOUT_MS.
+     */
+    public static final long ZMQ_REQUEST_TIMEOUT_MS = 120000;
+
+    /**
+     * Extra time an event bus request to the ZMQ service waits beyond ZMQ_REQUEST_TIMEOUT_MS, so an
+     * unanswered request is failed by the correlation registry rather than by a racing event bus timeout.
+     */
+    public static final long ZMQ_REPLY_MARGIN_MS = 5000;
+
+    /**
+     * The constant ZMQ_POLL_TIMEOUT_MS, the time a poll reply may take before the poll counts as timed out.
+     */
+    public static final long ZMQ_POLL_TIMEOUT_MS = 60000;
+
+    /**
+     * The constant ZMQ_WIRE_FORMAT, one of auto, json or cbor.
+     */
+    public static final String ZMQ_WIRE_FORMAT = "auto";
+
     /**
      * The constant ZMQ_POLLED_DATA.
      */
@@ -205,5 +241,332 @@ public class Constants {
      */
     public static final String PING_CHECK = "ping.check";
 
+    /**
+     * The constant DEFAULT_POLLING_INTERVAL_SECONDS.
+     */
+    public static final int DEFAULT_POLLING_INTERVAL_SECONDS = 120;
+
+    /**
+     * The constant MIN_POLLING_INTERVAL_SECONDS.
+     */
+    public static final int MIN_POLLING_INTERVAL_SECONDS = 10;
+
+    /**
+     * The constant PROVISIONED_DEVICE_CHANGED.
+     */
+    public static final String PROVISIONED_DEVICE_CHANGED = "provisioned.device.changed";
+
+    /**
+     * The constant DEVICE_REGISTRY_RECONCILE_INTERVAL_MS.
+     */
+    public static final long DEVICE_REGISTRY_RECONCILE_INTERVAL_MS = 300000;
+
+    /**
+     * The constant POLLING_SEND_TIMEOUT_MS.
+     */
+    public static final long POLLING_SEND_TIMEOUT_MS = 120000;
+
+    /**
+     * The constant DISCOVERY_SWEEP_PROGRESS.
+     */
+    public static final String DISCOVERY_SWEEP_PROGRESS = "discovery.sweep.progress";
+
+    /**
+     * The constant DISCOVERY_SWEEP_MAX_CONCURRENT.
+     */
+    public static final int DISCOVERY_SWEEP_MAX_CONCURRENT = 32;
+
+    /**
+     * The constant DISCOVERY_SWEEP_MAX_HOSTS.
+     */
+    public static final int DISCOVERY_SWEEP_MAX_HOSTS = 4096;
+
+    /**
+     * The constant REACHABILITY_STRATEGIES.
+     */
+    public static final String REACHABILITY_STRATEGIES = "tcp,ping";
+
+    /**
+     * The constant REACHABILITY_TCP_PORTS.
+     */
+    public static final String REACHABILITY_TCP_PORTS = "22,80,135,443,445,3389,5985";
+
+    /**
+     * The constant REACHABILITY_TIMEOUT_MS.
+     */
+    public static final long REACHABILITY_TIMEOUT_MS = 2000;
+
+    /**
+     * The constant REACHABILITY_MAX_CONCURRENT.
+     */
+    public static final int REACHABILITY_MAX_CONCURRENT = 256;
+
+    /**
+     * The constant REACHABILITY_PING_WORKERS.
+     */
+    public static final int REACHABILITY_PING_WORKERS = 16;
+
+    /**
+     * The constant SYSTEM_DATA_WRITER_STATS.
+     */
+    public static final String SYSTEM_DATA_WRITER_STATS = "system.data.writer.stats";
+
+    /**
+     * The constant SYSTEM_DATA_BATCH_SIZE.
+     */
+    public static final int SYSTEM_DATA_BATCH_SIZE = 500;
+
+    /**
+     * The constant SYSTEM_DATA_FLUSH_INTERVAL_MS.
+     */
+    public static final long SYSTEM_DATA_FLUSH_INTERVAL_MS = 1000;
+
+    /**
+     * The constant SYSTEM_DATA_MAX_QUEUE_SIZE.
+     */
+    public static final int SYSTEM_DATA_MAX_QUEUE_SIZE = 50000;
+
+    /**
+     * The constant SYSTEM_DATA_MAX_INFLIGHT_FLUSHES.
+     */
+    public static final int SYSTEM_DATA_MAX_INFLIGHT_FLUSHES = 2;
+
+    /**
+     * The constant INVENTORY_ATTRIBUTES, the static sample attributes stored once per device.
+     */
+    public static final String INVENTORY_ATTRIBUTES = "SystemName,SystemHostName,SystemVendor,SystemSerialNumber,"
+            + "SystemOSVersion,SystemCPUType,SystemCPUDescription,SystemCPUCores,SystemLogicalProcessors,"
+            + "SystemPhysicalProcessors,SystemMemoryInstalledBytes,SystemDiskCapacityBytes";
+
+    /**
+     * The constant DISCOVERY_JOB_SUBMIT.
+     */
+    public static final String DISCOVERY_JOB_SUBMIT = "discovery.job.submit";
+
+    /**
+     * The constant DISCOVERY_JOB_STATUS.
+     */
+    public static final String DISCOVERY_JOB_STATUS = "discovery.job.status";
+
+    /**
+     * The constant GET_DISCOVERY_JOB.
+     */
+    public static final String GET_DISCOVERY_JOB = "/api/discovery-job/:id";
+
+    /**
+     * The constant DISCOVERY_JOB_MAX_JOBS.
+     */
+    public static final int DISCOVERY_JOB_MAX_JOBS = 1000;
+
+    /**
+     * The constant DISCOVERY_JOB_TTL_MS.
+     */
+    public static final long DISCOVERY_JOB_TTL_MS = 3600000;
+
+    /**
+     * The constant DISCOVERY_JOB_MAX_CONCURRENT_PROFILES.
+     */
+    public static final int DISCOVERY_JOB_MAX_CONCURRENT_PROFILES = 4;
+
+    /**
+     * The constant DISCOVERY_JOB_PROFILE_TIMEOUT_MS.
+     */
+    public static final long DISCOVERY_JOB_PROFILE_TIMEOUT_MS = 900000;
+
+    /**
+     * The constant DISCOVERY_JOB_MAX_PROFILES, the most profiles one job request may name.
+     */
+    public static final int DISCOVERY_JOB_MAX_PROFILES = 1000;
+
+    /**
+     * The constant HTTP_INSTANCES. Zero deploys one instance per available processor.
+     */
+    public static final int HTTP_INSTANCES = 0;
+
+    /**
+     * The constant HTTP_INSTANCE_MAP, the local map each HTTP instance records its event loop in.
+     */
+    public static final String HTTP_INSTANCE_MAP = "http.instances";
+
+    /**
+     * The constant SYSTEM_DATA_PARTITION_STATS.
+     */
+    public static final String SYSTEM_DATA_PARTITION_STATS = "system.data.partition.stats";
+
+    /**
+     * The constant SYSTEM_DATA_PARTITION_GRANULARITY, daily or hourly.
+     */
+    public static final String SYSTEM_DATA_PARTITION_GRANULARITY = "daily";
+
+    /**
+     * The constant SYSTEM_DATA_PARTITIONS_AHEAD.
+     */
+    public static final int SYSTEM_DATA_PARTITIONS_AHEAD = 3;
+
+    /**
+     * The constant SYSTEM_DATA_RETENTION_HOURS. Zero keeps data forever.
+     */
+    public static final long SYSTEM_DATA_RETENTION_HOURS = 720;
+
+    /**
+     * The constant SYSTEM_DATA_PARTITION_MAINTENANCE_INTERVAL_MS.
+     */
+    public static final long SYSTEM_DATA_PARTITION_MAINTENANCE_INTERVAL_MS = 900000;
+
+    /**
+     * The constant PROVISIONED_DATA_DEFAULT_LIMIT.
+     */
+    public static final int PROVISIONED_DATA_DEFAULT_LIMIT = 100;
+
+    /**
+     * The constant PROVISIONED_DATA_MAX_LIMIT.
+     */
+    public static final int PROVISIONED_DATA_MAX_LIMIT = 1000;
+
+    /**
+     * The constant PROVISIONED_DATA_DEFAULT_WINDOW_HOURS.
+     */
+    public static final int PROVISIONED_DATA_DEFAULT_WINDOW_HOURS = 24;
+
+    /**
+     * The constant METRIC_SERIES.
+     */
+    public static final String METRIC_SERIES = "metric.series";
+
+    /**
+     * The constant METRIC_SERIES_MAX_POINTS, the most points or buckets returned per series.
+     */
+    public static final int METRIC_SERIES_MAX_POINTS = 10000;
+
+    /**
+     * The constant METRIC_SERIES_MAX_STEP_SECONDS.
+     */
+    public static final int METRIC_SERIES_MAX_STEP_SECONDS = 2592000;
+
+    /**
+     * The constant METRIC_DICTIONARY_MAX_NAMES.
+     */
+    public static final int METRIC_DICTIONARY_MAX_NAMES = 4096;
+
+    /**
+     * The constant TSDB_STATS.
+     */
+    public static final String TSDB_STATS = "tsdb.stats";
+
+    /**
+     * The constant TSDB_WINDOW_HOURS, how long metric points are kept in memory.
+     */
+    public static final long TSDB_WINDOW_HOURS = 24;
+
+    /**
+     * The constant TSDB_CHUNK_DURATION_MS, the time span of one compressed chunk.
+     */
+    public static final long TSDB_CHUNK_DURATION_MS = 7200000;
+
+    /**
+     * The constant TSDB_EVICTION_INTERVAL_MS.
+     */
+    public static final long TSDB_EVICTION_INTERVAL_MS = 60000;
+
+    /**
+     * The constant METRIC_ROLLUP_SWEEP_INTERVAL_MS, how often ended rollup buckets are closed.
+     */
+    public static final long METRIC_ROLLUP_SWEEP_INTERVAL_MS = 10000;
+
+    /**
+     * The constant METRIC_ROLLUP_1M_RETENTION_HOURS. Zero keeps data forever.
+     */
+    public static final long METRIC_ROLLUP_1M_RETENTION_HOURS = 720;
+
+    /**
+     * The constant METRIC_ROLLUP_5M_RETENTION_HOURS. Zero keeps data forever.
+     */
+    public static final long METRIC_ROLLUP_5M_RETENTION_HOURS = 2160;
+
+    /**
+     * The constant METRIC_ROLLUP_1H_RETENTION_HOURS. Zero keeps data forever.
+     */
+    public static final long METRIC_ROLLUP_1H_RETENTION_HOURS = 8760;
+
+    /**
+     * The constant LATEST_SAMPLE.
+     */
+    public static final String LATEST_SAMPLE = "latest.sample";
+
+    /**
+     * The constant LATEST_SAMPLES.
+     */
+    public static final String LATEST_SAMPLES = "latest.samples";
+
+    /**
+     * The constant LATEST_SAMPLE_WARMUP_HOURS, how far back the startup query looks for samples.
+     */
+    public static final long LATEST_SAMPLE_WARMUP_HOURS = 24;
+
+    /**
+     * The constant GET_PROVISIONED_PROFILES_API.
+     */
+    public static final String GET_PROVISIONED_PROFILES_API = "/api/provisioned-profiles";
+
+    /**
+     * The constant STREAM_FETCH_SIZE, the rows fetched per cursor round trip of a streamed list.
+     */
+    public static final int STREAM_FETCH_SIZE = 200;
+
+    /**
+     * The constant STREAM_POOL_SIZE, the connections of the pool reserved for streamed lists.
+     */
+    public static final int STREAM_POOL_SIZE = 2;
+
+    /**
+     * The constant STREAM_POOL_MAX_WAITING, the streamed lists waiting for a connection before 503 is returned.
+     */
+    public static final int STREAM_POOL_MAX_WAITING = 8;
+
+    /**
+     * The constant PROFILE_CACHE_STATS.
+     */
+    public static final String PROFILE_CACHE_STATS = "profile.cache.stats";
+
+    /**
+     * The constant PROFILE_CACHE_MAX_BYTES, the encoded size limit of each profile cache.
+     */
+    public static final long PROFILE_CACHE_MAX_BYTES = 4194304;
+
+    /**
+     * The constant PROFILE_CACHE_NEGATIVE_TTL_MS. Zero disables caching of not-found lookups.
+     */
+    public static final long PROFILE_CACHE_NEGATIVE_TTL_MS = 5000;
+
+    /**
+     * The constant LOG_SAMPLE_INTERVAL_MS, the window of the per-logger sampling of high-frequency messages.
+     */
+    public static final long LOG_SAMPLE_INTERVAL_MS = 10000;
+
+    /**
+     * The constant LOG_SAMPLE_MAX_PER_INTERVAL.
+     */
+    public static final int LOG_SAMPLE_MAX_PER_INTERVAL = 5;
+
+    /**
+     * The constant METRICS_API, the Prometheus scrape endpoint.
+     */
+    public static final String METRICS_API = "/metrics";
+
+    /**
+     * The constant METRICS_ENABLED.
+     */
+    public static final String METRICS_ENABLED = "true";
+
+    /**
+     * The constant EVENT_LOOP_LAG_PROBE_INTERVAL_MS.
+     */
+    public static final long EVENT_LOOP_LAG_PROBE_INTERVAL_MS = 1000;
+
+    /**
+     * The constant EVENT_BUS_REQUEST_STALE_MS, after which a request without a reply is no longer tracked.
+     */
+    public static final long EVENT_BUS_REQUEST_STALE_MS = 1800000;
+
 
-}
\ No newline at end of file
+}
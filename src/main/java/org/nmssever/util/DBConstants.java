@@ -65,6 +65,11 @@ public class DBConstants {
      */
     public static final String COL_PROVISION_STATUS = "provision_status";
 
+    /**
+     * The constant COL_POLLING_INTERVAL.
+     */
+    public static final String COL_POLLING_INTERVAL = "polling_interval";
+
     /**
      * The constant SELECT_CREDENTIAL_PROFILE.
      */
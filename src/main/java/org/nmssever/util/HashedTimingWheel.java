@@ -0,0 +1,396 @@
+package org.nmssever.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel with O(1) schedule, cancel and expiry per entry.
+ * <p>
+ * {@link #schedule} and {@link Timeout#cancel()} may be called from any thread; both only append to a
+ * lock-free queue. {@link #advance} must always be called from the same thread, which owns the buckets.
+ * Time is expressed in milliseconds of a caller-supplied monotonic clock.
+ *
+ * @param <T> the payload type
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMs;
+
+    private final long startMs;
+
+    private final int mask;
+
+    private final Bucket<T>[] wheel;
+
+    private final ConcurrentLinkedQueue<Timeout<T>> pendingAdds = new ConcurrentLinkedQueue<>();
+
+    private final ConcurrentLinkedQueue<Timeout<T>> pendingCancels = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private long currentTick;
+
+    /**
+     * Instantiates a new Hashed timing wheel.
+     *
+     * @param tickMs     the tick duration
+     * @param wheelSize  the number of buckets, rounded up to a power of two
+     * @param startMs    the clock value the wheel starts at
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMs, int wheelSize, long startMs) {
+
+        if (tickMs <= 0 || wheelSize <= 0) {
+
+            throw new IllegalArgumentException("tickMs and wheelSize must be positive");
+
+        }
+
+        var size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+
+        this.tickMs = tickMs;
+
+        this.startMs = startMs;
+
+        this.mask = size - 1;
+
+        // Generic arrays cannot be created; the buckets never leave this wheel, so the cast is safe
+        this.wheel = (Bucket<T>[]) new Bucket<?>[size];
+
+        for (var i = 0; i < size; i++) {
+
+            wheel[i] = new Bucket<>();
+
+        }
+
+    }
+
+    /**
+     * Schedules a payload to expire at the given deadline.
+     *
+     * @param payload    the payload
+     * @param deadlineMs the deadline
+     * @return the timeout handle
+     */
+    public Timeout<T> schedule(T payload, long deadlineMs) {
+
+        var timeout = new Timeout<>(this, payload, deadlineMs);
+
+        pending.incrementAndGet();
+
+        pendingAdds.add(timeout);
+
+        return timeout;
+
+    }
+
+    /**
+     * Expires every timeout whose deadline is at or before {@code nowMs}.
+     *
+     * @param nowMs    the current clock value
+     * @param onExpire receives each expired payload
+     * @return the number of expired payloads
+     */
+    public int advance(long nowMs, Consumer<T> onExpire) {
+
+        var targetTick = (nowMs - startMs) / tickMs;
+
+        var expired = 0;
+
+        while (currentTick <= targetTick) {
+
+            transferPendingAdds();
+
+            processPendingCancels();
+
+            expired += expireBucket(wheel[(int) (currentTick & mask)], nowMs, onExpire);
+
+            currentTick++;
+
+        }
+
+        return expired;
+
+    }
+
+    /**
+     * Returns the number of scheduled, not yet expired or cancelled, timeouts.
+     *
+     * @return the int
+     */
+    public int size() {
+
+        return pending.get();
+
+    }
+
+    /**
+     * Returns the tick duration.
+     *
+     * @return the long
+     */
+    public long getTickMs() {
+
+        return tickMs;
+
+    }
+
+    private void transferPendingAdds() {
+
+        Timeout<T> timeout;
+
+        while ((timeout = pendingAdds.poll()) != null) {
+
+            if (timeout.state != Timeout.ST_PENDING) {
+
+                continue;
+
+            }
+
+            var deadlineTick = Math.max(0, (timeout.deadlineMs - startMs + tickMs - 1) / tickMs);
+
+            var tick = Math.max(deadlineTick, currentTick);
+
+            timeout.remainingRounds = (tick - currentTick) / wheel.length;
+
+            wheel[(int) (tick & mask)].add(timeout);
+
+        }
+
+    }
+
+    private void processPendingCancels() {
+
+        Timeout<T> timeout;
+
+        while ((timeout = pendingCancels.poll()) != null) {
+
+            if (timeout.bucket != null) {
+
+                timeout.bucket.remove(timeout);
+
+            }
+
+        }
+
+    }
+
+    private int expireBucket(Bucket<T> bucket, long nowMs, Consumer<T> onExpire) {
+
+        var expired = 0;
+
+        var timeout = bucket.head;
+
+        while (timeout != null) {
+
+            var next = timeout.next;
+
+            if (timeout.state != Timeout.ST_PENDING) {
+
+                bucket.remove(timeout);
+
+            } else if (timeout.remainingRounds <= 0 && timeout.deadlineMs <= nowMs) {
+
+                bucket.remove(timeout);
+
+                if (timeout.expire()) {
+
+                    expired++;
+
+                    onExpire.accept(timeout.payload);
+
+                }
+
+            } else if (timeout.remainingRounds > 0) {
+
+                timeout.remainingRounds--;
+
+            }
+
+            timeout = next;
+
+        }
+
+        return expired;
+
+    }
+
+    /**
+     * Handle to a scheduled payload.
+     *
+     * @param <T> the payload type
+     */
+    public static final class Timeout<T> {
+
+        private static final int ST_PENDING = 0;
+
+        private static final int ST_CANCELLED = 1;
+
+        private static final int ST_EXPIRED = 2;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final HashedTimingWheel<T> owner;
+
+        private final T payload;
+
+        private final long deadlineMs;
+
+        private volatile int state = ST_PENDING;
+
+        private long remainingRounds;
+
+        private Bucket<T> bucket;
+
+        private Timeout<T> prev;
+
+        private Timeout<T> next;
+
+        private Timeout(HashedTimingWheel<T> owner, T payload, long deadlineMs) {
+
+            this.owner = owner;
+
+            this.payload = payload;
+
+            this.deadlineMs = deadlineMs;
+
+        }
+
+        /**
+         * Cancels the timeout.
+         *
+         * @return true if the timeout was still pending
+         */
+        public boolean cancel() {
+
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_CANCELLED)) {
+
+                return false;
+
+            }
+
+            owner.pending.decrementAndGet();
+
+            owner.pendingCancels.add(this);
+
+            return true;
+
+        }
+
+        private boolean expire() {
+
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_EXPIRED)) {
+
+                return false;
+
+            }
+
+            owner.pending.decrementAndGet();
+
+            return true;
+
+        }
+
+        /**
+         * Gets payload.
+         *
+         * @return the payload
+         */
+        public T getPayload() {
+
+            return payload;
+
+        }
+
+        /**
+         * Gets deadline.
+         *
+         * @return the deadline
+         */
+        public long getDeadlineMs() {
+
+            return deadlineMs;
+
+        }
+
+        /**
+         * Is cancelled boolean.
+         *
+         * @return the boolean
+         */
+        public boolean isCancelled() {
+
+            return state == ST_CANCELLED;
+
+        }
+
+    }
+
+    private static final class Bucket<T> {
+
+        private Timeout<T> head;
+
+        private Timeout<T> tail;
+
+        private void add(Timeout<T> timeout) {
+
+            timeout.bucket = this;
+
+            if (head == null) {
+
+                head = tail = timeout;
+
+            } else {
+
+                tail.next = timeout;
+
+                timeout.prev = tail;
+
+                tail = timeout;
+
+            }
+
+        }
+
+        private void remove(Timeout<T> timeout) {
+
+            if (timeout.bucket != this) {
+
+                return;
+
+            }
+
+            if (timeout.prev != null) {
+
+                timeout.prev.next = timeout.next;
+
+            } else {
+
+                head = timeout.next;
+
+            }
+
+            if (timeout.next != null) {
+
+                timeout.next.prev = timeout.prev;
+
+            } else {
+
+                tail = timeout.prev;
+
+            }
+
+            timeout.prev = null;
+
+            timeout.next = null;
+
+            timeout.bucket = null;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,555 @@
+package org.nmssever.util;
+
+/**
+ * An IPv4 or IPv6 address in numeric form: the 128 address bits split into two longs. IPv4 addresses are
+ * held as IPv4-mapped IPv6 addresses ({@code ::ffff:a.b.c.d}), so both families share one representation
+ * for equality, ordering and subnet membership.
+ * <p>
+ * The static parse methods are single pass and allocation free, and replace the regular expressions the
+ * discovery profile validation used to compile on every request.
+ *
+ * @param high the upper 64 address bits
+ * @param low  the lower 64 address bits
+ */
+public record IpAddress(long high, long low) implements Comparable<IpAddress> {
+
+    private static final long IPV4_MAPPED_PREFIX = 0x0000FFFF00000000L;
+
+    /**
+     * Parses an IPv4 or IPv6 address. IPv6 zone ids are not part of the numeric form and are rejected.
+     *
+     * @param ip the ip
+     * @return the ip address
+     * @throws IllegalArgumentException if the address is invalid
+     */
+    public static IpAddress parse(String ip) {
+
+        if (ip == null) {
+
+            throw new IllegalArgumentException("Invalid IP address: null");
+
+        }
+
+        var ipv4 = parseIpv4(ip, 0, ip.length());
+
+        if (ipv4 >= 0) {
+
+            return ofIpv4(ipv4);
+
+        }
+
+        var bits = new long[2];
+
+        if (!parseIpv6(ip, 0, ip.length(), bits)) {
+
+            throw new IllegalArgumentException("Invalid IP address: " + ip);
+
+        }
+
+        return new IpAddress(bits[0], bits[1]);
+
+    }
+
+    /**
+     * Returns the IPv4 address.
+     *
+     * @param ipv4 the unsigned 32 bit address
+     * @return the ip address
+     */
+    public static IpAddress ofIpv4(long ipv4) {
+
+        return new IpAddress(0, IPV4_MAPPED_PREFIX | (ipv4 & 0xFFFFFFFFL));
+
+    }
+
+    /**
+     * Returns whether the text is a valid IPv4 or IPv6 address. A zone id ({@code fe80::1%eth0}) is accepted
+     * on link-local IPv6 addresses. Does not allocate.
+     *
+     * @param ip the ip
+     * @return the boolean
+     */
+    public static boolean isValid(String ip) {
+
+        if (ip == null || ip.isEmpty()) {
+
+            return false;
+
+        }
+
+        var zone = ip.indexOf('%');
+
+        if (zone < 0) {
+
+            return parseIpv4(ip, 0, ip.length()) >= 0 || parseIpv6(ip, 0, ip.length(), null);
+
+        }
+
+        if (zone == ip.length() - 1 || !isLinkLocalText(ip)) {
+
+            return false;
+
+        }
+
+        for (var i = zone + 1; i < ip.length(); i++) {
+
+            var c = ip.charAt(i);
+
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) {
+
+                return false;
+
+            }
+
+        }
+
+        return parseIpv6(ip, 0, zone, null);
+
+    }
+
+    /**
+     * Parses a dotted IPv4 address of one to three digits per octet. An octet with a leading zero is
+     * rejected, since some resolvers read it as octal and would reach a different host.
+     *
+     * @param text the text
+     * @param from the start index, inclusive
+     * @param to   the end index, exclusive
+     * @return the unsigned 32 bit value, or -1 if invalid
+     */
+    public static long parseIpv4(CharSequence text, int from, int to) {
+
+        long value = 0;
+
+        var octets = 0;
+
+        var octet = 0;
+
+        var digits = 0;
+
+        for (var i = from; i < to; i++) {
+
+            var c = text.charAt(i);
+
+            if (c >= '0' && c <= '9') {
+
+                if (digits > 0 && octet == 0) {
+
+                    return -1;
+
+                }
+
+                octet = octet * 10 + (c - '0');
+
+                if (++digits > 3 || octet > 255) {
+
+                    return -1;
+
+                }
+
+            } else if (c == '.' && digits > 0 && octets < 3) {
+
+                value = (value << 8) | octet;
+
+                octets++;
+
+                octet = 0;
+
+                digits = 0;
+
+            } else {
+
+                return -1;
+
+            }
+
+        }
+
+        if (digits == 0 || octets != 3) {
+
+            return -1;
+
+        }
+
+        return (value << 8) | octet;
+
+    }
+
+    /**
+     * Parses an IPv6 address, including the {@code ::} shorthand and a trailing embedded IPv4 address.
+     *
+     * @param text the text
+     * @param from the start index, inclusive
+     * @param to   the end index, exclusive
+     * @param bits receives the upper and lower 64 bits, or null to only validate
+     * @return whether the address is valid
+     */
+    public static boolean parseIpv6(CharSequence text, int from, int to, long[] bits) {
+
+        if (to - from < 2) {
+
+            return false;
+
+        }
+
+        // Groups before "::" accumulate in head, groups after it in tail; both are 128 bit values.
+        long headHigh = 0;
+
+        long headLow = 0;
+
+        long tailHigh = 0;
+
+        long tailLow = 0;
+
+        var groups = 0;
+
+        var gap = -1;
+
+        var i = from;
+
+        if (text.charAt(i) == ':') {
+
+            if (text.charAt(i + 1) != ':') {
+
+                return false;
+
+            }
+
+            gap = 0;
+
+            i += 2;
+
+        }
+
+        while (i < to) {
+
+            var start = i;
+
+            var group = 0;
+
+            var digits = 0;
+
+            while (i < to && digits <= 4) {
+
+                var nibble = Character.digit(text.charAt(i), 16);
+
+                if (nibble < 0 || text.charAt(i) > 'f') {
+
+                    break;
+
+                }
+
+                group = (group << 4) | nibble;
+
+                digits++;
+
+                i++;
+
+            }
+
+            if (digits == 0 || digits > 4) {
+
+                return false;
+
+            }
+
+            if (i < to && text.charAt(i) == '.') {
+
+                var ipv4 = groups <= 6 ? parseIpv4(text, start, to) : -1;
+
+                if (ipv4 < 0) {
+
+                    return false;
+
+                }
+
+                if (gap < 0) {
+
+                    headHigh = (headHigh << 32) | (headLow >>> 32);
+
+                    headLow = (headLow << 32) | ipv4;
+
+                } else {
+
+                    tailHigh = (tailHigh << 32) | (tailLow >>> 32);
+
+                    tailLow = (tailLow << 32) | ipv4;
+
+                }
+
+                groups += 2;
+
+                i = to;
+
+                break;
+
+            }
+
+            if (gap < 0) {
+
+                headHigh = (headHigh << 16) | (headLow >>> 48);
+
+                headLow = (headLow << 16) | group;
+
+            } else {
+
+                tailHigh = (tailHigh << 16) | (tailLow >>> 48);
+
+                tailLow = (tailLow << 16) | group;
+
+            }
+
+            groups++;
+
+            if (i == to) {
+
+                break;
+
+            }
+
+            if (text.charAt(i) != ':' || groups == 8) {
+
+                return false;
+
+            }
+
+            i++;
+
+            if (i < to && text.charAt(i) == ':') {
+
+                if (gap >= 0) {
+
+                    return false;
+
+                }
+
+                gap = groups;
+
+                i++;
+
+            } else if (i == to) {
+
+                return false;
+
+            }
+
+        }
+
+        if (gap < 0 ? groups != 8 : groups > 7) {
+
+            return false;
+
+        }
+
+        if (bits != null) {
+
+            // Shift the head into place above the groups elided by "::" and the tail.
+            var shift = gap < 0 ? 0 : (8 - gap) * 16;
+
+            if (shift == 128) {
+
+                headHigh = 0;
+
+                headLow = 0;
+
+            } else if (shift >= 64) {
+
+                headHigh = headLow << (shift - 64);
+
+                headLow = 0;
+
+            } else if (shift > 0) {
+
+                headHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+
+                headLow <<= shift;
+
+            }
+
+            bits[0] = headHigh | tailHigh;
+
+            bits[1] = headLow | tailLow;
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Returns the network mask of an IPv4 prefix length.
+     *
+     * @param prefixLength the prefix length, 0 to 32
+     * @return the unsigned 32 bit mask
+     */
+    public static long ipv4Mask(int prefixLength) {
+
+        return prefixLength == 0 ? 0L : (0xFFFFFFFFL << (32 - prefixLength)) & 0xFFFFFFFFL;
+
+    }
+
+    /**
+     * Returns whether this is an IPv4 address.
+     *
+     * @return the boolean
+     */
+    public boolean isIpv4() {
+
+        return high == 0 && (low & 0xFFFFFFFF00000000L) == IPV4_MAPPED_PREFIX;
+
+    }
+
+    /**
+     * Gets the IPv4 address bits.
+     *
+     * @return the address as a signed int
+     * @throws IllegalStateException if this is not an IPv4 address
+     */
+    public int ipv4() {
+
+        if (!isIpv4()) {
+
+            throw new IllegalStateException("Not an IPv4 address: " + this);
+
+        }
+
+        return (int) low;
+
+    }
+
+    /**
+     * Returns whether this address is inside the network of the same family.
+     *
+     * @param network      the network address
+     * @param prefixLength the prefix length, 0 to 32 for IPv4 and 0 to 128 for IPv6
+     * @return the boolean
+     */
+    public boolean isInSubnet(IpAddress network, int prefixLength) {
+
+        if (isIpv4() != network.isIpv4()) {
+
+            return false;
+
+        }
+
+        var bits = isIpv4() ? 96 + prefixLength : prefixLength;
+
+        if (prefixLength < 0 || bits > 128) {
+
+            throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+
+        }
+
+        var highMask = bits >= 64 ? -1L : bits == 0 ? 0L : -1L << (64 - bits);
+
+        var lowMask = bits <= 64 ? 0L : bits == 128 ? -1L : -1L << (128 - bits);
+
+        return ((high ^ network.high) & highMask) == 0 && ((low ^ network.low) & lowMask) == 0;
+
+    }
+
+    @Override
+    public int compareTo(IpAddress other) {
+
+        var result = Long.compareUnsigned(high, other.high);
+
+        return result != 0 ? result : Long.compareUnsigned(low, other.low);
+
+    }
+
+    /**
+     * Returns the canonical text form: dotted quad for IPv4 and RFC 5952 for IPv6.
+     *
+     * @return the string
+     */
+    @Override
+    public String toString() {
+
+        if (isIpv4()) {
+
+            return ((low >>> 24) & 0xFF) + "." + ((low >>> 16) & 0xFF) + "." + ((low >>> 8) & 0xFF) + "." + (low & 0xFF);
+
+        }
+
+        var bestStart = -1;
+
+        var bestLength = 1;
+
+        for (var i = 0; i < 8; ) {
+
+            if (group(i) != 0) {
+
+                i++;
+
+                continue;
+
+            }
+
+            var start = i;
+
+            while (i < 8 && group(i) == 0) {
+
+                i++;
+
+            }
+
+            if (i - start > bestLength) {
+
+                bestStart = start;
+
+                bestLength = i - start;
+
+            }
+
+        }
+
+        var builder = new StringBuilder(39);
+
+        for (var i = 0; i < 8; i++) {
+
+            if (i == bestStart) {
+
+                builder.append("::");
+
+                i += bestLength - 1;
+
+                continue;
+
+            }
+
+            if (i > 0 && builder.charAt(builder.length() - 1) != ':') {
+
+                builder.append(':');
+
+            }
+
+            builder.append(Integer.toHexString(group(i)));
+
+        }
+
+        return builder.toString();
+
+    }
+
+    private int group(int index) {
+
+        var word = index < 4 ? high : low;
+
+        return (int) (word >>> ((3 - (index & 3)) * 16)) & 0xFFFF;
+
+    }
+
+    private static boolean isLinkLocalText(String ip) {
+
+        // fe80::/10 always starts with a full first group fe80 to febf.
+        if (ip.length() < 5 || ip.charAt(4) != ':') {
+
+            return false;
+
+        }
+
+        return (ip.charAt(0) | 0x20) == 'f' && (ip.charAt(1) | 0x20) == 'e'
+                && "89abAB".indexOf(ip.charAt(2)) >= 0 && Character.digit(ip.charAt(3), 16) >= 0;
+
+    }
+
+}
@@ -0,0 +1,206 @@
+package org.nmssever.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses discovery targets: a single address, an IPv4 CIDR block ({@code 10.0.0.0/22}), an IPv4 range
+ * ({@code 10.0.0.10-10.0.0.50}) or a comma separated list of any of these.
+ */
+public class IpTargets {
+
+    private IpTargets() {
+
+    }
+
+    /**
+     * Returns whether the target covers more than one explicit address.
+     *
+     * @param target the target
+     * @return the boolean
+     */
+    public static boolean isMultiHost(String target) {
+
+        return target != null && (target.indexOf('/') >= 0 || target.indexOf(',') >= 0 || target.indexOf('-') >= 0);
+
+    }
+
+    /**
+     * Returns whether every element of the target is a valid IPv4 CIDR block, IPv4 range or single IPv4 or
+     * IPv6 address.
+     *
+     * @param target the target
+     * @return the boolean
+     */
+    public static boolean isValidRangeTarget(String target) {
+
+        if (target == null || target.isBlank()) {
+
+            return false;
+
+        }
+
+        for (var element : target.split(",")) {
+
+            var trimmed = element.trim();
+
+            if (trimmed.isEmpty()) {
+
+                return false;
+
+            }
+
+            var slash = trimmed.indexOf('/');
+
+            var dash = trimmed.indexOf('-');
+
+            if (slash >= 0) {
+
+                if (IpAddress.parseIpv4(trimmed, 0, slash) < 0 || parsePrefix(trimmed.substring(slash + 1)) < 0) {
+
+                    return false;
+
+                }
+
+            } else if (dash >= 0) {
+
+                var start = parseIpv4(trimmed.substring(0, dash).trim());
+
+                var end = parseIpv4(trimmed.substring(dash + 1).trim());
+
+                if (start < 0 || end < 0 || end < start) {
+
+                    return false;
+
+                }
+
+            } else if (!IpAddress.isValid(trimmed)) {
+
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Expands the target into individual host addresses. For CIDR blocks larger than /31 the network and
+     * broadcast addresses are skipped.
+     *
+     * @param target   the target
+     * @param maxHosts the maximum number of hosts to return
+     * @return the hosts
+     * @throws IllegalArgumentException if the target is invalid or expands beyond maxHosts
+     */
+    public static List<String> expand(String target, int maxHosts) {
+
+        if (!isValidRangeTarget(target)) {
+
+            throw new IllegalArgumentException("Invalid discovery target: " + target);
+
+        }
+
+        List<String> hosts = new ArrayList<>();
+
+        for (var element : target.split(",")) {
+
+            var trimmed = element.trim();
+
+            var slash = trimmed.indexOf('/');
+
+            var dash = trimmed.indexOf('-');
+
+            long first;
+
+            long last;
+
+            if (slash >= 0) {
+
+                var prefix = parsePrefix(trimmed.substring(slash + 1));
+
+                var mask = IpAddress.ipv4Mask(prefix);
+
+                var network = IpAddress.parseIpv4(trimmed, 0, slash) & mask;
+
+                var broadcast = network | (~mask & 0xFFFFFFFFL);
+
+                first = prefix < 31 ? network + 1 : network;
+
+                last = prefix < 31 ? broadcast - 1 : broadcast;
+
+            } else if (dash >= 0) {
+
+                first = parseIpv4(trimmed.substring(0, dash).trim());
+
+                last = parseIpv4(trimmed.substring(dash + 1).trim());
+
+            } else {
+
+                addHost(hosts, trimmed, maxHosts);
+
+                continue;
+
+            }
+
+            if (last - first + 1 + hosts.size() > maxHosts) {
+
+                throw new IllegalArgumentException("Discovery target expands to more than " + maxHosts + " hosts: " + trimmed);
+
+            }
+
+            for (var address = first; address <= last; address++) {
+
+                hosts.add(formatIpv4(address));
+
+            }
+
+        }
+
+        return hosts;
+
+    }
+
+    private static void addHost(List<String> hosts, String host, int maxHosts) {
+
+        if (hosts.size() + 1 > maxHosts) {
+
+            throw new IllegalArgumentException("Discovery target expands to more than " + maxHosts + " hosts");
+
+        }
+
+        hosts.add(host);
+
+    }
+
+    private static int parsePrefix(String prefix) {
+
+        try {
+
+            var value = Integer.parseInt(prefix.trim());
+
+            return value >= 0 && value <= 32 ? value : -1;
+
+        } catch (NumberFormatException e) {
+
+            return -1;
+
+        }
+
+    }
+
+    private static long parseIpv4(String ip) {
+
+        return IpAddress.parseIpv4(ip, 0, ip.length());
+
+    }
+
+    private static String formatIpv4(long address) {
+
+        return IpAddress.ofIpv4(address).toString();
+
+    }
+
+}
@@ -0,0 +1,272 @@
+package org.nmssever.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.http.ConnectionPoolTooBusyException;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
+
+import java.util.function.Function;
+
+/**
+ * Streams a query result to an HTTP response as a JSON array.
+ * <p>
+ * Rows are read through a PostgreSQL cursor ({@link RowStream}) {@code fetchSize} at a time inside a
+ * transaction and every row is encoded and written as soon as it arrives, with chunked
+ * transfer encoding. When the response write queue is full the row stream is paused until it drains,
+ * so at most one fetch plus the write queue is held in memory regardless of the result size. If the
+ * query fails after the first chunk was sent the connection is reset, so the client never mistakes a
+ * truncated array for a complete one. A pool whose wait queue is full is answered with 503.
+ */
+public class JsonArrayStreamer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonArrayStreamer.class);
+
+    private JsonArrayStreamer() {
+
+    }
+
+    /**
+     * Streams the rows of a query.
+     *
+     * @param pool      the pool
+     * @param sql       the query
+     * @param params    the query parameters
+     * @param fetchSize the number of rows fetched per cursor round trip
+     * @param response  the response, not yet written
+     * @return the number of rows written
+     */
+    public static Future<Long> stream(Pool pool, String sql, Tuple params, int fetchSize, HttpServerResponse response) {
+
+        return stream(pool, sql, params, fetchSize, response, JsonArrayStreamer::toJson);
+
+    }
+
+    /**
+     * Streams the rows of a query, each converted by the given mapper.
+     *
+     * @param pool      the pool
+     * @param sql       the query
+     * @param params    the query parameters
+     * @param fetchSize the number of rows fetched per cursor round trip
+     * @param response  the response, not yet written
+     * @param mapper    converts a row to the JSON object written for it
+     * @return the number of rows written
+     */
+    public static Future<Long> stream(Pool pool, String sql, Tuple params, int fetchSize, HttpServerResponse response, Function<Row, JsonObject> mapper) {
+
+        var transfer = new Transfer(sql, params, fetchSize, response, mapper);
+
+        pool.getConnection()
+
+                .onSuccess(transfer::start)
+
+                .onFailure(transfer::finish);
+
+        return transfer.promise.future();
+
+    }
+
+    /**
+     * Converts a row to a JSON object keyed by column name.
+     *
+     * @param row the row
+     * @return the json object
+     */
+    public static JsonObject toJson(Row row) {
+
+        var json = new JsonObject();
+
+        for (var i = 0; i < row.size(); i++) {
+
+            json.put(row.getColumnName(i), row.getValue(i));
+
+        }
+
+        return json;
+
+    }
+
+    private static final class Transfer {
+
+        private final Promise<Long> promise = Promise.promise();
+
+        private final String sql;
+
+        private final Tuple params;
+
+        private final int fetchSize;
+
+        private final HttpServerResponse response;
+
+        private final Function<Row, JsonObject> mapper;
+
+        private SqlConnection connection;
+
+        private Transaction transaction;
+
+        private RowStream<Row> rowStream;
+
+        private long count;
+
+        private boolean done;
+
+        private Transfer(String sql, Tuple params, int fetchSize, HttpServerResponse response, Function<Row, JsonObject> mapper) {
+
+            this.sql = sql;
+
+            this.params = params;
+
+            this.fetchSize = fetchSize;
+
+            this.response = response;
+
+            this.mapper = mapper;
+
+        }
+
+        private void start(SqlConnection connection) {
+
+            this.connection = connection;
+
+            connection.begin()
+
+                    .compose(tx -> {
+
+                        transaction = tx;
+
+                        return connection.prepare(sql);
+
+                    })
+
+                    .onSuccess(statement -> {
+
+                        if (done) {
+
+                            return;
+
+                        }
+
+                        response.setChunked(true)
+                                .setStatusCode(200)
+                                .putHeader(Constants.CONTENT_TYPE, Constants.APPLICATION_JSON);
+
+                        response.write("[");
+
+                        response.closeHandler(v -> finish(new IllegalStateException("Client closed the connection")));
+
+                        rowStream = statement.createStream(fetchSize, params);
+
+                        rowStream.exceptionHandler(this::finish);
+
+                        rowStream.endHandler(v -> finish(null));
+
+                        rowStream.handler(this::write);
+
+                    })
+
+                    .onFailure(this::finish);
+
+        }
+
+        private void write(Row row) {
+
+            if (count++ > 0) {
+
+                response.write(",");
+
+            }
+
+            response.write(mapper.apply(row).toBuffer());
+
+            if (response.writeQueueFull()) {
+
+                rowStream.pause();
+
+                response.drainHandler(v -> rowStream.resume());
+
+            }
+
+        }
+
+        private void finish(Throwable failure) {
+
+            if (done) {
+
+                return;
+
+            }
+
+            done = true;
+
+            if (failure == null) {
+
+                response.end("]");
+
+            } else {
+
+                LOGGER.warn("Streaming query aborted after " + count + " rows: " + failure.getMessage());
+
+                if (rowStream != null) {
+
+                    rowStream.close();
+
+                }
+
+                if (!response.headWritten() && failure instanceof ConnectionPoolTooBusyException) {
+
+                    response.setStatusCode(503)
+                            .putHeader(Constants.CONTENT_TYPE, Constants.APPLICATION_JSON)
+                            .end(new JsonObject().put("error", "Too many streamed requests in progress").encode());
+
+                } else if (!response.headWritten()) {
+
+                    response.setStatusCode(500)
+                            .putHeader(Constants.CONTENT_TYPE, Constants.APPLICATION_JSON)
+                            .end(new JsonObject().put("error", "Failed to read data").encode());
+
+                } else if (!response.closed()) {
+
+                    response.reset();
+
+                }
+
+            }
+
+            Future<Void> release = transaction == null ? Future.succeededFuture()
+
+                    : failure == null ? transaction.commit() : transaction.rollback();
+
+            release.onComplete(ar -> {
+
+                if (connection != null) {
+
+                    connection.close();
+
+                }
+
+            });
+
+            if (failure == null) {
+
+                promise.complete(count);
+
+            } else {
+
+                promise.fail(failure);
+
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.nmssever.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor over rows ordered by {@code (timestamp, id)}.
+ * <p>
+ * The cursor is the URL-safe base64 of {@code <timestamp>|<id>} of the last row returned, so the next page
+ * continues with a {@code (timestamp, id) < (...)} predicate that an index seek answers directly instead
+ * of skipping OFFSET rows.
+ *
+ * @param timestamp the timestamp of the last row returned
+ * @param id        the id of the last row returned
+ */
+public record KeysetCursor(LocalDateTime timestamp, long id) {
+
+    /**
+     * Encodes the cursor.
+     *
+     * @return the opaque cursor string
+     */
+    public String encode() {
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((timestamp + "|" + id).getBytes(StandardCharsets.UTF_8));
+
+    }
+
+    /**
+     * Decodes a cursor.
+     *
+     * @param cursor the opaque cursor string
+     * @return the cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static KeysetCursor decode(String cursor) {
+
+        try {
+
+            var decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+
+            var separator = decoded.lastIndexOf('|');
+
+            if (separator < 0) {
+
+                throw new IllegalArgumentException("Invalid cursor");
+
+            }
+
+            return new KeysetCursor(LocalDateTime.parse(decoded.substring(0, separator)), Long.parseLong(decoded.substring(separator + 1)));
+
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+
+            throw new IllegalArgumentException("Invalid cursor", e);
+
+        }
+
+    }
+
+}
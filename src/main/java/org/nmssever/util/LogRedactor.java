@@ -0,0 +1,204 @@
+package org.nmssever.util;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Map;
+
+/**
+ * Renders event bus bodies for the log with secrets masked.
+ * <p>
+ * The output is compact JSON, never pretty-printed, and the input is not modified. Callers should only
+ * render inside a level guard, since the walk allocates a string as large as the body.
+ */
+public class LogRedactor {
+
+    private static final String MASK = "******";
+
+    private LogRedactor() {
+
+    }
+
+    /**
+     * Renders a JSON object with every secret value masked.
+     *
+     * @param json the json object, may be null
+     * @return the compact json
+     */
+    public static String redact(JsonObject json) {
+
+        if (json == null) {
+
+            return "null";
+
+        }
+
+        var builder = new StringBuilder(64);
+
+        appendObject(builder, json);
+
+        return builder.toString();
+
+    }
+
+    /**
+     * Renders a JSON array with every secret value masked.
+     *
+     * @param json the json array, may be null
+     * @return the compact json
+     */
+    public static String redact(JsonArray json) {
+
+        if (json == null) {
+
+            return "null";
+
+        }
+
+        var builder = new StringBuilder(64);
+
+        appendArray(builder, json);
+
+        return builder.toString();
+
+    }
+
+    /**
+     * Tells whether a field holds a secret.
+     *
+     * @param key the field name
+     * @return true for passwords, secrets, tokens and SNMP communities
+     */
+    public static boolean isSecret(String key) {
+
+        var lower = key.toLowerCase();
+
+        return lower.contains("password") || lower.contains("secret") || lower.contains("token") || lower.contains("community");
+
+    }
+
+    private static void appendObject(StringBuilder builder, JsonObject json) {
+
+        builder.append('{');
+
+        var first = true;
+
+        for (Map.Entry<String, Object> field : json) {
+
+            if (!first) {
+
+                builder.append(',');
+
+            }
+
+            first = false;
+
+            appendString(builder, field.getKey());
+
+            builder.append(':');
+
+            if (isSecret(field.getKey()) && field.getValue() != null) {
+
+                appendString(builder, MASK);
+
+            } else {
+
+                appendValue(builder, field.getValue());
+
+            }
+
+        }
+
+        builder.append('}');
+
+    }
+
+    private static void appendArray(StringBuilder builder, JsonArray json) {
+
+        builder.append('[');
+
+        for (var i = 0; i < json.size(); i++) {
+
+            if (i > 0) {
+
+                builder.append(',');
+
+            }
+
+            appendValue(builder, json.getValue(i));
+
+        }
+
+        builder.append(']');
+
+    }
+
+    private static void appendValue(StringBuilder builder, Object value) {
+
+        if (value instanceof JsonObject object) {
+
+            appendObject(builder, object);
+
+        } else if (value instanceof JsonArray array) {
+
+            appendArray(builder, array);
+
+        } else if (value instanceof CharSequence || value instanceof Enum<?>) {
+
+            appendString(builder, value.toString());
+
+        } else if (value == null || value instanceof Number || value instanceof Boolean) {
+
+            builder.append(value);
+
+        } else {
+
+            appendString(builder, value.toString());
+
+        }
+
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+
+        builder.append('"');
+
+        for (var i = 0; i < value.length(); i++) {
+
+            var c = value.charAt(i);
+
+            switch (c) {
+
+                case '"' -> builder.append("\\\"");
+
+                case '\\' -> builder.append("\\\\");
+
+                case '\n' -> builder.append("\\n");
+
+                case '\r' -> builder.append("\\r");
+
+                case '\t' -> builder.append("\\t");
+
+                default -> {
+
+                    if (c < 0x20) {
+
+                        builder.append(String.format("\\u%04x", (int) c));
+
+                    } else {
+
+                        builder.append(c);
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        builder.append('"');
+
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.nmssever.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate-limits a high-frequency log statement.
+ * <p>
+ * At most {@code maxPerInterval} calls to {@link #sample()} per interval return true; the rest are
+ * counted, and the first sampled call of the next interval can report how many were skipped through
+ * {@link #drainSuppressed()}. Thread safe and allocation free, so it can guard logs on the event loop
+ * and on the ZMQ reactor thread.
+ */
+public class LogSampler {
+
+    private final long intervalNanos;
+
+    private final int maxPerInterval;
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong inWindow = new AtomicLong();
+
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * Instantiates a new Log sampler.
+     *
+     * @param intervalMs     the sampling interval
+     * @param maxPerInterval the number of statements logged per interval, 0 to log none
+     */
+    public LogSampler(long intervalMs, int maxPerInterval) {
+
+        this.intervalNanos = Math.max(1, intervalMs) * 1_000_000L;
+
+        this.maxPerInterval = Math.max(0, maxPerInterval);
+
+    }
+
+    /**
+     * Creates a sampler from the LOG_SAMPLE_INTERVAL_MS and LOG_SAMPLE_MAX_PER_INTERVAL settings.
+     *
+     * @return the log sampler
+     */
+    public static LogSampler fromConfig() {
+
+        return new LogSampler(ConfigUtil.getLong("LOG_SAMPLE_INTERVAL_MS", Constants.LOG_SAMPLE_INTERVAL_MS),
+                ConfigUtil.getInt("LOG_SAMPLE_MAX_PER_INTERVAL", Constants.LOG_SAMPLE_MAX_PER_INTERVAL));
+
+    }
+
+    /**
+     * Decides whether the current statement is logged.
+     *
+     * @return true if it should be logged
+     */
+    public boolean sample() {
+
+        var now = System.nanoTime();
+
+        var start = windowStart.get();
+
+        if (now - start >= intervalNanos && windowStart.compareAndSet(start, now)) {
+
+            inWindow.set(0);
+
+        }
+
+        if (inWindow.incrementAndGet() <= maxPerInterval) {
+
+            return true;
+
+        }
+
+        suppressed.incrementAndGet();
+
+        return false;
+
+    }
+
+    /**
+     * Returns the number of statements skipped since the last call and resets it.
+     *
+     * @return the number of suppressed statements
+     */
+    public long drainSuppressed() {
+
+        return suppressed.getAndSet(0);
+
+    }
+
+}
@@ -0,0 +1,310 @@
+package org.nmssever.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import org.nmssever.metrics.AppMetrics;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded read-through cache with LRU eviction by total weight.
+ * <p>
+ * Each entry is weighed when it is stored and the least recently used entries are evicted until the
+ * total weight fits {@code maxWeight}. Concurrent lookups of a key that is being loaded share one load.
+ * Loads that were started before an invalidation are not stored, so a read racing an update can never
+ * put the old row back. Values the {@code notFound} predicate matches are kept for {@code negativeTtlMs}
+ * only, or not at all when it is zero; failed loads are never cached. Lookups are counted in
+ * {@code nms.profile.cache.lookups} by result, a lookup joining a load in progress as coalesced, and
+ * evictions in {@code nms.profile.cache.evictions}. Not thread safe: use it from the owning verticle's
+ * context.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ProfileCache<K, V> {
+
+    private final String name;
+
+    private final long maxWeight;
+
+    private final long negativeTtlMs;
+
+    private final ToIntFunction<V> weigher;
+
+    private final Predicate<V> notFound;
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final Map<K, Future<V>> loading = new HashMap<>();
+
+    private long weight;
+
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder negativeHits = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private long invalidations;
+
+    /**
+     * Instantiates a new Profile cache.
+     *
+     * @param name          the name used in statistics
+     * @param maxWeight     the maximum total weight of all entries
+     * @param negativeTtlMs how long a not-found result is cached, 0 to never cache it
+     * @param weigher       the weight of a value
+     * @param notFound      whether a loaded value means the key does not exist
+     */
+    public ProfileCache(String name, long maxWeight, long negativeTtlMs, ToIntFunction<V> weigher, Predicate<V> notFound) {
+
+        this.name = name;
+
+        this.maxWeight = maxWeight;
+
+        this.negativeTtlMs = negativeTtlMs;
+
+        this.weigher = weigher;
+
+        this.notFound = notFound;
+
+        var registry = AppMetrics.registry();
+
+        counter(registry, "hit", hits);
+
+        counter(registry, "negative_hit", negativeHits);
+
+        counter(registry, "miss", misses);
+
+        counter(registry, "coalesced", coalesced);
+
+        FunctionCounter.builder("nms.profile.cache.evictions", evictions, LongAdder::sum)
+                .description("Profile cache entries evicted to fit the maximum weight")
+                .tag("cache", name)
+                .register(registry);
+
+    }
+
+    private void counter(MeterRegistry registry, String result, LongAdder adder) {
+
+        FunctionCounter.builder("nms.profile.cache.lookups", adder, LongAdder::sum)
+                .description("Profile cache lookups by result")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(registry);
+
+    }
+
+    /**
+     * Creates a cache of JSON objects weighed by their encoded size, where a reply carrying an
+     * {@code error} field is a not-found result.
+     *
+     * @param <K>           the key type
+     * @param name          the name used in statistics
+     * @param maxBytes      the maximum total encoded size of all entries
+     * @param negativeTtlMs how long a not-found result is cached, 0 to never cache it
+     * @return the profile cache
+     */
+    public static <K> ProfileCache<K, JsonObject> forJson(String name, long maxBytes, long negativeTtlMs) {
+
+        return new ProfileCache<>(name, maxBytes, negativeTtlMs, json -> json.toBuffer().length(), json -> json.containsKey("error"));
+
+    }
+
+    /**
+     * Returns the cached value or loads it.
+     *
+     * @param key    the key
+     * @param loader loads the value on a miss
+     * @return the value
+     */
+    public Future<V> get(K key, Function<K, Future<V>> loader) {
+
+        var entry = entries.get(key);
+
+        if (entry != null) {
+
+            if (entry.expiresAtMillis == 0) {
+
+                hits.increment();
+
+                return Future.succeededFuture(entry.value);
+
+            }
+
+            if (entry.expiresAtMillis > System.currentTimeMillis()) {
+
+                negativeHits.increment();
+
+                return Future.succeededFuture(entry.value);
+
+            }
+
+            remove(key);
+
+        }
+
+        var pending = loading.get(key);
+
+        if (pending != null) {
+
+            coalesced.increment();
+
+            return pending;
+
+        }
+
+        misses.increment();
+
+        var loadGeneration = generation;
+
+        var load = loader.apply(key);
+
+        loading.put(key, load);
+
+        return load.onComplete(ar -> {
+
+            loading.remove(key, load);
+
+            if (ar.succeeded() && ar.result() != null && loadGeneration == generation) {
+
+                put(key, ar.result());
+
+            }
+
+        });
+
+    }
+
+    private void put(K key, V value) {
+
+        var negative = notFound.test(value);
+
+        if (negative && negativeTtlMs <= 0) {
+
+            return;
+
+        }
+
+        var entryWeight = weigher.applyAsInt(value);
+
+        if (entryWeight > maxWeight) {
+
+            return;
+
+        }
+
+        remove(key);
+
+        entries.put(key, new Entry<>(value, entryWeight, negative ? System.currentTimeMillis() + negativeTtlMs : 0));
+
+        weight += entryWeight;
+
+        evict();
+
+    }
+
+    private void evict() {
+
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+
+        while (weight > maxWeight && iterator.hasNext()) {
+
+            weight -= iterator.next().weight;
+
+            iterator.remove();
+
+            evictions.increment();
+
+        }
+
+    }
+
+    private void remove(K key) {
+
+        var removed = entries.remove(key);
+
+        if (removed != null) {
+
+            weight -= removed.weight;
+
+        }
+
+    }
+
+    /**
+     * Invalidates a key, including any load in progress.
+     *
+     * @param key the key
+     */
+    public void invalidate(K key) {
+
+        remove(key);
+
+        generation++;
+
+        invalidations++;
+
+    }
+
+    /**
+     * Invalidates every key.
+     */
+    public void invalidateAll() {
+
+        entries.clear();
+
+        weight = 0;
+
+        generation++;
+
+        invalidations++;
+
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     *
+     * @return the json object
+     */
+    public JsonObject stats() {
+
+        var hitCount = hits.sum() + negativeHits.sum();
+
+        var lookups = hitCount + misses.sum() + coalesced.sum();
+
+        return new JsonObject()
+                .put("name", name)
+                .put("entries", entries.size())
+                .put("weight", weight)
+                .put("maxWeight", maxWeight)
+                .put("hits", hits.sum())
+                .put("negativeHits", negativeHits.sum())
+                .put("misses", misses.sum())
+                .put("coalesced", coalesced.sum())
+                .put("hitRatio", lookups == 0 ? 0 : (double) hitCount / lookups)
+                .put("evictions", evictions.sum())
+                .put("invalidations", invalidations);
+
+    }
+
+    private record Entry<V>(V value, int weight, long expiresAtMillis) {
+
+    }
+
+}
@@ -41,6 +41,18 @@ public class ResponseUtil {
 
     }
 
+    /**
+     * Returns whether the client asked for a streamed response with {@code ?stream=true}.
+     *
+     * @param ctx the routing context
+     * @return the boolean
+     */
+    public static boolean isStreamRequested(RoutingContext ctx) {
+
+        return "true".equalsIgnoreCase(ctx.queryParams().get("stream"));
+
+    }
+
     /**
      * Send success.
      *
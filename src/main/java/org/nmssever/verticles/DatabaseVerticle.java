@@ -4,23 +4,47 @@ import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.sqlclient.Pool;
-import io.vertx.sqlclient.Tuple;
 import org.nmssever.database.DatabaseClient;
-import org.nmssever.services.CredentialProfileService;
-import org.nmssever.services.DiscoveryProfileService;
-import org.nmssever.services.ProvisionService;
+import org.nmssever.messages.DiscoveryRunRequest;
+import org.nmssever.messages.MessageCodecs;
+import org.nmssever.messages.PolledData;
+import org.nmssever.services.DeviceInventoryStore;
+import org.nmssever.services.DiscoveryJobService;
+import org.nmssever.services.DiscoverySweepService;
+import org.nmssever.services.IcmpStrategy;
+import org.nmssever.services.LatestSampleCache;
+import org.nmssever.services.MetricDictionary;
+import org.nmssever.services.MetricFlattener;
+import org.nmssever.services.MetricQueryService;
+import org.nmssever.services.MetricRollupAggregator;
+import org.nmssever.services.PingProcessStrategy;
+import org.nmssever.services.ReachabilityEngine;
+import org.nmssever.services.ReachabilityStrategy;
+import org.nmssever.services.SystemDataPartitionManager;
+import org.nmssever.services.SystemDataWriter;
+import org.nmssever.services.TcpConnectStrategy;
+import org.nmssever.services.UnifiedProfileService;
+import org.nmssever.tsdb.RecentSeriesStore;
+import org.nmssever.util.ConfigUtil;
 import org.nmssever.util.Constants;
+import org.nmssever.util.IpTargets;
+import org.nmssever.util.LogRedactor;
+import org.nmssever.util.ProfileCache;
 import org.nmssever.util.ResponseUtil;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -28,16 +52,50 @@ import java.time.LocalDateTime;
  */
 public class DatabaseVerticle extends AbstractVerticle {
 
-    private CredentialProfileService credentialProfileService;
+    private UnifiedProfileService profileService;
 
-    private DiscoveryProfileService discoveryProfileService;
+    private SystemDataWriter systemDataWriter;
 
-    private ProvisionService provisionService;
+    private DeviceInventoryStore inventoryStore;
+
+    private LatestSampleCache latestSampleCache;
+
+    private SystemDataWriter metricSampleWriter;
+
+    private MetricDictionary metricDictionary;
+
+    private MetricFlattener metricFlattener;
+
+    private MetricQueryService metricQueryService;
+
+    private RecentSeriesStore recentSeriesStore;
+
+    private MetricRollupAggregator metricRollups;
+
+    private final Map<MetricRollupAggregator.Resolution, SystemDataWriter> rollupWriters = new EnumMap<>(MetricRollupAggregator.Resolution.class);
+
+    private final List<SystemDataPartitionManager> rollupPartitionManagers = new ArrayList<>();
+
+    private SystemDataPartitionManager metricPartitionManager;
+
+    private SystemDataPartitionManager partitionManager;
+
+    private ReachabilityEngine reachabilityEngine;
+
+    private DiscoverySweepService discoverySweepService;
+
+    private DiscoveryJobService discoveryJobService;
+
+    private ProfileCache<Integer, JsonObject> credentialProfileCache;
+
+    private ProfileCache<Integer, JsonObject> discoveryProfileCache;
 
     private final Logger LOGGER = LoggerFactory.getLogger(DatabaseVerticle.class);
 
     private final Pool dbPool;
 
+    private final DatabaseClient databaseClient;
+
     private final JsonObject jsonObject = new JsonObject();
 
     /**
@@ -47,6 +105,8 @@ public class DatabaseVerticle extends AbstractVerticle {
      */
     public DatabaseVerticle(DatabaseClient databaseClient) {
 
+        this.databaseClient = databaseClient;
+
         this.dbPool = databaseClient.getPool();
 
     }
@@ -54,11 +114,144 @@ public class DatabaseVerticle extends AbstractVerticle {
     @Override
     public void start(Promise<Void> startPromise) {
 
-        credentialProfileService = new CredentialProfileService(dbPool);
+        profileService = new UnifiedProfileService(vertx, dbPool);
+
+        var cacheMaxBytes = ConfigUtil.getLong("PROFILE_CACHE_MAX_BYTES", Constants.PROFILE_CACHE_MAX_BYTES);
+
+        var cacheNegativeTtlMs = ConfigUtil.getLong("PROFILE_CACHE_NEGATIVE_TTL_MS", Constants.PROFILE_CACHE_NEGATIVE_TTL_MS);
+
+        credentialProfileCache = ProfileCache.forJson("credentialProfiles", cacheMaxBytes, cacheNegativeTtlMs);
+
+        discoveryProfileCache = ProfileCache.forJson("discoveryProfiles", cacheMaxBytes, cacheNegativeTtlMs);
+
+        systemDataWriter = new SystemDataWriter(vertx, dbPool,
+                ConfigUtil.getInt("SYSTEM_DATA_BATCH_SIZE", Constants.SYSTEM_DATA_BATCH_SIZE),
+                ConfigUtil.getLong("SYSTEM_DATA_FLUSH_INTERVAL_MS", Constants.SYSTEM_DATA_FLUSH_INTERVAL_MS),
+                ConfigUtil.getInt("SYSTEM_DATA_MAX_QUEUE_SIZE", Constants.SYSTEM_DATA_MAX_QUEUE_SIZE),
+                ConfigUtil.getInt("SYSTEM_DATA_MAX_INFLIGHT_FLUSHES", Constants.SYSTEM_DATA_MAX_INFLIGHT_FLUSHES));
+
+        inventoryStore = new DeviceInventoryStore(dbPool, DeviceInventoryStore.attributesFromConfig());
+
+        latestSampleCache = new LatestSampleCache(dbPool, inventoryStore);
+
+        metricSampleWriter = new SystemDataWriter(vertx, dbPool, "metricsamples", MetricFlattener.INSERT_SQL,
+                ConfigUtil.getInt("SYSTEM_DATA_BATCH_SIZE", Constants.SYSTEM_DATA_BATCH_SIZE),
+                ConfigUtil.getLong("SYSTEM_DATA_FLUSH_INTERVAL_MS", Constants.SYSTEM_DATA_FLUSH_INTERVAL_MS),
+                ConfigUtil.getInt("SYSTEM_DATA_MAX_QUEUE_SIZE", Constants.SYSTEM_DATA_MAX_QUEUE_SIZE),
+                ConfigUtil.getInt("SYSTEM_DATA_MAX_INFLIGHT_FLUSHES", Constants.SYSTEM_DATA_MAX_INFLIGHT_FLUSHES));
+
+        metricDictionary = new MetricDictionary(dbPool, ConfigUtil.getInt("METRIC_DICTIONARY_MAX_NAMES", Constants.METRIC_DICTIONARY_MAX_NAMES));
+
+        recentSeriesStore = new RecentSeriesStore(vertx,
+                ConfigUtil.getLong("TSDB_WINDOW_HOURS", Constants.TSDB_WINDOW_HOURS) * 3600000,
+                ConfigUtil.getLong("TSDB_CHUNK_DURATION_MS", Constants.TSDB_CHUNK_DURATION_MS),
+                ConfigUtil.getLong("TSDB_EVICTION_INTERVAL_MS", Constants.TSDB_EVICTION_INTERVAL_MS));
+
+        recentSeriesStore.start();
+
+        Map<MetricRollupAggregator.Resolution, Long> rollupRetention = new EnumMap<>(MetricRollupAggregator.Resolution.class);
+
+        for (var resolution : MetricRollupAggregator.Resolution.values()) {
+
+            var writer = new SystemDataWriter(vertx, dbPool, resolution.table(), resolution.upsertSql(),
+                    ConfigUtil.getInt("SYSTEM_DATA_BATCH_SIZE", Constants.SYSTEM_DATA_BATCH_SIZE),
+                    ConfigUtil.getLong("SYSTEM_DATA_FLUSH_INTERVAL_MS", Constants.SYSTEM_DATA_FLUSH_INTERVAL_MS),
+                    ConfigUtil.getInt("SYSTEM_DATA_MAX_QUEUE_SIZE", Constants.SYSTEM_DATA_MAX_QUEUE_SIZE),
+                    ConfigUtil.getInt("SYSTEM_DATA_MAX_INFLIGHT_FLUSHES", Constants.SYSTEM_DATA_MAX_INFLIGHT_FLUSHES));
+
+            rollupWriters.put(resolution, writer);
+
+            rollupRetention.put(resolution, rollupRetentionHours(resolution));
+
+            // Rollup rows are small and long-lived, so they always use daily partitions
+            rollupPartitionManagers.add(new SystemDataPartitionManager(vertx, dbPool, resolution.table(),
+                    SystemDataPartitionManager.Granularity.DAILY,
+                    ConfigUtil.getInt("SYSTEM_DATA_PARTITIONS_AHEAD", Constants.SYSTEM_DATA_PARTITIONS_AHEAD),
+                    rollupRetention.get(resolution),
+                    ConfigUtil.getLong("SYSTEM_DATA_PARTITION_MAINTENANCE_INTERVAL_MS", Constants.SYSTEM_DATA_PARTITION_MAINTENANCE_INTERVAL_MS)));
+
+        }
+
+        metricRollups = new MetricRollupAggregator(vertx, rollupWriters,
+                ConfigUtil.getLong("METRIC_ROLLUP_SWEEP_INTERVAL_MS", Constants.METRIC_ROLLUP_SWEEP_INTERVAL_MS));
+
+        metricRollups.start();
+
+        metricFlattener = new MetricFlattener(metricDictionary, metricSampleWriter, recentSeriesStore, metricRollups);
+
+        metricQueryService = new MetricQueryService(dbPool, metricDictionary, recentSeriesStore, metricRollups, rollupRetention);
 
-        discoveryProfileService = new DiscoveryProfileService(dbPool, vertx.eventBus());
+        partitionManager = new SystemDataPartitionManager(vertx, dbPool,
+                SystemDataPartitionManager.Granularity.parse(ConfigUtil.getString("SYSTEM_DATA_PARTITION_GRANULARITY", Constants.SYSTEM_DATA_PARTITION_GRANULARITY)),
+                ConfigUtil.getInt("SYSTEM_DATA_PARTITIONS_AHEAD", Constants.SYSTEM_DATA_PARTITIONS_AHEAD),
+                ConfigUtil.getLong("SYSTEM_DATA_RETENTION_HOURS", Constants.SYSTEM_DATA_RETENTION_HOURS),
+                ConfigUtil.getLong("SYSTEM_DATA_PARTITION_MAINTENANCE_INTERVAL_MS", Constants.SYSTEM_DATA_PARTITION_MAINTENANCE_INTERVAL_MS));
 
-        provisionService = new ProvisionService(dbPool);
+        metricPartitionManager = new SystemDataPartitionManager(vertx, dbPool, "metricsamples",
+                SystemDataPartitionManager.Granularity.parse(ConfigUtil.getString("SYSTEM_DATA_PARTITION_GRANULARITY", Constants.SYSTEM_DATA_PARTITION_GRANULARITY)),
+                ConfigUtil.getInt("SYSTEM_DATA_PARTITIONS_AHEAD", Constants.SYSTEM_DATA_PARTITIONS_AHEAD),
+                ConfigUtil.getLong("SYSTEM_DATA_RETENTION_HOURS", Constants.SYSTEM_DATA_RETENTION_HOURS),
+                ConfigUtil.getLong("SYSTEM_DATA_PARTITION_MAINTENANCE_INTERVAL_MS", Constants.SYSTEM_DATA_PARTITION_MAINTENANCE_INTERVAL_MS));
+
+        databaseClient.getSchemaReady()
+
+                .onSuccess(v -> {
+
+                    // The tables have no default partition, so each writer holds its rows until the
+                    // first maintenance run has created the current partition
+                    partitionManager.start()
+
+                            .compose(started -> databaseClient.backfillLegacySystemData(LocalDateTime.now()))
+
+                            .onSuccess(copied -> {
+
+                                if (copied > 0) {
+
+                                    LOGGER.info("Copied " + copied + " legacy system data rows into the partitioned table");
+
+                                }
+
+                            })
+
+                            .onFailure(err -> LOGGER.error("Failed to backfill legacy system data; systemdata_legacy is kept", err))
+
+                            .onComplete(ar -> systemDataWriter.start());
+
+                    metricPartitionManager.start().onComplete(ar -> metricSampleWriter.start());
+
+                    for (var resolution : MetricRollupAggregator.Resolution.values()) {
+
+                        rollupPartitionManagers.get(resolution.ordinal()).start().onComplete(ar -> rollupWriters.get(resolution).start());
+
+                    }
+
+                    metricDictionary.load().onFailure(err -> LOGGER.error("Failed to load metric names", err));
+
+                    metricQueryService.loadRollupWatermarks()
+                            .onFailure(err -> LOGGER.error("Failed to load rollup watermarks; series are read from raw samples", err));
+
+                    inventoryStore.load().onFailure(err -> LOGGER.error("Failed to load inventory hashes", err));
+
+                    latestSampleCache.warm(ConfigUtil.getLong("LATEST_SAMPLE_WARMUP_HOURS", Constants.LATEST_SAMPLE_WARMUP_HOURS))
+                            .onFailure(err -> LOGGER.error("Failed to warm the latest sample cache", err));
+
+                })
+
+                .onFailure(err -> LOGGER.error("Schema not ready; system data partitions were not created and writers stay on hold", err));
+
+        reachabilityEngine = createReachabilityEngine();
+
+        discoverySweepService = new DiscoverySweepService(vertx, dbPool, reachabilityEngine,
+                ConfigUtil.getInt("DISCOVERY_SWEEP_MAX_CONCURRENT", Constants.DISCOVERY_SWEEP_MAX_CONCURRENT),
+                ConfigUtil.getInt("DISCOVERY_SWEEP_MAX_HOSTS", Constants.DISCOVERY_SWEEP_MAX_HOSTS));
+
+        discoveryJobService = new DiscoveryJobService(vertx,
+                ConfigUtil.getInt("DISCOVERY_JOB_MAX_JOBS", Constants.DISCOVERY_JOB_MAX_JOBS),
+                ConfigUtil.getLong("DISCOVERY_JOB_TTL_MS", Constants.DISCOVERY_JOB_TTL_MS),
+                ConfigUtil.getInt("DISCOVERY_JOB_MAX_CONCURRENT_PROFILES", Constants.DISCOVERY_JOB_MAX_CONCURRENT_PROFILES),
+                ConfigUtil.getLong("DISCOVERY_JOB_PROFILE_TIMEOUT_MS", Constants.DISCOVERY_JOB_PROFILE_TIMEOUT_MS));
+
+        discoveryJobService.start();
 
         registerEventBusConsumers();
 
@@ -105,6 +298,12 @@ public class DatabaseVerticle extends AbstractVerticle {
         vertx.eventBus().consumer(Constants.DISCOVERY_RUN, this::handleRunDiscovery);
         LOGGER.info("Consumer registered for: " + Constants.DISCOVERY_RUN);
 
+        vertx.eventBus().consumer(Constants.DISCOVERY_JOB_SUBMIT, this::handleSubmitDiscoveryJob);
+        LOGGER.info("Consumer registered for: " + Constants.DISCOVERY_JOB_SUBMIT);
+
+        vertx.eventBus().consumer(Constants.DISCOVERY_JOB_STATUS, this::handleGetDiscoveryJob);
+        LOGGER.info("Consumer registered for: " + Constants.DISCOVERY_JOB_STATUS);
+
         vertx.eventBus().consumer(Constants.CREDENTIAL_PROFILES_READ, this::handleGetCredentialsProfiles);
         LOGGER.info("Consumer registered for: " + Constants.CREDENTIAL_PROFILES_READ);
 
@@ -140,36 +339,42 @@ public class DatabaseVerticle extends AbstractVerticle {
         LOGGER.info("Consumer registered for: " + Constants.GET_PROVISIONED_PROFILES);
 
 
-        vertx.eventBus().consumer(Constants.ZMQ_POLLED_DATA, this::handleZmqPolledData);
-
-        vertx.eventBus().consumer(Constants.PING_CHECK, (Message<JsonObject> message) -> {
-
-            var request = message.body();
+        vertx.eventBus().consumer(Constants.METRIC_SERIES, this::handleGetMetricSeries);
+        LOGGER.info("Consumer registered for: " + Constants.METRIC_SERIES);
 
-            var ipAddress = request.getString("ipAddress");
 
-            if (ipAddress == null || ipAddress.isEmpty()) {
+        vertx.eventBus().consumer(Constants.LATEST_SAMPLE, this::handleGetLatestSample);
+        LOGGER.info("Consumer registered for: " + Constants.LATEST_SAMPLE);
 
-                message.fail(400, "Missing or invalid IP address");
 
-                return;
-            }
-
-            checkPingReachability(ipAddress).onComplete(result -> {
+        // Cached samples are never modified, so replies are handed over without the default JSON copy
+        vertx.eventBus().consumer(Constants.LATEST_SAMPLES, message -> message.reply(latestSampleCache.all(), MessageCodecs.localJson()));
+        LOGGER.info("Consumer registered for: " + Constants.LATEST_SAMPLES);
 
-                if (result.succeeded()) {
 
-                    message.reply(new JsonObject().put("isReachable", result.result()));
+        vertx.eventBus().consumer(Constants.ZMQ_POLLED_DATA, this::handleZmqPolledData);
 
-                } else {
+        vertx.eventBus().consumer(Constants.SYSTEM_DATA_WRITER_STATS, message -> message.reply(systemDataWriter.stats()
+                .put("metricSamples", metricSampleWriter.stats())
+                .put("metricDictionary", metricDictionary.stats())
+                .put("metricRollups", rollupWriterStats())));
+        LOGGER.info("Consumer registered for: " + Constants.SYSTEM_DATA_WRITER_STATS);
 
-                    message.reply(new JsonObject().put("isReachable", false).put("error", result.cause().getMessage()));
+        vertx.eventBus().consumer(Constants.PROFILE_CACHE_STATS, message -> message.reply(new JsonObject()
+                .put("credentialProfiles", credentialProfileCache.stats())
+                .put("discoveryProfiles", discoveryProfileCache.stats())));
+        LOGGER.info("Consumer registered for: " + Constants.PROFILE_CACHE_STATS);
 
-                }
+        vertx.eventBus().consumer(Constants.SYSTEM_DATA_PARTITION_STATS, message -> message.reply(partitionManager.stats()
+                .put("metricSamples", metricPartitionManager.stats())
+                .put("metricRollups", new JsonArray(rollupPartitionManagers.stream().map(SystemDataPartitionManager::stats).toList()))));
+        LOGGER.info("Consumer registered for: " + Constants.SYSTEM_DATA_PARTITION_STATS);
 
-            });
+        vertx.eventBus().consumer(Constants.TSDB_STATS, message -> message.reply(recentSeriesStore.stats()));
+        LOGGER.info("Consumer registered for: " + Constants.TSDB_STATS);
 
-        });
+        vertx.eventBus().consumer(Constants.PING_CHECK, this::handlePingCheck);
+        LOGGER.info("Consumer registered for: " + Constants.PING_CHECK);
 
 
         LOGGER.info("All Event Bus consumers registered successfully.");
@@ -189,7 +394,7 @@ public class DatabaseVerticle extends AbstractVerticle {
 
     private void testDatabaseConnection(Promise<Void> startPromise) {
 
-        credentialProfileService.testConnection()
+        profileService.testConnection()
                 .onSuccess(res -> {
 
                     startPromise.complete();
@@ -204,75 +409,119 @@ public class DatabaseVerticle extends AbstractVerticle {
     }
 
 
-    private Future<Boolean> checkPingReachability(String ipAddress) {
+    private static long rollupRetentionHours(MetricRollupAggregator.Resolution resolution) {
 
-        Promise<Boolean> promise = Promise.promise();
+        return switch (resolution) {
 
-        try {
+            case ONE_MINUTE -> ConfigUtil.getLong("METRIC_ROLLUP_1M_RETENTION_HOURS", Constants.METRIC_ROLLUP_1M_RETENTION_HOURS);
 
-            var isReachable = isHostReachable(ipAddress);
+            case FIVE_MINUTES -> ConfigUtil.getLong("METRIC_ROLLUP_5M_RETENTION_HOURS", Constants.METRIC_ROLLUP_5M_RETENTION_HOURS);
 
-            if (isReachable) {
+            case ONE_HOUR -> ConfigUtil.getLong("METRIC_ROLLUP_1H_RETENTION_HOURS", Constants.METRIC_ROLLUP_1H_RETENTION_HOURS);
 
-                LOGGER.info("Ping to " + ipAddress + " is successful");
+        };
 
-                promise.complete(true);
+    }
 
-            } else {
+    private JsonObject rollupWriterStats() {
 
-                LOGGER.warn("Ping to " + ipAddress + " failed");
+        var stats = metricRollups.stats();
 
-                promise.fail("Ping to " + ipAddress + " is not reachable");
+        rollupWriters.forEach((resolution, writer) -> stats.put(resolution.label(), writer.stats()));
 
-            }
+        return stats;
 
-        } catch (IOException | InterruptedException e) {
+    }
+
+    private ReachabilityEngine createReachabilityEngine() {
+
+        var timeoutMs = ConfigUtil.getLong("REACHABILITY_TIMEOUT_MS", Constants.REACHABILITY_TIMEOUT_MS);
+
+        var pingWorkers = vertx.createSharedWorkerExecutor("reachability-ping", ConfigUtil.getInt("REACHABILITY_PING_WORKERS", Constants.REACHABILITY_PING_WORKERS));
+
+        var ports = Arrays.stream(ConfigUtil.getString("REACHABILITY_TCP_PORTS", Constants.REACHABILITY_TCP_PORTS).split(","))
+                .map(String::trim)
+                .filter(port -> !port.isEmpty())
+                .map(Integer::valueOf)
+                .toList();
+
+        List<ReachabilityStrategy> strategies = new ArrayList<>();
 
-            LOGGER.error("Error while pinging " + ipAddress);
+        for (var name : ConfigUtil.getString("REACHABILITY_STRATEGIES", Constants.REACHABILITY_STRATEGIES).split(",")) {
 
-            promise.fail("Error while pinging " + ipAddress + ": " + e.getMessage());
+            switch (name.trim()) {
+
+                case "tcp" -> strategies.add(new TcpConnectStrategy(vertx, ports, (int) timeoutMs));
+
+                case "icmp" -> strategies.add(new IcmpStrategy(pingWorkers, new PingProcessStrategy(pingWorkers)));
+
+                case "ping" -> strategies.add(new PingProcessStrategy(pingWorkers));
+
+                default -> LOGGER.warn("Unknown reachability strategy ignored: " + name);
+
+            }
 
         }
 
-        return promise.future();
+        LOGGER.info("Reachability engine configured with strategies " + strategies.stream().map(ReachabilityStrategy::name).toList() + " and TCP ports " + ports);
+
+        return new ReachabilityEngine(vertx, strategies, ConfigUtil.getInt("REACHABILITY_MAX_CONCURRENT", Constants.REACHABILITY_MAX_CONCURRENT), timeoutMs);
 
     }
 
 
-    /**
-     * Is host reachable boolean.
-     *
-     * @param ip the ip
-     * @return the boolean
-     * @throws IOException          the io exception
-     * @throws InterruptedException the interrupted exception
-     */
-    public boolean isHostReachable(String ip) throws IOException, InterruptedException {
+    private void handlePingCheck(Message<JsonObject> message) {
 
-        ProcessBuilder processBuilder = new ProcessBuilder("ping", "-c", "4", ip);
+        var request = message.body();
+
+        var ipAddress = request.getString("ipAddress");
 
-        Process process = processBuilder.start();
+        var ipAddresses = request.getJsonArray("ipAddresses");
 
-        var isReachable = false;
+        if ((ipAddress == null || ipAddress.isEmpty()) && (ipAddresses == null || ipAddresses.isEmpty())) {
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            message.fail(400, "Missing or invalid IP address");
 
-            String line;
+            return;
+        }
 
-            while ((line = reader.readLine()) != null) {
+        if (ipAddresses == null) {
 
-                if (line.contains("0% packet loss")) {
+            reachabilityEngine.check(ipAddress).onComplete(result -> {
+
+                if (result.succeeded()) {
 
-                    isReachable = true;
+                    message.reply(result.result());
+
+                } else {
+
+                    message.reply(new JsonObject().put("isReachable", false).put("error", result.cause().getMessage()));
 
                 }
 
-            }
+            });
+
+            return;
+
         }
 
-        process.waitFor();
+        var resultAddress = request.getString("resultAddress");
+
+        List<String> ips = ipAddresses.stream().map(String::valueOf).toList();
+
+        reachabilityEngine.checkAll(ips, resultAddress == null ? null : result -> vertx.eventBus().send(resultAddress, result))
 
-        return isReachable;
+                .onSuccess(results -> {
+
+                    var reachable = results.stream().filter(result -> ((JsonObject) result).getBoolean("isReachable")).count();
+
+                    LOGGER.info("Reachability batch completed: " + reachable + "/" + ips.size() + " reachable");
+
+                    message.reply(new JsonObject().put("results", results).put("total", ips.size()).put("reachable", reachable));
+
+                })
+
+                .onFailure(err -> ResponseUtil.sendError(message, 500, err.getMessage()));
 
     }
 
@@ -281,13 +530,23 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         var request = message.body();
 
-        LOGGER.info("Received create credential profile request: " + request.encodePrettily());
+        if (LOGGER.isDebugEnabled()) {
+
+            LOGGER.debug("Received create credential profile request: " + LogRedactor.redact(request));
 
-        credentialProfileService.createCredentialProfile(request)
+        }
+
+        profileService.createCredentialProfile(request)
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully created credential profile. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully created credential profile. Response: " + LogRedactor.redact(response));
+
+                    }
+
+                    invalidateCreated(credentialProfileCache, response);
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -306,13 +565,15 @@ public class DatabaseVerticle extends AbstractVerticle {
 
     private void handleGetDiscoveryProfiles(Message<JsonObject> message) {
 
-        var request = message.body();
-
-        discoveryProfileService.getdiscoveryProfiles(request)
+        profileService.getDiscoveryProfiles()
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully created credential profile. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully retrieved discovery profiles. Response: " + LogRedactor.redact(response));
+
+                    }
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -320,7 +581,7 @@ public class DatabaseVerticle extends AbstractVerticle {
 
                 .onFailure(err -> {
 
-                    LOGGER.error("Failed to create credential profile. Error: " + err.getMessage(), err);
+                    LOGGER.error("Failed to get discovery profiles. Error: " + err.getMessage(), err);
 
                     ResponseUtil.sendError(message, 500, err.getMessage());
 
@@ -331,13 +592,15 @@ public class DatabaseVerticle extends AbstractVerticle {
 
     private void handleGetCredentialsProfiles(Message<JsonObject> message) {
 
-        var request = message.body();
-
-        credentialProfileService.getCredentialsProfile(request)
+        profileService.getCredentialProfiles()
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully created credential profile. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully retrieved credential profiles. Response: " + LogRedactor.redact(response));
+
+                    }
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -345,7 +608,7 @@ public class DatabaseVerticle extends AbstractVerticle {
 
                 .onFailure(err -> {
 
-                    LOGGER.error("Failed to create credential profile. Error: " + err.getMessage(), err);
+                    LOGGER.error("Failed to get credential profiles. Error: " + err.getMessage(), err);
 
                     ResponseUtil.sendError(message, 500, err.getMessage());
 
@@ -358,13 +621,28 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         var request = message.body();
 
-        LOGGER.info("Received update credential profile request: " + request.encodePrettily());
+        if (LOGGER.isDebugEnabled()) {
+
+            LOGGER.debug("Received update credential profile request: " + LogRedactor.redact(request));
+
+        }
 
-        credentialProfileService.updateCredentialProfile(request)
+        profileService.updateCredentialProfile(request)
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully updated credential profile. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully updated credential profile. Response: " + LogRedactor.redact(response));
+
+                    }
+
+                    credentialProfileCache.invalidate(request.getInteger("id"));
+
+                    // Discovery profiles embed the credential profile name
+                    discoveryProfileCache.invalidateAll();
+
+                    notifyProvisionedDeviceChanged(new JsonObject().put("credential_profile_id", request.getInteger("id")));
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -389,12 +667,14 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         LOGGER.info("Received delete credential profile request for ID: " + id);
 
-        credentialProfileService.deleteCredentialProfile(id)
+        profileService.deleteCredentialProfile(id)
 
                 .onSuccess(response -> {
 
                     LOGGER.info("Successfully deleted credential profile with ID: " + id);
 
+                    credentialProfileCache.invalidate(id);
+
                     ResponseUtil.sendSuccess(message, response);
 
                 })
@@ -411,13 +691,23 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         var request = message.body();
 
-        LOGGER.info("Received create discovery profile request: " + request.encodePrettily());
+        if (LOGGER.isDebugEnabled()) {
+
+            LOGGER.debug("Received create discovery profile request: " + LogRedactor.redact(request));
 
-        discoveryProfileService.createDiscoveryProfile(request)
+        }
+
+        profileService.createDiscoveryProfile(request)
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully created discovery profile. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully created discovery profile. Response: " + LogRedactor.redact(response));
+
+                    }
+
+                    invalidateCreated(discoveryProfileCache, response);
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -437,13 +727,25 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         var request = message.body();
 
-        LOGGER.info("Received update discovery profile request: " + request.encodePrettily());
+        if (LOGGER.isDebugEnabled()) {
+
+            LOGGER.debug("Received update discovery profile request: " + LogRedactor.redact(request));
+
+        }
 
-        discoveryProfileService.updateDiscoveryProfile(request)
+        profileService.updateDiscoveryProfile(request)
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully updated discovery profile. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully updated discovery profile. Response: " + LogRedactor.redact(response));
+
+                    }
+
+                    discoveryProfileCache.invalidate(request.getInteger("id"));
+
+                    notifyProvisionedDeviceChanged(new JsonObject().put("discovery_profile_id", request.getInteger("id")));
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -467,12 +769,24 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         LOGGER.info("Received delete discovery profile request for profile: " + profileID);
 
-        discoveryProfileService.deleteDiscoveryProfile(profileID)
+        profileService.deleteDiscoveryProfile(profileID)
 
                 .onSuccess(response -> {
 
                     LOGGER.info("Successfully deleted discovery profile: " + profileID);
 
+                    discoveryProfileCache.invalidate(profileID);
+
+                    latestSampleCache.remove(profileID);
+
+                    recentSeriesStore.remove(profileID);
+
+                    metricRollups.remove(profileID);
+
+                    inventoryStore.remove(profileID);
+
+                    notifyProvisionedDeviceChanged(new JsonObject().put("discovery_profile_id", profileID));
+
                     ResponseUtil.sendSuccess(message, response);
 
                 })
@@ -487,17 +801,118 @@ public class DatabaseVerticle extends AbstractVerticle {
 
     }
 
-    private void handleRunDiscovery(Message<JsonObject> message) {
+    private void handleRunDiscovery(Message<DiscoveryRunRequest> message) {
 
         var request = message.body();
 
-        LOGGER.info("Received run discovery request: " + request.encodePrettily());
+        LOGGER.info("Received run discovery request for profile: " + request.discoveryProfileId());
 
-        discoveryProfileService.runDiscovery(request)
+        discoverySweepService.loadProfile(request.discoveryProfileId())
+
+                .onSuccess(profile -> {
+
+                    if (IpTargets.isMultiHost(profile.getString("ip"))) {
+
+                        runDiscoverySweep(message, profile);
+
+                    } else {
+
+                        runSingleDiscovery(message, profile);
+
+                    }
+
+                })
+
+                .onFailure(err -> {
+
+                    LOGGER.error("Failed to run discovery. Error: " + err.getMessage(), err);
+
+                    ResponseUtil.sendError(message, 404, err.getMessage());
+
+                });
+
+    }
+
+    private void handleSubmitDiscoveryJob(Message<JsonObject> message) {
+
+        var ids = message.body().getJsonArray("ids");
+
+        List<Integer> discoveryProfileIds = new ArrayList<>(ids.size());
+
+        for (var i = 0; i < ids.size(); i++) {
+
+            discoveryProfileIds.add(ids.getInteger(i));
+
+        }
+
+        discoveryJobService.submit(discoveryProfileIds)
+
+                .onSuccess(job -> ResponseUtil.sendSuccess(message, job))
+
+                .onFailure(err -> {
+
+                    LOGGER.warn("Rejected discovery job: " + err.getMessage());
+
+                    ResponseUtil.sendError(message, err instanceof ReplyException replyException ? replyException.failureCode() : 503, err.getMessage());
+
+                });
+
+    }
+
+    private void handleGetDiscoveryJob(Message<JsonObject> message) {
+
+        var jobId = message.body().getString("job_id");
+
+        var job = discoveryJobService.status(jobId);
+
+        if (job == null) {
+
+            ResponseUtil.sendError(message, 404, "Discovery job not found: " + jobId);
+
+            return;
+
+        }
+
+        ResponseUtil.sendSuccess(message, job);
+
+    }
+
+    private void runDiscoverySweep(Message<?> message, JsonObject profile) {
+
+        discoverySweepService.sweep(profile)
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully ran discovery. Response: " + response.encodePrettily());
+                    LOGGER.info("Successfully ran discovery sweep for profile: " + profile.getInteger("id"));
+
+                    // The sweep creates or updates one profile per discovered host
+                    discoveryProfileCache.invalidateAll();
+
+                    ResponseUtil.sendSuccess(message, response);
+
+                })
+
+                .onFailure(err -> {
+
+                    LOGGER.error("Failed to run discovery sweep. Error: " + err.getMessage(), err);
+
+                    ResponseUtil.sendError(message, 500, err.getMessage());
+
+                });
+
+    }
+
+    private void runSingleDiscovery(Message<?> message, JsonObject profile) {
+
+        profileService.runDiscovery(profile)
+
+                .onSuccess(response -> {
+
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully ran discovery. Response: " + LogRedactor.redact(response));
+
+                    }
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -517,13 +932,25 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         var request = message.body();
 
-        LOGGER.info("Received provision device request: " + request.encodePrettily());
+        if (LOGGER.isDebugEnabled()) {
+
+            LOGGER.debug("Received provision device request: " + LogRedactor.redact(request));
+
+        }
 
-        provisionService.provisionDevice(request)
+        profileService.provisionDevice(request)
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully provisioned device. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully provisioned device. Response: " + LogRedactor.redact(response));
+
+                    }
+
+                    discoveryProfileCache.invalidate(request.getInteger("discovery_profile_id"));
+
+                    notifyProvisionedDeviceChanged(new JsonObject().put("discovery_profile_id", request.getInteger("discovery_profile_id")));
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -538,18 +965,48 @@ public class DatabaseVerticle extends AbstractVerticle {
 
     }
 
+    private void invalidateCreated(ProfileCache<Integer, JsonObject> cache, JsonObject response) {
+
+        var id = response.getValue("id");
+
+        if (id instanceof Integer createdId) {
+
+            cache.invalidate(createdId);
+
+        } else {
+
+            cache.invalidateAll();
+
+        }
+
+    }
+
+    private void notifyProvisionedDeviceChanged(JsonObject notification) {
+
+        vertx.eventBus().publish(Constants.PROVISIONED_DEVICE_CHANGED, notification);
+
+    }
+
 
     private void handleGetProvisionData(Message<JsonObject> message) {
 
         var request = message.body();
 
-        LOGGER.info("Received provision device request: " + request.encodePrettily());
+        if (LOGGER.isDebugEnabled()) {
 
-        provisionService.getprovisionDeviceData(request)
+            LOGGER.debug("Received provision device request: " + LogRedactor.redact(request));
+
+        }
+
+        profileService.getProvisionDeviceData(request)
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully provisioned device. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully provisioned device. Response: " + LogRedactor.redact(response));
+
+                    }
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -565,15 +1022,59 @@ public class DatabaseVerticle extends AbstractVerticle {
     }
 
 
+    private void handleGetLatestSample(Message<Integer> message) {
+
+        var latest = latestSampleCache.get(message.body());
+
+        if (latest == null) {
+
+            ResponseUtil.sendError(message, 404, "No sample for discovery_profile_id: " + message.body());
+
+            return;
+
+        }
+
+        message.reply(latest, MessageCodecs.localJson());
+
+    }
+
+
+    private void handleGetMetricSeries(Message<JsonObject> message) {
+
+        metricQueryService.series(message.body())
+
+                .onSuccess(response -> ResponseUtil.sendSuccess(message, response))
+
+                .onFailure(err -> {
+
+                    var code = err instanceof ReplyException replyException ? replyException.failureCode() : 500;
+
+                    if (code == 500) {
+
+                        LOGGER.error("Failed to read metric series. Error: " + err.getMessage(), err);
+
+                    }
+
+                    ResponseUtil.sendError(message, code, err.getMessage());
+
+                });
+
+    }
+
+
     private void handleGetProvisionedProfiles(Message<Object> message) {
 
         LOGGER.info("Received request to get provisioned profiles.");
 
-        provisionService.getProvisionedProfiles()
+        profileService.getProvisionedProfiles()
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully retrieved provisioned profiles. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully retrieved provisioned profiles. Response: " + LogRedactor.redact(response));
+
+                    }
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -595,11 +1096,23 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         LOGGER.info("Received request to get credential profile: " + profileId);
 
-        credentialProfileService.getCredentialProfile(profileId)
+        credentialProfileCache.get(profileId, profileService::getCredentialProfile)
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully retrieved credential profile. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully retrieved credential profile. Response: " + LogRedactor.redact(response));
+
+                    }
+
+                    if (response.containsKey("error")) {
+
+                        ResponseUtil.sendError(message, 404, response.getString("error"));
+
+                        return;
+
+                    }
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -625,10 +1138,16 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         LOGGER.info("Received request to update discovery status. Profile Name: " + discoveryProfileName + ", Status: " + discoveryStatus);
 
-        discoveryProfileService.updateDiscoveryStatus(1, 1)
+        profileService.updateDiscoveryStatus(1, 1)
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully updated discovery status. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully updated discovery status. Response: " + LogRedactor.redact(response));
+
+                    }
+
+                    discoveryProfileCache.invalidateAll();
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -651,11 +1170,23 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         LOGGER.info("Received request to get discovery profile: " + discoveryProfileId);
 
-        discoveryProfileService.getDiscoveryProfile(discoveryProfileId)
+        discoveryProfileCache.get(discoveryProfileId, profileService::getDiscoveryProfile)
 
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully retrieved discovery profile. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully retrieved discovery profile. Response: " + LogRedactor.redact(response));
+
+                    }
+
+                    if (response.containsKey("error")) {
+
+                        ResponseUtil.sendError(message, 404, response.getString("error"));
+
+                        return;
+
+                    }
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -676,10 +1207,14 @@ public class DatabaseVerticle extends AbstractVerticle {
 
         LOGGER.info("Received request to get discovery status for profile: " + discoveryProfileName);
 
-        discoveryProfileService.getDiscoveryStatus(discoveryProfileName)
+        profileService.getDiscoveryStatus(discoveryProfileName)
                 .onSuccess(response -> {
 
-                    LOGGER.info("Successfully retrieved discovery status. Response: " + response.encodePrettily());
+                    if (LOGGER.isDebugEnabled()) {
+
+                        LOGGER.debug("Successfully retrieved discovery status. Response: " + LogRedactor.redact(response));
+
+                    }
 
                     ResponseUtil.sendSuccess(message, response);
 
@@ -694,50 +1229,75 @@ public class DatabaseVerticle extends AbstractVerticle {
 
     }
 
-    private void handleZmqPolledData(Message<Object> message) {
+    private void handleZmqPolledData(Message<PolledData> message) {
 
-        var request = (JsonObject) message.body();
+        var polledData = message.body();
 
-        var discoveryProfileID = request.getInteger("discovery_profile_id");
+        var receivedAt = LocalDateTime.now();
 
-        JsonObject systemData;
+        // The body was handed over by the sender, so it is split and stamped in place
+        var systemData = polledData.failed() ? polledData.body() : inventoryStore.split(polledData.discoveryProfileId(), polledData.body(), receivedAt);
 
-        if (request.containsKey("data")) {
+        if (!polledData.failed()) {
 
-            systemData = request.getJsonObject("data").put("timestamp", LocalDateTime.now().toString());
+            metricFlattener.ingest(polledData.discoveryProfileId(), systemData, receivedAt);
 
-        } else if (request.containsKey("error")) {
+        }
 
-            systemData = request.getJsonObject("error").put("timestamp", LocalDateTime.now().toString());
+        systemData.put("timestamp", receivedAt.toString());
 
-        } else {
+        latestSampleCache.update(polledData.discoveryProfileId(), systemData, polledData.failed(), receivedAt);
 
-            systemData = new JsonObject().put("message", "Unknown data format").put("timestamp", LocalDateTime.now().toString());
+        systemDataWriter.enqueue(polledData.discoveryProfileId(), systemData, receivedAt);
+
+    }
+
+
+    @Override
+    public void stop(Promise<Void> stopPromise) {
+
+        if (discoveryJobService != null) {
+
+            discoveryJobService.stop();
 
         }
 
+        if (partitionManager != null) {
 
-        var insertSql = "INSERT INTO systemdata (discovery_profile_id, system_info,timestamp) VALUES ($1, $2, $3)";
+            partitionManager.stop();
 
-        dbPool.preparedQuery(insertSql).execute(Tuple.of(discoveryProfileID, systemData, LocalDateTime.now()), insertAr -> {
+            metricPartitionManager.stop();
 
-            if (insertAr.failed()) {
+            rollupPartitionManagers.forEach(SystemDataPartitionManager::stop);
 
-                LOGGER.error("❌ Failed to insert system_data for discovery_profile_id: " + discoveryProfileID, insertAr.cause());
+        }
 
-            } else {
+        if (recentSeriesStore != null) {
 
-                LOGGER.info("✅ Successfully inserted system_data for discovery_profile_id: " + discoveryProfileID);
+            recentSeriesStore.stop();
 
-            }
+        }
 
-        });
+        if (metricRollups != null) {
 
-    }
+            // Queues the open buckets, which the writers below flush
+            metricRollups.close();
 
+        }
 
-    @Override
-    public void stop() {
+        if (systemDataWriter == null) {
+
+            stopPromise.complete();
+
+            return;
+
+        }
+
+        List<Future<Void>> closing = new ArrayList<>(List.of(systemDataWriter.close(), metricSampleWriter.close()));
+
+        rollupWriters.values().forEach(writer -> closing.add(writer.close()));
+
+        Future.join(closing).onComplete(ar -> stopPromise.complete());
 
     }
 
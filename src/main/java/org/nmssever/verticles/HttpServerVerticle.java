@@ -1,6 +1,5 @@
 package org.nmssever.verticles;
 
-import io.github.cdimascio.dotenv.Dotenv;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
 import io.vertx.core.http.HttpServer;
@@ -8,13 +7,22 @@ import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.BodyHandler;
+import io.vertx.micrometer.PrometheusScrapingHandler;
 import org.nmssever.handlers.CredentialProfileHandler;
 import org.nmssever.handlers.DiscoveryProfileHandler;
+import org.nmssever.database.DatabaseClient;
 import org.nmssever.handlers.ProvisionHandler;
+import org.nmssever.metrics.AppMetrics;
+import org.nmssever.services.ProfileListStreamer;
+import org.nmssever.util.ConfigUtil;
 import org.nmssever.util.Constants;
 
 /**
  * The type Http server verticle.
+ * <p>
+ * Deployed as several instances that all listen on the same port; Vert.x spreads incoming connections
+ * across them and each instance runs on its own event loop. Every instance builds its own router and
+ * handlers; the only shared object is the database pool, which is safe to use from any event loop.
  */
 public class HttpServerVerticle extends AbstractVerticle {
 
@@ -22,34 +30,29 @@ public class HttpServerVerticle extends AbstractVerticle {
 
     private int port;
 
-    private final Logger Logger = LoggerFactory.getLogger(HttpServerVerticle.class);
-
-    @Override
-    public void start(Promise<Void> startPromise) {
-
-        Dotenv dotenv = Dotenv.load();
-
-        var portStr = dotenv.get("HTTP_PORT");
-
-        if (portStr != null) {
+    private final DatabaseClient databaseClient;
 
-            try {
+    private ProfileListStreamer profileListStreamer;
 
-                port = Integer.parseInt(portStr);
-
-            } catch (NumberFormatException e) {
+    private final Logger Logger = LoggerFactory.getLogger(HttpServerVerticle.class);
 
-                Logger.warn("Invalid HTTP_PORT value; using default port " + DEFAULT_PORT);
+    /**
+     * Instantiates a new Http server verticle.
+     *
+     * @param databaseClient the database client, used by streamed list responses
+     */
+    public HttpServerVerticle(DatabaseClient databaseClient) {
 
-                port = DEFAULT_PORT;
+        this.databaseClient = databaseClient;
 
-            }
+    }
 
-        } else {
+    @Override
+    public void start(Promise<Void> startPromise) {
 
-            port = DEFAULT_PORT;
+        port = ConfigUtil.getInt("HTTP_PORT", DEFAULT_PORT);
 
-        }
+        profileListStreamer = new ProfileListStreamer(databaseClient.getStreamPool(), ConfigUtil.getInt("STREAM_FETCH_SIZE", Constants.STREAM_FETCH_SIZE));
 
         Router router = Router.router(vertx);
 
@@ -61,6 +64,12 @@ public class HttpServerVerticle extends AbstractVerticle {
 
         registerProvisioningRoutes(router);
 
+        if (AppMetrics.isEnabled()) {
+
+            router.get(Constants.METRICS_API).handler(PrometheusScrapingHandler.create());
+
+        }
+
         HttpServer server = vertx.createHttpServer();
 
         server.requestHandler(router)
@@ -69,7 +78,12 @@ public class HttpServerVerticle extends AbstractVerticle {
 
                     if (result.succeeded()) {
 
-                        Logger.info("HTTP Server running on port " + port);
+                        var eventLoop = Thread.currentThread().getName();
+
+                        vertx.sharedData().<String, String>getLocalMap(Constants.HTTP_INSTANCE_MAP)
+                                .put(deploymentID() + "#" + Integer.toHexString(System.identityHashCode(this)), eventLoop);
+
+                        Logger.info("HTTP Server running on port " + port + " on " + eventLoop);
 
                         startPromise.complete();
 
@@ -87,7 +101,7 @@ public class HttpServerVerticle extends AbstractVerticle {
 
     private void registerCredentialProfileRoutes(Router router) {
 
-        CredentialProfileHandler handler = new CredentialProfileHandler(vertx.eventBus());
+        CredentialProfileHandler handler = new CredentialProfileHandler(vertx.eventBus(), profileListStreamer);
 
         router.get(Constants.GET_CREDENTIAL_PROFILE_API).handler(handler::getCredentialProfile);
 
@@ -103,7 +117,7 @@ public class HttpServerVerticle extends AbstractVerticle {
 
     private void registerDiscoveryProfileRoutes(Router router) {
 
-        DiscoveryProfileHandler handler = new DiscoveryProfileHandler(vertx.eventBus());
+        DiscoveryProfileHandler handler = new DiscoveryProfileHandler(vertx.eventBus(), profileListStreamer);
 
         router.get(Constants.GET_DISCOVERY_PROFILE_API).handler(handler::getDiscoveryProfile);
 
@@ -111,6 +125,10 @@ public class HttpServerVerticle extends AbstractVerticle {
 
         router.get(Constants.GET_DISCOVERY_RUN).handler(handler::runDiscovery);
 
+        router.post(Constants.GET_DISCOVERY_RUN).handler(handler::runDiscovery);
+
+        router.get(Constants.GET_DISCOVERY_JOB).handler(handler::getDiscoveryJob);
+
         router.post(Constants.CREATE_DISCOVERY_PROFILE).handler(handler::createDiscoveryProfile);
 
         router.put(Constants.UPDATE_DISCOVERY_PROFILE).handler(handler::updateDiscoveryProfile);
@@ -121,12 +139,21 @@ public class HttpServerVerticle extends AbstractVerticle {
 
     private void registerProvisioningRoutes(Router router) {
 
-        ProvisionHandler handler = new ProvisionHandler(vertx.eventBus());
+        ProvisionHandler handler = new ProvisionHandler(vertx.eventBus(), profileListStreamer);
 
         router.post(Constants.GET_PROVISION).handler(handler::provision);
 
+        // Registered first, otherwise /api/provision/:id would take "latest" as an id
+        router.get(Constants.GET_LATEST_SAMPLES_API).handler(handler::getLatestSamples);
+
+        router.get(Constants.GET_LATEST_SAMPLE_API).handler(handler::getLatestSample);
+
         router.get(Constants.GET_PROVISIONED_DATA).handler(handler::getProvisionedData);
 
+        router.get(Constants.GET_PROVISIONED_METRIC_API).handler(handler::getMetricSeries);
+
+        router.get(Constants.GET_PROVISIONED_PROFILES_API).handler(handler::getProvisionedProfiles);
+
     }
 
 }
\ No newline at end of file
@@ -8,7 +8,13 @@ import io.vertx.core.impl.logging.LoggerFactory;
 import io.vertx.core.json.JsonObject;
 import io.vertx.sqlclient.Pool;
 import org.nmssever.database.DatabaseClient;
+import org.nmssever.messages.PollingRequest;
+import org.nmssever.services.PollingScheduler;
+import org.nmssever.services.ProvisionedDevice;
+import org.nmssever.services.ProvisionedDeviceRegistry;
+import org.nmssever.util.ConfigUtil;
 import org.nmssever.util.Constants;
+import org.nmssever.util.LogSampler;
 
 /**
  * The type Polling verticle.
@@ -17,9 +23,15 @@ public class PollingVerticle extends AbstractVerticle {
 
     private final Logger LOGGER = LoggerFactory.getLogger(PollingVerticle.class);
 
+    private final LogSampler pollLogSampler = LogSampler.fromConfig();
+
     private final Pool pool;
 
-    private final JsonObject responseObject = new JsonObject();
+    private PollingScheduler scheduler;
+
+    private ProvisionedDeviceRegistry registry;
+
+    private DeliveryOptions pollingOptions;
 
     /**
      * Instantiates a new Polling verticle.
@@ -35,82 +47,63 @@ public class PollingVerticle extends AbstractVerticle {
     @Override
     public void start(Promise<Void> startPromise) {
 
-        vertx.setPeriodic(120000, id -> fetchProvisionedProfiles(startPromise));
+        pollingOptions = new DeliveryOptions().setSendTimeout(ConfigUtil.getLong("POLLING_SEND_TIMEOUT_MS", Constants.POLLING_SEND_TIMEOUT_MS));
 
-    }
-
-    private void fetchProvisionedProfiles(Promise<Void> startPromise) {
+        scheduler = new PollingScheduler(vertx, this::sendPollingRequest);
 
-        LOGGER.info("Fetching provisioned profiles...");
+        registry = new ProvisionedDeviceRegistry(pool, this::scheduleDevice, scheduler::unschedule);
 
-        var sql = """
-                    SELECT dp.ip, dp.id, dp.credential_profile_id, cp.credentialconfig,cp.system_type
-                    FROM discoveryprofiles dp
-                    JOIN credentialprofiles cp ON dp.credential_profile_id = cp.id
-                    WHERE dp.provision_status = 1
-                """;
+        vertx.eventBus().<JsonObject>consumer(Constants.PROVISIONED_DEVICE_CHANGED, message -> registry.onChange(message.body())
+                .onFailure(err -> LOGGER.error("Failed to refresh provisioned device registry for: " + message.body().encode(), err)));
 
-        pool.preparedQuery(sql).execute(ar -> {
+        registry.load().onComplete(ar -> {
 
             if (ar.failed()) {
 
-                LOGGER.error("Failed to execute query: " + sql, ar.cause());
+                LOGGER.error("Failed to load provisioned devices; polling starts empty until the next reconciliation", ar.cause());
 
-                return;
-
-            }
-
-            var rows = ar.result();
-
-            if (rows.size() == 0) {
+            } else if (registry.size() == 0) {
 
                 LOGGER.info("No provisioned profiles found.");
 
-                return;
-
             }
 
-            rows.forEach(row -> {
-
-                var discoveryProfileID = row.getInteger("id");
+            scheduler.start();
 
-                var ip = row.getString("ip");
+            vertx.setPeriodic(ConfigUtil.getLong("DEVICE_REGISTRY_RECONCILE_INTERVAL_MS", Constants.DEVICE_REGISTRY_RECONCILE_INTERVAL_MS), id -> registry.reconcile()
+                    .onFailure(err -> LOGGER.error("Provisioned device registry reconciliation failed", err)));
 
-                var systemtype = row.getString("system_type");
+            startPromise.complete();
 
-                JsonObject credentialConfig;
-
-                try {
-
-                    credentialConfig = new JsonObject(row.getString("credentialconfig"));
+        });
 
-                } catch (Exception e) {
+    }
 
-                    LOGGER.error("Invalid JSON in credential_config for profile: " + discoveryProfileID, e);
+    private void scheduleDevice(ProvisionedDevice device) {
 
-                    return;
+        scheduler.schedule(device.discoveryProfileId(), device.pollingIntervalSeconds() * 1000L, device.toPollingRequest());
 
-                }
+    }
 
-                var username = credentialConfig.getString("username");
+    private void sendPollingRequest(PollingRequest pollingRequest) {
 
-                var password = credentialConfig.getString("password");
+        if (LOGGER.isDebugEnabled()) {
 
-                var responseObject = new JsonObject().put("RequestType", "provisioning").put("ip", ip).put("username", username).put("password", password).put("SystemType", systemtype).put("discovery_profile_id", discoveryProfileID);
+            LOGGER.debug("Sending ZMQ request: " + pollingRequest);
 
-                LOGGER.info("Sending ZMQ request: " + responseObject.encodePrettily());
+        } else if (pollLogSampler.sample()) {
 
-                vertx.eventBus().request(Constants.ZMQ_POLLING_REQUEST, responseObject, new DeliveryOptions().setSendTimeout(120000), zmqResponse -> {
+            LOGGER.info("Sending ZMQ request: " + pollingRequest + " (" + pollLogSampler.drainSuppressed() + " similar suppressed)");
 
-                    if (zmqResponse.failed()) {
+        }
 
-                        LOGGER.error("ZMQ request failed for profile: " + discoveryProfileID, zmqResponse.cause());
+        vertx.eventBus().request(Constants.ZMQ_POLLING_REQUEST, pollingRequest, pollingOptions, zmqResponse -> {
 
-                    }
+            if (zmqResponse.failed()) {
 
-                });
+                LOGGER.error("ZMQ request failed for profile: " + pollingRequest.discoveryProfileId(), zmqResponse.cause());
 
-            });
+            }
 
         });
 
@@ -120,10 +113,14 @@ public class PollingVerticle extends AbstractVerticle {
     @Override
     public void stop(Promise<Void> stopPromise) {
 
+        if (scheduler != null) {
+
+            scheduler.stop();
+
+        }
+
         stopPromise.complete();
 
     }
 
 }
-
-
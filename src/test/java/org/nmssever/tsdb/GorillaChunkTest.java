@@ -0,0 +1,253 @@
+package org.nmssever.tsdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of {@link GorillaChunk}: randomized round trips and the encoding edge cases, with values compared
+ * bit for bit. Randomized runs use a fixed seed, reported in failure messages; {@code -Dnms.test.seed=<n>}
+ * explores others.
+ */
+class GorillaChunkTest {
+
+    private static final long SEED = Long.getLong("nms.test.seed", 42L);
+
+    private record Point(long timestamp, long valueBits) {
+
+    }
+
+    @Test
+    void roundTripsRandomSeries() {
+
+        var random = new Random(SEED);
+
+        for (var chunkIndex = 0; chunkIndex < 2_000; chunkIndex++) {
+
+            List<Point> points = new ArrayList<>();
+
+            var timestamp = random.nextLong() >> 20;
+
+            var value = random.nextDouble() * 100;
+
+            var interval = 1 + random.nextInt(60_000);
+
+            for (var i = random.nextInt(500); i >= 0; i--) {
+
+                // Mostly regular polling with jitter, gaps and value jumps, as a real gauge
+                timestamp += switch (random.nextInt(20)) {
+
+                    case 0 -> 0;
+
+                    case 1 -> random.nextInt(Integer.MAX_VALUE);
+
+                    case 2 -> random.nextInt(5_000);
+
+                    default -> interval + random.nextInt(3) - 1;
+
+                };
+
+                value = switch (random.nextInt(10)) {
+
+                    case 0 -> random.nextLong() * 1e-3;
+
+                    case 1, 2 -> value;
+
+                    case 3 -> Math.rint(value);
+
+                    default -> value + random.nextGaussian();
+
+                };
+
+                points.add(new Point(timestamp, Double.doubleToRawLongBits(value)));
+
+            }
+
+            assertRoundTrip(points, random.nextBoolean(), "seed " + SEED + ", chunk " + chunkIndex);
+
+        }
+
+    }
+
+    @Test
+    void roundTripsDeltaOfDeltasNeedingAll64Bits() {
+
+        var large = 1L << 40;
+
+        assertRoundTrip(List.of(
+                point(0, 1.0),
+                point(1, 1.0),
+                point(1 + large, 2.0),
+                // The delta drops from 2^40 back to 1, a delta-of-delta of 1 - 2^40
+                point(2 + large, 3.0),
+                point(Long.MAX_VALUE / 2, 4.0),
+                point(Long.MAX_VALUE - 1, 5.0),
+                point(Long.MAX_VALUE, 6.0)), true, "64 bit");
+
+        // Deltas-of-deltas on both sides of every prefix boundary
+        var boundaries = new long[]{63, 64, -64, -65, 255, 256, -256, -257, 2047, 2048, -2048, -2049,
+                Integer.MAX_VALUE, Integer.MAX_VALUE + 1L, Integer.MIN_VALUE, Integer.MIN_VALUE - 1L};
+
+        for (var deltaOfDelta : boundaries) {
+
+            var base = 10L * Integer.MAX_VALUE;
+
+            assertRoundTrip(List.of(
+                    point(0, 1.0),
+                    point(base, 1.0),
+                    point(2 * base + deltaOfDelta, 1.0),
+                    point(3 * base + deltaOfDelta, 1.0)), false, "delta-of-delta " + deltaOfDelta);
+
+        }
+
+    }
+
+    @Test
+    void roundTripsRepeatedValuesAndTimestamps() {
+
+        List<Point> points = new ArrayList<>();
+
+        for (var i = 0; i < 1_000; i++) {
+
+            points.add(point(1_700_000_000_000L + i / 10 * 30_000L, i / 100));
+
+        }
+
+        assertRoundTrip(points, true, "repeated");
+
+    }
+
+    @Test
+    void spendsOneBitPerRepeatedTimestampDeltaAndValue() {
+
+        List<Point> points = new ArrayList<>();
+
+        for (var i = 0; i < 1_000; i++) {
+
+            points.add(point(1_700_000_000_000L + i * 30_000L, 42.5));
+
+        }
+
+        var chunk = assertRoundTrip(points, true, "regular");
+
+        // The raw first point, a 32 bit delta-of-delta and a repeat bit, then one bit each for timestamp and value
+        assertEquals(128 + 5 + 32 + 1 + 998 * 2, chunk.bitLength());
+
+    }
+
+    @Test
+    void capsLeadingZerosAt31() {
+
+        // XORs whose leading zero count exceeds what 5 bits can hold, followed by one reusing the window
+        assertRoundTrip(List.of(
+                point(0, 0.0),
+                point(1, Double.longBitsToDouble(1L)),
+                point(2, Double.longBitsToDouble(3L)),
+                point(3, Double.longBitsToDouble(2L)),
+                point(4, Double.longBitsToDouble(1L << 32)),
+                point(5, Double.longBitsToDouble((1L << 32) | 1L)),
+                point(6, 1.0),
+                point(7, Double.longBitsToDouble(Double.doubleToRawLongBits(1.0) ^ (1L << 31)))), true, "leading zeros");
+
+    }
+
+    @Test
+    void roundTripsSpecialValuesBitForBit() {
+
+        assertRoundTrip(List.of(
+                point(0, Double.NaN),
+                point(1, Double.longBitsToDouble(0x7FF8_0000_0000_0001L)),
+                point(2, -0.0),
+                point(3, 0.0),
+                point(4, Double.POSITIVE_INFINITY),
+                point(5, Double.NEGATIVE_INFINITY),
+                point(6, Double.MIN_VALUE),
+                point(7, -Double.MAX_VALUE)), true, "special values");
+
+    }
+
+    @Test
+    void scansOnlyTheRequestedRange() {
+
+        var chunk = new GorillaChunk();
+
+        for (var i = 0; i < 100; i++) {
+
+            chunk.append(1_000L * i, i);
+
+        }
+
+        List<Long> seen = new ArrayList<>();
+
+        assertEquals(10, chunk.scan(20_000, 30_000, (timestamp, value) -> seen.add(timestamp)));
+
+        assertEquals(20_000L, (long) seen.get(0));
+
+        assertEquals(29_000L, (long) seen.get(9));
+
+        assertEquals(0, chunk.scan(100_000, 200_000, (timestamp, value) -> seen.add(timestamp)));
+
+        assertEquals(0, new GorillaChunk().scan(Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> seen.add(timestamp)));
+
+    }
+
+    @Test
+    void rejectsAppendsAfterSeal() {
+
+        var chunk = new GorillaChunk();
+
+        chunk.append(0, 1.0);
+
+        chunk.seal();
+
+        assertThrows(IllegalStateException.class, () -> chunk.append(1, 2.0));
+
+        assertEquals(GorillaChunk.OVERHEAD_BYTES + 16, chunk.sizeBytes());
+
+    }
+
+    private static Point point(long timestamp, double value) {
+
+        return new Point(timestamp, Double.doubleToRawLongBits(value));
+
+    }
+
+    private static GorillaChunk assertRoundTrip(List<Point> points, boolean seal, String context) {
+
+        var chunk = new GorillaChunk();
+
+        for (var point : points) {
+
+            chunk.append(point.timestamp(), Double.longBitsToDouble(point.valueBits()));
+
+        }
+
+        if (seal) {
+
+            chunk.seal();
+
+        }
+
+        assertEquals(points.size(), chunk.count(), context);
+
+        List<Point> decoded = new ArrayList<>(points.size());
+
+        var passed = chunk.scan(Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> decoded.add(new Point(timestamp, Double.doubleToRawLongBits(value))));
+
+        // The exclusive end of the full range drops a point at Long.MAX_VALUE
+        var expected = points.stream().filter(point -> point.timestamp() != Long.MAX_VALUE).toList();
+
+        assertEquals(expected.size(), passed, context);
+
+        assertEquals(expected, decoded, context);
+
+        return chunk;
+
+    }
+
+}
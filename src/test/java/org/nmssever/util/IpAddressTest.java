@@ -0,0 +1,335 @@
+package org.nmssever.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link IpAddress}: a randomized round trip through the canonical text form, and a randomized
+ * comparison with the regular expressions the discovery profile validation used before the parser.
+ * Runs use a fixed seed, reported in failure messages; {@code -Dnms.test.seed=<n>} explores others.
+ */
+class IpAddressTest {
+
+    private static final int ITERATIONS = 200_000;
+
+    private static final long SEED = Long.getLong("nms.test.seed", 42L);
+
+    /**
+     * The IPv4 expression DiscoveryProfileHandler used before IpAddress.
+     */
+    private static final Pattern LEGACY_IPV4 = Pattern.compile("^(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)\\.(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)\\.(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)\\.(25[0-5]|2[0-4][0-9]|1?[0-9][0-9]?)$");
+
+    /**
+     * The IPv6 expression DiscoveryProfileHandler used before IpAddress.
+     */
+    private static final Pattern LEGACY_IPV6 = Pattern.compile("^(([0-9a-fA-F]{1,4}:){7,7}[0-9a-fA-F]{1,4}|([0-9a-fA-F]{1,4}:){1,7}:|([0-9a-fA-F]{1,4}:){1,6}:[0-9a-fA-F]{1,4}|([0-9a-fA-F]{1,4}:){1,5}(:[0-9a-fA-F]{1,4}){1,2}|([0-9a-fA-F]{1,4}:){1,4}(:[0-9a-fA-F]{1,4}){1,3}|([0-9a-fA-F]{1,4}:){1,3}(:[0-9a-fA-F]{1,4}){1,4}|([0-9a-fA-F]{1,4}:){1,2}(:[0-9a-fA-F]{1,4}){1,5}|[0-9a-fA-F]{1,4}:((:[0-9a-fA-F]{1,4}){1,6})|:((:[0-9a-fA-F]{1,4}){1,7}|:)|fe80:(:[0-9a-fA-F]{0,4}){0,4}%[0-9a-zA-Z]{1,}|::(ffff(:0{1,4}){0,1}:){0,1}((25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9])\\.){3,3}(25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9])|([0-9a-fA-F]{1,4}:){1,4}:((25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9])\\.){3,3}(25[0-5]|(2[0-4]|1{0,1}[0-9])?[0-9]))$");
+
+    /**
+     * The link-local branch of LEGACY_IPV6, which also took empty and surplus groups before a zone id.
+     */
+    private static final Pattern LEGACY_LINK_LOCAL = Pattern.compile("^fe80:(:[0-9a-fA-F]{0,4}){0,4}%[0-9a-zA-Z]+$");
+
+    /**
+     * A dotted octet of two or more digits starting with zero.
+     */
+    private static final Pattern LEADING_ZERO_OCTET = Pattern.compile("(^|[.:])0[0-9]+(\\.|$)");
+
+    private static final String HEX_DIGITS = "0123456789abcdefABCDEF";
+
+    @Test
+    void roundTripsRandomAddressesThroughTheCanonicalForm() {
+
+        var random = new Random(SEED);
+
+        for (var i = 0; i < ITERATIONS; i++) {
+
+            var address = switch (random.nextInt(4)) {
+
+                case 0 -> IpAddress.ofIpv4(random.nextLong() & 0xFFFFFFFFL);
+
+                // Long runs of zero groups exercise the "::" placement
+                case 1 -> new IpAddress(random.nextLong() & sparseMask(random), random.nextLong() & sparseMask(random));
+
+                default -> new IpAddress(random.nextLong(), random.nextLong());
+
+            };
+
+            var text = address.toString();
+
+            assertEquals(address, IpAddress.parse(text), "seed " + SEED + ": " + text);
+
+            assertTrue(IpAddress.isValid(text), "seed " + SEED + ": " + text);
+
+            assertTrue(legacyValid(text), "seed " + SEED + ": canonical form rejected by the legacy expressions: " + text);
+
+            var full = fullForm(address, random);
+
+            assertEquals(address, IpAddress.parse(full), "seed " + SEED + ": " + full);
+
+        }
+
+    }
+
+    @Test
+    void agreesWithTheLegacyExpressionsExceptForDocumentedDifferences() {
+
+        var random = new Random(SEED);
+
+        var legacyValid = 0;
+
+        for (var i = 0; i < ITERATIONS; i++) {
+
+            var text = random.nextBoolean() ? randomIpv4Text(random) : randomIpv6Text(random);
+
+            var legacy = legacyValid(text);
+
+            var parser = IpAddress.isValid(text);
+
+            legacyValid += legacy ? 1 : 0;
+
+            if (legacy == parser) {
+
+                continue;
+
+            }
+
+            if (legacy) {
+
+                // The expressions took leading zeros, which some resolvers read as octal, and malformed
+                // link-local addresses with empty or surplus groups before the zone id
+                assertTrue(LEADING_ZERO_OCTET.matcher(text).find() || LEGACY_LINK_LOCAL.matcher(text).matches(),
+                        "seed " + SEED + ": rejected by the parser only: " + text);
+
+            } else {
+
+                // The expressions missed valid RFC 4291 forms: embedded IPv4 after up to six groups and
+                // zone ids on upper-case or uncompressed link-local addresses. The same address in
+                // canonical form must still be accepted by them.
+                assertTrue(text.indexOf('%') >= 0 || text.indexOf(':') >= 0 && text.indexOf('.') >= 0, "seed " + SEED + ": accepted by the parser only: " + text);
+
+                assertFalse(LEADING_ZERO_OCTET.matcher(text).find(), "seed " + SEED + ": leading zero accepted: " + text);
+
+                var zone = text.indexOf('%');
+
+                var canonical = IpAddress.parse(zone < 0 ? text : text.substring(0, zone)).toString();
+
+                assertTrue(legacyValid(canonical), "seed " + SEED + ": canonical form rejected by the legacy expressions: " + canonical);
+
+            }
+
+        }
+
+        // The generator must produce a fair share of valid addresses for the comparison to mean anything
+        assertTrue(legacyValid > ITERATIONS / 10, "seed " + SEED + ": only " + legacyValid + " valid inputs");
+
+    }
+
+    @Test
+    void rejectsLeadingZeros() {
+
+        for (var text : new String[]{"001.1.1.1", "099.1.1.1", "01.2.3.4", "1.2.3.04", "10.00.0.1", "::ffff:01.2.3.4", "1:2:3:4:5:6:1.2.3.010"}) {
+
+            assertFalse(IpAddress.isValid(text), text);
+
+            assertThrows(IllegalArgumentException.class, () -> IpAddress.parse(text), text);
+
+        }
+
+        assertEquals(IpAddress.ofIpv4(0x0A000001L), IpAddress.parse("10.0.0.1"));
+
+        assertTrue(IpAddress.isValid("0.0.0.0"));
+
+    }
+
+    @Test
+    void acceptsRfc4291FormsTheLegacyExpressionsMissed() {
+
+        for (var text : new String[]{"1:2:3:4:5:6:1.2.3.4", "1::ffff:1.2.3.4", "FE80::1%eth0", "fe80:0:0:0:0:0:0:1%eth0"}) {
+
+            assertFalse(legacyValid(text), text);
+
+            assertTrue(IpAddress.isValid(text), text);
+
+        }
+
+        assertEquals("1:2:3:4:5:6:102:304", IpAddress.parse("1:2:3:4:5:6:1.2.3.4").toString());
+
+        assertEquals("1.2.3.4", IpAddress.parse("::ffff:1.2.3.4").toString());
+
+    }
+
+    @Test
+    void rejectsMalformedLinkLocalAddressesTheLegacyExpressionsTook() {
+
+        for (var text : new String[]{"fe80:%eth0", "fe80::::%eth0", "fe80:::1:%eth0"}) {
+
+            assertTrue(legacyValid(text), text);
+
+            assertFalse(IpAddress.isValid(text), text);
+
+        }
+
+    }
+
+    private static boolean legacyValid(String text) {
+
+        return LEGACY_IPV4.matcher(text).matches() || LEGACY_IPV6.matcher(text).matches();
+
+    }
+
+    private static long sparseMask(Random random) {
+
+        var mask = 0L;
+
+        for (var group = 0; group < 4; group++) {
+
+            if (random.nextInt(3) == 0) {
+
+                mask |= 0xFFFFL << (group * 16);
+
+            }
+
+        }
+
+        return mask;
+
+    }
+
+    /**
+     * Writes all eight groups in random case, with random leading zeros, and no "::".
+     */
+    private static String fullForm(IpAddress address, Random random) {
+
+        var groups = new ArrayList<String>(8);
+
+        for (var i = 0; i < 8; i++) {
+
+            var word = i < 4 ? address.high() : address.low();
+
+            var group = Integer.toHexString((int) (word >>> ((3 - (i & 3)) * 16)) & 0xFFFF);
+
+            group = "0".repeat(random.nextInt(5 - group.length())) + group;
+
+            groups.add(random.nextBoolean() ? group.toUpperCase(Locale.ROOT) : group);
+
+        }
+
+        return String.join(":", groups);
+
+    }
+
+    private static String randomOctet(Random random) {
+
+        return switch (random.nextInt(12)) {
+
+            case 0 -> "0" + random.nextInt(100);
+
+            case 1 -> String.valueOf(256 + random.nextInt(800));
+
+            default -> String.valueOf(random.nextInt(256));
+
+        };
+
+    }
+
+    private static String randomIpv4Text(Random random) {
+
+        var octets = random.nextInt(20) == 0 ? 3 + random.nextInt(3) : 4;
+
+        var builder = new StringBuilder();
+
+        for (var i = 0; i < octets; i++) {
+
+            if (i > 0) {
+
+                builder.append('.');
+
+            }
+
+            builder.append(randomOctet(random));
+
+        }
+
+        return builder.toString();
+
+    }
+
+    private static String randomGroup(Random random) {
+
+        var digits = random.nextInt(30) == 0 ? 5 : 1 + random.nextInt(4);
+
+        var builder = new StringBuilder(digits);
+
+        for (var i = 0; i < digits; i++) {
+
+            builder.append(random.nextInt(50) == 0 ? 'g' : HEX_DIGITS.charAt(random.nextInt(HEX_DIGITS.length())));
+
+        }
+
+        return builder.toString();
+
+    }
+
+    /**
+     * Builds zero to nine groups with an optional "::", embedded IPv4 address and zone id.
+     */
+    private static String randomIpv6Text(Random random) {
+
+        var groups = random.nextInt(10);
+
+        var gap = random.nextInt(3) == 0 ? -1 : random.nextInt(groups + 1);
+
+        var builder = new StringBuilder();
+
+        for (var i = 0; i <= groups; i++) {
+
+            if (i == gap) {
+
+                builder.append("::");
+
+            } else if (i > 0 && i < groups) {
+
+                builder.append(':');
+
+            }
+
+            if (i < groups) {
+
+                builder.append(i == 0 && random.nextInt(6) == 0 ? (random.nextBoolean() ? "fe80" : "FE80") : randomGroup(random));
+
+            }
+
+        }
+
+        if (random.nextInt(4) == 0) {
+
+            if (!builder.isEmpty() && builder.charAt(builder.length() - 1) != ':') {
+
+                builder.append(':');
+
+            }
+
+            builder.append(randomIpv4Text(random));
+
+        }
+
+        if (random.nextInt(5) == 0) {
+
+            builder.append('%').append(random.nextBoolean() ? "eth0" : "");
+
+        }
+
+        return builder.toString();
+
+    }
+
+}